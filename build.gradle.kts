@@ -25,6 +25,8 @@ dependencies {
     implementation("org.springframework.boot:spring-boot-starter-oauth2-resource-server")
     implementation("org.springframework.boot:spring-boot-starter-data-jpa")
     implementation("org.springframework.boot:spring-boot-starter-thymeleaf")
+    implementation("com.fasterxml.jackson.dataformat:jackson-dataformat-smile")
+    implementation("com.fasterxml.jackson.dataformat:jackson-dataformat-cbor")
     implementation("org.springdoc:springdoc-openapi-starter-webmvc-ui:$springDocOpenApiVersion")
     implementation("javax.validation:validation-api:$javaxValidationVersion")
     implementation("org.hibernate.validator:hibernate-validator:$hibernateValidatorVersion")
@@ -40,4 +42,148 @@ dependencies {
 
 tasks.test {
     useJUnitPlatform()
-}
\ No newline at end of file
+}
+
+// Startup tooling. `-Paot` runs Spring AOT processing so the boot jar starts with
+// pre-computed bean definitions (launch with -Dspring.aot.enabled=true).
+val aotEnabled = project.hasProperty("aot")
+if (aotEnabled) {
+    apply(plugin = "org.springframework.boot.aot")
+    // AOT evaluates @ConditionalOnProperty once, at build time. Process in the stateless JWT mode
+    // that StartupBenchmark and multi-node deployments run in; the result must be launched in it
+    tasks.named<JavaExec>("processAot") {
+        environment("SECURITY_SESSION_MODE", "jwt")
+    }
+}
+
+val benchmark: SourceSet by sourceSets.creating {
+    // In-process benchmarks drive the application's own classes
+    compileClasspath += sourceSets.main.get().output
+    runtimeClasspath += sourceSets.main.get().output
+}
+configurations["benchmarkImplementation"].extendsFrom(configurations.implementation.get())
+configurations["benchmarkRuntimeOnly"].extendsFrom(configurations.runtimeOnly.get())
+
+dependencies {
+    "benchmarkImplementation"("com.fasterxml.jackson.core:jackson-databind")
+    // Servlet mocks for benchmarks that run request handling without a server
+    "benchmarkImplementation"("org.springframework:spring-test")
+    // Tests run against the same fake GitHub server as the benchmarks
+    testImplementation(benchmark.output)
+}
+
+val cdsDir = layout.buildDirectory.dir("cds")
+
+if (aotEnabled) {
+    tasks.register<Jar>("aotJar") {
+        archiveClassifier.set("aot")
+        from(sourceSets["aot"].output)
+    }
+}
+
+val cdsClasspath by tasks.registering(Sync::class) {
+    group = "startup"
+    description = "Copies the application and its dependencies as plain jars for CDS"
+    from(tasks.jar)
+    if (aotEnabled) {
+        from(tasks.named("aotJar"))
+    }
+    from(configurations.runtimeClasspath)
+    into(cdsDir.map { it.dir("lib") })
+}
+
+val cdsArchive by tasks.registering(JavaExec::class) {
+    group = "startup"
+    description = "Starts the application once to record a Class Data Sharing archive in build/cds"
+    dependsOn(cdsClasspath)
+    mainClass.set("org.nsu.Main")
+    val libDir = cdsDir.map { it.dir("lib").asFile }
+    classpath = files(libDir.map { dir -> dir.listFiles()?.sorted() ?: emptyList() })
+    jvmArgs("-Dspring.context.exit=onRefresh")
+    if (aotEnabled) {
+        jvmArgs("-Dspring.aot.enabled=true")
+        environment("SECURITY_SESSION_MODE", "jwt")
+    }
+    doFirst {
+        val archive = cdsDir.get().file("app.jsa").asFile
+        jvmArgs("-XX:ArchiveClassesAtExit=${archive.absolutePath}")
+        // The archive is only valid for this exact classpath, so write it down for launching
+        cdsDir.get().file("app.args").asFile.writeText(buildString {
+            append("-XX:SharedArchiveFile=").append(archive.absolutePath).append('\n')
+            if (aotEnabled) {
+                append("-Dspring.aot.enabled=true\n")
+            }
+            append("-cp ").append(classpath.files.joinToString(File.pathSeparator) { it.absolutePath }).append('\n')
+        })
+    }
+}
+
+tasks.register<JavaExec>("startupBenchmark") {
+    group = "startup"
+    description = "Measures time from JVM launch to the first successful /api/v1/sql/execute"
+    classpath = benchmark.runtimeClasspath
+    mainClass.set("org.nsu.benchmark.StartupBenchmark")
+    val useCds = project.hasProperty("cds")
+    if (useCds) {
+        dependsOn(cdsArchive)
+    } else {
+        dependsOn(tasks.bootJar)
+    }
+    val runs = (project.findProperty("benchmarkRuns") ?: "5").toString()
+    val launch = if (useCds) {
+        listOf("@" + cdsDir.get().file("app.args").asFile.absolutePath, "org.nsu.Main")
+    } else {
+        (if (aotEnabled) listOf("-Dspring.aot.enabled=true") else emptyList()) +
+                listOf("-jar", tasks.bootJar.get().archiveFile.get().asFile.absolutePath)
+    }
+    args(listOf(runs) + launch)
+}
+
+// Replays a workload recorded with loadtest.record-file against an instance running
+// with --spring.profiles.active=loadtest, e.g. -PreplayArgs="--file=workload.jsonl --concurrency=16"
+tasks.register<JavaExec>("replayWorkload") {
+    group = "benchmark"
+    description = "Replays a recorded query workload and reports latency percentiles per endpoint"
+    classpath = benchmark.runtimeClasspath
+    mainClass.set("org.nsu.benchmark.WorkloadReplay")
+    args((project.findProperty("replayArgs") ?: "").toString().split(" ").filter { it.isNotBlank() })
+}
+
+// Commits and restores a sandbox snapshot against the fake GitHub server, with an instance
+// running with --spring.profiles.active=loadtest, e.g. -PsnapshotArgs="--rows=100000"
+tasks.register<JavaExec>("snapshotRoundTrip") {
+    group = "benchmark"
+    description = "Checks that sandbox snapshots upload only changed chunks and restore the same rows"
+    classpath = benchmark.runtimeClasspath
+    mainClass.set("org.nsu.benchmark.SnapshotRoundTrip")
+    args((project.findProperty("snapshotArgs") ?: "").toString().split(" ").filter { it.isNotBlank() })
+}
+
+// Wire size and serialization time of a large query result in JSON, Smile and CBOR,
+// e.g. -PencodingArgs="--rows=100000 --runs=50"
+tasks.register<JavaExec>("encodingBenchmark") {
+    group = "benchmark"
+    description = "Compares response size and serialization time of the JSON, Smile and CBOR encodings"
+    classpath = benchmark.runtimeClasspath
+    mainClass.set("org.nsu.benchmark.EncodingBenchmark")
+    args((project.findProperty("encodingArgs") ?: "").toString().split(" ").filter { it.isNotBlank() })
+}
+
+// Connection waits of the static and adaptive sandbox pools under bursts of clients,
+// in process and without the application, e.g. -PpoolArgs="--clients=32 --rounds=5"
+tasks.register<JavaExec>("poolBenchmark") {
+    group = "benchmark"
+    description = "Compares connection wait percentiles of static and adaptive sandbox pools under bursty load"
+    classpath = benchmark.runtimeClasspath
+    mainClass.set("org.nsu.benchmark.PoolBurstBenchmark")
+    args((project.findProperty("poolArgs") ?: "").toString().split(" ").filter { it.isNotBlank() })
+}
+
+// Per-request authentication cost of the session and JWT modes, e.g. -PauthArgs="--requests=500000"
+tasks.register<JavaExec>("authBenchmark") {
+    group = "benchmark"
+    description = "Compares per-request authentication time of the session and JWT security modes"
+    classpath = benchmark.runtimeClasspath
+    mainClass.set("org.nsu.benchmark.AuthOverheadBenchmark")
+    args((project.findProperty("authArgs") ?: "").toString().split(" ").filter { it.isNotBlank() })
+}
@@ -0,0 +1,119 @@
+package org.nsu.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.nsu.config.MessageConverterConfig;
+import org.nsu.dto.ColumnInfo;
+import org.nsu.dto.QueryResponse;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Wire size and serialization time of a {@link QueryResponse} in each encoding
+ * {@link MessageConverterConfig} offers, with and without the gzip Tomcat
+ * applies above {@code server.compression.min-response-size}.
+ * <p>
+ * Options: {@code --rows=10000} and {@code --runs=20} (timed serializations
+ * per encoding, after as many warm-up runs).
+ */
+public class EncodingBenchmark {
+
+    public static void main(String[] args) throws IOException {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (arg.startsWith("--") && arg.contains("=")) {
+                options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+            }
+        }
+        int rows = Integer.parseInt(options.getOrDefault("rows", "10000"));
+        int runs = Integer.parseInt(options.getOrDefault("runs", "20"));
+
+        QueryResponse response = response(rows);
+        MessageConverterConfig config = new MessageConverterConfig();
+        measure("JSON", jsonMapper(), response, runs);
+        measure("Smile", config.smileHttpMessageConverter(Jackson2ObjectMapperBuilder.json()).getObjectMapper(),
+                response, runs);
+        measure("CBOR", config.cborHttpMessageConverter(Jackson2ObjectMapperBuilder.json()).getObjectMapper(),
+                response, runs);
+    }
+
+    /** The JSON mapper as Spring Boot configures it by default. */
+    public static ObjectMapper jsonMapper() {
+        return Jackson2ObjectMapperBuilder.json()
+                .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .build();
+    }
+
+    /** What QueryExecutionService builds for a typical table: H2 values keyed by column name. */
+    public static QueryResponse response(int count) {
+        List<Map<String, Object>> rows = new ArrayList<>(count);
+        long createdAt = 1_700_000_000_000L;
+        for (int i = 0; i < count; i++) {
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("ID", i);
+            row.put("NAME", "user " + i);
+            row.put("EMAIL", "user" + i + "@example.com");
+            row.put("CREATED_AT", new Timestamp(createdAt + i * 61_000L));
+            row.put("BALANCE", BigDecimal.valueOf(i * 137L % 100_000, 2));
+            row.put("ACTIVE", i % 3 != 0);
+            row.put("MANAGER_ID", i % 10 == 0 ? null : i / 10);
+            rows.add(row);
+        }
+        return QueryResponse.builder()
+                .success(true)
+                .message("Query executed successfully")
+                .executionTime(42L)
+                .rowsAffected(count)
+                .columns(List.of(
+                        new ColumnInfo("ID", "INTEGER", false),
+                        new ColumnInfo("NAME", "CHARACTER VARYING"),
+                        new ColumnInfo("EMAIL", "CHARACTER VARYING"),
+                        new ColumnInfo("CREATED_AT", "TIMESTAMP"),
+                        new ColumnInfo("BALANCE", "NUMERIC"),
+                        new ColumnInfo("ACTIVE", "BOOLEAN"),
+                        new ColumnInfo("MANAGER_ID", "INTEGER")))
+                .data(rows)
+                .build();
+    }
+
+    public static byte[] gzip(byte[] bytes) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length / 4);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(bytes);
+        }
+        return out.toByteArray();
+    }
+
+    private static void measure(String name, ObjectMapper mapper, QueryResponse response, int runs)
+            throws IOException {
+        byte[] encoded = mapper.writeValueAsBytes(response);
+        byte[] gzipped = gzip(encoded);
+        // Warm up, then time the serialization and the compression separately
+        for (int i = 0; i < runs; i++) {
+            gzip(mapper.writeValueAsBytes(response));
+        }
+        long serializeNanos = 0;
+        long compressNanos = 0;
+        for (int i = 0; i < runs; i++) {
+            long begin = System.nanoTime();
+            byte[] bytes = mapper.writeValueAsBytes(response);
+            long serialized = System.nanoTime();
+            gzip(bytes);
+            compressNanos += System.nanoTime() - serialized;
+            serializeNanos += serialized - begin;
+        }
+        System.out.printf("%-5s %,9d bytes, %,8d gzipped; serialize %6.2f ms, gzip %6.2f ms per %,d rows%n",
+                name, encoded.length, gzipped.length,
+                serializeNanos / 1e6 / runs, compressNanos / 1e6 / runs, response.getData().size());
+    }
+}
@@ -0,0 +1,367 @@
+package org.nsu.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Minimal stand-in for the GitHub endpoints used by GitHubService, with an
+ * optional fixed latency to simulate a slow API. Every repository starts with
+ * a single {@code seed.sql} file on {@code main}. The Git data API (refs,
+ * commits, trees and blobs) is kept in memory, so snapshots can be committed
+ * and restored against it; trees are stored flat, path to blob SHA. Files put
+ * through the contents API are kept apart from it, per repository.
+ */
+public class FakeGitHubServer {
+
+    private static final String SEED_SQL = "CREATE TABLE IF NOT EXISTS seed (id INT PRIMARY KEY, name VARCHAR(50));";
+
+    private final HttpServer server;
+    private final long latencyMs;
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    private final Map<String, byte[]> blobs = new ConcurrentHashMap<>();
+    private final Map<String, Map<String, String>> trees = new ConcurrentHashMap<>();
+    private final Map<String, Commit> commits = new ConcurrentHashMap<>();
+    // "owner/repo/branch" to commit SHA
+    private final Map<String, String> refs = new ConcurrentHashMap<>();
+    // "owner/repo" to path to blob SHA, for the contents API
+    private final Map<String, Map<String, String>> contents = new ConcurrentHashMap<>();
+    private final String seedCommit;
+    private final AtomicLong commitCounter = new AtomicLong();
+    private final AtomicLong blobUploads = new AtomicLong();
+    private final AtomicLong blobUploadBytes = new AtomicLong();
+
+    public FakeGitHubServer(int port, long latencyMs) throws IOException {
+        this.latencyMs = latencyMs;
+        this.server = HttpServer.create(new InetSocketAddress("localhost", port), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/", this::handle);
+
+        String seedBlob = putBlob(SEED_SQL.getBytes(StandardCharsets.UTF_8));
+        this.seedCommit = putCommit(putTree(Map.of("seed.sql", seedBlob)), null, "Initial commit");
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public void stop() {
+        server.stop(0);
+    }
+
+    /**
+     * The port listened on, useful when created with port 0.
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Blobs created through the API, to check that unchanged content is not
+     * uploaded again.
+     */
+    public long getBlobUploads() {
+        return blobUploads.get();
+    }
+
+    public long getBlobUploadBytes() {
+        return blobUploadBytes.get();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            if (latencyMs > 0) {
+                Thread.sleep(latencyMs);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        String method = exchange.getRequestMethod();
+        String path = exchange.getRequestURI().getPath();
+        if (path.equals("/user/repos") && method.equals("GET")) {
+            respond(exchange, 200, "application/json",
+                    "[{\"name\":\"sql-playground\",\"full_name\":\"loadtest/sql-playground\",\"private\":false}]");
+        } else if (path.equals("/user/repos") && method.equals("POST")) {
+            respond(exchange, 201, "application/json",
+                    "{\"name\":\"sql-playground\",\"full_name\":\"loadtest/sql-playground\"}");
+        } else if (path.startsWith("/repos/") && path.contains("/contents")) {
+            handleContents(exchange, method, path);
+        } else if (path.startsWith("/repos/") && path.contains("/git/")) {
+            handleGitData(exchange, method, path);
+        } else {
+            notFound(exchange);
+        }
+    }
+
+    private void handleContents(HttpExchange exchange, String method, String path) throws IOException {
+        int marker = path.indexOf("/contents");
+        String repo = path.substring("/repos/".length(), marker);
+        String filePath = path.substring(marker + "/contents".length()).replaceAll("^/+", "");
+        Map<String, String> files = contents.computeIfAbsent(repo, r -> new ConcurrentHashMap<>());
+
+        if (method.equals("PUT")) {
+            JsonNode body = mapper.readTree(exchange.getRequestBody().readAllBytes());
+            String sha = putBlob(Base64.getMimeDecoder().decode(body.path("content").asText()));
+            files.put(filePath, sha);
+            respondJson(exchange, 201, Map.of(
+                    "content", Map.of("path", filePath, "sha", sha),
+                    "commit", Map.of("sha", seedCommit)
+            ));
+        } else if (method.equals("DELETE")) {
+            if (files.remove(filePath) == null) {
+                notFound(exchange);
+                return;
+            }
+            respondJson(exchange, 200, Map.of("commit", Map.of("sha", seedCommit)));
+        } else if (method.equals("GET")) {
+            // Lists a directory, one level deep
+            List<Map<String, Object>> entries = new ArrayList<>();
+            new TreeMap<>(files).forEach((entryPath, sha) -> {
+                String name = entryPath.substring(entryPath.lastIndexOf('/') + 1);
+                if (entryPath.equals(filePath + name)) {
+                    entries.add(Map.of("type", "file", "name", name, "path", entryPath, "sha", sha));
+                }
+            });
+            respond(exchange, 200, "application/json", mapper.writeValueAsBytes(entries));
+        } else {
+            notFound(exchange);
+        }
+    }
+
+    private void handleGitData(HttpExchange exchange, String method, String path) throws IOException {
+        int git = path.indexOf("/git/");
+        String repo = path.substring("/repos/".length(), git);
+        String rest = path.substring(git + "/git/".length());
+
+        if (method.equals("GET") && rest.startsWith("ref/heads/")) {
+            String commit = branch(repo, rest.substring("ref/heads/".length()));
+            if (commit == null) {
+                notFound(exchange);
+                return;
+            }
+            respondJson(exchange, 200, Map.of(
+                    "ref", "refs/" + rest.substring("ref/".length()),
+                    "object", Map.of("sha", commit, "type", "commit")
+            ));
+        } else if (method.equals("PATCH") && rest.startsWith("refs/heads/")) {
+            String branch = rest.substring("refs/heads/".length());
+            JsonNode body = mapper.readTree(exchange.getRequestBody().readAllBytes());
+            String target = body.path("sha").asText();
+            String current = branch(repo, branch);
+            if (current == null || !commits.containsKey(target)) {
+                respondJson(exchange, 422, Map.of("message", "Reference does not exist"));
+            } else if (!body.path("force").asBoolean(false) && !isAncestor(current, target)) {
+                respondJson(exchange, 422, Map.of("message", "Update is not a fast forward"));
+            } else {
+                refs.put(repo + "/" + branch, target);
+                respondJson(exchange, 200, Map.of(
+                        "ref", "refs/heads/" + branch,
+                        "object", Map.of("sha", target, "type", "commit")
+                ));
+            }
+        } else if (method.equals("GET") && rest.startsWith("commits/")) {
+            String sha = rest.substring("commits/".length());
+            Commit commit = commits.get(sha);
+            if (commit == null) {
+                notFound(exchange);
+                return;
+            }
+            List<Map<String, Object>> parents = new ArrayList<>();
+            if (commit.parent != null) {
+                parents.add(Map.of("sha", commit.parent));
+            }
+            respondJson(exchange, 200, Map.of(
+                    "sha", sha,
+                    "message", commit.message,
+                    "tree", Map.of("sha", commit.tree),
+                    "parents", parents
+            ));
+        } else if (method.equals("GET") && rest.startsWith("trees/")) {
+            String treeSha = resolveTree(repo, rest.substring("trees/".length()));
+            if (treeSha == null) {
+                notFound(exchange);
+                return;
+            }
+            List<Map<String, Object>> entries = new ArrayList<>();
+            trees.get(treeSha).forEach((entryPath, blobSha) -> entries.add(Map.of(
+                    "path", entryPath,
+                    "mode", "100644",
+                    "type", "blob",
+                    "sha", blobSha,
+                    "size", blobs.get(blobSha).length
+            )));
+            respondJson(exchange, 200, Map.of("sha", treeSha, "truncated", false, "tree", entries));
+        } else if (method.equals("GET") && rest.startsWith("blobs/")) {
+            byte[] content = blobs.get(rest.substring("blobs/".length()));
+            if (content == null) {
+                notFound(exchange);
+                return;
+            }
+            respond(exchange, 200, "application/vnd.github.raw", content);
+        } else if (method.equals("POST") && rest.equals("blobs")) {
+            JsonNode body = mapper.readTree(exchange.getRequestBody().readAllBytes());
+            String content = body.path("content").asText();
+            byte[] bytes = "base64".equals(body.path("encoding").asText())
+                    ? Base64.getMimeDecoder().decode(content)
+                    : content.getBytes(StandardCharsets.UTF_8);
+            blobUploads.incrementAndGet();
+            blobUploadBytes.addAndGet(bytes.length);
+            respondJson(exchange, 201, Map.of("sha", putBlob(bytes)));
+        } else if (method.equals("POST") && rest.equals("trees")) {
+            JsonNode body = mapper.readTree(exchange.getRequestBody().readAllBytes());
+            Map<String, String> entries = new TreeMap<>();
+            if (body.hasNonNull("base_tree")) {
+                Map<String, String> base = trees.get(body.get("base_tree").asText());
+                if (base == null) {
+                    respondJson(exchange, 422, Map.of("message", "base_tree is not a valid tree"));
+                    return;
+                }
+                entries.putAll(base);
+            }
+            for (JsonNode entry : body.path("tree")) {
+                String entryPath = entry.path("path").asText();
+                if (entry.path("sha").isNull()) {
+                    entries.remove(entryPath);
+                } else if (blobs.containsKey(entry.path("sha").asText())) {
+                    entries.put(entryPath, entry.path("sha").asText());
+                } else {
+                    respondJson(exchange, 422, Map.of("message", "Blob not found for " + entryPath));
+                    return;
+                }
+            }
+            respondJson(exchange, 201, Map.of("sha", putTree(entries)));
+        } else if (method.equals("POST") && rest.equals("commits")) {
+            JsonNode body = mapper.readTree(exchange.getRequestBody().readAllBytes());
+            String tree = body.path("tree").asText();
+            JsonNode parents = body.path("parents");
+            String parent = parents.size() > 0 ? parents.get(0).asText() : null;
+            if (!trees.containsKey(tree) || (parent != null && !commits.containsKey(parent))) {
+                respondJson(exchange, 422, Map.of("message", "Tree or parent commit not found"));
+                return;
+            }
+            respondJson(exchange, 201, Map.of("sha", putCommit(tree, parent, body.path("message").asText())));
+        } else {
+            notFound(exchange);
+        }
+    }
+
+    private String branch(String repo, String branch) {
+        // Every repository exists with the seed commit on main
+        if (branch.equals("main")) {
+            return refs.computeIfAbsent(repo + "/main", key -> seedCommit);
+        }
+        return refs.get(repo + "/" + branch);
+    }
+
+    private String resolveTree(String repo, String ref) {
+        String commit = branch(repo, ref);
+        if (commit == null && commits.containsKey(ref)) {
+            commit = ref;
+        }
+        if (commit != null) {
+            return commits.get(commit).tree;
+        }
+        return trees.containsKey(ref) ? ref : null;
+    }
+
+    private boolean isAncestor(String ancestor, String commit) {
+        for (String sha = commit; sha != null; sha = commits.get(sha).parent) {
+            if (sha.equals(ancestor)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private String putBlob(byte[] content) {
+        byte[] header = ("blob " + content.length + "\0").getBytes(StandardCharsets.US_ASCII);
+        String sha = sha1(header, content);
+        blobs.putIfAbsent(sha, content);
+        return sha;
+    }
+
+    private String putTree(Map<String, String> entries) {
+        StringBuilder listing = new StringBuilder("tree\n");
+        new TreeMap<>(entries).forEach((path, sha) -> listing.append(path).append(' ').append(sha).append('\n'));
+        String sha = sha1(listing.toString().getBytes(StandardCharsets.UTF_8));
+        trees.putIfAbsent(sha, new TreeMap<>(entries));
+        return sha;
+    }
+
+    private String putCommit(String tree, String parent, String message) {
+        // The counter stands in for the timestamp that makes real commit SHAs unique
+        String sha = sha1(("commit\n" + tree + "\n" + parent + "\n" + commitCounter.incrementAndGet() + "\n" + message)
+                .getBytes(StandardCharsets.UTF_8));
+        commits.put(sha, new Commit(tree, parent, message));
+        return sha;
+    }
+
+    private static String sha1(byte[]... parts) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            for (byte[] part : parts) {
+                digest.update(part);
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void respondJson(HttpExchange exchange, int status, Map<String, Object> body) throws IOException {
+        respond(exchange, status, "application/json", mapper.writeValueAsBytes(new LinkedHashMap<>(body)));
+    }
+
+    private static void notFound(HttpExchange exchange) throws IOException {
+        respond(exchange, 404, "application/json", "{\"message\":\"Not Found\"}");
+    }
+
+    private static void respond(HttpExchange exchange, int status, String contentType, String body) throws IOException {
+        respond(exchange, status, contentType, body.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void respond(HttpExchange exchange, int status, String contentType, byte[] bytes) throws IOException {
+        // Drain the request so the connection can be reused
+        try (InputStream in = exchange.getRequestBody()) {
+            in.readAllBytes();
+        }
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static class Commit {
+        private final String tree;
+        private final String parent;
+        private final String message;
+
+        Commit(String tree, String parent, String message) {
+            this.tree = tree;
+            this.parent = parent;
+            this.message = message;
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package org.nsu.benchmark;
+
+import org.nsu.service.sandbox.SandboxPoolManager;
+import org.springframework.util.ReflectionUtils;
+
+import java.lang.reflect.Field;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bursts of clients moving between in-memory sandboxes, replayed against a
+ * static and an adaptive {@link SandboxPoolManager} without starting the
+ * application. This is the load the adaptive sizing is meant for: a static
+ * pool makes every burst queue, an adaptive one only queues until its first
+ * resize. Prints p50/p99/max connection wait of both.
+ * <p>
+ * Options: {@code --sandboxes=3}, {@code --rounds=2}, {@code --clients=16},
+ * {@code --queries=10} (per client and burst), {@code --query-ms=20} and
+ * {@code --static-size=4}.
+ */
+public class PoolBurstBenchmark {
+
+    private final int sandboxes;
+    private final int rounds;
+    private final int clients;
+    private final int queries;
+    private final long queryMs;
+    private final int staticSize;
+
+    private PoolBurstBenchmark(Map<String, String> options) {
+        this.sandboxes = Integer.parseInt(options.getOrDefault("sandboxes", "3"));
+        this.rounds = Integer.parseInt(options.getOrDefault("rounds", "2"));
+        this.clients = Integer.parseInt(options.getOrDefault("clients", "16"));
+        this.queries = Integer.parseInt(options.getOrDefault("queries", "10"));
+        this.queryMs = Long.parseLong(options.getOrDefault("query-ms", "20"));
+        this.staticSize = Integer.parseInt(options.getOrDefault("static-size", "4"));
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (arg.startsWith("--") && arg.contains("=")) {
+                options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+            }
+        }
+        PoolBurstBenchmark benchmark = new PoolBurstBenchmark(options);
+        benchmark.run("static", false);
+        benchmark.run("adaptive", true);
+    }
+
+    private void run(String mode, boolean adaptive) throws Exception {
+        SandboxPoolManager manager = new SandboxPoolManager(64);
+        set(manager, "adaptive", adaptive);
+        set(manager, "staticSize", staticSize);
+        set(manager, "initialSize", 2);
+        set(manager, "maxPerSandbox", clients);
+        set(manager, "acquireTimeoutMs", 10000L);
+        set(manager, "idleTimeoutMs", 60000L);
+        try {
+            long[] waits = replayBursts(manager, mode);
+            System.out.printf("%-8s connection wait, ms: p50=%.1f p99=%.1f max=%.1f over %,d acquisitions%n",
+                    mode, percentile(waits, 0.50), percentile(waits, 0.99),
+                    waits[waits.length - 1] / 1e6, waits.length);
+        } finally {
+            manager.closeAll();
+        }
+    }
+
+    // Sorted wait of every acquisition in nanoseconds
+    private long[] replayBursts(SandboxPoolManager manager, String mode) throws Exception {
+        List<Long> waits = Collections.synchronizedList(new ArrayList<>());
+        ScheduledExecutorService resizer = Executors.newSingleThreadScheduledExecutor();
+        ExecutorService pool = Executors.newFixedThreadPool(clients);
+        resizer.scheduleWithFixedDelay(manager::resizePools, 20, 20, TimeUnit.MILLISECONDS);
+        try {
+            for (int burst = 0; burst < sandboxes * rounds; burst++) {
+                String sandbox = "burst_" + mode + "_" + burst % sandboxes;
+                SandboxPoolManager.ConnectionOpener opener = () ->
+                        DriverManager.getConnection("jdbc:h2:mem:" + sandbox + ";DB_CLOSE_DELAY=-1", "sa", "");
+                List<Future<?>> running = new ArrayList<>();
+                for (int client = 0; client < clients; client++) {
+                    running.add(pool.submit(() -> {
+                        for (int query = 0; query < queries; query++) {
+                            long begin = System.nanoTime();
+                            try (Connection connection = manager.acquire(sandbox, opener);
+                                 Statement statement = connection.createStatement()) {
+                                waits.add(System.nanoTime() - begin);
+                                statement.execute("SELECT 1");
+                                Thread.sleep(queryMs);
+                            }
+                        }
+                        return null;
+                    }));
+                }
+                for (Future<?> client : running) {
+                    client.get();
+                }
+                Thread.sleep(100);
+            }
+        } finally {
+            pool.shutdownNow();
+            resizer.shutdownNow();
+        }
+        return waits.stream().mapToLong(Long::longValue).sorted().toArray();
+    }
+
+    private static double percentile(long[] sorted, double p) {
+        return sorted[(int) Math.ceil(p * sorted.length) - 1] / 1e6;
+    }
+
+    private static void set(Object target, String name, Object value) {
+        Field field = ReflectionUtils.findField(target.getClass(), name);
+        ReflectionUtils.makeAccessible(field);
+        ReflectionUtils.setField(field, target, value);
+    }
+}
@@ -0,0 +1,178 @@
+package org.nsu.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Commits a sandbox snapshot to {@link FakeGitHubServer} and restores it,
+ * against a running instance started with the {@code loadtest} profile. Checks
+ * that a second snapshot after changing one table uploads only that table's
+ * changed chunks, and that restoring either commit gives back the same rows.
+ * <p>
+ * Options: {@code --url=http://localhost:8081}, {@code --github-port=8089},
+ * {@code --user=snapshot-roundtrip} and {@code --rows=20000} (customers; orders
+ * get four times as many).
+ */
+public class SnapshotRoundTrip {
+
+    private static final String USER_HEADER = "X-Loadtest-User";
+    private static final String SECRET_HEADER = "X-Loadtest-Secret";
+    // The same LOADTEST_SECRET the instance was started with
+    private static final String SECRET = System.getenv().getOrDefault("LOADTEST_SECRET", "");
+    private static final String SNAPSHOTS = "/api/v1/sql/repositories/loadtest/sql-playground/snapshots/roundtrip";
+    private static final String CHECKSUM = "SELECT (SELECT COUNT(*) FROM customers) AS customers, " +
+            "(SELECT SUM(id) + SUM(LENGTH(name)) FROM customers) AS customer_sum, " +
+            "(SELECT COUNT(*) FROM orders) AS orders, " +
+            "(SELECT SUM(total) FROM orders) AS order_sum";
+
+    private final HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final String baseUrl;
+    private final String user;
+
+    private SnapshotRoundTrip(String baseUrl, String user) {
+        this.baseUrl = baseUrl;
+        this.user = user;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (arg.startsWith("--") && arg.contains("=")) {
+                options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+            }
+        }
+        String baseUrl = options.getOrDefault("url", "http://localhost:8081").replaceAll("/+$", "");
+        int githubPort = Integer.parseInt(options.getOrDefault("github-port", "8089"));
+        int rows = Integer.parseInt(options.getOrDefault("rows", "20000"));
+
+        FakeGitHubServer github = new FakeGitHubServer(githubPort, 0);
+        github.start();
+        boolean passed;
+        try {
+            passed = new SnapshotRoundTrip(baseUrl, options.getOrDefault("user", "snapshot-roundtrip"))
+                    .run(github, rows);
+        } finally {
+            github.stop();
+        }
+        System.out.println(passed ? "PASSED" : "FAILED");
+        System.exit(passed ? 0 : 1);
+    }
+
+    private boolean run(FakeGitHubServer github, int rows) throws IOException, InterruptedException {
+        dropTables();
+        execute("CREATE TABLE customers (id INT PRIMARY KEY, name VARCHAR(50))");
+        execute("INSERT INTO customers SELECT X, 'customer ' || X FROM SYSTEM_RANGE(1, " + rows + ")");
+        execute("CREATE TABLE orders (id INT PRIMARY KEY, customer_id INT REFERENCES customers(id), " +
+                "total DECIMAL(12, 2))");
+        execute("INSERT INTO orders SELECT X, MOD(X, " + rows + ") + 1, X * 1.25 FROM SYSTEM_RANGE(1, " + rows * 4 + ")");
+        execute("CREATE INDEX orders_customer ON orders (customer_id)");
+        String firstChecksum = checksum();
+
+        JsonNode first = post(SNAPSHOTS + "?message=First%20snapshot");
+        System.out.printf("first snapshot:  %s, %d of %d blobs uploaded, %d bytes%n",
+                first.path("commit").asText(), first.path("uploadedBlobs").asInt(), first.path("files").asInt(),
+                first.path("uploadedBytes").asLong());
+
+        execute("UPDATE customers SET name = 'renamed' WHERE id = " + rows);
+        String secondChecksum = checksum();
+        long uploadsBefore = github.getBlobUploads();
+        JsonNode second = post(SNAPSHOTS + "?message=Second%20snapshot");
+        long secondUploads = github.getBlobUploads() - uploadsBefore;
+        System.out.printf("second snapshot: %s, %d of %d blobs uploaded, %d bytes%n",
+                second.path("commit").asText(), secondUploads, second.path("files").asInt(),
+                second.path("uploadedBytes").asLong());
+
+        JsonNode unchanged = post(SNAPSHOTS);
+        System.out.printf("third snapshot:  unchanged=%s%n", unchanged.path("unchanged").asBoolean());
+
+        dropTables();
+        JsonNode restoredFirst = post(SNAPSHOTS + "/restore?ref=" + first.path("commit").asText());
+        String restoredFirstChecksum = checksum();
+        System.out.printf("restore first:   %d tables, %d chunks, %d bytes in %d ms%n",
+                restoredFirst.path("tables").asInt(), restoredFirst.path("chunks").asInt(),
+                restoredFirst.path("bytes").asLong(), restoredFirst.path("elapsedMs").asLong());
+
+        JsonNode restoredMain = post(SNAPSHOTS + "/restore?ref=main");
+        String restoredMainChecksum = checksum();
+        System.out.printf("restore main:    %d tables, %d chunks, %d bytes in %d ms%n",
+                restoredMain.path("tables").asInt(), restoredMain.path("chunks").asInt(),
+                restoredMain.path("bytes").asLong(), restoredMain.path("elapsedMs").asLong());
+
+        boolean passed = true;
+        // Only the customers chunk holding the last row changed; orders, schema and manifest are reused
+        if (secondUploads != 1) {
+            System.out.printf("expected 1 blob upload for the second snapshot, got %d%n", secondUploads);
+            passed = false;
+        }
+        if (!unchanged.path("unchanged").asBoolean()) {
+            System.out.println("expected the third snapshot to be unchanged");
+            passed = false;
+        }
+        if (!firstChecksum.equals(restoredFirstChecksum)) {
+            System.out.printf("first commit restored as %s, expected %s%n", restoredFirstChecksum, firstChecksum);
+            passed = false;
+        }
+        if (!secondChecksum.equals(restoredMainChecksum)) {
+            System.out.printf("main restored as %s, expected %s%n", restoredMainChecksum, secondChecksum);
+            passed = false;
+        }
+        return passed;
+    }
+
+    private void dropTables() throws IOException, InterruptedException {
+        send("/api/v1/sql/execute", "DROP TABLE IF EXISTS orders");
+        send("/api/v1/sql/execute", "DROP TABLE IF EXISTS customers");
+    }
+
+    private void execute(String sql) throws IOException, InterruptedException {
+        HttpResponse<String> response = send("/api/v1/sql/execute", sql);
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException(sql + " failed with status " + response.statusCode() + ": "
+                    + response.body());
+        }
+    }
+
+    private String checksum() throws IOException, InterruptedException {
+        HttpResponse<String> response = send("/api/v1/sql/execute", CHECKSUM);
+        if (response.statusCode() != 200) {
+            return "status " + response.statusCode();
+        }
+        return mapper.readTree(response.body()).path("data").path(0).toString();
+    }
+
+    private HttpResponse<String> send(String path, String sql) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .header(USER_HEADER, user)
+                .header(SECRET_HEADER, SECRET)
+                .header("Content-Type", "application/json")
+                .timeout(Duration.ofMinutes(2))
+                .POST(HttpRequest.BodyPublishers.ofString(mapper.writeValueAsString(Map.of("query", sql))))
+                .build();
+        return client.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private JsonNode post(String path) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .header(USER_HEADER, user)
+                .header(SECRET_HEADER, SECRET)
+                .timeout(Duration.ofMinutes(5))
+                .POST(HttpRequest.BodyPublishers.noBody())
+                .build();
+        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException(path + " failed with status " + response.statusCode() + ": "
+                    + response.body());
+        }
+        return mapper.readTree(response.body());
+    }
+}
@@ -0,0 +1,132 @@
+package org.nsu.benchmark;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.File;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Launches the application repeatedly and reports how long it takes from JVM
+ * start until {@code POST /api/v1/sql/execute} first succeeds.
+ * <p>
+ * Usage: {@code StartupBenchmark <runs> <java launch arguments...>}, for example
+ * {@code 5 -jar build/libs/app.jar}. Each run uses a fresh port and authenticates
+ * with a JWT signed by a random per-run secret.
+ */
+public class StartupBenchmark {
+
+    private static final Duration STARTUP_TIMEOUT = Duration.ofMinutes(2);
+    private static final String QUERY = "{\"query\":\"SELECT 1\"}";
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.err.println("Usage: StartupBenchmark <runs> <java launch arguments...>");
+            System.exit(2);
+        }
+        int runs = Integer.parseInt(args[0]);
+        List<String> launch = Arrays.asList(args).subList(1, args.length);
+
+        HttpClient client = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofMillis(500))
+                .build();
+        File log = new File("build/startup-benchmark.log");
+        List<Long> timings = new ArrayList<>(runs);
+        for (int run = 1; run <= runs; run++) {
+            long millis = measure(client, launch, log);
+            timings.add(millis);
+            System.out.printf("run %d: first successful /execute after %d ms%n", run, millis);
+        }
+
+        Collections.sort(timings);
+        System.out.printf("min %d ms, median %d ms, max %d ms over %d runs%n",
+                timings.get(0), timings.get(timings.size() / 2), timings.get(timings.size() - 1), runs);
+    }
+
+    private static long measure(HttpClient client, List<String> launch, File log) throws Exception {
+        int port = freePort();
+        byte[] secret = new byte[32];
+        new SecureRandom().nextBytes(secret);
+
+        List<String> command = new ArrayList<>();
+        command.add(javaBinary());
+        command.addAll(launch);
+        ProcessBuilder builder = new ProcessBuilder(command)
+                .redirectErrorStream(true)
+                .redirectOutput(ProcessBuilder.Redirect.appendTo(log));
+        builder.environment().put("SERVER_PORT", String.valueOf(port));
+        builder.environment().put("SECURITY_SESSION_MODE", "jwt");
+        builder.environment().put("SECURITY_JWT_SECRET", Base64.getEncoder().encodeToString(secret));
+
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/v1/sql/execute"))
+                .header("Authorization", "Bearer " + token(secret))
+                .header("Content-Type", "application/json")
+                .timeout(Duration.ofSeconds(30))
+                .POST(HttpRequest.BodyPublishers.ofString(QUERY))
+                .build();
+
+        long start = System.nanoTime();
+        Process process = builder.start();
+        try {
+            long deadline = start + STARTUP_TIMEOUT.toNanos();
+            while (System.nanoTime() < deadline) {
+                if (!process.isAlive()) {
+                    throw new IllegalStateException("Application exited with code " + process.exitValue()
+                            + ", see " + log.getPath());
+                }
+                try {
+                    HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+                    if (response.statusCode() == 200 && response.body().contains("\"success\":true")) {
+                        return Duration.ofNanos(System.nanoTime() - start).toMillis();
+                    }
+                } catch (ConnectException e) {
+                    // Not listening yet
+                }
+                Thread.sleep(10);
+            }
+            throw new IllegalStateException("No successful /execute within " + STARTUP_TIMEOUT);
+        } finally {
+            process.destroy();
+            process.waitFor();
+        }
+    }
+
+    private static String token(byte[] secret) throws GeneralSecurityException {
+        Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+        long now = Instant.now().getEpochSecond();
+        String header = encoder.encodeToString("{\"alg\":\"HS256\",\"typ\":\"JWT\"}".getBytes(StandardCharsets.UTF_8));
+        String claims = encoder.encodeToString(String.format(
+                "{\"sub\":\"benchmark\",\"login\":\"benchmark\",\"iat\":%d,\"exp\":%d}", now, now + 3600
+        ).getBytes(StandardCharsets.UTF_8));
+
+        Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(new SecretKeySpec(secret, "HmacSHA256"));
+        byte[] signature = mac.doFinal((header + "." + claims).getBytes(StandardCharsets.US_ASCII));
+        return header + "." + claims + "." + encoder.encodeToString(signature);
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private static String javaBinary() {
+        return System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+    }
+}
@@ -0,0 +1,248 @@
+package org.nsu.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Replays a workload file written by {@code WorkloadRecorder} against a running
+ * instance started with the {@code loadtest} profile, then prints throughput and
+ * latency percentiles per endpoint.
+ * <p>
+ * Options: {@code --file=<path>} (required), {@code --url=http://localhost:8081},
+ * {@code --concurrency=8}, {@code --rate=0} (requests per second, 0 for as fast as
+ * possible), {@code --loops=1}, {@code --github-port=8089} (0 to not start the
+ * fake GitHub server), {@code --github-latency-ms=0} and {@code --pool-stats=false}
+ * (print each replayed sandbox's connection pool wait afterwards, to compare
+ * {@code sandbox.pool.adaptive} against static sizing).
+ */
+public class WorkloadReplay {
+
+    private static final String USER_HEADER = "X-Loadtest-User";
+    private static final String SECRET_HEADER = "X-Loadtest-Secret";
+    // The same LOADTEST_SECRET the instance was started with
+    private static final String SECRET = System.getenv().getOrDefault("LOADTEST_SECRET", "");
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parseOptions(args);
+        if (!options.containsKey("file")) {
+            System.err.println("Usage: WorkloadReplay --file=<workload.jsonl> [--url=] [--concurrency=] [--rate=] " +
+                    "[--loops=] [--github-port=] [--github-latency-ms=] [--pool-stats=]");
+            System.exit(2);
+        }
+        String baseUrl = options.getOrDefault("url", "http://localhost:8081").replaceAll("/+$", "");
+        int concurrency = Integer.parseInt(options.getOrDefault("concurrency", "8"));
+        double rate = Double.parseDouble(options.getOrDefault("rate", "0"));
+        int loops = Integer.parseInt(options.getOrDefault("loops", "1"));
+        int githubPort = Integer.parseInt(options.getOrDefault("github-port", "8089"));
+        long githubLatency = Long.parseLong(options.getOrDefault("github-latency-ms", "0"));
+        boolean poolStats = Boolean.parseBoolean(options.getOrDefault("pool-stats", "false"));
+
+        List<Entry> entries = readWorkload(Path.of(options.get("file")));
+        if (entries.isEmpty()) {
+            System.err.println("Workload file is empty");
+            System.exit(1);
+        }
+
+        FakeGitHubServer github = null;
+        if (githubPort > 0) {
+            github = new FakeGitHubServer(githubPort, githubLatency);
+            github.start();
+        }
+        try {
+            run(baseUrl, entries, concurrency, rate, loops);
+            if (poolStats) {
+                printPoolStats(baseUrl, entries);
+            }
+        } finally {
+            if (github != null) {
+                github.stop();
+            }
+        }
+    }
+
+    private static void run(String baseUrl, List<Entry> entries, int concurrency, double rate, int loops)
+            throws InterruptedException {
+        HttpClient client = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(5))
+                .executor(Executors.newFixedThreadPool(concurrency))
+                .build();
+        Map<String, Stats> stats = new TreeMap<>();
+        for (Entry entry : entries) {
+            stats.computeIfAbsent(entry.endpointName(), name -> new Stats());
+        }
+
+        long total = (long) entries.size() * loops;
+        long intervalNanos = rate > 0 ? (long) (TimeUnit.SECONDS.toNanos(1) / rate) : 0;
+        AtomicLong next = new AtomicLong();
+        ExecutorService workers = Executors.newFixedThreadPool(concurrency);
+        long start = System.nanoTime();
+        for (int i = 0; i < concurrency; i++) {
+            workers.execute(() -> {
+                long index;
+                while ((index = next.getAndIncrement()) < total) {
+                    if (intervalNanos > 0) {
+                        long wait = start + index * intervalNanos - System.nanoTime();
+                        if (wait > 0) {
+                            LockSupport.parkNanos(wait);
+                        }
+                    }
+                    Entry entry = entries.get((int) (index % entries.size()));
+                    send(client, baseUrl, entry, stats.get(entry.endpointName()));
+                }
+            });
+        }
+        workers.shutdown();
+        workers.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        double elapsedSeconds = (System.nanoTime() - start) / 1e9;
+
+        System.out.printf("%d requests in %.2f s (%.1f req/s), concurrency %d%n",
+                total, elapsedSeconds, total / elapsedSeconds, concurrency);
+        System.out.printf("%-40s %8s %8s %10s %9s %9s %9s %9s%n",
+                "endpoint", "count", "non-2xx", "req/s", "p50 ms", "p90 ms", "p99 ms", "max ms");
+        stats.forEach((endpoint, endpointStats) -> endpointStats.print(endpoint, elapsedSeconds));
+    }
+
+    private static void printPoolStats(String baseUrl, List<Entry> entries) throws IOException, InterruptedException {
+        HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+        ObjectMapper mapper = new ObjectMapper();
+        Set<String> users = new TreeSet<>();
+        entries.forEach(entry -> users.add(entry.user));
+
+        System.out.printf("%n%-24s %6s %6s %8s %12s %9s %9s %9s%n",
+                "sandbox", "open", "target", "timeouts", "acquisitions", "p50 ms", "p99 ms", "max ms");
+        double worstP99 = 0;
+        for (String user : users) {
+            HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/api/v1/sql/sandbox/pool"))
+                    .header(USER_HEADER, user)
+                    .header(SECRET_HEADER, SECRET)
+                    .timeout(Duration.ofSeconds(10))
+                    .GET()
+                    .build();
+            HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+            if (response.statusCode() != 200) {
+                System.out.printf("%-24s failed with status %d%n", user, response.statusCode());
+                continue;
+            }
+            JsonNode pool = mapper.readTree(response.body());
+            double p99 = pool.path("waitP99Ms").asDouble();
+            worstP99 = Math.max(worstP99, p99);
+            System.out.printf("%-24s %6d %6d %8d %12d %9.2f %9.2f %9.2f%n",
+                    pool.path("sandbox").asText(), pool.path("open").asInt(), pool.path("target").asInt(),
+                    pool.path("timeouts").asLong(), pool.path("acquisitions").asLong(),
+                    pool.path("waitP50Ms").asDouble(), p99, pool.path("waitMaxMs").asDouble());
+        }
+        System.out.printf("worst sandbox p99 connection wait: %.2f ms%n", worstP99);
+    }
+
+    private static void send(HttpClient client, String baseUrl, Entry entry, Stats stats) {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + entry.endpoint))
+                .header(USER_HEADER, entry.user)
+                .header(SECRET_HEADER, SECRET)
+                .header("Content-Type", "application/json")
+                .timeout(Duration.ofMinutes(2))
+                .POST(HttpRequest.BodyPublishers.ofString(entry.body))
+                .build();
+        long start = System.nanoTime();
+        boolean ok;
+        try {
+            HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+            ok = response.statusCode() / 100 == 2;
+        } catch (IOException e) {
+            ok = false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        stats.add(System.nanoTime() - start, ok);
+    }
+
+    private static List<Entry> readWorkload(Path file) throws IOException {
+        ObjectMapper mapper = new ObjectMapper();
+        List<Entry> entries = new ArrayList<>();
+        for (String line : Files.readAllLines(file)) {
+            if (line.isBlank()) {
+                continue;
+            }
+            JsonNode node = mapper.readTree(line);
+            entries.add(new Entry(node.path("user").asText("loadtest"), node.path("endpoint").asText(),
+                    node.path("body").toString()));
+        }
+        return entries;
+    }
+
+    private static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (arg.startsWith("--") && arg.contains("=")) {
+                options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+            }
+        }
+        return options;
+    }
+
+    private static final class Entry {
+        private final String user;
+        private final String endpoint;
+        private final String body;
+
+        private Entry(String user, String endpoint, String body) {
+            this.user = user;
+            this.endpoint = endpoint;
+            this.body = body;
+        }
+
+        private String endpointName() {
+            int query = endpoint.indexOf('?');
+            return query < 0 ? endpoint : endpoint.substring(0, query);
+        }
+    }
+
+    private static final class Stats {
+        private final List<Long> latencies = new ArrayList<>();
+        private long failures;
+
+        private synchronized void add(long nanos, boolean ok) {
+            latencies.add(nanos);
+            if (!ok) {
+                failures++;
+            }
+        }
+
+        private synchronized void print(String endpoint, double elapsedSeconds) {
+            if (latencies.isEmpty()) {
+                return;
+            }
+            latencies.sort(null);
+            System.out.printf("%-40s %8d %8d %10.1f %9.1f %9.1f %9.1f %9.1f%n",
+                    endpoint, latencies.size(), failures, latencies.size() / elapsedSeconds,
+                    percentile(0.50), percentile(0.90), percentile(0.99),
+                    latencies.get(latencies.size() - 1) / 1e6);
+        }
+
+        private double percentile(double p) {
+            int index = (int) Math.ceil(p * latencies.size()) - 1;
+            return latencies.get(Math.max(index, 0)) / 1e6;
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package org.nsu.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+@Configuration
+public class AsyncConfig implements WebMvcConfigurer {
+
+    @Value("${export.executor.core-size:4}")
+    private int corePoolSize;
+
+    @Value("${export.executor.max-size:16}")
+    private int maxPoolSize;
+
+    @Value("${export.executor.queue-capacity:64}")
+    private int queueCapacity;
+
+    @Value("${export.request-timeout-ms:600000}")
+    private long requestTimeout;
+
+    @Value("${sandbox.batch.executor.core-size:4}")
+    private int batchCorePoolSize;
+
+    @Value("${sandbox.batch.executor.max-size:16}")
+    private int batchMaxPoolSize;
+
+    @Value("${sandbox.batch.executor.queue-capacity:100}")
+    private int batchQueueCapacity;
+
+    @Value("${github.executor.max-concurrency:8}")
+    private int githubMaxConcurrency;
+
+    @Value("${github.executor.queue-capacity:16}")
+    private int githubQueueCapacity;
+
+    @Value("${saved-queries.load.threads:4}")
+    private int savedQueryLoadThreads;
+
+    @Value("${saved-queries.load.queue-capacity:1000}")
+    private int savedQueryLoadQueueCapacity;
+
+    @Value("${query.progress.scheduler-threads:2}")
+    private int progressSchedulerThreads;
+
+    @Value("${query.progress.sender.threads:8}")
+    private int progressSenderThreads;
+
+    @Value("${query.progress.sender.queue-capacity:1000}")
+    private int progressSenderQueueCapacity;
+
+    @Value("${scheduling.pool-size:4}")
+    private int schedulingPoolSize;
+
+    @Bean
+    public ThreadPoolTaskExecutor exportTaskExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(corePoolSize);
+        executor.setMaxPoolSize(maxPoolSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("export-");
+        executor.initialize();
+        return executor;
+    }
+
+    @Bean
+    public ThreadPoolTaskExecutor queryBatchExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(batchCorePoolSize);
+        executor.setMaxPoolSize(batchMaxPoolSize);
+        executor.setQueueCapacity(batchQueueCapacity);
+        executor.setThreadNamePrefix("query-batch-");
+        // Run on the request thread rather than fail when every worker is busy
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.initialize();
+        return executor;
+    }
+
+    @Bean
+    public ThreadPoolTaskExecutor githubExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(githubMaxConcurrency);
+        executor.setMaxPoolSize(githubMaxConcurrency);
+        executor.setQueueCapacity(githubQueueCapacity);
+        executor.setThreadNamePrefix("github-");
+        // Bulkhead: reject instead of falling back to the request thread
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * Loads saved query libraries from GitHub off the request thread. Kept
+     * below {@link #githubExecutor()}'s concurrency, as every blob it fetches
+     * holds one of that pool's threads too.
+     */
+    @Bean
+    public ThreadPoolTaskExecutor savedQueryLoadExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(savedQueryLoadThreads);
+        executor.setMaxPoolSize(savedQueryLoadThreads);
+        executor.setQueueCapacity(savedQueryLoadQueueCapacity);
+        executor.setThreadNamePrefix("saved-queries-");
+        // A rejected load is retried on a later access
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * Runs the {@code @Scheduled} maintenance jobs. Declared under the name
+     * Spring looks up, so they do not end up on {@link #progressScheduler()},
+     * the only other scheduler, where a slow snapshot would delay progress.
+     */
+    @Bean
+    public ThreadPoolTaskScheduler taskScheduler() {
+        ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setPoolSize(schedulingPoolSize);
+        scheduler.setThreadNamePrefix("scheduling-");
+        scheduler.initialize();
+        return scheduler;
+    }
+
+    @Bean
+    public ThreadPoolTaskScheduler progressScheduler() {
+        ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setPoolSize(progressSchedulerThreads);
+        scheduler.setThreadNamePrefix("query-progress-");
+        scheduler.initialize();
+        return scheduler;
+    }
+
+    @Bean
+    public ThreadPoolTaskExecutor progressSendExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(progressSenderThreads);
+        executor.setMaxPoolSize(progressSenderThreads);
+        executor.setQueueCapacity(progressSenderQueueCapacity);
+        executor.setThreadNamePrefix("query-progress-send-");
+        // QueryProgressService drops progress events it cannot hand off
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        executor.initialize();
+        return executor;
+    }
+
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        configurer.setTaskExecutor(exportTaskExecutor());
+        configurer.setDefaultTimeout(requestTimeout);
+    }
+}
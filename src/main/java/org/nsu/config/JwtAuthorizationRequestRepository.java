@@ -0,0 +1,131 @@
+package org.nsu.config;
+
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseCookie;
+import org.springframework.security.oauth2.client.web.AuthorizationRequestRepository;
+import org.springframework.security.oauth2.core.endpoint.OAuth2AuthorizationRequest;
+import org.springframework.security.oauth2.core.endpoint.OAuth2ParameterNames;
+import org.springframework.security.oauth2.jose.jws.MacAlgorithm;
+import org.springframework.security.oauth2.jwt.JwsHeader;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtClaimsSet;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtEncoder;
+import org.springframework.security.oauth2.jwt.JwtEncoderParameters;
+import org.springframework.security.oauth2.jwt.JwtException;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps the in-flight OAuth2 authorization request in a signed cookie instead
+ * of the HTTP session, so the GitHub callback can land on any node.
+ */
+public class JwtAuthorizationRequestRepository implements AuthorizationRequestRepository<OAuth2AuthorizationRequest> {
+
+    private static final String COOKIE_NAME = "PLAYGROUND_OAUTH2_REQUEST";
+    private static final Duration COOKIE_TTL = Duration.ofMinutes(5);
+
+    private final JwtEncoder jwtEncoder;
+    private final JwtDecoder jwtDecoder;
+
+    public JwtAuthorizationRequestRepository(JwtEncoder jwtEncoder, JwtDecoder jwtDecoder) {
+        this.jwtEncoder = jwtEncoder;
+        this.jwtDecoder = jwtDecoder;
+    }
+
+    @Override
+    public OAuth2AuthorizationRequest loadAuthorizationRequest(HttpServletRequest request) {
+        String value = readCookie(request);
+        if (value == null) {
+            return null;
+        }
+        Jwt jwt;
+        try {
+            jwt = jwtDecoder.decode(value);
+        } catch (JwtException e) {
+            return null;
+        }
+        String state = request.getParameter(OAuth2ParameterNames.STATE);
+        if (state == null || !state.equals(jwt.getClaimAsString(OAuth2ParameterNames.STATE))) {
+            return null;
+        }
+        List<String> scopes = jwt.getClaimAsStringList(OAuth2ParameterNames.SCOPE);
+        Map<String, Object> additionalParameters = jwt.getClaimAsMap("additional_parameters");
+        Map<String, Object> attributes = jwt.getClaimAsMap("attributes");
+        return OAuth2AuthorizationRequest.authorizationCode()
+                .authorizationUri(jwt.getClaimAsString("authorization_uri"))
+                .clientId(jwt.getClaimAsString(OAuth2ParameterNames.CLIENT_ID))
+                .redirectUri(jwt.getClaimAsString(OAuth2ParameterNames.REDIRECT_URI))
+                .scopes(scopes != null ? new LinkedHashSet<>(scopes) : null)
+                .state(jwt.getClaimAsString(OAuth2ParameterNames.STATE))
+                .additionalParameters(additionalParameters != null ? additionalParameters : Map.of())
+                .attributes(attributes != null ? attributes : Map.of())
+                .authorizationRequestUri(jwt.getClaimAsString("authorization_request_uri"))
+                .build();
+    }
+
+    @Override
+    public void saveAuthorizationRequest(OAuth2AuthorizationRequest authorizationRequest,
+                                         HttpServletRequest request, HttpServletResponse response) {
+        if (authorizationRequest == null) {
+            writeCookie("", Duration.ZERO, request, response);
+            return;
+        }
+        Instant now = Instant.now();
+        JwtClaimsSet claims = JwtClaimsSet.builder()
+                .issuedAt(now)
+                .expiresAt(now.plus(COOKIE_TTL))
+                .claim("authorization_uri", authorizationRequest.getAuthorizationUri())
+                .claim(OAuth2ParameterNames.CLIENT_ID, authorizationRequest.getClientId())
+                .claim(OAuth2ParameterNames.REDIRECT_URI, authorizationRequest.getRedirectUri())
+                .claim(OAuth2ParameterNames.SCOPE, List.copyOf(authorizationRequest.getScopes()))
+                .claim(OAuth2ParameterNames.STATE, authorizationRequest.getState())
+                .claim("additional_parameters", authorizationRequest.getAdditionalParameters())
+                .claim("attributes", authorizationRequest.getAttributes())
+                .claim("authorization_request_uri", authorizationRequest.getAuthorizationRequestUri())
+                .build();
+        String token = jwtEncoder.encode(JwtEncoderParameters.from(JwsHeader.with(MacAlgorithm.HS256).build(), claims))
+                .getTokenValue();
+        writeCookie(token, COOKIE_TTL, request, response);
+    }
+
+    @Override
+    public OAuth2AuthorizationRequest removeAuthorizationRequest(HttpServletRequest request, HttpServletResponse response) {
+        OAuth2AuthorizationRequest authorizationRequest = loadAuthorizationRequest(request);
+        if (authorizationRequest != null) {
+            writeCookie("", Duration.ZERO, request, response);
+        }
+        return authorizationRequest;
+    }
+
+    private String readCookie(HttpServletRequest request) {
+        Cookie[] cookies = request.getCookies();
+        if (cookies == null) {
+            return null;
+        }
+        for (Cookie cookie : cookies) {
+            if (COOKIE_NAME.equals(cookie.getName()) && !cookie.getValue().isBlank()) {
+                return cookie.getValue();
+            }
+        }
+        return null;
+    }
+
+    private void writeCookie(String value, Duration maxAge, HttpServletRequest request, HttpServletResponse response) {
+        ResponseCookie cookie = ResponseCookie.from(COOKIE_NAME, value)
+                .httpOnly(true)
+                .secure(request.isSecure())
+                .sameSite("Lax")
+                .path("/")
+                .maxAge(maxAge)
+                .build();
+        response.addHeader(HttpHeaders.SET_COOKIE, cookie.toString());
+    }
+}
@@ -10,6 +10,8 @@ import io.swagger.v3.oas.models.security.OAuthFlows;
 import io.swagger.v3.oas.models.security.SecurityRequirement;
 import io.swagger.v3.oas.models.security.SecurityScheme;
 import io.swagger.v3.oas.models.servers.Server;
+import org.nsu.security.PlaygroundUser;
+import org.springdoc.core.utils.SpringDocUtils;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -33,6 +35,10 @@ public class OpenApiConfig {
 
     private static final String OAUTH_SCHEME_NAME = "GitHubOAuth";
 
+    static {
+        SpringDocUtils.getConfig().addRequestWrapperToIgnore(PlaygroundUser.class);
+    }
+
     @Bean
     public OpenAPI customOpenAPI() {
         return new OpenAPI()
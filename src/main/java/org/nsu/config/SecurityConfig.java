@@ -1,11 +1,28 @@
 package org.nsu.config;
 
+import org.nsu.security.LoadTestAuthenticationFilter;
+import org.nsu.service.JwtTokenService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.core.env.Profiles;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.annotation.web.configurers.AbstractHttpConfigurer;
+import org.springframework.security.config.http.SessionCreationPolicy;
+import org.springframework.security.oauth2.client.OAuth2AuthorizedClient;
+import org.springframework.security.oauth2.client.OAuth2AuthorizedClientService;
+import org.springframework.security.oauth2.client.authentication.OAuth2AuthenticationToken;
+import org.springframework.security.oauth2.client.registration.ClientRegistrationRepository;
+import org.springframework.security.oauth2.core.user.OAuth2User;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtEncoder;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.authentication.AnonymousAuthenticationFilter;
 import org.springframework.security.web.authentication.AuthenticationSuccessHandler;
 import org.springframework.security.web.authentication.SimpleUrlAuthenticationSuccessHandler;
 
@@ -13,8 +30,28 @@ import org.springframework.security.web.authentication.SimpleUrlAuthenticationSu
 @EnableWebSecurity
 public class SecurityConfig {
 
+    private static final Logger log = LoggerFactory.getLogger(SecurityConfig.class);
+
+    @Value("${security.session-mode:session}")
+    private String sessionMode;
+
+    @Value("${security.oauth2.registration-id:github}")
+    private String registrationId;
+
+    @Value("${loadtest.secret:}")
+    private String loadTestSecret;
+
     @Bean
-    public SecurityFilterChain filterChain(HttpSecurity http) throws Exception {
+    public SecurityFilterChain filterChain(HttpSecurity http,
+                                           AuthenticationSuccessHandler authenticationSuccessHandler,
+                                           ObjectProvider<JwtTokenService> jwtTokenService,
+                                           ObjectProvider<JwtEncoder> jwtEncoder,
+                                           ObjectProvider<JwtDecoder> jwtDecoder,
+                                           Environment environment,
+                                           ClientRegistrationRepository clientRegistrationRepository,
+                                           OAuth2AuthorizedClientService authorizedClientService) throws Exception {
+        boolean stateless = "jwt".equalsIgnoreCase(sessionMode);
+
         http
             .csrf(AbstractHttpConfigurer::disable)
             .authorizeHttpRequests(authz -> authz
@@ -30,26 +67,74 @@ public class SecurityConfig {
                 ).permitAll()
                 .anyRequest().authenticated()
             )
-            .oauth2Login(oauth2 -> oauth2
-                .loginPage("/login")
-                .successHandler(authenticationSuccessHandler())
-                .failureUrl("/login?error=true")
-            )
+            .oauth2Login(oauth2 -> {
+                oauth2
+                    .loginPage("/login")
+                    .successHandler(authenticationSuccessHandler)
+                    .failureUrl("/login?error=true");
+                if (stateless) {
+                    oauth2.authorizationEndpoint(endpoint -> endpoint.authorizationRequestRepository(
+                            new JwtAuthorizationRequestRepository(jwtEncoder.getObject(), jwtDecoder.getObject())
+                    ));
+                }
+            })
             .logout(logout -> logout
                 .logoutSuccessUrl("/")
                 .invalidateHttpSession(true)
                 .clearAuthentication(true)
-                .deleteCookies("JSESSIONID")
+                .deleteCookies(stateless
+                        ? new String[]{"JSESSIONID", jwtTokenService.getObject().getCookieName()}
+                        : new String[]{"JSESSIONID"})
+            );
+
+        if (stateless) {
+            http
+                .sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
+                .oauth2ResourceServer(resourceServer -> resourceServer
+                    .bearerTokenResolver(jwtTokenService.getObject())
+                    .jwt(jwt -> jwt.decoder(jwtDecoder.getObject()))
+                );
+        }
+
+        if (environment.acceptsProfiles(Profiles.of("loadtest"))) {
+            log.warn("loadtest profile is active: loopback requests with {} and {} are authenticated without OAuth",
+                    LoadTestAuthenticationFilter.USER_HEADER, LoadTestAuthenticationFilter.SECRET_HEADER);
+            http.addFilterBefore(
+                    new LoadTestAuthenticationFilter(clientRegistrationRepository, authorizedClientService,
+                            registrationId, loadTestSecret),
+                    AnonymousAuthenticationFilter.class
             );
+        }
 
         return http.build();
     }
 
+    /**
+     * In JWT mode the GitHub access token moves from the node-local authorized
+     * client store into the token cookie, encrypted, so any node can call
+     * GitHub for the user and none keeps the token.
+     */
     @Bean
-    public AuthenticationSuccessHandler authenticationSuccessHandler() {
+    public AuthenticationSuccessHandler authenticationSuccessHandler(ObjectProvider<JwtTokenService> jwtTokenServiceProvider,
+                                                                     OAuth2AuthorizedClientService authorizedClientService) {
         SimpleUrlAuthenticationSuccessHandler handler = new SimpleUrlAuthenticationSuccessHandler();
         handler.setDefaultTargetUrl("/swagger-ui.html");
         handler.setAlwaysUseDefaultTargetUrl(true);
-        return handler;
+        JwtTokenService jwtTokenService = jwtTokenServiceProvider.getIfAvailable();
+        if (jwtTokenService == null) {
+            return handler;
+        }
+        return (request, response, authentication) -> {
+            if (authentication instanceof OAuth2AuthenticationToken oauth2Token
+                    && authentication.getPrincipal() instanceof OAuth2User oauth2User) {
+                String clientRegistrationId = oauth2Token.getAuthorizedClientRegistrationId();
+                OAuth2AuthorizedClient client = authorizedClientService.loadAuthorizedClient(
+                        clientRegistrationId, authentication.getName());
+                String accessToken = client != null ? client.getAccessToken().getTokenValue() : null;
+                jwtTokenService.writeTokenCookie(jwtTokenService.issueToken(oauth2User, accessToken), request, response);
+                authorizedClientService.removeAuthorizedClient(clientRegistrationId, authentication.getName());
+            }
+            handler.onAuthenticationSuccess(request, response, authentication);
+        };
     }
-}
\ No newline at end of file
+}
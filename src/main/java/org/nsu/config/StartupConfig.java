@@ -0,0 +1,46 @@
+package org.nsu.config;
+
+import org.springframework.beans.factory.annotation.AnnotatedBeanDefinition;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.config.BeanFactoryPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import java.util.List;
+
+@Configuration
+public class StartupConfig {
+
+    // Only needed once someone opens Swagger UI, a server-rendered page or the H2 console
+    private static final List<String> LAZY_PACKAGES = List.of(
+            "org.springdoc.",
+            "org.thymeleaf.",
+            "org.springframework.boot.autoconfigure.thymeleaf.",
+            "org.springframework.boot.autoconfigure.h2."
+    );
+
+    @Bean
+    public static BeanFactoryPostProcessor lazyOptionalBeans(Environment environment) {
+        boolean enabled = environment.getProperty("startup.lazy-optional-beans", Boolean.class, true);
+        return beanFactory -> {
+            if (!enabled) {
+                return;
+            }
+            for (String name : beanFactory.getBeanDefinitionNames()) {
+                BeanDefinition definition = beanFactory.getBeanDefinition(name);
+                String className = declaringClassName(definition);
+                if (className != null && LAZY_PACKAGES.stream().anyMatch(className::startsWith)) {
+                    definition.setLazyInit(true);
+                }
+            }
+        };
+    }
+
+    private static String declaringClassName(BeanDefinition definition) {
+        if (definition instanceof AnnotatedBeanDefinition annotated && annotated.getFactoryMethodMetadata() != null) {
+            return annotated.getFactoryMethodMetadata().getDeclaringClassName();
+        }
+        return definition.getBeanClassName();
+    }
+}
@@ -0,0 +1,26 @@
+package org.nsu.config;
+
+import org.nsu.security.PlaygroundUserArgumentResolver;
+import org.nsu.security.PlaygroundUserResolver;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.method.support.HandlerMethodArgumentResolver;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.List;
+
+@Configuration
+public class WebConfig implements WebMvcConfigurer {
+
+    private final PlaygroundUserResolver playgroundUserResolver;
+
+    @Autowired
+    public WebConfig(PlaygroundUserResolver playgroundUserResolver) {
+        this.playgroundUserResolver = playgroundUserResolver;
+    }
+
+    @Override
+    public void addArgumentResolvers(List<HandlerMethodArgumentResolver> resolvers) {
+        resolvers.add(new PlaygroundUserArgumentResolver(playgroundUserResolver));
+    }
+}
@@ -8,9 +8,9 @@ import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.RequiredArgsConstructor;
+import org.nsu.security.PlaygroundUser;
 import org.nsu.service.GitHubService;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
@@ -41,16 +41,16 @@ public class AuthController {
     })
     @SecurityRequirement(name = "GitHubOAuth")
     @GetMapping("/profile")
-    public ResponseEntity<Map<String, Object>> getUserProfile(Authentication authentication) {
-        String login = gitHubService.getUserLogin(authentication);
-        String email = gitHubService.getUserEmail(authentication);
-        String avatarUrl = gitHubService.getUserAvatarUrl(authentication);
+    public ResponseEntity<Map<String, Object>> getUserProfile(PlaygroundUser user) {
+        String login = user.getLogin();
+        String email = user.getEmail();
+        String avatarUrl = user.getAvatarUrl();
 
         Map<String, Object> profile = Map.of(
                 "login", login != null ? login : "unknown",
                 "email", email != null ? email : "not provided",
                 "avatar_url", avatarUrl != null ? avatarUrl : "",
-                "authenticated", authentication != null && authentication.isAuthenticated()
+                "authenticated", true
         );
 
         return ResponseEntity.ok(profile);
@@ -78,8 +78,8 @@ public class AuthController {
     })
     @SecurityRequirement(name = "GitHubOAuth")
     @GetMapping("/repositories")
-    public ResponseEntity<List<Map<String, Object>>> getUserRepositories(Authentication authentication) {
-        List<Map<String, Object>> repositories = gitHubService.getUserRepositories(authentication);
+    public ResponseEntity<List<Map<String, Object>>> getUserRepositories(PlaygroundUser user) {
+        List<Map<String, Object>> repositories = gitHubService.getUserRepositories(user);
         return ResponseEntity.ok(repositories);
     }
 
@@ -115,9 +115,9 @@ public class AuthController {
             @RequestParam String name,
             @Parameter(description = "Repository description", example = "My SQL queries from playground")
             @RequestParam(required = false) String description,
-            Authentication authentication) {
+            PlaygroundUser user) {
 
-        Map<String, Object> result = gitHubService.createRepository(authentication, name, description);
+        Map<String, Object> result = gitHubService.createRepository(user, name, description);
         
         if (result.containsKey("error")) {
             return ResponseEntity.badRequest().body(result);
@@ -169,10 +169,10 @@ public class AuthController {
             @RequestParam String content,
             @Parameter(description = "Commit message", example = "Add new SQL query")
             @RequestParam(defaultValue = "Add file from SQL Playground") String message,
-            Authentication authentication) {
+            PlaygroundUser user) {
 
         Map<String, Object> result = gitHubService.commitFile(
-                authentication, owner, repo, path, content, message
+                user, owner, repo, path, content, message
         );
 
         if (result.containsKey("error")) {
@@ -193,9 +193,9 @@ public class AuthController {
             )
     })
     @GetMapping("/status")
-    public ResponseEntity<Map<String, Object>> getAuthStatus(Authentication authentication) {
-        boolean isAuthenticated = authentication != null && authentication.isAuthenticated();
-        String userLogin = isAuthenticated ? gitHubService.getUserLogin(authentication) : null;
+    public ResponseEntity<Map<String, Object>> getAuthStatus(PlaygroundUser user) {
+        boolean isAuthenticated = user != null;
+        String userLogin = isAuthenticated ? user.getLogin() : null;
 
         Map<String, Object> status = Map.of(
                 "authenticated", isAuthenticated,
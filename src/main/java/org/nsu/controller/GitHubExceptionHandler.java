@@ -0,0 +1,21 @@
+package org.nsu.controller;
+
+import org.nsu.service.github.GitHubUnavailableException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+
+import java.util.Map;
+
+@RestControllerAdvice
+public class GitHubExceptionHandler {
+
+    @ExceptionHandler(GitHubUnavailableException.class)
+    public ResponseEntity<Map<String, Object>> handleGitHubUnavailable(GitHubUnavailableException e) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                .body(Map.of("error", e.getMessage()));
+    }
+}
@@ -0,0 +1,210 @@
+package org.nsu.controller;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.nsu.dto.SavedQuery;
+import org.nsu.security.PlaygroundUser;
+import org.nsu.service.SavedQueryService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import javax.validation.Valid;
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/v1/queries")
+@Tag(name = "Saved Queries", description = "Saved query library with GitHub synchronization")
+@SecurityRequirement(name = "GitHubOAuth")
+public class SavedQueryController {
+
+    private final SavedQueryService savedQueryService;
+
+    @Autowired
+    public SavedQueryController(SavedQueryService savedQueryService) {
+        this.savedQueryService = savedQueryService;
+    }
+
+    @Operation(
+            summary = "List saved queries",
+            description = "List all queries in the authenticated user's library"
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Saved queries retrieved successfully"
+            ),
+            @ApiResponse(
+                    responseCode = "401",
+                    description = "Authentication required",
+                    content = @Content
+            )
+    })
+    @GetMapping
+    public ResponseEntity<List<SavedQuery>> listQueries(PlaygroundUser user) {
+        return ResponseEntity.ok(savedQueryService.list(user));
+    }
+
+    @Operation(
+            summary = "Search saved queries",
+            description = "Find saved queries whose name, description or SQL contain words starting with every search term"
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Search completed"
+            ),
+            @ApiResponse(
+                    responseCode = "401",
+                    description = "Authentication required",
+                    content = @Content
+            )
+    })
+    @GetMapping("/search")
+    public ResponseEntity<List<SavedQuery>> searchQueries(
+            @Parameter(description = "Search terms", example = "users age")
+            @RequestParam("q") String text,
+            PlaygroundUser user) {
+        return ResponseEntity.ok(savedQueryService.search(user, text));
+    }
+
+    @Operation(
+            summary = "Get saved query",
+            description = "Retrieve a single saved query by name"
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Saved query retrieved successfully"
+            ),
+            @ApiResponse(
+                    responseCode = "401",
+                    description = "Authentication required",
+                    content = @Content
+            ),
+            @ApiResponse(
+                    responseCode = "404",
+                    description = "Saved query not found",
+                    content = @Content
+            )
+    })
+    @GetMapping("/{name}")
+    public ResponseEntity<SavedQuery> getQuery(
+            @Parameter(description = "Saved query name", example = "active-users")
+            @PathVariable String name,
+            PlaygroundUser user) {
+        SavedQuery query = savedQueryService.get(user, name);
+        if (query == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(query);
+    }
+
+    @Operation(
+            summary = "Save query",
+            description = "Create or replace a query in the library. Changes reach GitHub on the next sync"
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Query saved successfully"
+            ),
+            @ApiResponse(
+                    responseCode = "400",
+                    description = "Invalid query name or request body",
+                    content = @Content
+            ),
+            @ApiResponse(
+                    responseCode = "401",
+                    description = "Authentication required",
+                    content = @Content
+            )
+    })
+    @PutMapping("/{name}")
+    public ResponseEntity<SavedQuery> saveQuery(
+            @Parameter(description = "Saved query name (letters, digits, '.', '_' and '-')", example = "active-users")
+            @PathVariable String name,
+            @Parameter(description = "Query with metadata")
+            @Valid @RequestBody SavedQuery query,
+            PlaygroundUser user) {
+        if (!SavedQueryService.isValidName(name)) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(savedQueryService.save(user, name, query));
+    }
+
+    @Operation(
+            summary = "Delete saved query",
+            description = "Remove a query from the library"
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "204",
+                    description = "Query deleted"
+            ),
+            @ApiResponse(
+                    responseCode = "401",
+                    description = "Authentication required",
+                    content = @Content
+            ),
+            @ApiResponse(
+                    responseCode = "404",
+                    description = "Saved query not found",
+                    content = @Content
+            )
+    })
+    @DeleteMapping("/{name}")
+    public ResponseEntity<Void> deleteQuery(
+            @Parameter(description = "Saved query name", example = "active-users")
+            @PathVariable String name,
+            PlaygroundUser user) {
+        if (!savedQueryService.delete(user, name)) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.noContent().build();
+    }
+
+    @Operation(
+            summary = "Synchronize library with GitHub",
+            description = "Upload saved queries whose content differs from the repository, comparing Git blob SHAs " +
+                    "so unchanged files are skipped, and delete the files of queries deleted since"
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Synchronization completed"
+            ),
+            @ApiResponse(
+                    responseCode = "400",
+                    description = "GitHub API error",
+                    content = @Content
+            ),
+            @ApiResponse(
+                    responseCode = "401",
+                    description = "Authentication required",
+                    content = @Content
+            )
+    })
+    @PostMapping("/sync")
+    public ResponseEntity<Map<String, Object>> syncQueries(
+            @Parameter(description = "Repository name to synchronize with", example = "sql-playground-queries")
+            @RequestParam String repository,
+            @Parameter(description = "Directory in the repository", example = "queries")
+            @RequestParam(defaultValue = "queries") String directory,
+            PlaygroundUser user) {
+
+        Map<String, Object> result = savedQueryService.sync(user, repository, directory);
+
+        if (result.containsKey("error")) {
+            return ResponseEntity.badRequest().body(result);
+        }
+
+        return ResponseEntity.ok(result);
+    }
+}
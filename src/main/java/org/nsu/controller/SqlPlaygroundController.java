@@ -8,15 +8,44 @@ import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import org.nsu.dto.ExplainResponse;
+import org.nsu.dto.QueryBatchRequest;
+import org.nsu.dto.QueryHistoryEntry;
 import org.nsu.dto.QueryRequest;
 import org.nsu.dto.QueryResponse;
+import org.nsu.dto.SandboxPoolStats;
+import org.nsu.security.PlaygroundUser;
+import org.nsu.service.CursorService;
+import org.nsu.service.ExplainService;
 import org.nsu.service.GitHubService;
+import org.nsu.service.QueryExecutionService;
+import org.nsu.service.QueryHistoryService;
+import org.nsu.service.QueryProgressService;
+import org.nsu.service.QuotaExceededException;
+import org.nsu.service.QuotaService;
+import org.nsu.service.RepositoryScriptService;
+import org.nsu.service.ResultExportService;
+import org.nsu.service.SandboxService;
+import org.nsu.service.SandboxSnapshotService;
+import org.nsu.service.SqlFileFormatter;
+import org.nsu.service.export.ExportFormat;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.core.Authentication;
+import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import javax.validation.Valid;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.sql.SQLException;
+import java.util.zip.GZIPOutputStream;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Map;
@@ -27,11 +56,43 @@ import java.util.Map;
 @SecurityRequirement(name = "GitHubOAuth")
 public class SqlPlaygroundController {
 
+    private static final Logger log = LoggerFactory.getLogger(SqlPlaygroundController.class);
+
     private final GitHubService gitHubService;
+    private final QueryExecutionService queryExecutionService;
+    private final ResultExportService resultExportService;
+    private final CursorService cursorService;
+    private final RepositoryScriptService repositoryScriptService;
+    private final QueryHistoryService queryHistoryService;
+    private final QuotaService quotaService;
+    private final ExplainService explainService;
+    private final QueryProgressService queryProgressService;
+    private final SandboxService sandboxService;
+    private final SandboxSnapshotService sandboxSnapshotService;
 
     @Autowired
-    public SqlPlaygroundController(GitHubService gitHubService) {
+    public SqlPlaygroundController(GitHubService gitHubService,
+                                   QueryExecutionService queryExecutionService,
+                                   ResultExportService resultExportService,
+                                   CursorService cursorService,
+                                   RepositoryScriptService repositoryScriptService,
+                                   QueryHistoryService queryHistoryService,
+                                   QuotaService quotaService,
+                                   ExplainService explainService,
+                                   QueryProgressService queryProgressService,
+                                   SandboxService sandboxService,
+                                   SandboxSnapshotService sandboxSnapshotService) {
         this.gitHubService = gitHubService;
+        this.queryExecutionService = queryExecutionService;
+        this.resultExportService = resultExportService;
+        this.cursorService = cursorService;
+        this.repositoryScriptService = repositoryScriptService;
+        this.queryHistoryService = queryHistoryService;
+        this.quotaService = quotaService;
+        this.explainService = explainService;
+        this.queryProgressService = queryProgressService;
+        this.sandboxService = sandboxService;
+        this.sandboxSnapshotService = sandboxSnapshotService;
     }
 
     @Operation(
@@ -57,6 +118,11 @@ public class SqlPlaygroundController {
                     description = "Authentication required",
                     content = @Content
             ),
+            @ApiResponse(
+                    responseCode = "429",
+                    description = "Too many open cursors, or CPU time or result size quota exhausted for the current window",
+                    content = @Content
+            ),
             @ApiResponse(
                     responseCode = "500",
                     description = "Internal server error during query execution",
@@ -67,19 +133,272 @@ public class SqlPlaygroundController {
     public ResponseEntity<QueryResponse> executeQuery(
             @Parameter(description = "SQL query request with query string and optional parameters")
             @Valid @RequestBody QueryRequest request,
-            Authentication authentication) {
+            PlaygroundUser user) {
         
-        String userLogin = gitHubService.getUserLogin(authentication);
+        String userLogin = user.getLogin();
         
-        QueryResponse response = QueryResponse.builder()
-                .success(true)
-                .message("Query executed successfully by user: " + userLogin)
-                .executionTime(125L)
-                .rowsAffected(10)
-                .timestamp(LocalDateTime.now())
-                .build();
+        QueryResponse response = Boolean.TRUE.equals(request.getCursor())
+                ? cursorService.open(userLogin, request)
+                : queryExecutionService.execute(userLogin, request);
+        queryHistoryService.record(userLogin, "/api/v1/sql/execute", request, response);
+        HttpHeaders quotaHeaders = quotaService.headers(userLogin);
         
-        return ResponseEntity.ok(response);
+        if (CursorService.ERROR_CURSOR_LIMIT.equals(response.getErrorCode())) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).headers(quotaHeaders).body(response);
+        }
+        if (isRateLimited(response)) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .headers(quotaHeaders)
+                    .header(HttpHeaders.RETRY_AFTER, quotaHeaders.getFirst("X-Quota-Reset-Seconds"))
+                    .body(response);
+        }
+        if (!response.isSuccess()) {
+            return ResponseEntity.badRequest().headers(quotaHeaders).body(response);
+        }
+        
+        return ResponseEntity.ok().headers(quotaHeaders).body(response);
+    }
+
+    @Operation(
+            summary = "Execute a batch of read-only queries",
+            description = "Execute independent SELECT queries in parallel on separate connections and return " +
+                    "their results in request order"
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Batch executed, see each response for its own status"
+            ),
+            @ApiResponse(
+                    responseCode = "400",
+                    description = "Invalid request format",
+                    content = @Content
+            ),
+            @ApiResponse(
+                    responseCode = "401",
+                    description = "Authentication required",
+                    content = @Content
+            )
+    })
+    @PostMapping("/execute/batch")
+    public ResponseEntity<List<QueryResponse>> executeBatch(
+            @Parameter(description = "Read-only queries to execute in parallel")
+            @Validated @RequestBody QueryBatchRequest request,
+            PlaygroundUser user) {
+
+        List<QueryResponse> responses = queryExecutionService.executeBatch(user.getLogin(), request.getQueries());
+        queryHistoryService.recordBatch(user.getLogin(), "/api/v1/sql/execute/batch", request.getQueries(), responses);
+
+        return ResponseEntity.ok().headers(quotaService.headers(user.getLogin())).body(responses);
+    }
+
+    @Operation(
+            summary = "Fetch next page from a cursor",
+            description = "Fetch the next page of rows from a server-side cursor opened by /execute with cursor=true, " +
+                    "without re-running the query"
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Page fetched successfully",
+                    content = @Content(
+                            mediaType = "application/json",
+                            schema = @Schema(implementation = QueryResponse.class)
+                    )
+            ),
+            @ApiResponse(
+                    responseCode = "401",
+                    description = "Authentication required",
+                    content = @Content
+            ),
+            @ApiResponse(
+                    responseCode = "404",
+                    description = "Cursor not found, exhausted or expired",
+                    content = @Content
+            )
+    })
+    @GetMapping("/cursors/{id}")
+    public ResponseEntity<QueryResponse> fetchCursorPage(
+            @Parameter(description = "Cursor identifier returned by /execute")
+            @PathVariable String id,
+            @Parameter(description = "Number of rows to fetch", example = "100")
+            @RequestParam(required = false) Integer size,
+            PlaygroundUser user) {
+
+        String userLogin = user.getLogin();
+        QueryResponse response = cursorService.fetch(userLogin, id, size);
+
+        if (response == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(cursorNotFound(id));
+        }
+        HttpHeaders quotaHeaders = quotaService.headers(userLogin);
+        if (!response.isSuccess()) {
+            return ResponseEntity.badRequest().headers(quotaHeaders).body(response);
+        }
+
+        return ResponseEntity.ok().headers(quotaHeaders).body(response);
+    }
+
+    @Operation(
+            summary = "Close a cursor",
+            description = "Close a server-side cursor and release its connection before it expires"
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "204",
+                    description = "Cursor closed"
+            ),
+            @ApiResponse(
+                    responseCode = "401",
+                    description = "Authentication required",
+                    content = @Content
+            ),
+            @ApiResponse(
+                    responseCode = "404",
+                    description = "Cursor not found, exhausted or expired",
+                    content = @Content
+            )
+    })
+    @DeleteMapping("/cursors/{id}")
+    public ResponseEntity<QueryResponse> closeCursor(
+            @Parameter(description = "Cursor identifier returned by /execute")
+            @PathVariable String id,
+            PlaygroundUser user) {
+
+        String userLogin = user.getLogin();
+
+        if (!cursorService.close(userLogin, id)) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(cursorNotFound(id));
+        }
+
+        return ResponseEntity.noContent().build();
+    }
+
+    @Operation(
+            summary = "Stream query progress",
+            description = "Server-sent events for the query run with the given queryId: 'progress' events with phase, " +
+                    "elapsed time and rows fetched, then a single 'result' event with the QueryResponse. " +
+                    "The stream may be opened before the query is submitted"
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Event stream opened",
+                    content = @Content(mediaType = MediaType.TEXT_EVENT_STREAM_VALUE)
+            ),
+            @ApiResponse(
+                    responseCode = "401",
+                    description = "Authentication required",
+                    content = @Content
+            )
+    })
+    @GetMapping(value = "/queries/{queryId}/progress", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamQueryProgress(
+            @Parameter(description = "Query id sent with the /execute request")
+            @PathVariable String queryId,
+            PlaygroundUser user) {
+
+        return queryProgressService.subscribe(user.getLogin(), queryId);
+    }
+
+    private boolean isRateLimited(QueryResponse response) {
+        return QuotaService.ERROR_CPU_QUOTA.equals(response.getErrorCode())
+                || QuotaService.ERROR_RESULT_QUOTA.equals(response.getErrorCode());
+    }
+
+    private QueryResponse cursorNotFound(String id) {
+        return QueryResponse.builder()
+                .success(false)
+                .message("Cursor not found: " + id)
+                .errorCode(CursorService.ERROR_CURSOR_NOT_FOUND)
+                .build();
+    }
+
+    @Operation(
+            summary = "Export SQL query results",
+            description = "Execute a SQL query and stream its results as CSV, TSV or compact binary. " +
+                    "Results are gzip-encoded when the client sends Accept-Encoding: gzip"
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Results streamed successfully",
+                    content = @Content
+            ),
+            @ApiResponse(
+                    responseCode = "400",
+                    description = "Unsupported export format, invalid request parameters or the query failed",
+                    content = @Content
+            ),
+            @ApiResponse(
+                    responseCode = "401",
+                    description = "Authentication required",
+                    content = @Content
+            )
+    })
+    @PostMapping("/execute/export")
+    public ResponseEntity<?> exportQuery(
+            @Parameter(description = "SQL query request with query string and optional parameters")
+            @Valid @RequestBody QueryRequest request,
+            @Parameter(description = "Export format: csv, tsv or binary", example = "csv")
+            @RequestParam(defaultValue = "csv") String format,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+            PlaygroundUser user) {
+
+        ExportFormat exportFormat;
+        try {
+            exportFormat = ExportFormat.fromString(format);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        String userLogin = user.getLogin();
+        try {
+            quotaService.check(userLogin, false);
+        } catch (QuotaExceededException e) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .headers(quotaService.headers(userLogin))
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                    .build();
+        }
+        boolean gzip = acceptEncoding != null && acceptEncoding.toLowerCase().contains("gzip");
+        queryHistoryService.record(userLogin, "/api/v1/sql/execute/export?format=" + exportFormat.name().toLowerCase(),
+                request, null);
+
+        // Executed here, so a failing query gets an error status instead of a truncated 200
+        ResultExportService.Export export;
+        try {
+            export = resultExportService.open(userLogin, request, exportFormat);
+        } catch (SQLException e) {
+            log.debug("Export failed for user {}: {}", userLogin, e.getMessage());
+            return ResponseEntity.badRequest()
+                    .headers(quotaService.headers(userLogin))
+                    .body(queryExecutionService.failure(e, 0));
+        }
+
+        StreamingResponseBody body = outputStream -> {
+            OutputStream out = gzip ? new GZIPOutputStream(outputStream, 8192) : outputStream;
+            try {
+                export.writeTo(out);
+            } catch (SQLException e) {
+                log.warn("Export failed for user {}: {}", userLogin, e.getMessage());
+                throw new IOException("Export failed: " + e.getMessage(), e);
+            } finally {
+                if (out instanceof GZIPOutputStream gzipOut) {
+                    gzipOut.finish();
+                }
+            }
+        };
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(exportFormat.getContentType()))
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        "attachment; filename=\"result." + exportFormat.getExtension() + "\"")
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (gzip) {
+            response.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        return response.body(body);
     }
 
     @Operation(
@@ -92,7 +411,7 @@ public class SqlPlaygroundController {
                     description = "Query history retrieved successfully",
                     content = @Content(
                             mediaType = "application/json",
-                            schema = @Schema(implementation = QueryResponse.class)
+                            schema = @Schema(implementation = QueryHistoryEntry.class)
                     )
             ),
             @ApiResponse(
@@ -102,14 +421,92 @@ public class SqlPlaygroundController {
             )
     })
     @GetMapping("/history")
-    public ResponseEntity<List<QueryResponse>> getQueryHistory(
+    public ResponseEntity<List<QueryHistoryEntry>> getQueryHistory(
             @Parameter(description = "Maximum number of queries to return", example = "10")
             @RequestParam(defaultValue = "10") int limit,
-            Authentication authentication) {
+            PlaygroundUser user) {
         
-        String userLogin = gitHubService.getUserLogin(authentication);
+        String userLogin = user.getLogin();
         
-        return ResponseEntity.ok(List.of());
+        return ResponseEntity.ok(queryHistoryService.getHistory(userLogin, Math.max(limit, 0)));
+    }
+
+    @Operation(
+            summary = "Explain SQL query",
+            description = "Return the H2 execution plan as a tree, flag full scans of large tables and suggest indexes for them"
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Plan produced successfully",
+                    content = @Content(
+                            mediaType = "application/json",
+                            schema = @Schema(implementation = ExplainResponse.class)
+                    )
+            ),
+            @ApiResponse(
+                    responseCode = "400",
+                    description = "Invalid SQL query or a statement without a plan",
+                    content = @Content
+            ),
+            @ApiResponse(
+                    responseCode = "401",
+                    description = "Authentication required",
+                    content = @Content
+            ),
+            @ApiResponse(
+                    responseCode = "429",
+                    description = "CPU time or result size quota exhausted for the current window",
+                    content = @Content
+            )
+    })
+    @PostMapping("/explain")
+    public ResponseEntity<ExplainResponse> explainQuery(
+            @Parameter(description = "SQL query to explain with optional parameters")
+            @Valid @RequestBody QueryRequest request,
+            PlaygroundUser user) {
+
+        String userLogin = user.getLogin();
+        ExplainResponse response = explainService.explain(userLogin, request);
+        HttpHeaders quotaHeaders = quotaService.headers(userLogin);
+
+        if (QuotaService.ERROR_CPU_QUOTA.equals(response.getErrorCode())
+                || QuotaService.ERROR_RESULT_QUOTA.equals(response.getErrorCode())) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .headers(quotaHeaders)
+                    .header(HttpHeaders.RETRY_AFTER, quotaHeaders.getFirst("X-Quota-Reset-Seconds"))
+                    .body(response);
+        }
+        if (!response.isSuccess()) {
+            return ResponseEntity.badRequest().headers(quotaHeaders).body(response);
+        }
+
+        return ResponseEntity.ok().headers(quotaHeaders).body(response);
+    }
+
+    @Operation(
+            summary = "Get sandbox connection pool statistics",
+            description = "Open, idle and in-use connections of the user's sandbox, its current target size " +
+                    "and the wait for a connection over recent queries"
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Pool statistics retrieved successfully",
+                    content = @Content(
+                            mediaType = "application/json",
+                            schema = @Schema(implementation = SandboxPoolStats.class)
+                    )
+            ),
+            @ApiResponse(
+                    responseCode = "401",
+                    description = "Authentication required",
+                    content = @Content
+            )
+    })
+    @GetMapping("/sandbox/pool")
+    public ResponseEntity<SandboxPoolStats> getSandboxPoolStats(PlaygroundUser user) {
+        return ResponseEntity.ok(sandboxService.getPoolStats(user.getLogin()));
     }
 
     @Operation(
@@ -140,7 +537,7 @@ public class SqlPlaygroundController {
     public ResponseEntity<QueryResponse> validateQuery(
             @Parameter(description = "SQL query to validate")
             @Valid @RequestBody QueryRequest request,
-            Authentication authentication) {
+            PlaygroundUser user) {
         
         QueryResponse response = QueryResponse.builder()
                 .success(true)
@@ -167,8 +564,8 @@ public class SqlPlaygroundController {
             )
     })
     @GetMapping("/schema")
-    public ResponseEntity<Map<String, Object>> getDatabaseSchema(Authentication authentication) {
-        String userLogin = gitHubService.getUserLogin(authentication);
+    public ResponseEntity<Map<String, Object>> getDatabaseSchema(PlaygroundUser user) {
+        String userLogin = user.getLogin();
         
         Map<String, Object> schema = Map.of(
                 "user", userLogin,
@@ -211,24 +608,214 @@ public class SqlPlaygroundController {
             @RequestParam String repository,
             @Parameter(description = "File name for the saved query")
             @RequestParam(defaultValue = "query.sql") String fileName,
-            Authentication authentication) {
+            PlaygroundUser user) {
         
-        String userLogin = gitHubService.getUserLogin(authentication);
-        String content = String.format(
-                "-- Query executed by %s at %s\n-- Parameters: %s\n-- Timeout: %s seconds\n-- Limit: %s rows\n\n%s", 
-                userLogin, 
-                LocalDateTime.now(), 
-                request.getParameters() != null ? request.getParameters().toString() : "none",
-                request.getTimeout() != null ? request.getTimeout() : "default",
-                request.getLimit() != null ? request.getLimit() : "unlimited",
+        String userLogin = user.getLogin();
+        String content = SqlFileFormatter.format(
+                userLogin,
+                LocalDateTime.now(),
+                request.getParameters(),
+                request.getTimeout(),
+                request.getLimit(),
                 request.getQuery()
         );
         
         Map<String, Object> result = gitHubService.commitFile(
-                authentication, userLogin, repository, fileName, content, 
+                user, userLogin, repository, fileName, content, 
                 "Add SQL query from playground: " + fileName
         );
         
         return ResponseEntity.ok(result);
     }
-}
\ No newline at end of file
+
+    @Operation(
+            summary = "List SQL files in a GitHub repository",
+            description = "List .sql files of a repository at the given ref using a single recursive Git tree request"
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "SQL files listed successfully"
+            ),
+            @ApiResponse(
+                    responseCode = "400",
+                    description = "GitHub API error",
+                    content = @Content
+            ),
+            @ApiResponse(
+                    responseCode = "401",
+                    description = "Authentication required",
+                    content = @Content
+            )
+    })
+    @GetMapping("/repositories/{owner}/{repo}/files")
+    public ResponseEntity<Map<String, Object>> listRepositorySqlFiles(
+            @Parameter(description = "Repository owner (username)")
+            @PathVariable String owner,
+            @Parameter(description = "Repository name")
+            @PathVariable String repo,
+            @Parameter(description = "Branch, tag or commit SHA", example = "main")
+            @RequestParam(defaultValue = "main") String ref,
+            PlaygroundUser user) {
+
+        Map<String, Object> result = repositoryScriptService.listSqlFiles(user, owner, repo, ref);
+
+        if (result.containsKey("error")) {
+            return ResponseEntity.badRequest().body(result);
+        }
+
+        return ResponseEntity.ok(result);
+    }
+
+    @Operation(
+            summary = "Run SQL files from a GitHub repository",
+            description = "Execute the selected .sql files of a repository in the user's sandbox, in the given order. " +
+                    "File contents are cached by Git blob SHA and are not downloaded again"
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Files executed, see each result for its own status"
+            ),
+            @ApiResponse(
+                    responseCode = "400",
+                    description = "Unknown files or GitHub API error",
+                    content = @Content
+            ),
+            @ApiResponse(
+                    responseCode = "401",
+                    description = "Authentication required",
+                    content = @Content
+            )
+    })
+    @PostMapping("/repositories/{owner}/{repo}/run")
+    public ResponseEntity<Map<String, Object>> runRepositorySqlFiles(
+            @Parameter(description = "Repository owner (username)")
+            @PathVariable String owner,
+            @Parameter(description = "Repository name")
+            @PathVariable String repo,
+            @Parameter(description = "Branch, tag or commit SHA", example = "main")
+            @RequestParam(defaultValue = "main") String ref,
+            @Parameter(description = "Paths of .sql files to execute, in order", example = "schema/create.sql")
+            @RequestParam List<String> paths,
+            PlaygroundUser user) {
+
+        Map<String, Object> result = repositoryScriptService.runFiles(user, owner, repo, ref, paths);
+
+        if (result.containsKey("error")) {
+            return ResponseEntity.badRequest().body(result);
+        }
+
+        return ResponseEntity.ok(result);
+    }
+
+    @Operation(
+            summary = "Commit a sandbox snapshot to a GitHub repository",
+            description = "Dump the user's sandbox (schema and data) and commit it under snapshots/{name}/ " +
+                    "on the given branch. Table data is split into chunks stored as Git blobs; chunks the " +
+                    "repository already has are not uploaded again, and nothing is committed if the snapshot " +
+                    "did not change"
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Snapshot committed or already up to date"
+            ),
+            @ApiResponse(
+                    responseCode = "400",
+                    description = "Invalid snapshot name, dump failure or GitHub API error",
+                    content = @Content
+            ),
+            @ApiResponse(
+                    responseCode = "401",
+                    description = "Authentication required",
+                    content = @Content
+            )
+    })
+    @PostMapping("/repositories/{owner}/{repo}/snapshots/{name}")
+    public ResponseEntity<Map<String, Object>> createSandboxSnapshot(
+            @Parameter(description = "Repository owner (username)")
+            @PathVariable String owner,
+            @Parameter(description = "Repository name")
+            @PathVariable String repo,
+            @Parameter(description = "Snapshot name", example = "orders-demo")
+            @PathVariable String name,
+            @Parameter(description = "Branch to commit to", example = "main")
+            @RequestParam(defaultValue = "main") String branch,
+            @Parameter(description = "Commit message")
+            @RequestParam(required = false) String message,
+            PlaygroundUser user) {
+
+        if (!SandboxSnapshotService.isValidName(name)) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Invalid snapshot name: " + name));
+        }
+
+        Map<String, Object> result = sandboxSnapshotService.createSnapshot(user, owner, repo, name, branch, message);
+
+        if (result.containsKey("error")) {
+            return ResponseEntity.badRequest().body(result);
+        }
+
+        return ResponseEntity.ok(result);
+    }
+
+    @Operation(
+            summary = "Restore the sandbox from a snapshot",
+            description = "Replace the user's sandbox with snapshots/{name}/ as of the given branch, tag or commit. " +
+                    "Tables are loaded in parallel, one chunk at a time"
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Sandbox restored"
+            ),
+            @ApiResponse(
+                    responseCode = "400",
+                    description = "Unknown or invalid snapshot, restore failure or GitHub API error",
+                    content = @Content
+            ),
+            @ApiResponse(
+                    responseCode = "401",
+                    description = "Authentication required",
+                    content = @Content
+            ),
+            @ApiResponse(
+                    responseCode = "429",
+                    description = "Quota exceeded, see Retry-After",
+                    content = @Content
+            )
+    })
+    @PostMapping("/repositories/{owner}/{repo}/snapshots/{name}/restore")
+    public ResponseEntity<Map<String, Object>> restoreSandboxSnapshot(
+            @Parameter(description = "Repository owner (username)")
+            @PathVariable String owner,
+            @Parameter(description = "Repository name")
+            @PathVariable String repo,
+            @Parameter(description = "Snapshot name", example = "orders-demo")
+            @PathVariable String name,
+            @Parameter(description = "Branch, tag or commit SHA", example = "main")
+            @RequestParam(defaultValue = "main") String ref,
+            PlaygroundUser user) {
+
+        if (!SandboxSnapshotService.isValidName(name)) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Invalid snapshot name: " + name));
+        }
+
+        String userLogin = user.getLogin();
+        Map<String, Object> result = sandboxSnapshotService.restoreSnapshot(user, owner, repo, name, ref);
+        HttpHeaders quotaHeaders = quotaService.headers(userLogin);
+
+        if (QuotaService.ERROR_CPU_QUOTA.equals(result.get("errorCode"))
+                || QuotaService.ERROR_RESULT_QUOTA.equals(result.get("errorCode"))) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .headers(quotaHeaders)
+                    .header(HttpHeaders.RETRY_AFTER, quotaHeaders.getFirst("X-Quota-Reset-Seconds"))
+                    .body(result);
+        }
+        if (result.containsKey("error")) {
+            return ResponseEntity.badRequest().headers(quotaHeaders).body(result);
+        }
+
+        return ResponseEntity.ok().headers(quotaHeaders).body(result);
+    }
+}
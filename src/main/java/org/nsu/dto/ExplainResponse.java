@@ -0,0 +1,124 @@
+package org.nsu.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.util.List;
+
+@Schema(description = "Execution plan of a query with full-scan warnings and index suggestions")
+public class ExplainResponse {
+
+    @Schema(description = "Indicates if the plan was produced successfully", example = "true")
+    private boolean success;
+
+    @Schema(description = "Response message or error description", example = "Plan produced successfully")
+    private String message;
+
+    @Schema(description = "Error code if the plan could not be produced", example = "SQL001")
+    private String errorCode;
+
+    @Schema(description = "Plan as printed by H2 EXPLAIN")
+    private String plan;
+
+    @Schema(description = "Plan as a tree of table access steps")
+    private PlanNode root;
+
+    @Schema(description = "Full scans of large tables and other plan problems")
+    private List<String> warnings;
+
+    @Schema(description = "Indexes that would let the flagged scans become seeks",
+            example = "[\"CREATE INDEX ON \\\"PUBLIC\\\".\\\"ORDERS\\\" (\\\"CUSTOMER_ID\\\")\"]")
+    private List<String> suggestedIndexes;
+
+    @Schema(description = "Whether the plan was served from the plan cache", example = "false")
+    private boolean cached;
+
+    // Constructors
+    public ExplainResponse() {}
+
+    public static ExplainResponse failure(String message, String errorCode) {
+        ExplainResponse response = new ExplainResponse();
+        response.setSuccess(false);
+        response.setMessage(message);
+        response.setErrorCode(errorCode);
+        return response;
+    }
+
+    // Getters and Setters
+    public boolean isSuccess() {
+        return success;
+    }
+
+    public void setSuccess(boolean success) {
+        this.success = success;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public void setMessage(String message) {
+        this.message = message;
+    }
+
+    public String getErrorCode() {
+        return errorCode;
+    }
+
+    public void setErrorCode(String errorCode) {
+        this.errorCode = errorCode;
+    }
+
+    public String getPlan() {
+        return plan;
+    }
+
+    public void setPlan(String plan) {
+        this.plan = plan;
+    }
+
+    public PlanNode getRoot() {
+        return root;
+    }
+
+    public void setRoot(PlanNode root) {
+        this.root = root;
+    }
+
+    public List<String> getWarnings() {
+        return warnings;
+    }
+
+    public void setWarnings(List<String> warnings) {
+        this.warnings = warnings;
+    }
+
+    public List<String> getSuggestedIndexes() {
+        return suggestedIndexes;
+    }
+
+    public void setSuggestedIndexes(List<String> suggestedIndexes) {
+        this.suggestedIndexes = suggestedIndexes;
+    }
+
+    public boolean isCached() {
+        return cached;
+    }
+
+    public void setCached(boolean cached) {
+        this.cached = cached;
+    }
+
+    @Override
+    public String toString() {
+        return "ExplainResponse{" +
+                "success=" + success +
+                ", message='" + message + '\'' +
+                ", errorCode='" + errorCode + '\'' +
+                ", plan='" + plan + '\'' +
+                ", root=" + root +
+                ", warnings=" + warnings +
+                ", suggestedIndexes=" + suggestedIndexes +
+                ", cached=" + cached +
+                '}';
+    }
+}
@@ -0,0 +1,132 @@
+package org.nsu.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Schema(description = "Step of a query execution plan. H2 joins by nested loops, so each joined table is a child of the previous one")
+public class PlanNode {
+
+    @Schema(description = "Plan operation", example = "INNER JOIN")
+    private String operation;
+
+    @Schema(description = "Qualified table name", example = "PUBLIC.ORDERS")
+    private String table;
+
+    @Schema(description = "Table alias used in the query", example = "O")
+    private String alias;
+
+    @Schema(description = "How rows are read: SCAN, INDEX_SCAN, SEEK, DIRECT or OTHER", example = "SEEK")
+    private String access;
+
+    @Schema(description = "Index used to read the table", example = "PUBLIC.IDX_ORDERS_CUSTOMER")
+    private String index;
+
+    @Schema(description = "Condition evaluated through the index", example = "CUSTOMER_ID = C.ID")
+    private String indexCondition;
+
+    @Schema(description = "Estimated number of rows read: the table size for scans", example = "120000")
+    private Long estimatedRows;
+
+    @Schema(description = "Whether this step reads every row of a table above the full-scan threshold")
+    private boolean fullScan;
+
+    @Schema(description = "Steps executed for each row of this one")
+    private List<PlanNode> children = new ArrayList<>();
+
+    // Constructors
+    public PlanNode() {}
+
+    public PlanNode(String operation) {
+        this.operation = operation;
+    }
+
+    // Getters and Setters
+    public String getOperation() {
+        return operation;
+    }
+
+    public void setOperation(String operation) {
+        this.operation = operation;
+    }
+
+    public String getTable() {
+        return table;
+    }
+
+    public void setTable(String table) {
+        this.table = table;
+    }
+
+    public String getAlias() {
+        return alias;
+    }
+
+    public void setAlias(String alias) {
+        this.alias = alias;
+    }
+
+    public String getAccess() {
+        return access;
+    }
+
+    public void setAccess(String access) {
+        this.access = access;
+    }
+
+    public String getIndex() {
+        return index;
+    }
+
+    public void setIndex(String index) {
+        this.index = index;
+    }
+
+    public String getIndexCondition() {
+        return indexCondition;
+    }
+
+    public void setIndexCondition(String indexCondition) {
+        this.indexCondition = indexCondition;
+    }
+
+    public Long getEstimatedRows() {
+        return estimatedRows;
+    }
+
+    public void setEstimatedRows(Long estimatedRows) {
+        this.estimatedRows = estimatedRows;
+    }
+
+    public boolean isFullScan() {
+        return fullScan;
+    }
+
+    public void setFullScan(boolean fullScan) {
+        this.fullScan = fullScan;
+    }
+
+    public List<PlanNode> getChildren() {
+        return children;
+    }
+
+    public void setChildren(List<PlanNode> children) {
+        this.children = children;
+    }
+
+    @Override
+    public String toString() {
+        return "PlanNode{" +
+                "operation='" + operation + '\'' +
+                ", table='" + table + '\'' +
+                ", alias='" + alias + '\'' +
+                ", access='" + access + '\'' +
+                ", index='" + index + '\'' +
+                ", indexCondition='" + indexCondition + '\'' +
+                ", estimatedRows=" + estimatedRows +
+                ", fullScan=" + fullScan +
+                ", children=" + children +
+                '}';
+    }
+}
@@ -0,0 +1,41 @@
+package org.nsu.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+
+import java.util.List;
+
+@Schema(description = "Batch of independent read-only queries executed in parallel")
+public class QueryBatchRequest {
+
+    @Schema(description = "Read-only queries to execute")
+    @NotEmpty(message = "Batch cannot be empty")
+    @Size(max = 20, message = "Batch cannot contain more than 20 queries")
+    @Valid
+    private List<QueryRequest> queries;
+
+    // Constructors
+    public QueryBatchRequest() {}
+
+    public QueryBatchRequest(List<QueryRequest> queries) {
+        this.queries = queries;
+    }
+
+    // Getters and Setters
+    public List<QueryRequest> getQueries() {
+        return queries;
+    }
+
+    public void setQueries(List<QueryRequest> queries) {
+        this.queries = queries;
+    }
+
+    @Override
+    public String toString() {
+        return "QueryBatchRequest{" +
+                "queries=" + queries +
+                '}';
+    }
+}
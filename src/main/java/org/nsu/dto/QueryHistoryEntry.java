@@ -0,0 +1,115 @@
+package org.nsu.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.time.LocalDateTime;
+
+@Schema(description = "Query executed by the user")
+public class QueryHistoryEntry {
+
+    @Schema(description = "Endpoint that executed the query", example = "/api/v1/sql/execute")
+    private String endpoint;
+
+    @Schema(description = "SQL query string", example = "SELECT * FROM users WHERE age > ?")
+    private String query;
+
+    @Schema(description = "Whether the query succeeded, absent for streamed exports", example = "true")
+    private Boolean success;
+
+    @Schema(description = "Error code if query failed", example = "SQL001")
+    private String errorCode;
+
+    @Schema(description = "Number of rows returned or affected", example = "10")
+    private Integer rowsAffected;
+
+    @Schema(description = "Query execution time in milliseconds", example = "125")
+    private Long executionTime;
+
+    @Schema(description = "When the query was executed")
+    private LocalDateTime executedAt;
+
+    // Constructors
+    public QueryHistoryEntry() {}
+
+    public QueryHistoryEntry(String endpoint, QueryRequest request, QueryResponse response) {
+        this.endpoint = endpoint;
+        this.query = request.getQuery();
+        this.executedAt = LocalDateTime.now();
+        if (response != null) {
+            this.success = response.isSuccess();
+            this.errorCode = response.getErrorCode();
+            this.rowsAffected = response.getRowsAffected();
+            this.executionTime = response.getExecutionTime();
+        }
+    }
+
+    // Getters and Setters
+    public String getEndpoint() {
+        return endpoint;
+    }
+
+    public void setEndpoint(String endpoint) {
+        this.endpoint = endpoint;
+    }
+
+    public String getQuery() {
+        return query;
+    }
+
+    public void setQuery(String query) {
+        this.query = query;
+    }
+
+    public Boolean getSuccess() {
+        return success;
+    }
+
+    public void setSuccess(Boolean success) {
+        this.success = success;
+    }
+
+    public String getErrorCode() {
+        return errorCode;
+    }
+
+    public void setErrorCode(String errorCode) {
+        this.errorCode = errorCode;
+    }
+
+    public Integer getRowsAffected() {
+        return rowsAffected;
+    }
+
+    public void setRowsAffected(Integer rowsAffected) {
+        this.rowsAffected = rowsAffected;
+    }
+
+    public Long getExecutionTime() {
+        return executionTime;
+    }
+
+    public void setExecutionTime(Long executionTime) {
+        this.executionTime = executionTime;
+    }
+
+    public LocalDateTime getExecutedAt() {
+        return executedAt;
+    }
+
+    public void setExecutedAt(LocalDateTime executedAt) {
+        this.executedAt = executedAt;
+    }
+
+    @Override
+    public String toString() {
+        return "QueryHistoryEntry{" +
+                "endpoint='" + endpoint + '\'' +
+                ", query='" + query + '\'' +
+                ", success=" + success +
+                ", errorCode='" + errorCode + '\'' +
+                ", rowsAffected=" + rowsAffected +
+                ", executionTime=" + executionTime +
+                ", executedAt=" + executedAt +
+                '}';
+    }
+}
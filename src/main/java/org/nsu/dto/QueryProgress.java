@@ -0,0 +1,72 @@
+package org.nsu.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+@Schema(description = "Progress of a running query, sent as a server-sent event")
+public class QueryProgress {
+
+    @Schema(description = "Client-chosen identifier of the query", example = "exercise-3")
+    private String queryId;
+
+    @Schema(description = "Current phase: WAITING, CONNECTING, EXECUTING, FETCHING or COMPLETED", example = "FETCHING")
+    private String phase;
+
+    @Schema(description = "Milliseconds since the query started, 0 while waiting for it to start", example = "1250")
+    private long elapsedTime;
+
+    @Schema(description = "Number of rows read from the result so far", example = "4096")
+    private long rowsFetched;
+
+    // Constructors
+    public QueryProgress() {}
+
+    public QueryProgress(String queryId, String phase, long elapsedTime, long rowsFetched) {
+        this.queryId = queryId;
+        this.phase = phase;
+        this.elapsedTime = elapsedTime;
+        this.rowsFetched = rowsFetched;
+    }
+
+    // Getters and Setters
+    public String getQueryId() {
+        return queryId;
+    }
+
+    public void setQueryId(String queryId) {
+        this.queryId = queryId;
+    }
+
+    public String getPhase() {
+        return phase;
+    }
+
+    public void setPhase(String phase) {
+        this.phase = phase;
+    }
+
+    public long getElapsedTime() {
+        return elapsedTime;
+    }
+
+    public void setElapsedTime(long elapsedTime) {
+        this.elapsedTime = elapsedTime;
+    }
+
+    public long getRowsFetched() {
+        return rowsFetched;
+    }
+
+    public void setRowsFetched(long rowsFetched) {
+        this.rowsFetched = rowsFetched;
+    }
+
+    @Override
+    public String toString() {
+        return "QueryProgress{" +
+                "queryId='" + queryId + '\'' +
+                ", phase='" + phase + '\'' +
+                ", elapsedTime=" + elapsedTime +
+                ", rowsFetched=" + rowsFetched +
+                '}';
+    }
+}
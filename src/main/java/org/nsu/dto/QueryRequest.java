@@ -4,6 +4,7 @@ import io.swagger.v3.oas.annotations.media.Schema;
 
 import javax.validation.constraints.NotBlank;
 import javax.validation.constraints.Size;
+import java.util.List;
 import java.util.Map;
 
 @Schema(description = "SQL query request object")
@@ -14,7 +15,8 @@ public class QueryRequest {
     @Size(max = 10000, message = "Query cannot exceed 10000 characters")
     private String query;
 
-    @Schema(description = "Query parameters for prepared statements", example = "{\"1\": \"25\"}")
+    @Schema(description = "Query parameters keyed by position (\"1\") for ? or by name (\"age\") for :age",
+            example = "{\"1\": \"25\"}")
     private Map<String, Object> parameters;
 
     @Schema(description = "Maximum number of rows to return", example = "100")
@@ -23,6 +25,23 @@ public class QueryRequest {
     @Schema(description = "Query timeout in seconds", example = "30")
     private Integer timeout;
 
+    @Schema(description = "Open a server-side cursor and return results page by page", example = "false")
+    private Boolean cursor;
+
+    @Schema(description = "Number of rows in the first page when a cursor is opened", example = "100")
+    private Integer pageSize;
+
+    @Schema(description = "Client-chosen identifier of the query, used to diff consecutive runs", example = "exercise-3")
+    @Size(max = 100, message = "Query id cannot exceed 100 characters")
+    private String queryId;
+
+    @Schema(description = "Return only the difference from the previous result with the same query id", example = "false")
+    private Boolean diff;
+
+    @Schema(description = "Columns identifying a row when computing a diff; whole rows are compared if omitted",
+            example = "[\"ID\"]")
+    private List<String> keyColumns;
+
     // Constructors
     public QueryRequest() {}
 
@@ -68,6 +87,46 @@ public class QueryRequest {
         this.timeout = timeout;
     }
 
+    public Boolean getCursor() {
+        return cursor;
+    }
+
+    public void setCursor(Boolean cursor) {
+        this.cursor = cursor;
+    }
+
+    public Integer getPageSize() {
+        return pageSize;
+    }
+
+    public void setPageSize(Integer pageSize) {
+        this.pageSize = pageSize;
+    }
+
+    public String getQueryId() {
+        return queryId;
+    }
+
+    public void setQueryId(String queryId) {
+        this.queryId = queryId;
+    }
+
+    public Boolean getDiff() {
+        return diff;
+    }
+
+    public void setDiff(Boolean diff) {
+        this.diff = diff;
+    }
+
+    public List<String> getKeyColumns() {
+        return keyColumns;
+    }
+
+    public void setKeyColumns(List<String> keyColumns) {
+        this.keyColumns = keyColumns;
+    }
+
     @Override
     public String toString() {
         return "QueryRequest{" +
@@ -75,6 +134,11 @@ public class QueryRequest {
                 ", parameters=" + parameters +
                 ", limit=" + limit +
                 ", timeout=" + timeout +
+                ", cursor=" + cursor +
+                ", pageSize=" + pageSize +
+                ", queryId='" + queryId + '\'' +
+                ", diff=" + diff +
+                ", keyColumns=" + keyColumns +
                 '}';
     }
 }
\ No newline at end of file
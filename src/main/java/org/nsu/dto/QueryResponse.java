@@ -33,6 +33,15 @@ public class QueryResponse {
     @Schema(description = "Error code if query failed", example = "SQL001")
     private String errorCode;
 
+    @Schema(description = "Server-side cursor identifier for fetching further pages", example = "3f2b7c1e-...")
+    private String cursorId;
+
+    @Schema(description = "Whether more rows can be fetched from the cursor", example = "true")
+    private Boolean hasMore;
+
+    @Schema(description = "Difference from the previous result, returned instead of data when requested")
+    private ResultDiff diff;
+
     // Constructors
     public QueryResponse() {
         this.timestamp = LocalDateTime.now();
@@ -58,6 +67,9 @@ public class QueryResponse {
         private List<ColumnInfo> columns;
         private LocalDateTime timestamp;
         private String errorCode;
+        private String cursorId;
+        private Boolean hasMore;
+        private ResultDiff diff;
 
         public QueryResponseBuilder success(boolean success) {
             this.success = success;
@@ -99,6 +111,21 @@ public class QueryResponse {
             return this;
         }
 
+        public QueryResponseBuilder cursorId(String cursorId) {
+            this.cursorId = cursorId;
+            return this;
+        }
+
+        public QueryResponseBuilder hasMore(Boolean hasMore) {
+            this.hasMore = hasMore;
+            return this;
+        }
+
+        public QueryResponseBuilder diff(ResultDiff diff) {
+            this.diff = diff;
+            return this;
+        }
+
         public QueryResponse build() {
             QueryResponse response = new QueryResponse();
             response.success = this.success;
@@ -109,6 +136,9 @@ public class QueryResponse {
             response.columns = this.columns;
             response.timestamp = this.timestamp != null ? this.timestamp : LocalDateTime.now();
             response.errorCode = this.errorCode;
+            response.cursorId = this.cursorId;
+            response.hasMore = this.hasMore;
+            response.diff = this.diff;
             return response;
         }
     }
@@ -178,6 +208,30 @@ public class QueryResponse {
         this.errorCode = errorCode;
     }
 
+    public String getCursorId() {
+        return cursorId;
+    }
+
+    public void setCursorId(String cursorId) {
+        this.cursorId = cursorId;
+    }
+
+    public Boolean getHasMore() {
+        return hasMore;
+    }
+
+    public void setHasMore(Boolean hasMore) {
+        this.hasMore = hasMore;
+    }
+
+    public ResultDiff getDiff() {
+        return diff;
+    }
+
+    public void setDiff(ResultDiff diff) {
+        this.diff = diff;
+    }
+
     @Override
     public String toString() {
         return "QueryResponse{" +
@@ -187,6 +241,9 @@ public class QueryResponse {
                 ", rowsAffected=" + rowsAffected +
                 ", timestamp=" + timestamp +
                 ", errorCode='" + errorCode + '\'' +
+                ", cursorId='" + cursorId + '\'' +
+                ", hasMore=" + hasMore +
+                ", diff=" + diff +
                 '}';
     }
 }
\ No newline at end of file
@@ -0,0 +1,76 @@
+package org.nsu.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.util.List;
+import java.util.Map;
+
+@Schema(description = "Difference between the current and the previous result of the same query")
+public class ResultDiff {
+
+    @Schema(description = "Rows that were not present in the previous result")
+    private List<Map<String, Object>> added;
+
+    @Schema(description = "Key columns of rows that are no longer present")
+    private List<Map<String, Object>> removed;
+
+    @Schema(description = "Rows whose key was present before but whose values changed")
+    private List<Map<String, Object>> changed;
+
+    @Schema(description = "Number of rows identical to the previous result", example = "9950")
+    private int unchanged;
+
+    // Constructors
+    public ResultDiff() {}
+
+    public ResultDiff(List<Map<String, Object>> added, List<Map<String, Object>> removed,
+                      List<Map<String, Object>> changed, int unchanged) {
+        this.added = added;
+        this.removed = removed;
+        this.changed = changed;
+        this.unchanged = unchanged;
+    }
+
+    // Getters and Setters
+    public List<Map<String, Object>> getAdded() {
+        return added;
+    }
+
+    public void setAdded(List<Map<String, Object>> added) {
+        this.added = added;
+    }
+
+    public List<Map<String, Object>> getRemoved() {
+        return removed;
+    }
+
+    public void setRemoved(List<Map<String, Object>> removed) {
+        this.removed = removed;
+    }
+
+    public List<Map<String, Object>> getChanged() {
+        return changed;
+    }
+
+    public void setChanged(List<Map<String, Object>> changed) {
+        this.changed = changed;
+    }
+
+    public int getUnchanged() {
+        return unchanged;
+    }
+
+    public void setUnchanged(int unchanged) {
+        this.unchanged = unchanged;
+    }
+
+    @Override
+    public String toString() {
+        return "ResultDiff{" +
+                "added=" + (added != null ? added.size() : 0) +
+                ", removed=" + (removed != null ? removed.size() : 0) +
+                ", changed=" + (changed != null ? changed.size() : 0) +
+                ", unchanged=" + unchanged +
+                '}';
+    }
+}
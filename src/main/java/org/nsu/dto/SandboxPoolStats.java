@@ -0,0 +1,153 @@
+package org.nsu.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+@Schema(description = "Connection pool of a sandbox")
+public class SandboxPoolStats {
+
+    @Schema(description = "Sandbox name", example = "octocat")
+    private String sandbox;
+
+    @Schema(description = "Number of open connections", example = "3")
+    private int open;
+
+    @Schema(description = "Open connections not in use", example = "1")
+    private int idle;
+
+    @Schema(description = "Connections handed out to queries", example = "2")
+    private int inUse;
+
+    @Schema(description = "Queries waiting for a connection", example = "0")
+    private int waiting;
+
+    @Schema(description = "Number of connections the pool may open, adjusted to observed demand", example = "4")
+    private int target;
+
+    @Schema(description = "Connections handed out since the pool was created", example = "1520")
+    private long acquisitions;
+
+    @Schema(description = "Requests that gave up waiting for a connection", example = "0")
+    private long timeouts;
+
+    @Schema(description = "Median wait for a connection over recent acquisitions, in milliseconds", example = "0.02")
+    private double waitP50Ms;
+
+    @Schema(description = "99th percentile wait for a connection over recent acquisitions, in milliseconds", example = "3.5")
+    private double waitP99Ms;
+
+    @Schema(description = "Longest wait for a connection over recent acquisitions, in milliseconds", example = "12.1")
+    private double waitMaxMs;
+
+    // Constructors
+    public SandboxPoolStats() {}
+
+    public SandboxPoolStats(String sandbox) {
+        this.sandbox = sandbox;
+    }
+
+    // Getters and Setters
+    public String getSandbox() {
+        return sandbox;
+    }
+
+    public void setSandbox(String sandbox) {
+        this.sandbox = sandbox;
+    }
+
+    public int getOpen() {
+        return open;
+    }
+
+    public void setOpen(int open) {
+        this.open = open;
+    }
+
+    public int getIdle() {
+        return idle;
+    }
+
+    public void setIdle(int idle) {
+        this.idle = idle;
+    }
+
+    public int getInUse() {
+        return inUse;
+    }
+
+    public void setInUse(int inUse) {
+        this.inUse = inUse;
+    }
+
+    public int getWaiting() {
+        return waiting;
+    }
+
+    public void setWaiting(int waiting) {
+        this.waiting = waiting;
+    }
+
+    public int getTarget() {
+        return target;
+    }
+
+    public void setTarget(int target) {
+        this.target = target;
+    }
+
+    public long getAcquisitions() {
+        return acquisitions;
+    }
+
+    public void setAcquisitions(long acquisitions) {
+        this.acquisitions = acquisitions;
+    }
+
+    public long getTimeouts() {
+        return timeouts;
+    }
+
+    public void setTimeouts(long timeouts) {
+        this.timeouts = timeouts;
+    }
+
+    public double getWaitP50Ms() {
+        return waitP50Ms;
+    }
+
+    public void setWaitP50Ms(double waitP50Ms) {
+        this.waitP50Ms = waitP50Ms;
+    }
+
+    public double getWaitP99Ms() {
+        return waitP99Ms;
+    }
+
+    public void setWaitP99Ms(double waitP99Ms) {
+        this.waitP99Ms = waitP99Ms;
+    }
+
+    public double getWaitMaxMs() {
+        return waitMaxMs;
+    }
+
+    public void setWaitMaxMs(double waitMaxMs) {
+        this.waitMaxMs = waitMaxMs;
+    }
+
+    @Override
+    public String toString() {
+        return "SandboxPoolStats{" +
+                "sandbox='" + sandbox + '\'' +
+                ", open=" + open +
+                ", idle=" + idle +
+                ", inUse=" + inUse +
+                ", waiting=" + waiting +
+                ", target=" + target +
+                ", acquisitions=" + acquisitions +
+                ", timeouts=" + timeouts +
+                ", waitP50Ms=" + waitP50Ms +
+                ", waitP99Ms=" + waitP99Ms +
+                ", waitMaxMs=" + waitMaxMs +
+                '}';
+    }
+}
@@ -0,0 +1,125 @@
+package org.nsu.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import javax.validation.constraints.NotBlank;
+import javax.validation.constraints.Size;
+import java.time.LocalDateTime;
+import java.util.Map;
+
+@Schema(description = "Query stored in the user's saved query library")
+public class SavedQuery {
+
+    @Schema(description = "Unique query name, also used as the file name in Git", example = "active-users")
+    private String name;
+
+    @Schema(description = "Free-form description", example = "Users who logged in during the last week")
+    @Size(max = 1000, message = "Description cannot exceed 1000 characters")
+    private String description;
+
+    @Schema(description = "SQL query string", example = "SELECT * FROM users WHERE age > ?")
+    @NotBlank(message = "Query cannot be empty")
+    @Size(max = 10000, message = "Query cannot exceed 10000 characters")
+    private String query;
+
+    @Schema(description = "Query parameters for prepared statements", example = "{\"1\": \"25\"}")
+    private Map<String, Object> parameters;
+
+    @Schema(description = "Query timeout in seconds", example = "30")
+    private Integer timeout;
+
+    @Schema(description = "Maximum number of rows to return", example = "100")
+    private Integer limit;
+
+    @Schema(description = "When the query was last changed")
+    private LocalDateTime updatedAt;
+
+    @Schema(description = "Git blob SHA of the file content last synchronized with GitHub")
+    private String syncedSha;
+
+    // Constructors
+    public SavedQuery() {}
+
+    public SavedQuery(String name, String query) {
+        this.name = name;
+        this.query = query;
+    }
+
+    // Getters and Setters
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public void setDescription(String description) {
+        this.description = description;
+    }
+
+    public String getQuery() {
+        return query;
+    }
+
+    public void setQuery(String query) {
+        this.query = query;
+    }
+
+    public Map<String, Object> getParameters() {
+        return parameters;
+    }
+
+    public void setParameters(Map<String, Object> parameters) {
+        this.parameters = parameters;
+    }
+
+    public Integer getTimeout() {
+        return timeout;
+    }
+
+    public void setTimeout(Integer timeout) {
+        this.timeout = timeout;
+    }
+
+    public Integer getLimit() {
+        return limit;
+    }
+
+    public void setLimit(Integer limit) {
+        this.limit = limit;
+    }
+
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(LocalDateTime updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+
+    public String getSyncedSha() {
+        return syncedSha;
+    }
+
+    public void setSyncedSha(String syncedSha) {
+        this.syncedSha = syncedSha;
+    }
+
+    @Override
+    public String toString() {
+        return "SavedQuery{" +
+                "name='" + name + '\'' +
+                ", query='" + query + '\'' +
+                ", parameters=" + parameters +
+                ", timeout=" + timeout +
+                ", limit=" + limit +
+                ", updatedAt=" + updatedAt +
+                ", syncedSha='" + syncedSha + '\'' +
+                '}';
+    }
+}
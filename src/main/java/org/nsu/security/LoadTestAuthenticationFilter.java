@@ -0,0 +1,107 @@
+package org.nsu.security;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.oauth2.client.OAuth2AuthorizedClient;
+import org.springframework.security.oauth2.client.OAuth2AuthorizedClientService;
+import org.springframework.security.oauth2.client.authentication.OAuth2AuthenticationToken;
+import org.springframework.security.oauth2.client.registration.ClientRegistration;
+import org.springframework.security.oauth2.client.registration.ClientRegistrationRepository;
+import org.springframework.security.oauth2.core.OAuth2AccessToken;
+import org.springframework.security.oauth2.core.user.DefaultOAuth2User;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Stub OAuth principal for the {@code loadtest} profile: a request from a
+ * loopback address carrying {@code X-Loadtest-User} and the shared secret in
+ * {@code X-Loadtest-Secret} is authenticated as that GitHub login, with a fake
+ * authorized client so GitHub calls go to the configured fake server. Any
+ * other request goes through the normal OAuth flow. Never registered outside
+ * that profile.
+ */
+public class LoadTestAuthenticationFilter extends OncePerRequestFilter {
+
+    public static final String USER_HEADER = "X-Loadtest-User";
+    public static final String SECRET_HEADER = "X-Loadtest-Secret";
+
+    private static final List<GrantedAuthority> AUTHORITIES = List.of(new SimpleGrantedAuthority("OAUTH2_USER"));
+
+    private final ClientRegistrationRepository clientRegistrationRepository;
+    private final OAuth2AuthorizedClientService authorizedClientService;
+    private final String registrationId;
+    private final byte[] secret;
+    private final Set<String> authorizedUsers = ConcurrentHashMap.newKeySet();
+
+    public LoadTestAuthenticationFilter(ClientRegistrationRepository clientRegistrationRepository,
+                                        OAuth2AuthorizedClientService authorizedClientService,
+                                        String registrationId,
+                                        String secret) {
+        if (secret == null || secret.isBlank()) {
+            throw new IllegalStateException("loadtest.secret must be set when the loadtest profile is active");
+        }
+        this.clientRegistrationRepository = clientRegistrationRepository;
+        this.authorizedClientService = authorizedClientService;
+        this.registrationId = registrationId;
+        this.secret = secret.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String login = request.getHeader(USER_HEADER);
+        if (login != null && !login.isBlank() && isLoopback(request) && hasSecret(request)) {
+            DefaultOAuth2User user = new DefaultOAuth2User(AUTHORITIES, Map.of("login", login), "login");
+            OAuth2AuthenticationToken authentication = new OAuth2AuthenticationToken(user, AUTHORITIES, registrationId);
+            if (authorizedUsers.add(login)) {
+                authorize(authentication);
+            }
+            SecurityContext context = SecurityContextHolder.createEmptyContext();
+            context.setAuthentication(authentication);
+            SecurityContextHolder.setContext(context);
+        }
+        chain.doFilter(request, response);
+    }
+
+    // X-Forwarded-For is not trusted here: the remote address is the peer's own
+    private static boolean isLoopback(HttpServletRequest request) {
+        try {
+            return InetAddress.getByName(request.getRemoteAddr()).isLoopbackAddress();
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private boolean hasSecret(HttpServletRequest request) {
+        String provided = request.getHeader(SECRET_HEADER);
+        return provided != null && MessageDigest.isEqual(secret, provided.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void authorize(OAuth2AuthenticationToken authentication) {
+        ClientRegistration registration = clientRegistrationRepository.findByRegistrationId(registrationId);
+        if (registration == null) {
+            return;
+        }
+        Instant now = Instant.now();
+        OAuth2AccessToken token = new OAuth2AccessToken(OAuth2AccessToken.TokenType.BEARER,
+                "loadtest-" + authentication.getName(), now, now.plus(Duration.ofDays(1)));
+        authorizedClientService.saveAuthorizedClient(
+                new OAuth2AuthorizedClient(registration, authentication.getName(), token), authentication);
+    }
+}
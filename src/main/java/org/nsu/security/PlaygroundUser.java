@@ -0,0 +1,52 @@
+package org.nsu.security;
+
+import java.io.Serializable;
+
+/**
+ * Authenticated playground user, resolved once per session (or per request in
+ * stateless mode) from the OAuth2/JWT principal and the authorized GitHub client.
+ */
+public class PlaygroundUser implements Serializable {
+
+    private final String login;
+    private final String email;
+    private final String avatarUrl;
+    private final transient String accessToken;
+
+    public PlaygroundUser(String login, String email, String avatarUrl, String accessToken) {
+        this.login = login;
+        this.email = email;
+        this.avatarUrl = avatarUrl;
+        this.accessToken = accessToken;
+    }
+
+    public String getLogin() {
+        return login;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    public String getAvatarUrl() {
+        return avatarUrl;
+    }
+
+    public String getAccessToken() {
+        return accessToken;
+    }
+
+    public boolean hasAccessToken() {
+        return accessToken != null;
+    }
+
+    @Override
+    public String toString() {
+        return "PlaygroundUser{" +
+                "login='" + login + '\'' +
+                ", email='" + email + '\'' +
+                ", avatarUrl='" + avatarUrl + '\'' +
+                ", hasAccessToken=" + hasAccessToken() +
+                '}';
+    }
+}
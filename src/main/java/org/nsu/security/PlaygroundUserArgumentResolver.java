@@ -0,0 +1,30 @@
+package org.nsu.security;
+
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.core.MethodParameter;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.bind.support.WebDataBinderFactory;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.method.support.HandlerMethodArgumentResolver;
+import org.springframework.web.method.support.ModelAndViewContainer;
+
+public class PlaygroundUserArgumentResolver implements HandlerMethodArgumentResolver {
+
+    private final PlaygroundUserResolver playgroundUserResolver;
+
+    public PlaygroundUserArgumentResolver(PlaygroundUserResolver playgroundUserResolver) {
+        this.playgroundUserResolver = playgroundUserResolver;
+    }
+
+    @Override
+    public boolean supportsParameter(MethodParameter parameter) {
+        return PlaygroundUser.class.equals(parameter.getParameterType());
+    }
+
+    @Override
+    public Object resolveArgument(MethodParameter parameter, ModelAndViewContainer mavContainer,
+                                  NativeWebRequest webRequest, WebDataBinderFactory binderFactory) {
+        HttpServletRequest request = webRequest.getNativeRequest(HttpServletRequest.class);
+        return playgroundUserResolver.resolve(SecurityContextHolder.getContext().getAuthentication(), request);
+    }
+}
@@ -0,0 +1,106 @@
+package org.nsu.security;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpSession;
+import org.nsu.service.JwtTokenService;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.oauth2.client.OAuth2AuthorizedClient;
+import org.springframework.security.oauth2.client.OAuth2AuthorizedClientService;
+import org.springframework.security.oauth2.client.authentication.OAuth2AuthenticationToken;
+import org.springframework.security.oauth2.core.user.OAuth2User;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.stereotype.Component;
+
+import java.util.Objects;
+
+@Component
+public class PlaygroundUserResolver {
+
+    private static final String ATTRIBUTE_NAME = PlaygroundUser.class.getName();
+
+    private final OAuth2AuthorizedClientService authorizedClientService;
+    private final ObjectProvider<JwtTokenService> jwtTokenService;
+
+    @Value("${security.oauth2.registration-id:github}")
+    private String defaultRegistrationId;
+
+    @Autowired
+    public PlaygroundUserResolver(OAuth2AuthorizedClientService authorizedClientService,
+                                  ObjectProvider<JwtTokenService> jwtTokenService) {
+        this.authorizedClientService = authorizedClientService;
+        this.jwtTokenService = jwtTokenService;
+    }
+
+    public PlaygroundUser resolve(Authentication authentication, HttpServletRequest request) {
+        if (authentication == null || !authentication.isAuthenticated()
+                || authentication instanceof AnonymousAuthenticationToken) {
+            return null;
+        }
+
+        PlaygroundUser cached = (PlaygroundUser) request.getAttribute(ATTRIBUTE_NAME);
+        if (isFor(cached, authentication)) {
+            return cached;
+        }
+        HttpSession session = request.getSession(false);
+        if (session != null) {
+            cached = (PlaygroundUser) session.getAttribute(ATTRIBUTE_NAME);
+            if (isFor(cached, authentication) && cached.hasAccessToken()) {
+                request.setAttribute(ATTRIBUTE_NAME, cached);
+                return cached;
+            }
+        }
+
+        PlaygroundUser user = createUser(authentication);
+        request.setAttribute(ATTRIBUTE_NAME, user);
+        if (session != null && user.hasAccessToken()) {
+            session.setAttribute(ATTRIBUTE_NAME, user);
+        }
+        return user;
+    }
+
+    private PlaygroundUser createUser(Authentication authentication) {
+        String login;
+        String email;
+        String avatarUrl;
+        if (authentication.getPrincipal() instanceof OAuth2User oauth2User) {
+            login = oauth2User.getAttribute("login");
+            email = oauth2User.getAttribute("email");
+            avatarUrl = oauth2User.getAttribute("avatar_url");
+        } else if (authentication.getPrincipal() instanceof Jwt jwt) {
+            login = jwt.getClaimAsString("login");
+            email = jwt.getClaimAsString("email");
+            avatarUrl = jwt.getClaimAsString("avatar_url");
+        } else {
+            login = authentication.getName();
+            email = null;
+            avatarUrl = null;
+        }
+        if (login == null) {
+            login = authentication.getName();
+        }
+        return new PlaygroundUser(login, email, avatarUrl, loadAccessToken(authentication));
+    }
+
+    private String loadAccessToken(Authentication authentication) {
+        JwtTokenService tokens = jwtTokenService.getIfAvailable();
+        if (tokens != null && authentication.getPrincipal() instanceof Jwt jwt) {
+            String accessToken = tokens.getAccessToken(jwt);
+            if (accessToken != null) {
+                return accessToken;
+            }
+        }
+        String registrationId = authentication instanceof OAuth2AuthenticationToken oauth2Token
+                ? oauth2Token.getAuthorizedClientRegistrationId()
+                : defaultRegistrationId;
+        OAuth2AuthorizedClient client = authorizedClientService.loadAuthorizedClient(registrationId, authentication.getName());
+        return client != null ? client.getAccessToken().getTokenValue() : null;
+    }
+
+    private boolean isFor(PlaygroundUser user, Authentication authentication) {
+        return user != null && Objects.equals(user.getLogin(), authentication.getName());
+    }
+}
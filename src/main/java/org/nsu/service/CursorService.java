@@ -0,0 +1,237 @@
+package org.nsu.service;
+
+import jakarta.annotation.PreDestroy;
+import org.nsu.dto.ColumnInfo;
+import org.nsu.dto.QueryRequest;
+import org.nsu.dto.QueryResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+@Service
+public class CursorService {
+
+    public static final String ERROR_CURSOR_LIMIT = "CUR001";
+    public static final String ERROR_CURSOR_NOT_FOUND = "CUR002";
+
+    private static final Logger log = LoggerFactory.getLogger(CursorService.class);
+
+    private final SandboxService sandboxService;
+    private final QueryExecutionService queryExecutionService;
+    private final QuotaService quotaService;
+    private final Map<String, ResultCursor> cursors = new ConcurrentHashMap<>();
+    // Open cursors per user, reserved before a cursor is opened so concurrent opens cannot exceed the limit
+    private final Map<String, Integer> openCounts = new ConcurrentHashMap<>();
+
+    @Value("${cursor.max-per-user:5}")
+    private int maxCursorsPerUser;
+
+    @Value("${cursor.idle-timeout-ms:300000}")
+    private long idleTimeout;
+
+    @Value("${cursor.default-page-size:100}")
+    private int defaultPageSize;
+
+    @Value("${cursor.max-page-size:10000}")
+    private int maxPageSize;
+
+    @Autowired
+    public CursorService(SandboxService sandboxService, QueryExecutionService queryExecutionService,
+                         QuotaService quotaService) {
+        this.sandboxService = sandboxService;
+        this.queryExecutionService = queryExecutionService;
+        this.quotaService = quotaService;
+    }
+
+    public QueryResponse open(String userLogin, QueryRequest request) {
+        long start = System.currentTimeMillis();
+        if (!reserveSlot(userLogin)) {
+            return QueryResponse.builder()
+                    .success(false)
+                    .message("Too many open cursors, close one before opening another (limit " + maxCursorsPerUser + ")")
+                    .errorCode(ERROR_CURSOR_LIMIT)
+                    .build();
+        }
+
+        Connection connection = null;
+        boolean opened = false;
+        try {
+            quotaService.check(userLogin, false);
+            connection = sandboxService.getConnection(userLogin);
+            queryExecutionService.configureForRead(connection);
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("SET LAZY_QUERY_EXECUTION TRUE");
+            }
+            int limit = request.getLimit() != null ? request.getLimit() : 0;
+            PreparedStatement statement = queryExecutionService.prepare(userLogin, connection, request, limit);
+            ResultSet resultSet;
+            try {
+                resultSet = statement.executeQuery();
+            } catch (SQLException e) {
+                statement.close();
+                throw e;
+            }
+
+            ResultCursor cursor = new ResultCursor(
+                    UUID.randomUUID().toString(), userLogin, connection, statement, resultSet,
+                    queryExecutionService.readColumns(resultSet.getMetaData())
+            );
+            cursors.put(cursor.id, cursor);
+            opened = true;
+            return fetchPage(cursor, pageSize(request.getPageSize()), start);
+        } catch (SQLException e) {
+            return queryExecutionService.failure(e, System.currentTimeMillis() - start);
+        } finally {
+            if (!opened) {
+                closeQuietly(connection);
+                releaseSlot(userLogin);
+            }
+        }
+    }
+
+    public QueryResponse fetch(String userLogin, String cursorId, Integer size) {
+        long start = System.currentTimeMillis();
+        ResultCursor cursor = cursors.get(cursorId);
+        if (cursor == null || !Objects.equals(cursor.owner, userLogin)) {
+            return null;
+        }
+        sandboxService.touch(userLogin);
+        return fetchPage(cursor, pageSize(size), start);
+    }
+
+    public boolean close(String userLogin, String cursorId) {
+        ResultCursor cursor = cursors.get(cursorId);
+        if (cursor == null || !Objects.equals(cursor.owner, userLogin)) {
+            return false;
+        }
+        closeCursor(cursor);
+        return true;
+    }
+
+    @Scheduled(fixedDelayString = "${cursor.sweep-interval-ms:30000}")
+    public void closeIdleCursors() {
+        long deadline = System.currentTimeMillis() - idleTimeout;
+        for (ResultCursor cursor : cursors.values()) {
+            if (cursor.lastAccess < deadline) {
+                log.debug("Closing idle cursor {} of user {}", cursor.id, cursor.owner);
+                closeCursor(cursor);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void closeAll() {
+        cursors.values().forEach(this::closeCursor);
+    }
+
+    private QueryResponse fetchPage(ResultCursor cursor, int size, long start) {
+        synchronized (cursor) {
+            if (cursor.closed) {
+                return null;
+            }
+            cursor.lastAccess = System.currentTimeMillis();
+            long cpuStart = quotaService.cpuTime();
+            long resultBytes = 0;
+            try {
+                List<Map<String, Object>> rows = queryExecutionService.readRows(cursor.resultSet, cursor.columns, size);
+                resultBytes = quotaService.estimateBytes(rows);
+                boolean hasMore = rows.size() == size;
+                if (!hasMore) {
+                    closeCursor(cursor);
+                }
+                return QueryResponse.builder()
+                        .success(true)
+                        .message("Fetched " + rows.size() + " rows")
+                        .columns(cursor.columns)
+                        .data(rows)
+                        .rowsAffected(rows.size())
+                        .cursorId(hasMore ? cursor.id : null)
+                        .hasMore(hasMore)
+                        .executionTime(System.currentTimeMillis() - start)
+                        .build();
+            } catch (SQLException e) {
+                closeCursor(cursor);
+                return queryExecutionService.failure(e, System.currentTimeMillis() - start);
+            } finally {
+                quotaService.record(cursor.owner, cpuStart, resultBytes);
+            }
+        }
+    }
+
+    private void closeCursor(ResultCursor cursor) {
+        if (cursors.remove(cursor.id, cursor)) {
+            synchronized (cursor) {
+                cursor.closed = true;
+                closeQuietly(cursor.resultSet);
+                closeQuietly(cursor.statement);
+                closeQuietly(cursor.connection);
+            }
+            releaseSlot(cursor.owner);
+        }
+    }
+
+    private boolean reserveSlot(String userLogin) {
+        if (openCounts.merge(userLogin, 1, Integer::sum) <= maxCursorsPerUser) {
+            return true;
+        }
+        releaseSlot(userLogin);
+        return false;
+    }
+
+    private void releaseSlot(String userLogin) {
+        openCounts.computeIfPresent(userLogin, (user, count) -> count > 1 ? count - 1 : null);
+    }
+
+    private int pageSize(Integer requested) {
+        if (requested == null || requested <= 0) {
+            return defaultPageSize;
+        }
+        return Math.min(requested, maxPageSize);
+    }
+
+    private void closeQuietly(AutoCloseable closeable) {
+        if (closeable == null) {
+            return;
+        }
+        try {
+            closeable.close();
+        } catch (Exception e) {
+            log.debug("Failed to close cursor resource: {}", e.getMessage());
+        }
+    }
+
+    private static class ResultCursor {
+        private final String id;
+        private final String owner;
+        private final Connection connection;
+        private final PreparedStatement statement;
+        private final ResultSet resultSet;
+        private final List<ColumnInfo> columns;
+        private volatile long lastAccess = System.currentTimeMillis();
+        private boolean closed;
+
+        private ResultCursor(String id, String owner, Connection connection, PreparedStatement statement,
+                             ResultSet resultSet, List<ColumnInfo> columns) {
+            this.id = id;
+            this.owner = owner;
+            this.connection = connection;
+            this.statement = statement;
+            this.resultSet = resultSet;
+            this.columns = columns;
+        }
+    }
+}
@@ -0,0 +1,289 @@
+package org.nsu.service;
+
+import org.nsu.dto.ExplainResponse;
+import org.nsu.dto.PlanNode;
+import org.nsu.dto.QueryRequest;
+import org.nsu.service.explain.ExplainPlanParser;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Produces H2 execution plans as trees, flags full scans of large tables and
+ * suggests indexes from the predicates on them. Plans are cached by sandbox,
+ * schema version and normalized query text.
+ */
+@Service
+public class ExplainService {
+
+    public static final String ERROR_NOT_EXPLAINABLE = "SQL006";
+
+    private final SandboxService sandboxService;
+    private final StatementClassifier statementClassifier;
+    private final QueryExecutionService queryExecutionService;
+    private final QuotaService quotaService;
+    private final LinkedHashMap<String, CachedPlan> plans;
+
+    @Value("${explain.full-scan-threshold-rows:1000}")
+    private long fullScanThreshold;
+
+    @Value("${explain.cache.ttl-ms:300000}")
+    private long cacheTtl;
+
+    @Value("${explain.count-timeout-seconds:5}")
+    private int countTimeout;
+
+    @Autowired
+    public ExplainService(SandboxService sandboxService,
+                          StatementClassifier statementClassifier,
+                          QueryExecutionService queryExecutionService,
+                          QuotaService quotaService,
+                          @Value("${explain.cache.max-entries:1000}") int maxEntries) {
+        this.sandboxService = sandboxService;
+        this.statementClassifier = statementClassifier;
+        this.queryExecutionService = queryExecutionService;
+        this.quotaService = quotaService;
+        this.plans = new LinkedHashMap<>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedPlan> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    public ExplainResponse explain(String userLogin, QueryRequest request) {
+        // EXPLAIN ANALYZE runs the statement, and a DELETE would really delete
+        if ("ANALYZE".equals(statementClassifier.leadingKeyword(request.getQuery()))) {
+            return ExplainResponse.failure("EXPLAIN ANALYZE executes the statement and is not supported",
+                    ERROR_NOT_EXPLAINABLE);
+        }
+        if (!statementClassifier.isExplainable(request.getQuery())) {
+            return ExplainResponse.failure("Only a single SELECT, INSERT, UPDATE, DELETE or MERGE statement has a plan",
+                    ERROR_NOT_EXPLAINABLE);
+        }
+        try {
+            quotaService.check(userLogin, false);
+        } catch (QuotaExceededException e) {
+            return ExplainResponse.failure(e.getMessage(), e.getQuotaErrorCode());
+        }
+
+        long cpuStart = quotaService.cpuTime();
+        try (Connection connection = sandboxService.getConnection(userLogin)) {
+            // Nothing here should write; whatever might is rolled back
+            queryExecutionService.configureForRead(connection);
+            try {
+                return explain(userLogin, connection, request);
+            } finally {
+                connection.rollback();
+            }
+        } catch (SQLException e) {
+            return ExplainResponse.failure(e.getMessage(), queryExecutionService.failure(e, 0).getErrorCode());
+        } finally {
+            quotaService.record(userLogin, cpuStart, 0);
+        }
+    }
+
+    private ExplainResponse explain(String userLogin, Connection connection, QueryRequest request)
+            throws SQLException {
+        String key = sandboxService.getSandboxName(userLogin) + '\u0000'
+                + sandboxService.getSchemaVersion(userLogin) + '\u0000'
+                + normalize(request.getQuery());
+        CachedPlan cached = lookup(key);
+        if (cached != null) {
+            return cached.toResponse(true);
+        }
+
+        String plan = readPlan(userLogin, connection, request);
+        List<PlanNode> accesses = new ArrayList<>();
+        PlanNode root = ExplainPlanParser.parse(plan, operation(request.getQuery()), accesses);
+        CachedPlan result = analyze(connection, plan, root, accesses);
+        synchronized (plans) {
+            plans.put(key, result);
+        }
+        return result.toResponse(false);
+    }
+
+    private String readPlan(String userLogin, Connection connection, QueryRequest request) throws SQLException {
+        QueryRequest explain = new QueryRequest("EXPLAIN " + request.getQuery(), request.getParameters());
+        explain.setTimeout(request.getTimeout());
+        try (PreparedStatement statement = queryExecutionService.prepare(userLogin, connection, explain, 0);
+             ResultSet resultSet = statement.executeQuery()) {
+            StringBuilder plan = new StringBuilder();
+            while (resultSet.next()) {
+                if (plan.length() > 0) {
+                    plan.append('\n');
+                }
+                plan.append(resultSet.getString(1));
+            }
+            return plan.toString();
+        }
+    }
+
+    private CachedPlan analyze(Connection connection, String plan, PlanNode root, List<PlanNode> accesses) {
+        Map<String, Long> tableSizes = new HashMap<>();
+        Map<String, Map<String, Boolean>> predicates = ExplainPlanParser.predicateColumns(plan);
+        List<String> warnings = new ArrayList<>();
+        List<String> suggestions = new ArrayList<>();
+
+        for (int i = 0; i < accesses.size(); i++) {
+            PlanNode node = accesses.get(i);
+            if (!ExplainPlanParser.ACCESS_SCAN.equals(node.getAccess())
+                    && !ExplainPlanParser.ACCESS_INDEX_SCAN.equals(node.getAccess())) {
+                continue;
+            }
+            Long rows = tableSizes.computeIfAbsent(node.getTable(), table -> countRows(connection, table));
+            node.setEstimatedRows(rows);
+            if (rows == null || rows < fullScanThreshold) {
+                continue;
+            }
+            node.setFullScan(true);
+
+            String warning = "Full scan of " + node.getTable() + " (" + rows + " rows)";
+            if (i > 0) {
+                warning += ", repeated for every row of " + accesses.get(i - 1).getTable();
+            }
+            warnings.add(warning);
+
+            String qualifier = (node.getAlias() != null ? node.getAlias() : shortName(node.getTable()))
+                    .toUpperCase(Locale.ROOT);
+            String index = suggestIndex(node.getTable(), predicates.get(qualifier));
+            if (index != null) {
+                suggestions.add(index);
+            } else {
+                warnings.add("No condition on " + node.getTable() + " can use an index, consider filtering it");
+            }
+        }
+        return new CachedPlan(plan, root, warnings, suggestions, System.currentTimeMillis());
+    }
+
+    // Equality columns lead, followed by at most one range column
+    private String suggestIndex(String table, Map<String, Boolean> columns) {
+        if (columns == null || columns.isEmpty()) {
+            return null;
+        }
+        List<String> indexColumns = new ArrayList<>();
+        columns.forEach((column, equality) -> {
+            if (equality && indexColumns.size() < 3) {
+                indexColumns.add(column);
+            }
+        });
+        columns.entrySet().stream()
+                .filter(entry -> !entry.getValue())
+                .findFirst()
+                .ifPresent(entry -> indexColumns.add(entry.getKey()));
+
+        List<String> quoted = new ArrayList<>(indexColumns.size());
+        for (String column : indexColumns) {
+            quoted.add("\"" + column.replace("\"", "\"\"") + "\"");
+        }
+        return "CREATE INDEX ON " + ExplainPlanParser.quote(table) + " (" + String.join(", ", quoted) + ")";
+    }
+
+    private Long countRows(Connection connection, String table) {
+        try (Statement statement = connection.createStatement()) {
+            statement.setQueryTimeout(countTimeout);
+            try (ResultSet resultSet = statement.executeQuery("SELECT COUNT(*) FROM " + ExplainPlanParser.quote(table))) {
+                return resultSet.next() ? resultSet.getLong(1) : null;
+            }
+        } catch (SQLException e) {
+            return null;
+        }
+    }
+
+    private CachedPlan lookup(String key) {
+        synchronized (plans) {
+            CachedPlan cached = plans.get(key);
+            if (cached == null) {
+                return null;
+            }
+            // Row counts drift with data changes, which do not bump the schema version
+            if (System.currentTimeMillis() - cached.createdAt > cacheTtl) {
+                plans.remove(key);
+                return null;
+            }
+            return cached;
+        }
+    }
+
+    private static String shortName(String table) {
+        int dot = table.lastIndexOf('.');
+        return dot < 0 ? table : table.substring(dot + 1);
+    }
+
+    private static String operation(String sql) {
+        String trimmed = sql.stripLeading();
+        int end = 0;
+        while (end < trimmed.length() && Character.isLetter(trimmed.charAt(end))) {
+            end++;
+        }
+        return trimmed.substring(0, end).toUpperCase(Locale.ROOT);
+    }
+
+    // Collapses whitespace outside string literals and drops a trailing semicolon
+    private static String normalize(String sql) {
+        StringBuilder result = new StringBuilder(sql.length());
+        boolean inString = false;
+        boolean pendingSpace = false;
+        for (int i = 0; i < sql.length(); i++) {
+            char c = sql.charAt(i);
+            if (!inString && Character.isWhitespace(c)) {
+                pendingSpace = result.length() > 0;
+                continue;
+            }
+            if (pendingSpace) {
+                result.append(' ');
+                pendingSpace = false;
+            }
+            if (c == '\'') {
+                inString = !inString;
+            }
+            result.append(c);
+        }
+        int length = result.length();
+        if (length > 0 && result.charAt(length - 1) == ';') {
+            result.setLength(length - 1);
+        }
+        return result.toString();
+    }
+
+    private static class CachedPlan {
+        private final String plan;
+        private final PlanNode root;
+        private final List<String> warnings;
+        private final List<String> suggestedIndexes;
+        private final long createdAt;
+
+        private CachedPlan(String plan, PlanNode root, List<String> warnings, List<String> suggestedIndexes,
+                           long createdAt) {
+            this.plan = plan;
+            this.root = root;
+            this.warnings = List.copyOf(warnings);
+            this.suggestedIndexes = List.copyOf(suggestedIndexes);
+            this.createdAt = createdAt;
+        }
+
+        private ExplainResponse toResponse(boolean cached) {
+            ExplainResponse response = new ExplainResponse();
+            response.setSuccess(true);
+            response.setMessage("Plan produced successfully");
+            response.setPlan(plan);
+            response.setRoot(root);
+            response.setWarnings(warnings);
+            response.setSuggestedIndexes(suggestedIndexes);
+            response.setCached(cached);
+            return response;
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package org.nsu.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Content-addressed LRU cache of Git blobs. A SHA always names the same bytes,
+ * so entries never go stale and are shared between users and forks.
+ */
+@Component
+public class GitBlobCache {
+
+    private final long maxBytes;
+    private final int maxBlobBytes;
+    private final LinkedHashMap<String, byte[]> blobs = new LinkedHashMap<>(64, 0.75f, true);
+    private long totalBytes;
+    private long hits;
+    private long misses;
+
+    public GitBlobCache(@Value("${github.blob-cache.max-bytes:67108864}") long maxBytes,
+                        @Value("${github.blob-cache.max-blob-bytes:4194304}") int maxBlobBytes) {
+        this.maxBytes = maxBytes;
+        this.maxBlobBytes = maxBlobBytes;
+    }
+
+    public byte[] get(String sha, Supplier<byte[]> loader) {
+        synchronized (this) {
+            byte[] cached = blobs.get(sha);
+            if (cached != null) {
+                hits++;
+                return cached;
+            }
+            misses++;
+        }
+        byte[] loaded = loader.get();
+        put(sha, loaded);
+        return loaded;
+    }
+
+    public synchronized Map<String, Object> getStats() {
+        return Map.of(
+                "entries", blobs.size(),
+                "bytes", totalBytes,
+                "maxBytes", maxBytes,
+                "hits", hits,
+                "misses", misses
+        );
+    }
+
+    private synchronized void put(String sha, byte[] content) {
+        if (content.length > maxBlobBytes || blobs.containsKey(sha)) {
+            return;
+        }
+        blobs.put(sha, content);
+        totalBytes += content.length;
+        Iterator<Map.Entry<String, byte[]>> eldest = blobs.entrySet().iterator();
+        while (totalBytes > maxBytes && eldest.hasNext()) {
+            totalBytes -= eldest.next().getValue().length;
+            eldest.remove();
+        }
+    }
+}
@@ -1,15 +1,24 @@
 package org.nsu.service;
 
+import org.nsu.security.PlaygroundUser;
+import org.nsu.service.github.GitHubCircuitBreaker;
+import org.nsu.service.github.GitHubUnavailableException;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.oauth2.core.user.OAuth2User;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
 import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.RestTemplate;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.ResponseEntity;
 
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.List;
 
@@ -20,34 +29,24 @@ public class GitHubService {
     private String githubApiBaseUrl;
 
     private final RestTemplate restTemplate;
+    private final GitHubCircuitBreaker circuitBreaker;
 
-    public GitHubService() {
-        this.restTemplate = new RestTemplate();
+    @Autowired
+    public GitHubService(GitHubCircuitBreaker circuitBreaker,
+                         @Value("${github.api.connect-timeout-ms:2000}") int connectTimeoutMs,
+                         @Value("${github.api.read-timeout-ms:3000}") int readTimeoutMs) {
+        // The JDK client, unlike HttpURLConnection, supports PATCH for moving branch refs
+        HttpClient httpClient = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofMillis(connectTimeoutMs))
+                .build();
+        JdkClientHttpRequestFactory requestFactory = new JdkClientHttpRequestFactory(httpClient);
+        requestFactory.setReadTimeout(readTimeoutMs);
+        this.restTemplate = new RestTemplate(requestFactory);
+        this.circuitBreaker = circuitBreaker;
     }
 
-    public String getUserLogin(Authentication authentication) {
-        if (authentication != null && authentication.getPrincipal() instanceof OAuth2User oauth2User) {
-            return oauth2User.getAttribute("login");
-        }
-        return null;
-    }
-
-    public String getUserEmail(Authentication authentication) {
-        if (authentication != null && authentication.getPrincipal() instanceof OAuth2User oauth2User) {
-            return oauth2User.getAttribute("email");
-        }
-        return null;
-    }
-
-    public String getUserAvatarUrl(Authentication authentication) {
-        if (authentication != null && authentication.getPrincipal() instanceof OAuth2User oauth2User) {
-            return oauth2User.getAttribute("avatar_url");
-        }
-        return null;
-    }
-
-    public List<Map<String, Object>> getUserRepositories(Authentication authentication) {
-        String accessToken = getAccessToken(authentication);
+    public List<Map<String, Object>> getUserRepositories(PlaygroundUser user) {
+        String accessToken = user.getAccessToken();
         if (accessToken == null) {
             return List.of();
         }
@@ -57,20 +56,22 @@ public class GitHubService {
         HttpEntity<String> entity = new HttpEntity<>(headers);
 
         try {
-            ResponseEntity<List> response = restTemplate.exchange(
+            ResponseEntity<List> response = circuitBreaker.call("getUserRepositories", () -> restTemplate.exchange(
                     githubApiBaseUrl + "/user/repos",
                     HttpMethod.GET,
                     entity,
                     List.class
-            );
+            ));
             return response.getBody();
+        } catch (GitHubUnavailableException e) {
+            throw e;
         } catch (Exception e) {
             return List.of();
         }
     }
 
-    public Map<String, Object> createRepository(Authentication authentication, String repositoryName, String description) {
-        String accessToken = getAccessToken(authentication);
+    public Map<String, Object> createRepository(PlaygroundUser user, String repositoryName, String description) {
+        String accessToken = user.getAccessToken();
         if (accessToken == null) {
             return Map.of("error", "No access token available");
         }
@@ -89,21 +90,28 @@ public class GitHubService {
         HttpEntity<Map<String, Object>> entity = new HttpEntity<>(requestBody, headers);
 
         try {
-            ResponseEntity<Map> response = restTemplate.exchange(
+            ResponseEntity<Map> response = circuitBreaker.call("createRepository", () -> restTemplate.exchange(
                     githubApiBaseUrl + "/user/repos",
                     HttpMethod.POST,
                     entity,
                     Map.class
-            );
+            ));
             return response.getBody();
+        } catch (GitHubUnavailableException e) {
+            throw e;
         } catch (Exception e) {
             return Map.of("error", "Failed to create repository: " + e.getMessage());
         }
     }
 
-    public Map<String, Object> commitFile(Authentication authentication, String owner, String repo, 
+    public Map<String, Object> commitFile(PlaygroundUser user, String owner, String repo,
                                          String path, String content, String commitMessage) {
-        String accessToken = getAccessToken(authentication);
+        return commitFile(user, owner, repo, path, content, commitMessage, null);
+    }
+
+    public Map<String, Object> commitFile(PlaygroundUser user, String owner, String repo,
+                                         String path, String content, String commitMessage, String sha) {
+        String accessToken = user.getAccessToken();
         if (accessToken == null) {
             return Map.of("error", "No access token available");
         }
@@ -112,31 +120,204 @@ public class GitHubService {
         headers.setBearerAuth(accessToken);
         headers.set("Content-Type", "application/json");
 
-        Map<String, Object> requestBody = Map.of(
+        Map<String, Object> requestBody = new HashMap<>(Map.of(
                 "message", commitMessage,
-                "content", java.util.Base64.getEncoder().encodeToString(content.getBytes()),
+                "content", Base64.getEncoder().encodeToString(content.getBytes(StandardCharsets.UTF_8)),
                 "branch", "main"
-        );
+        ));
+        if (sha != null) {
+            requestBody.put("sha", sha);
+        }
 
         HttpEntity<Map<String, Object>> entity = new HttpEntity<>(requestBody, headers);
 
         try {
-            ResponseEntity<Map> response = restTemplate.exchange(
+            ResponseEntity<Map> response = circuitBreaker.call("commitFile", () -> restTemplate.exchange(
                     String.format("%s/repos/%s/%s/contents/%s", githubApiBaseUrl, owner, repo, path),
                     HttpMethod.PUT,
                     entity,
                     Map.class
-            );
+            ));
             return response.getBody();
+        } catch (GitHubUnavailableException e) {
+            throw e;
         } catch (Exception e) {
             return Map.of("error", "Failed to commit file: " + e.getMessage());
         }
     }
 
-    private String getAccessToken(Authentication authentication) {
-        if (authentication != null && authentication.getPrincipal() instanceof OAuth2User oauth2User) {
-            return oauth2User.getAttribute("access_token");
+    public Map<String, Object> deleteFile(PlaygroundUser user, String owner, String repo,
+                                         String path, String commitMessage, String sha) {
+        String accessToken = user.getAccessToken();
+        if (accessToken == null) {
+            return Map.of("error", "No access token available");
+        }
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setBearerAuth(accessToken);
+        headers.set("Content-Type", "application/json");
+
+        Map<String, Object> requestBody = Map.of(
+                "message", commitMessage,
+                "sha", sha,
+                "branch", "main"
+        );
+
+        HttpEntity<Map<String, Object>> entity = new HttpEntity<>(requestBody, headers);
+
+        try {
+            ResponseEntity<Map> response = circuitBreaker.call("deleteFile", () -> restTemplate.exchange(
+                    String.format("%s/repos/%s/%s/contents/%s", githubApiBaseUrl, owner, repo, path),
+                    HttpMethod.DELETE,
+                    entity,
+                    Map.class
+            ));
+            return response.getBody() != null ? response.getBody() : Map.of();
+        } catch (GitHubUnavailableException e) {
+            throw e;
+        } catch (Exception e) {
+            return Map.of("error", "Failed to delete file: " + e.getMessage());
+        }
+    }
+
+    public List<Map<String, Object>> listDirectory(PlaygroundUser user, String owner, String repo, String path) {
+        String accessToken = user.getAccessToken();
+        if (accessToken == null) {
+            throw new IllegalStateException("No access token available");
+        }
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setBearerAuth(accessToken);
+        HttpEntity<String> entity = new HttpEntity<>(headers);
+
+        try {
+            ResponseEntity<List> response = circuitBreaker.call("listDirectory", () -> restTemplate.exchange(
+                    String.format("%s/repos/%s/%s/contents/%s", githubApiBaseUrl, owner, repo, path),
+                    HttpMethod.GET,
+                    entity,
+                    List.class
+            ));
+            return response.getBody() != null ? response.getBody() : List.of();
+        } catch (HttpClientErrorException.NotFound e) {
+            return List.of();
+        }
+    }
+
+    public Map<String, Object> getTree(PlaygroundUser user, String owner, String repo, String ref) {
+        String accessToken = user.getAccessToken();
+        if (accessToken == null) {
+            return Map.of("error", "No access token available");
+        }
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setBearerAuth(accessToken);
+        HttpEntity<String> entity = new HttpEntity<>(headers);
+
+        try {
+            ResponseEntity<Map> response = circuitBreaker.call("getTree", () -> restTemplate.exchange(
+                    String.format("%s/repos/%s/%s/git/trees/%s?recursive=1", githubApiBaseUrl, owner, repo, ref),
+                    HttpMethod.GET,
+                    entity,
+                    Map.class
+            ));
+            return response.getBody();
+        } catch (GitHubUnavailableException e) {
+            throw e;
+        } catch (Exception e) {
+            return Map.of("error", "Failed to fetch repository tree: " + e.getMessage());
+        }
+    }
+
+    public byte[] getBlob(PlaygroundUser user, String owner, String repo, String sha) {
+        String accessToken = user.getAccessToken();
+        if (accessToken == null) {
+            throw new IllegalStateException("No access token available");
+        }
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setBearerAuth(accessToken);
+        headers.set("Accept", "application/vnd.github.raw");
+        HttpEntity<String> entity = new HttpEntity<>(headers);
+
+        ResponseEntity<byte[]> response = circuitBreaker.call("getBlob", () -> restTemplate.exchange(
+                String.format("%s/repos/%s/%s/git/blobs/%s", githubApiBaseUrl, owner, repo, sha),
+                HttpMethod.GET,
+                entity,
+                byte[].class
+        ));
+        return response.getBody() != null ? response.getBody() : new byte[0];
+    }
+
+    public Map<String, Object> getRef(PlaygroundUser user, String owner, String repo, String branch) {
+        return exchangeGitData(user, "getRef", HttpMethod.GET,
+                String.format("%s/repos/%s/%s/git/ref/heads/%s", githubApiBaseUrl, owner, repo, branch), null);
+    }
+
+    public Map<String, Object> getCommit(PlaygroundUser user, String owner, String repo, String sha) {
+        return exchangeGitData(user, "getCommit", HttpMethod.GET,
+                String.format("%s/repos/%s/%s/git/commits/%s", githubApiBaseUrl, owner, repo, sha), null);
+    }
+
+    public Map<String, Object> createBlob(PlaygroundUser user, String owner, String repo, byte[] content) {
+        Map<String, Object> requestBody = Map.of(
+                "content", Base64.getEncoder().encodeToString(content),
+                "encoding", "base64"
+        );
+        return exchangeGitData(user, "createBlob", HttpMethod.POST,
+                String.format("%s/repos/%s/%s/git/blobs", githubApiBaseUrl, owner, repo), requestBody);
+    }
+
+    /**
+     * Entries with a null {@code sha} delete that path from {@code baseTree}.
+     */
+    public Map<String, Object> createTree(PlaygroundUser user, String owner, String repo, String baseTree,
+                                          List<Map<String, Object>> entries) {
+        Map<String, Object> requestBody = new HashMap<>();
+        requestBody.put("base_tree", baseTree);
+        requestBody.put("tree", entries);
+        return exchangeGitData(user, "createTree", HttpMethod.POST,
+                String.format("%s/repos/%s/%s/git/trees", githubApiBaseUrl, owner, repo), requestBody);
+    }
+
+    public Map<String, Object> createCommit(PlaygroundUser user, String owner, String repo, String message,
+                                            String tree, String parent) {
+        Map<String, Object> requestBody = Map.of(
+                "message", message,
+                "tree", tree,
+                "parents", List.of(parent)
+        );
+        return exchangeGitData(user, "createCommit", HttpMethod.POST,
+                String.format("%s/repos/%s/%s/git/commits", githubApiBaseUrl, owner, repo), requestBody);
+    }
+
+    public Map<String, Object> updateRef(PlaygroundUser user, String owner, String repo, String branch, String sha) {
+        Map<String, Object> requestBody = Map.of(
+                "sha", sha,
+                "force", false
+        );
+        return exchangeGitData(user, "updateRef", HttpMethod.PATCH,
+                String.format("%s/repos/%s/%s/git/refs/heads/%s", githubApiBaseUrl, owner, repo, branch), requestBody);
+    }
+
+    // Like getBlob, throws instead of returning an error map, so a multi-step commit stops at the first failure
+    private Map<String, Object> exchangeGitData(PlaygroundUser user, String operation, HttpMethod method, String url,
+                                                Map<String, Object> requestBody) {
+        String accessToken = user.getAccessToken();
+        if (accessToken == null) {
+            throw new IllegalStateException("No access token available");
         }
-        return null;
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setBearerAuth(accessToken);
+        headers.set("Content-Type", "application/json");
+        HttpEntity<Map<String, Object>> entity = new HttpEntity<>(requestBody, headers);
+
+        ResponseEntity<Map> response = circuitBreaker.call(operation, () -> restTemplate.exchange(
+                url,
+                method,
+                entity,
+                Map.class
+        ));
+        return response.getBody() != null ? response.getBody() : Map.of();
     }
-}
\ No newline at end of file
+}
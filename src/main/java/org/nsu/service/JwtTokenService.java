@@ -0,0 +1,184 @@
+package org.nsu.service;
+
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseCookie;
+import org.springframework.security.oauth2.core.user.OAuth2User;
+import org.springframework.security.oauth2.jose.jws.MacAlgorithm;
+import org.springframework.security.oauth2.jwt.JwsHeader;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtClaimsSet;
+import org.springframework.security.oauth2.jwt.JwtEncoder;
+import org.springframework.security.oauth2.jwt.JwtEncoderParameters;
+import org.springframework.security.oauth2.server.resource.web.BearerTokenResolver;
+import org.springframework.security.oauth2.server.resource.web.DefaultBearerTokenResolver;
+import org.springframework.stereotype.Service;
+
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Map;
+
+@Service
+@ConditionalOnProperty(name = "security.session-mode", havingValue = "jwt")
+public class JwtTokenService implements BearerTokenResolver {
+
+    public static final String CLAIM_LOGIN = "login";
+    public static final String CLAIM_EMAIL = "email";
+    public static final String CLAIM_AVATAR_URL = "avatar_url";
+    // The GitHub access token, encrypted: the JWT itself is only signed
+    public static final String CLAIM_ACCESS_TOKEN = "gh_token";
+
+    private static final int IV_BYTES = 12;
+    private static final int TAG_BITS = 128;
+
+    private final JwtEncoder jwtEncoder;
+    private final SecretKey accessTokenKey;
+    private final SecureRandom random = new SecureRandom();
+    private final DefaultBearerTokenResolver headerTokenResolver = new DefaultBearerTokenResolver();
+
+    @Value("${security.jwt.issuer:sql-playground}")
+    private String issuer;
+
+    @Value("${security.jwt.ttl-seconds:900}")
+    private long ttlSeconds;
+
+    @Value("${security.jwt.cookie-name:PLAYGROUND_TOKEN}")
+    private String cookieName;
+
+    /**
+     * The access token key is derived from the signing key, so every node
+     * sharing {@code security.jwt.secret} can read the token back.
+     */
+    @Autowired
+    public JwtTokenService(JwtEncoder jwtEncoder, SecretKey jwtSigningKey) {
+        this.jwtEncoder = jwtEncoder;
+        this.accessTokenKey = deriveKey(jwtSigningKey, "github-access-token");
+    }
+
+    /**
+     * Issues the token for a signed-in user, carrying their GitHub access
+     * token so no node has to keep it.
+     */
+    public String issueToken(OAuth2User user, String accessToken) {
+        Instant now = Instant.now();
+        JwtClaimsSet.Builder claims = JwtClaimsSet.builder()
+                .issuer(issuer)
+                .subject(user.getName())
+                .issuedAt(now)
+                .expiresAt(now.plusSeconds(ttlSeconds));
+        copyClaim(user.getAttributes(), claims, CLAIM_LOGIN);
+        copyClaim(user.getAttributes(), claims, CLAIM_EMAIL);
+        copyClaim(user.getAttributes(), claims, CLAIM_AVATAR_URL);
+        if (accessToken != null) {
+            claims.claim(CLAIM_ACCESS_TOKEN, encrypt(accessToken));
+        }
+
+        JwsHeader header = JwsHeader.with(MacAlgorithm.HS256).build();
+        return jwtEncoder.encode(JwtEncoderParameters.from(header, claims.build())).getTokenValue();
+    }
+
+    public void writeTokenCookie(String token, HttpServletRequest request, HttpServletResponse response) {
+        ResponseCookie cookie = ResponseCookie.from(cookieName, token)
+                .httpOnly(true)
+                .secure(request.isSecure())
+                .sameSite("Lax")
+                .path("/")
+                .maxAge(Duration.ofSeconds(ttlSeconds))
+                .build();
+        response.addHeader(HttpHeaders.SET_COOKIE, cookie.toString());
+    }
+
+    public long getTtlSeconds() {
+        return ttlSeconds;
+    }
+
+    public String getCookieName() {
+        return cookieName;
+    }
+
+    /**
+     * The GitHub access token carried by {@code jwt}, or null if it has none
+     * or it was not encrypted with this node's key.
+     */
+    public String getAccessToken(Jwt jwt) {
+        String encrypted = jwt.getClaimAsString(CLAIM_ACCESS_TOKEN);
+        if (encrypted == null) {
+            return null;
+        }
+        try {
+            byte[] sealed = Base64.getUrlDecoder().decode(encrypted);
+            if (sealed.length <= IV_BYTES) {
+                return null;
+            }
+            Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+            cipher.init(Cipher.DECRYPT_MODE, accessTokenKey, new GCMParameterSpec(TAG_BITS, sealed, 0, IV_BYTES));
+            byte[] plain = cipher.doFinal(sealed, IV_BYTES, sealed.length - IV_BYTES);
+            return new String(plain, StandardCharsets.UTF_8);
+        } catch (GeneralSecurityException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public String resolve(HttpServletRequest request) {
+        String token = headerTokenResolver.resolve(request);
+        if (token != null) {
+            return token;
+        }
+        Cookie[] cookies = request.getCookies();
+        if (cookies != null) {
+            for (Cookie cookie : cookies) {
+                if (cookieName.equals(cookie.getName()) && !cookie.getValue().isBlank()) {
+                    return cookie.getValue();
+                }
+            }
+        }
+        return null;
+    }
+
+    private String encrypt(String accessToken) {
+        byte[] iv = new byte[IV_BYTES];
+        random.nextBytes(iv);
+        try {
+            Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+            cipher.init(Cipher.ENCRYPT_MODE, accessTokenKey, new GCMParameterSpec(TAG_BITS, iv));
+            byte[] encrypted = cipher.doFinal(accessToken.getBytes(StandardCharsets.UTF_8));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(
+                    ByteBuffer.allocate(IV_BYTES + encrypted.length).put(iv).put(encrypted).array());
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Failed to encrypt the access token", e);
+        }
+    }
+
+    private static SecretKey deriveKey(SecretKey key, String purpose) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(key);
+            return new SecretKeySpec(mac.doFinal(purpose.getBytes(StandardCharsets.UTF_8)), "AES");
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Failed to derive the access token key", e);
+        }
+    }
+
+    private void copyClaim(Map<String, Object> attributes, JwtClaimsSet.Builder claims, String name) {
+        Object value = attributes.get(name);
+        if (value != null) {
+            claims.claim(name, value);
+        }
+    }
+}
@@ -0,0 +1,362 @@
+package org.nsu.service;
+
+import org.h2.util.ScriptReader;
+import org.nsu.dto.ColumnInfo;
+import org.nsu.dto.QueryRequest;
+import org.nsu.dto.QueryResponse;
+import org.nsu.service.binding.ParameterBinder;
+import org.nsu.service.binding.ParameterBindingException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Isolation;
+
+import java.io.StringReader;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+@Service
+public class QueryExecutionService {
+
+    public static final String ERROR_SQL = "SQL001";
+    public static final String ERROR_TIMEOUT = "SQL002";
+    public static final String ERROR_DISK_QUOTA = "SQL003";
+    public static final String ERROR_NOT_READ_ONLY = "SQL004";
+    public static final String ERROR_DIFF = "SQL005";
+    public static final String ERROR_FORBIDDEN = "SQL007";
+
+    private static final String SQL_STATE_DISK_FULL = "53100";
+
+    private static final Logger log = LoggerFactory.getLogger(QueryExecutionService.class);
+
+    private final SandboxService sandboxService;
+    private final StatementClassifier statementClassifier;
+    private final ResultDiffService resultDiffService;
+    private final QuotaService quotaService;
+    private final QueryProgressService queryProgressService;
+    private final ParameterBinder parameterBinder;
+    private final Executor batchExecutor;
+
+    @Value("${sandbox.query.default-timeout:30}")
+    private int defaultTimeout;
+
+    @Value("${sandbox.query.default-limit:1000}")
+    private int defaultLimit;
+
+    // A name such as READ_COMMITTED or SERIALIZABLE; DEFAULT keeps the connection's own level
+    @Value("${sandbox.query.read-isolation:READ_COMMITTED}")
+    private Isolation readIsolation;
+
+    @Autowired
+    public QueryExecutionService(SandboxService sandboxService,
+                                 StatementClassifier statementClassifier,
+                                 ResultDiffService resultDiffService,
+                                 QuotaService quotaService,
+                                 QueryProgressService queryProgressService,
+                                 ParameterBinder parameterBinder,
+                                 @Qualifier("queryBatchExecutor") Executor batchExecutor) {
+        this.sandboxService = sandboxService;
+        this.statementClassifier = statementClassifier;
+        this.resultDiffService = resultDiffService;
+        this.quotaService = quotaService;
+        this.queryProgressService = queryProgressService;
+        this.parameterBinder = parameterBinder;
+        this.batchExecutor = batchExecutor;
+    }
+
+    public QueryResponse execute(String userLogin, QueryRequest request) {
+        QueryProgressService.Tracker progress = queryProgressService.start(userLogin, request.getQueryId());
+        QueryResponse response = execute(userLogin, request, progress);
+        queryProgressService.complete(progress, response);
+        return response;
+    }
+
+    private QueryResponse execute(String userLogin, QueryRequest request, QueryProgressService.Tracker progress) {
+        long start = System.currentTimeMillis();
+        StatementType type = statementClassifier.classify(request.getQuery());
+        boolean growsSandbox = type != StatementType.READ && !statementClassifier.releasesSpace(request.getQuery());
+        try {
+            quotaService.check(userLogin, growsSandbox);
+        } catch (QuotaExceededException e) {
+            return failure(e, 0);
+        }
+
+        long cpuStart = quotaService.cpuTime();
+        long resultBytes = 0;
+        try (Connection connection = sandboxService.getConnection(userLogin)) {
+            // A growing DML statement runs in a transaction so it can be undone if it overshoots the size limit
+            boolean checkAfterWrite = type == StatementType.WRITE && growsSandbox;
+            if (type == StatementType.READ) {
+                configureForRead(connection);
+            } else if (growsSandbox) {
+                sandboxService.checkDiskQuota(userLogin);
+                if (checkAfterWrite) {
+                    connection.setAutoCommit(false);
+                }
+            }
+
+            try (PreparedStatement statement = prepare(userLogin, connection, request, getLimit(request))) {
+                progress.setPhase(QueryProgressService.PHASE_EXECUTING);
+                boolean hasResultSet;
+                // DDL commits as it goes, so the watch is what stops it at the size limit
+                try (QuotaService.SizeWatch watch = growsSandbox ? quotaService.watch(userLogin, statement) : null) {
+                    try {
+                        hasResultSet = statement.execute();
+                    } catch (SQLException e) {
+                        if (watch != null) {
+                            watch.checkExceeded();
+                        }
+                        throw e;
+                    }
+                }
+                if (checkAfterWrite) {
+                    quotaService.checkAfterWrite(userLogin, connection);
+                    connection.commit();
+                }
+                if (type != StatementType.READ) {
+                    sandboxService.markModified(userLogin);
+                    quotaService.markSandboxModified(userLogin);
+                }
+                if (type == StatementType.DDL) {
+                    sandboxService.markSchemaChanged(userLogin);
+                }
+
+                QueryResponse.QueryResponseBuilder builder = QueryResponse.builder().success(true);
+                if (hasResultSet) {
+                    try (ResultSet resultSet = statement.getResultSet()) {
+                        progress.setPhase(QueryProgressService.PHASE_FETCHING);
+                        List<ColumnInfo> columns = readColumns(resultSet.getMetaData());
+                        List<Map<String, Object>> data = readRows(resultSet, columns, 0, progress);
+                        resultBytes = quotaService.estimateBytes(data);
+                        builder.columns(columns)
+                                .data(data)
+                                .rowsAffected(data.size());
+                    }
+                } else {
+                    builder.rowsAffected(statement.getUpdateCount());
+                }
+                QueryResponse response = builder
+                        .message("Query executed successfully")
+                        .executionTime(System.currentTimeMillis() - start)
+                        .build();
+                resultDiffService.apply(userLogin, request, response);
+                return response;
+            } finally {
+                if (type == StatementType.READ) {
+                    // Undoes rows a misclassified read changed; DDL would commit, so classify never calls it a read
+                    connection.rollback();
+                } else if (checkAfterWrite && !connection.getAutoCommit()) {
+                    // A failed or oversized write; a no-op after the commit
+                    connection.rollback();
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            return QueryResponse.builder()
+                    .success(false)
+                    .message(e.getMessage())
+                    .errorCode(ERROR_DIFF)
+                    .executionTime(System.currentTimeMillis() - start)
+                    .build();
+        } catch (SQLException e) {
+            log.debug("Query failed for user {}: {}", userLogin, e.getMessage());
+            return failure(e, System.currentTimeMillis() - start);
+        } finally {
+            quotaService.record(userLogin, cpuStart, resultBytes);
+        }
+    }
+
+    public QueryResponse executeScript(String userLogin, String script) {
+        long start = System.currentTimeMillis();
+        try {
+            quotaService.check(userLogin, true);
+        } catch (QuotaExceededException e) {
+            return failure(e, 0);
+        }
+
+        long cpuStart = quotaService.cpuTime();
+        try (Connection connection = sandboxService.getConnection(userLogin)) {
+            statementClassifier.checkAllowed(script);
+            sandboxService.checkDiskQuota(userLogin);
+            int rowsAffected = 0;
+            try (Statement statement = connection.createStatement();
+                 QuotaService.SizeWatch watch = quotaService.watch(userLogin, statement)) {
+                // One statement at a time: H2 cancels only the first statement of a multi-statement execute
+                ScriptReader reader = new ScriptReader(new StringReader(script));
+                for (String sql = reader.readStatement(); sql != null; sql = reader.readStatement()) {
+                    if (sql.isBlank()) {
+                        continue;
+                    }
+                    // The limit may have been reached by the previous statement as it finished
+                    watch.checkExceeded();
+                    // The timeout is for the whole script
+                    long remainingMs = start + defaultTimeout * 1000L - System.currentTimeMillis();
+                    if (defaultTimeout > 0 && remainingMs <= 0) {
+                        throw new SQLTimeoutException("Script timed out after " + defaultTimeout + " seconds");
+                    }
+                    statement.setQueryTimeout(defaultTimeout > 0 ? (int) Math.max(1, (remainingMs + 999) / 1000) : 0);
+                    try {
+                        statement.execute(sql);
+                    } catch (SQLException e) {
+                        watch.checkExceeded();
+                        throw e;
+                    }
+                    rowsAffected += Math.max(statement.getUpdateCount(), 0);
+                }
+                sandboxService.markModified(userLogin);
+                quotaService.markSandboxModified(userLogin);
+                return QueryResponse.builder()
+                        .success(true)
+                        .message("Script executed successfully")
+                        .rowsAffected(rowsAffected)
+                        .executionTime(System.currentTimeMillis() - start)
+                        .build();
+            }
+        } catch (SQLException e) {
+            log.debug("Script failed for user {}: {}", userLogin, e.getMessage());
+            return failure(e, System.currentTimeMillis() - start);
+        } finally {
+            // A script may have run DDL even if a later statement failed
+            sandboxService.markSchemaChanged(userLogin);
+            quotaService.record(userLogin, cpuStart, 0);
+        }
+    }
+
+    public List<QueryResponse> executeBatch(String userLogin, List<QueryRequest> requests) {
+        List<CompletableFuture<QueryResponse>> results = new ArrayList<>(requests.size());
+        for (QueryRequest request : requests) {
+            if (statementClassifier.classify(request.getQuery()) != StatementType.READ) {
+                results.add(CompletableFuture.completedFuture(QueryResponse.builder()
+                        .success(false)
+                        .message("Only read-only queries can be executed in a batch")
+                        .errorCode(ERROR_NOT_READ_ONLY)
+                        .build()));
+            } else {
+                results.add(CompletableFuture.supplyAsync(() -> execute(userLogin, request), batchExecutor));
+            }
+        }
+        return results.stream()
+                .map(CompletableFuture::join)
+                .toList();
+    }
+
+    /**
+     * Sets up a connection for a statement classified as a read. H2 treats
+     * read-only as a hint, so the statement also runs in a transaction that
+     * is rolled back when the connection goes back to the pool: whatever it
+     * might write is undone, and a read never needs the sandbox saved.
+     */
+    public void configureForRead(Connection connection) throws SQLException {
+        connection.setAutoCommit(false);
+        connection.setReadOnly(true);
+        if (readIsolation != Isolation.DEFAULT) {
+            connection.setTransactionIsolation(readIsolation.value());
+        }
+    }
+
+    public PreparedStatement prepare(String userLogin, Connection connection, QueryRequest request, int maxRows)
+            throws SQLException {
+        statementClassifier.checkAllowed(request.getQuery());
+        // Parameter types follow column types, so cached shapes are per sandbox schema
+        String scope = sandboxService.getSandboxName(userLogin) + ':' + sandboxService.getSchemaVersion(userLogin);
+        PreparedStatement statement = parameterBinder.prepare(connection, scope, request.getQuery(),
+                request.getParameters());
+        try {
+            statement.setQueryTimeout(request.getTimeout() != null ? request.getTimeout() : defaultTimeout);
+            if (maxRows > 0) {
+                statement.setMaxRows(maxRows);
+            }
+            return statement;
+        } catch (SQLException | RuntimeException e) {
+            statement.close();
+            throw e;
+        }
+    }
+
+    public int getLimit(QueryRequest request) {
+        return request.getLimit() != null ? request.getLimit() : defaultLimit;
+    }
+
+    public List<ColumnInfo> readColumns(ResultSetMetaData metaData) throws SQLException {
+        int count = metaData.getColumnCount();
+        List<ColumnInfo> columns = new ArrayList<>(count);
+        for (int i = 1; i <= count; i++) {
+            ColumnInfo column = new ColumnInfo(
+                    metaData.getColumnLabel(i),
+                    metaData.getColumnTypeName(i),
+                    metaData.isNullable(i) != ResultSetMetaData.columnNoNulls
+            );
+            column.setSize(metaData.getColumnDisplaySize(i));
+            column.setPrecision(metaData.getPrecision(i));
+            column.setScale(metaData.getScale(i));
+            columns.add(column);
+        }
+        return columns;
+    }
+
+    public QueryResponse failure(SQLException e, long executionTime) {
+        return QueryResponse.builder()
+                .success(false)
+                .message(e.getMessage())
+                .errorCode(errorCode(e))
+                .executionTime(executionTime)
+                .build();
+    }
+
+    public List<Map<String, Object>> readRows(ResultSet resultSet, List<ColumnInfo> columns, int maxRows)
+            throws SQLException {
+        return readRows(resultSet, columns, maxRows, null);
+    }
+
+    private List<Map<String, Object>> readRows(ResultSet resultSet, List<ColumnInfo> columns, int maxRows,
+                                               QueryProgressService.Tracker progress) throws SQLException {
+        List<Map<String, Object>> rows = new ArrayList<>(maxRows > 0 ? Math.min(maxRows, 1024) : 16);
+        int count = columns.size();
+        while ((maxRows <= 0 || rows.size() < maxRows) && resultSet.next()) {
+            Map<String, Object> row = new LinkedHashMap<>(count * 2);
+            for (int i = 1; i <= count; i++) {
+                row.put(columns.get(i - 1).getName(), resultSet.getObject(i));
+            }
+            rows.add(row);
+            if (progress != null && (rows.size() & 0xFF) == 0) {
+                progress.setRowsFetched(rows.size());
+            }
+        }
+        if (progress != null) {
+            progress.setRowsFetched(rows.size());
+        }
+        return rows;
+    }
+
+    private String errorCode(SQLException e) {
+        if (e instanceof QuotaExceededException quotaExceeded) {
+            return quotaExceeded.getQuotaErrorCode();
+        }
+        if (e instanceof ParameterBindingException bindingFailed) {
+            return bindingFailed.getBindingErrorCode();
+        }
+        if (e instanceof SQLTimeoutException) {
+            return ERROR_TIMEOUT;
+        }
+        if (SQL_STATE_DISK_FULL.equals(e.getSQLState())) {
+            return ERROR_DISK_QUOTA;
+        }
+        if (StatementClassifier.SQL_STATE_FORBIDDEN.equals(e.getSQLState())) {
+            return ERROR_FORBIDDEN;
+        }
+        return ERROR_SQL;
+    }
+}
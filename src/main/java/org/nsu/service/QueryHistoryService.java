@@ -0,0 +1,68 @@
+package org.nsu.service;
+
+import org.nsu.dto.QueryHistoryEntry;
+import org.nsu.dto.QueryRequest;
+import org.nsu.dto.QueryResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+@Service
+public class QueryHistoryService {
+
+    private final WorkloadRecorder workloadRecorder;
+    private final Map<String, Deque<QueryHistoryEntry>> histories = new ConcurrentHashMap<>();
+
+    @Value("${history.max-per-user:100}")
+    private int maxPerUser;
+
+    @Autowired
+    public QueryHistoryService(WorkloadRecorder workloadRecorder) {
+        this.workloadRecorder = workloadRecorder;
+    }
+
+    public void record(String userLogin, String endpoint, QueryRequest request, QueryResponse response) {
+        add(userLogin, new QueryHistoryEntry(endpoint, request, response));
+        workloadRecorder.record(userLogin, endpoint, request);
+    }
+
+    public void recordBatch(String userLogin, String endpoint, List<QueryRequest> requests, List<QueryResponse> responses) {
+        for (int i = 0; i < requests.size(); i++) {
+            add(userLogin, new QueryHistoryEntry(endpoint, requests.get(i), responses.get(i)));
+        }
+        workloadRecorder.recordBatch(userLogin, endpoint, requests);
+    }
+
+    public List<QueryHistoryEntry> getHistory(String userLogin, int limit) {
+        Deque<QueryHistoryEntry> history = histories.get(userLogin);
+        if (history == null) {
+            return List.of();
+        }
+        synchronized (history) {
+            List<QueryHistoryEntry> result = new ArrayList<>(Math.min(limit, history.size()));
+            Iterator<QueryHistoryEntry> newestFirst = history.descendingIterator();
+            while (newestFirst.hasNext() && result.size() < limit) {
+                result.add(newestFirst.next());
+            }
+            return result;
+        }
+    }
+
+    private void add(String userLogin, QueryHistoryEntry entry) {
+        Deque<QueryHistoryEntry> history = histories.computeIfAbsent(userLogin, login -> new ArrayDeque<>());
+        synchronized (history) {
+            history.addLast(entry);
+            while (history.size() > maxPerUser) {
+                history.removeFirst();
+            }
+        }
+    }
+}
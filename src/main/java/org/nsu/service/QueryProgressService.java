@@ -0,0 +1,251 @@
+package org.nsu.service;
+
+import jakarta.annotation.PostConstruct;
+import org.nsu.dto.QueryProgress;
+import org.nsu.dto.QueryResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Progress of queries that carry a query id, pushed to server-sent event
+ * subscribers. A single periodic task on the shared {@code progressScheduler}
+ * hands progress for every open stream to {@code progressSendExecutor}, so an
+ * idle stream costs an emitter and no thread, and a slow client only delays
+ * its own stream: while its previous event is still being written, new
+ * progress events for it are dropped. Streams may be opened before the query
+ * starts and receive the final response when it completes; the response is
+ * kept only until it is sent, so a stream opened after the query completed
+ * waits for the next run with the same id.
+ */
+@Service
+public class QueryProgressService {
+
+    public static final String PHASE_WAITING = "WAITING";
+    public static final String PHASE_CONNECTING = "CONNECTING";
+    public static final String PHASE_EXECUTING = "EXECUTING";
+    public static final String PHASE_FETCHING = "FETCHING";
+    public static final String PHASE_COMPLETED = "COMPLETED";
+
+    private static final Logger log = LoggerFactory.getLogger(QueryProgressService.class);
+
+    private final ThreadPoolTaskScheduler scheduler;
+    private final ThreadPoolTaskExecutor sendExecutor;
+    private final Map<String, Tracker> trackers = new ConcurrentHashMap<>();
+
+    @Value("${query.progress.interval-ms:500}")
+    private long intervalMs;
+
+    @Value("${query.progress.stream-timeout-ms:600000}")
+    private long streamTimeout;
+
+    // How long a result may wait for a slow subscriber to take it
+    @Value("${query.progress.retention-ms:60000}")
+    private long retentionMs;
+
+    @Autowired
+    public QueryProgressService(@Qualifier("progressScheduler") ThreadPoolTaskScheduler scheduler,
+                                @Qualifier("progressSendExecutor") ThreadPoolTaskExecutor sendExecutor) {
+        this.scheduler = scheduler;
+        this.sendExecutor = sendExecutor;
+    }
+
+    @PostConstruct
+    public void scheduleUpdates() {
+        scheduler.scheduleWithFixedDelay(this::tick, Duration.ofMillis(intervalMs));
+    }
+
+    /**
+     * Starts tracking a query. Queries without an id get a tracker nobody can
+     * subscribe to, so callers never need to check.
+     */
+    public Tracker start(String userLogin, String queryId) {
+        if (queryId == null) {
+            return new Tracker(null, null);
+        }
+        Tracker tracker = trackers.compute(key(userLogin, queryId), (key, existing) ->
+                existing != null && existing.startedAt == 0 ? existing : new Tracker(key, queryId));
+        tracker.startedAt = System.currentTimeMillis();
+        tracker.phase = PHASE_CONNECTING;
+        return tracker;
+    }
+
+    public void complete(Tracker tracker, QueryResponse response) {
+        tracker.finishedAt = System.currentTimeMillis();
+        tracker.result = response;
+        tracker.phase = PHASE_COMPLETED;
+        if (tracker.subscribers.isEmpty()) {
+            // Nobody is waiting for the response, so it is not kept; a subscriber that raced in still gets it
+            if (tracker.key != null) {
+                trackers.remove(tracker.key, tracker);
+            }
+            return;
+        }
+        // Never write to a possibly slow client on the query thread
+        tracker.subscribers.forEach(subscriber -> dispatch(tracker, subscriber, false));
+    }
+
+    public SseEmitter subscribe(String userLogin, String queryId) {
+        SseEmitter emitter = new SseEmitter(streamTimeout);
+        // A completed tracker belongs to the previous run with this id
+        Tracker tracker = trackers.compute(key(userLogin, queryId), (key, existing) ->
+                existing != null && existing.result == null ? existing : new Tracker(key, queryId));
+        Subscriber subscriber = new Subscriber(emitter);
+        tracker.subscribers.add(subscriber);
+
+        emitter.onCompletion(() -> close(tracker, subscriber));
+        emitter.onTimeout(() -> {
+            close(tracker, subscriber);
+            emitter.complete();
+        });
+        emitter.onError(e -> close(tracker, subscriber));
+
+        // The first event goes out right away, with the result if the query already finished
+        dispatch(tracker, subscriber, false);
+        return emitter;
+    }
+
+    private void tick() {
+        long now = System.currentTimeMillis();
+        trackers.forEach((key, tracker) -> {
+            if (tracker.result != null) {
+                // Kept only until every subscriber has been sent the result
+                if (tracker.subscribers.isEmpty() || now - tracker.finishedAt > retentionMs) {
+                    trackers.remove(key, tracker);
+                }
+            } else if (tracker.subscribers.isEmpty()) {
+                // Streams opened for a query that never started have all timed out or closed
+                if (tracker.startedAt == 0 && now - tracker.createdAt > streamTimeout) {
+                    trackers.remove(key, tracker);
+                }
+            } else {
+                tracker.subscribers.forEach(subscriber -> dispatch(tracker, subscriber, true));
+            }
+        });
+    }
+
+    /**
+     * Hands an event for one subscriber to the send executor. A droppable
+     * progress event is skipped while the subscriber's previous event is
+     * still pending; the next tick carries newer progress anyway. The result
+     * is never dropped: it waits for the pending write.
+     */
+    private void dispatch(Tracker tracker, Subscriber subscriber, boolean droppable) {
+        if (subscriber.closed) {
+            return;
+        }
+        if (droppable && !subscriber.pending.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            sendExecutor.execute(() -> {
+                try {
+                    send(tracker, subscriber);
+                } finally {
+                    if (droppable) {
+                        subscriber.pending.set(false);
+                    }
+                }
+            });
+        } catch (TaskRejectedException e) {
+            if (droppable) {
+                subscriber.pending.set(false);
+            } else {
+                // Without the result the client would wait until its stream times out
+                log.warn("Cannot send the result of query {}, closing its progress stream", tracker.queryId);
+                close(tracker, subscriber);
+                subscriber.emitter.complete();
+            }
+        }
+    }
+
+    private void send(Tracker tracker, Subscriber subscriber) {
+        synchronized (subscriber) {
+            if (subscriber.closed) {
+                return;
+            }
+            try {
+                QueryResponse result = tracker.result;
+                if (result != null) {
+                    subscriber.closed = true;
+                    subscriber.emitter.send(SseEmitter.event().name("result").data(result, MediaType.APPLICATION_JSON));
+                    subscriber.emitter.complete();
+                } else {
+                    subscriber.emitter.send(SseEmitter.event().name("progress")
+                            .data(tracker.snapshot(), MediaType.APPLICATION_JSON));
+                }
+            } catch (IOException | IllegalStateException e) {
+                // The client went away; the container completes the emitter
+                log.debug("Dropping progress stream for query {}: {}", tracker.queryId, e.getMessage());
+                close(tracker, subscriber);
+            }
+        }
+    }
+
+    private void close(Tracker tracker, Subscriber subscriber) {
+        subscriber.closed = true;
+        tracker.subscribers.remove(subscriber);
+    }
+
+    private static String key(String userLogin, String queryId) {
+        return userLogin + '\u0000' + queryId;
+    }
+
+    public static class Tracker {
+        private final String key;
+        private final String queryId;
+        private final long createdAt = System.currentTimeMillis();
+        private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+        private volatile String phase = PHASE_WAITING;
+        private volatile long startedAt;
+        private volatile long finishedAt;
+        private volatile long rowsFetched;
+        private volatile QueryResponse result;
+
+        private Tracker(String key, String queryId) {
+            this.key = key;
+            this.queryId = queryId;
+        }
+
+        public void setPhase(String phase) {
+            this.phase = phase;
+        }
+
+        public void setRowsFetched(long rowsFetched) {
+            this.rowsFetched = rowsFetched;
+        }
+
+        private QueryProgress snapshot() {
+            long started = startedAt;
+            long elapsed = started == 0 ? 0 : System.currentTimeMillis() - started;
+            return new QueryProgress(queryId, phase, elapsed, rowsFetched);
+        }
+    }
+
+    private static class Subscriber {
+        private final SseEmitter emitter;
+        // A progress event is queued or being written
+        private final AtomicBoolean pending = new AtomicBoolean();
+        private volatile boolean closed;
+
+        private Subscriber(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package org.nsu.service;
+
+import java.sql.SQLException;
+
+/**
+ * Raised before a statement runs when the user has used up one of their
+ * {@link QuotaService} limits. Carries its own response error code.
+ */
+public class QuotaExceededException extends SQLException {
+
+    private final String errorCode;
+    private final long retryAfterSeconds;
+
+    public QuotaExceededException(String message, String errorCode, long retryAfterSeconds) {
+        super(message, "53400");
+        this.errorCode = errorCode;
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public String getQuotaErrorCode() {
+        return errorCode;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
@@ -0,0 +1,372 @@
+package org.nsu.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.stereotype.Service;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+
+/**
+ * Per-user accounting of query CPU time and result bytes over a rolling window,
+ * plus a cap on sandbox size. Usage is kept in fixed time buckets, so the
+ * window slides without storing individual queries, and users idle for a
+ * whole window are forgotten.
+ */
+@Service
+public class QuotaService {
+
+    public static final String ERROR_CPU_QUOTA = "QUO001";
+    public static final String ERROR_RESULT_QUOTA = "QUO002";
+    public static final String ERROR_MEMORY_QUOTA = "QUO003";
+
+    private static final Logger log = LoggerFactory.getLogger(QuotaService.class);
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    private final SandboxService sandboxService;
+    private final ThreadPoolTaskScheduler scheduler;
+    private final Map<String, Usage> usages = new ConcurrentHashMap<>();
+    private final boolean cpuTimeSupported = THREADS.isCurrentThreadCpuTimeSupported();
+
+    @Value("${quota.enabled:true}")
+    private boolean enabled;
+
+    @Value("${quota.window-ms:60000}")
+    private long windowMs;
+
+    @Value("${quota.buckets:12}")
+    private int bucketCount;
+
+    @Value("${quota.cpu-ms-per-window:30000}")
+    private long cpuLimitMs;
+
+    @Value("${quota.result-bytes-per-window:268435456}")
+    private long resultBytesLimit;
+
+    @Value("${quota.sandbox-memory-bytes:134217728}")
+    private long memoryLimit;
+
+    @Value("${quota.watch-interval-ms:200}")
+    private long watchIntervalMs;
+
+    @Autowired
+    public QuotaService(SandboxService sandboxService, @Qualifier("taskScheduler") ThreadPoolTaskScheduler scheduler) {
+        this.sandboxService = sandboxService;
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * Rejects the statement if the user is over a windowed limit, or over the
+     * sandbox size limit for statements that can grow the sandbox.
+     */
+    public void check(String userLogin, boolean growsSandbox) throws QuotaExceededException {
+        if (!enabled) {
+            return;
+        }
+        Usage usage = usage(userLogin);
+        long now = System.currentTimeMillis();
+        synchronized (usage) {
+            long cpuMs = usage.cpuNanos(now) / 1_000_000;
+            if (cpuMs >= cpuLimitMs) {
+                throw new QuotaExceededException("CPU time quota exceeded: " + cpuMs + " of " + cpuLimitMs
+                        + " ms used in the last " + windowMs / 1000 + " s", ERROR_CPU_QUOTA, usage.retryAfterSeconds(now));
+            }
+            long resultBytes = usage.resultBytes(now);
+            if (resultBytes >= resultBytesLimit) {
+                throw new QuotaExceededException("Result size quota exceeded: " + resultBytes + " of " + resultBytesLimit
+                        + " bytes returned in the last " + windowMs / 1000 + " s", ERROR_RESULT_QUOTA,
+                        usage.retryAfterSeconds(now));
+            }
+        }
+        if (growsSandbox) {
+            long memory = sandboxMemory(userLogin, usage);
+            if (memory > memoryLimit) {
+                throw new QuotaExceededException("Sandbox memory quota exceeded: " + memory + " of " + memoryLimit
+                        + " bytes used, drop tables or delete rows to continue", ERROR_MEMORY_QUOTA, 0);
+            }
+        }
+    }
+
+    /**
+     * Re-checks the sandbox size after a write, on the connection that made it
+     * and before it commits, so a single {@code INSERT ... SELECT} cannot take
+     * the sandbox far past the limit. The caller rolls back when this throws.
+     */
+    public void checkAfterWrite(String userLogin, Connection connection) throws QuotaExceededException {
+        if (!enabled) {
+            return;
+        }
+        long memory;
+        try {
+            memory = sandboxService.getSandboxSize(connection);
+        } catch (SQLException e) {
+            log.debug("Failed to measure sandbox of {} after a write: {}", userLogin, e.getMessage());
+            return;
+        }
+        if (memory > memoryLimit) {
+            throw new QuotaExceededException("Sandbox memory quota exceeded: the statement would use " + memory
+                    + " of " + memoryLimit + " bytes and was rolled back", ERROR_MEMORY_QUOTA, 0);
+        }
+    }
+
+    /**
+     * Measures the sandbox every {@code quota.watch-interval-ms} while
+     * {@code statement} runs and cancels it once the sandbox is over the size
+     * limit. DDL and scripts commit as they go, so this is what bounds them; a
+     * cancelled {@code CREATE TABLE ... AS SELECT} leaves no table behind.
+     * Close the watch as soon as the statement returns.
+     */
+    public SizeWatch watch(String userLogin, Statement statement) {
+        SizeWatch watch = new SizeWatch(userLogin, statement);
+        if (enabled) {
+            Duration interval = Duration.ofMillis(watchIntervalMs);
+            watch.task = scheduler.scheduleWithFixedDelay(watch::check, Instant.now().plus(interval), interval);
+        }
+        return watch;
+    }
+
+    /**
+     * Rejects a snapshot being restored once what has been loaded of it, in
+     * snapshot bytes or measured in the staging database, is over the sandbox
+     * size limit, so an oversized snapshot is never loaded in full.
+     */
+    public void checkSnapshotSize(long bytes) throws QuotaExceededException {
+        if (enabled && bytes > memoryLimit) {
+            throw new QuotaExceededException("Sandbox memory quota exceeded: the snapshot needs more than "
+                    + memoryLimit + " bytes and was not restored", ERROR_MEMORY_QUOTA, 0);
+        }
+    }
+
+    /**
+     * CPU time of the calling thread, to be passed back to {@link #record}. H2
+     * runs in-process, so this covers the query itself.
+     */
+    public long cpuTime() {
+        return cpuTimeSupported ? THREADS.getCurrentThreadCpuTime() : System.nanoTime();
+    }
+
+    public void record(String userLogin, long cpuStart, long resultBytes) {
+        if (!enabled) {
+            return;
+        }
+        long cpuNanos = Math.max(cpuTime() - cpuStart, 0);
+        Usage usage = usage(userLogin);
+        synchronized (usage) {
+            usage.add(System.currentTimeMillis(), cpuNanos, resultBytes);
+        }
+    }
+
+    public void markSandboxModified(String userLogin) {
+        Usage usage = usages.get(userLogin);
+        if (usage != null) {
+            usage.memoryStale = true;
+        }
+    }
+
+    public HttpHeaders headers(String userLogin) {
+        HttpHeaders headers = new HttpHeaders();
+        if (!enabled) {
+            return headers;
+        }
+        Usage usage = usage(userLogin);
+        long now = System.currentTimeMillis();
+        synchronized (usage) {
+            headers.set("X-Quota-Cpu-Used-Ms", String.valueOf(usage.cpuNanos(now) / 1_000_000));
+            headers.set("X-Quota-Result-Bytes-Used", String.valueOf(usage.resultBytes(now)));
+            headers.set("X-Quota-Reset-Seconds", String.valueOf(usage.retryAfterSeconds(now)));
+        }
+        headers.set("X-Quota-Cpu-Limit-Ms", String.valueOf(cpuLimitMs));
+        headers.set("X-Quota-Result-Bytes-Limit", String.valueOf(resultBytesLimit));
+        headers.set("X-Quota-Window-Seconds", String.valueOf(windowMs / 1000));
+        if (usage.memoryBytes >= 0) {
+            headers.set("X-Quota-Sandbox-Memory-Bytes", String.valueOf(usage.memoryBytes));
+        }
+        headers.set("X-Quota-Sandbox-Memory-Limit", String.valueOf(memoryLimit));
+        return headers;
+    }
+
+    /**
+     * Rough in-memory size of result rows, counting what the values cost to hold
+     * and serialize rather than their exact JSON length.
+     */
+    public long estimateBytes(List<Map<String, Object>> rows) {
+        long bytes = 0;
+        for (Map<String, Object> row : rows) {
+            for (Object value : row.values()) {
+                if (value == null) {
+                    bytes += 4;
+                } else if (value instanceof CharSequence text) {
+                    bytes += text.length();
+                } else if (value instanceof byte[] binary) {
+                    bytes += binary.length;
+                } else if (value instanceof Number || value instanceof Boolean) {
+                    bytes += 8;
+                } else {
+                    bytes += 32;
+                }
+            }
+        }
+        return bytes;
+    }
+
+    private long sandboxMemory(String userLogin, Usage usage) {
+        if (!usage.memoryStale && usage.memoryBytes >= 0) {
+            return usage.memoryBytes;
+        }
+        usage.memoryStale = false;
+        try {
+            usage.memoryBytes = sandboxService.getSandboxSize(userLogin);
+        } catch (SQLException e) {
+            log.debug("Failed to measure sandbox of {}: {}", userLogin, e.getMessage());
+        }
+        return Math.max(usage.memoryBytes, 0);
+    }
+
+    // Everything such a user used has left the window; a cached sandbox size is simply measured again
+    @Scheduled(fixedDelayString = "${quota.sweep-interval-ms:60000}")
+    public void evictIdleUsers() {
+        long deadline = System.currentTimeMillis() - windowMs;
+        for (String userLogin : usages.keySet()) {
+            usages.computeIfPresent(userLogin, (login, usage) -> usage.lastUsed < deadline ? null : usage);
+        }
+    }
+
+    // compute, not computeIfAbsent, so touching and evicting an entry cannot interleave
+    private Usage usage(String userLogin) {
+        long now = System.currentTimeMillis();
+        return usages.compute(userLogin, (login, usage) -> {
+            Usage current = usage != null ? usage : new Usage(bucketCount, Math.max(windowMs / bucketCount, 1));
+            current.lastUsed = now;
+            return current;
+        });
+    }
+
+    public class SizeWatch implements AutoCloseable {
+        private final String userLogin;
+        private final Statement statement;
+        private volatile ScheduledFuture<?> task;
+        private volatile long exceededBytes = -1;
+
+        private SizeWatch(String userLogin, Statement statement) {
+            this.userLogin = userLogin;
+            this.statement = statement;
+        }
+
+        /**
+         * Throws if the statement was cancelled for going over the limit; call
+         * it when the statement fails, in place of the cancellation error.
+         */
+        public void checkExceeded() throws QuotaExceededException {
+            if (exceededBytes >= 0) {
+                throw new QuotaExceededException("Sandbox memory quota exceeded: the statement was stopped at "
+                        + exceededBytes + " of " + memoryLimit + " bytes", ERROR_MEMORY_QUOTA, 0);
+            }
+        }
+
+        private void check() {
+            if (exceededBytes >= 0) {
+                return;
+            }
+            long size;
+            try {
+                size = sandboxService.getSandboxSize(userLogin);
+            } catch (SQLException e) {
+                log.debug("Failed to measure sandbox of {} during a statement: {}", userLogin, e.getMessage());
+                return;
+            }
+            if (size > memoryLimit) {
+                exceededBytes = size;
+                try {
+                    // A cancel arriving after the statement finished is ignored by H2
+                    statement.cancel();
+                } catch (SQLException e) {
+                    log.debug("Failed to cancel statement of {}: {}", userLogin, e.getMessage());
+                }
+            }
+        }
+
+        @Override
+        public void close() {
+            ScheduledFuture<?> current = task;
+            if (current != null) {
+                current.cancel(false);
+            }
+        }
+    }
+
+    private static class Usage {
+        private final long bucketMs;
+        private final long[] bucketIndex;
+        private final long[] cpuNanos;
+        private final long[] resultBytes;
+        private volatile long memoryBytes = -1;
+        private volatile boolean memoryStale = true;
+        private volatile long lastUsed;
+
+        private Usage(int buckets, long bucketMs) {
+            this.bucketMs = bucketMs;
+            this.bucketIndex = new long[buckets];
+            this.cpuNanos = new long[buckets];
+            this.resultBytes = new long[buckets];
+        }
+
+        private void add(long now, long cpu, long bytes) {
+            long index = now / bucketMs;
+            int slot = (int) (index % bucketIndex.length);
+            if (bucketIndex[slot] != index) {
+                bucketIndex[slot] = index;
+                cpuNanos[slot] = 0;
+                resultBytes[slot] = 0;
+            }
+            cpuNanos[slot] += cpu;
+            resultBytes[slot] += bytes;
+        }
+
+        private long cpuNanos(long now) {
+            return sum(cpuNanos, now);
+        }
+
+        private long resultBytes(long now) {
+            return sum(resultBytes, now);
+        }
+
+        private long sum(long[] values, long now) {
+            long oldest = now / bucketMs - bucketIndex.length;
+            long total = 0;
+            for (int slot = 0; slot < values.length; slot++) {
+                if (bucketIndex[slot] > oldest) {
+                    total += values[slot];
+                }
+            }
+            return total;
+        }
+
+        // Time until the oldest bucket still in the window drops out of it
+        private long retryAfterSeconds(long now) {
+            long current = now / bucketMs;
+            long oldest = current;
+            for (long index : bucketIndex) {
+                if (index > current - bucketIndex.length && index < oldest) {
+                    oldest = index;
+                }
+            }
+            long expiresAt = (oldest + bucketIndex.length) * bucketMs;
+            return Math.max(1, (expiresAt - now + 999) / 1000);
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package org.nsu.service;
+
+import org.nsu.dto.QueryResponse;
+import org.nsu.security.PlaygroundUser;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.RestClientException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Runs {@code .sql} files from a GitHub repository in the user's sandbox. The
+ * tree is fetched once per call and file contents come from {@link GitBlobCache}.
+ */
+@Service
+public class RepositoryScriptService {
+
+    private static final Logger log = LoggerFactory.getLogger(RepositoryScriptService.class);
+
+    private final GitHubService gitHubService;
+    private final GitBlobCache blobCache;
+    private final QueryExecutionService queryExecutionService;
+
+    @Autowired
+    public RepositoryScriptService(GitHubService gitHubService, GitBlobCache blobCache,
+                                   QueryExecutionService queryExecutionService) {
+        this.gitHubService = gitHubService;
+        this.blobCache = blobCache;
+        this.queryExecutionService = queryExecutionService;
+    }
+
+    public Map<String, Object> listSqlFiles(PlaygroundUser user, String owner, String repo, String ref) {
+        Map<String, Object> tree = gitHubService.getTree(user, owner, repo, ref);
+        if (tree == null || tree.containsKey("error")) {
+            return tree != null ? tree : Map.of("error", "Empty repository tree response");
+        }
+        List<Map<String, Object>> files = new ArrayList<>();
+        for (Map<String, Object> entry : sqlEntries(tree).values()) {
+            files.add(Map.of(
+                    "path", entry.get("path"),
+                    "sha", entry.get("sha"),
+                    "size", entry.getOrDefault("size", 0)
+            ));
+        }
+        return Map.of(
+                "ref", ref,
+                "truncated", Boolean.TRUE.equals(tree.get("truncated")),
+                "files", files
+        );
+    }
+
+    public Map<String, Object> runFiles(PlaygroundUser user, String owner, String repo, String ref, List<String> paths) {
+        Map<String, Object> tree = gitHubService.getTree(user, owner, repo, ref);
+        if (tree == null || tree.containsKey("error")) {
+            return tree != null ? tree : Map.of("error", "Empty repository tree response");
+        }
+        Map<String, Map<String, Object>> entries = sqlEntries(tree);
+
+        List<String> missing = new ArrayList<>();
+        for (String path : paths) {
+            if (!entries.containsKey(path)) {
+                missing.add(path);
+            }
+        }
+        if (!missing.isEmpty()) {
+            return Map.of("error", "SQL files not found in " + owner + "/" + repo + "@" + ref + ": " + missing);
+        }
+
+        Map<String, QueryResponse> results = new LinkedHashMap<>();
+        for (String path : paths) {
+            String sha = (String) entries.get(path).get("sha");
+            String script;
+            try {
+                script = new String(
+                        blobCache.get(sha, () -> gitHubService.getBlob(user, owner, repo, sha)),
+                        StandardCharsets.UTF_8
+                );
+            } catch (RestClientException | IllegalStateException e) {
+                return Map.of("error", "Failed to fetch " + path + ": " + e.getMessage());
+            }
+            QueryResponse response = queryExecutionService.executeScript(user.getLogin(), script);
+            response.setMessage(path + ": " + response.getMessage());
+            results.put(path, response);
+            if (!response.isSuccess()) {
+                break;
+            }
+        }
+        log.debug("Ran {} SQL files from {}/{}@{} for {}", results.size(), owner, repo, ref, user.getLogin());
+
+        return Map.of(
+                "ref", ref,
+                "results", results
+        );
+    }
+
+    private Map<String, Map<String, Object>> sqlEntries(Map<String, Object> tree) {
+        Map<String, Map<String, Object>> entries = new TreeMap<>();
+        Object items = tree.get("tree");
+        if (items instanceof List<?> list) {
+            for (Object item : list) {
+                if (item instanceof Map<?, ?> raw && "blob".equals(raw.get("type"))
+                        && raw.get("path") instanceof String path && path.endsWith(".sql")) {
+                    @SuppressWarnings("unchecked")
+                    Map<String, Object> entry = (Map<String, Object>) raw;
+                    entries.put(path, entry);
+                }
+            }
+        }
+        return entries;
+    }
+}
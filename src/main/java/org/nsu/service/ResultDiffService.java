@@ -0,0 +1,302 @@
+package org.nsu.service;
+
+import org.nsu.dto.ColumnInfo;
+import org.nsu.dto.QueryRequest;
+import org.nsu.dto.QueryResponse;
+import org.nsu.dto.ResultDiff;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps the last result of each (user, query id) as a hash index from row key
+ * to row values, and replaces a response's data with the delta to that result.
+ * Results expire after {@code sandbox.diff.ttl-ms}, and past
+ * {@code sandbox.diff.max-total-rows} cached rows across all users the least
+ * recently used results are dropped.
+ */
+@Service
+public class ResultDiffService {
+
+    // Each user's results are only touched inside compute calls, which also drop a user with none left
+    private final Map<String, UserResults> results = new ConcurrentHashMap<>();
+    private final AtomicLong cachedRows = new AtomicLong();
+    // Orders results by last use across users, where timestamps could tie
+    private final AtomicLong useSequence = new AtomicLong();
+
+    @Value("${sandbox.diff.max-results-per-user:20}")
+    private int maxResultsPerUser;
+
+    @Value("${sandbox.diff.max-rows:100000}")
+    private int maxRows;
+
+    @Value("${sandbox.diff.max-total-rows:1000000}")
+    private long maxTotalRows;
+
+    @Value("${sandbox.diff.ttl-ms:600000}")
+    private long ttlMs;
+
+    public void apply(String userLogin, QueryRequest request, QueryResponse response) {
+        List<ColumnInfo> columns = response.getColumns();
+        List<Map<String, Object>> data = response.getData();
+        if (request.getQueryId() == null || columns == null || data == null) {
+            return;
+        }
+
+        String[] names = new String[columns.size()];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = columns.get(i).getName();
+        }
+        int[] keyIndexes = keyIndexes(names, request.getKeyColumns());
+
+        CachedResult previous = take(userLogin, request.getQueryId());
+        if (previous != null && previous.storedAt < System.currentTimeMillis() - ttlMs) {
+            previous = null;
+        }
+
+        CachedResult current = data.size() <= Math.min(maxRows, maxTotalRows) ? index(names, keyIndexes, data) : null;
+        if (current != null) {
+            store(userLogin, request.getQueryId(), current);
+            evictOverBudget();
+        }
+
+        if (Boolean.TRUE.equals(request.getDiff()) && previous != null && current != null
+                && Arrays.equals(previous.columns, current.columns)
+                && Arrays.equals(previous.keyIndexes, current.keyIndexes)) {
+            response.setDiff(diff(previous, current, data));
+            response.setData(null);
+        }
+    }
+
+    private ResultDiff diff(CachedResult previous, CachedResult current, List<Map<String, Object>> data) {
+        List<Map<String, Object>> added = new ArrayList<>();
+        List<Map<String, Object>> changed = new ArrayList<>();
+        int unchanged = 0;
+
+        for (int r = 0; r < current.order.length; r++) {
+            RowKey key = current.order[r];
+            Object[] before = previous.rows.get(key);
+            if (before == null) {
+                added.add(data.get(r));
+            } else if (!Arrays.deepEquals(before, current.rows.get(key))) {
+                changed.add(data.get(r));
+            } else {
+                unchanged++;
+            }
+        }
+
+        List<Map<String, Object>> removed = new ArrayList<>();
+        for (RowKey key : previous.rows.keySet()) {
+            if (!current.rows.containsKey(key)) {
+                Map<String, Object> keyRow = new LinkedHashMap<>();
+                for (int i = 0; i < current.keyIndexes.length; i++) {
+                    keyRow.put(current.columns[current.keyIndexes[i]], key.values[i]);
+                }
+                removed.add(keyRow);
+            }
+        }
+        return new ResultDiff(added, removed, changed, unchanged);
+    }
+
+    private CachedResult index(String[] columns, int[] keyIndexes, List<Map<String, Object>> data) {
+        Map<RowKey, Object[]> rows = new HashMap<>(data.size() * 2);
+        RowKey[] order = new RowKey[data.size()];
+        for (int r = 0; r < order.length; r++) {
+            Map<String, Object> row = data.get(r);
+            Object[] values = new Object[columns.length];
+            for (int i = 0; i < columns.length; i++) {
+                values[i] = row.get(columns[i]);
+            }
+            Object[] key = new Object[keyIndexes.length];
+            for (int i = 0; i < keyIndexes.length; i++) {
+                key[i] = values[keyIndexes[i]];
+            }
+            order[r] = new RowKey(key);
+            if (rows.put(order[r], values) != null) {
+                // Keys are not unique, a diff by key would be ambiguous
+                return null;
+            }
+        }
+        return new CachedResult(columns, keyIndexes, rows, order);
+    }
+
+    private int[] keyIndexes(String[] columns, List<String> keyColumns) {
+        if (keyColumns == null || keyColumns.isEmpty()) {
+            int[] all = new int[columns.length];
+            for (int i = 0; i < all.length; i++) {
+                all[i] = i;
+            }
+            return all;
+        }
+        int[] indexes = new int[keyColumns.size()];
+        for (int k = 0; k < indexes.length; k++) {
+            indexes[k] = -1;
+            String keyColumn = keyColumns.get(k).toUpperCase(Locale.ROOT);
+            for (int i = 0; i < columns.length; i++) {
+                if (columns[i].toUpperCase(Locale.ROOT).equals(keyColumn)) {
+                    indexes[k] = i;
+                    break;
+                }
+            }
+            if (indexes[k] < 0) {
+                throw new IllegalArgumentException("Unknown key column: " + keyColumns.get(k));
+            }
+        }
+        return indexes;
+    }
+
+    @Scheduled(fixedDelayString = "${sandbox.diff.sweep-interval-ms:60000}")
+    public void evictExpired() {
+        long deadline = System.currentTimeMillis() - ttlMs;
+        for (String userLogin : results.keySet()) {
+            results.computeIfPresent(userLogin, (login, userResults) -> {
+                userResults.values().removeIf(result -> {
+                    if (result.storedAt >= deadline) {
+                        return false;
+                    }
+                    cachedRows.addAndGet(-result.order.length);
+                    return true;
+                });
+                userResults.updateEldest();
+                return userResults.isEmpty() ? null : userResults;
+            });
+        }
+    }
+
+    public long getCachedRows() {
+        return cachedRows.get();
+    }
+
+    private CachedResult take(String userLogin, String queryId) {
+        CachedResult[] taken = new CachedResult[1];
+        results.computeIfPresent(userLogin, (login, userResults) -> {
+            taken[0] = userResults.remove(queryId);
+            return userResults.isEmpty() ? null : userResults;
+        });
+        if (taken[0] != null) {
+            cachedRows.addAndGet(-taken[0].order.length);
+        }
+        return taken[0];
+    }
+
+    private void store(String userLogin, String queryId, CachedResult result) {
+        result.usedAt = useSequence.incrementAndGet();
+        cachedRows.addAndGet(result.order.length);
+        results.compute(userLogin, (login, userResults) -> {
+            UserResults current = userResults != null ? userResults : new UserResults();
+            CachedResult replaced = current.put(queryId, result);
+            if (replaced != null) {
+                cachedRows.addAndGet(-replaced.order.length);
+            }
+            return current;
+        });
+    }
+
+    // Drops the oldest result of all users until the cached rows fit; rare, so a scan over users will do
+    private void evictOverBudget() {
+        while (cachedRows.get() > maxTotalRows) {
+            String oldestUser = null;
+            long oldest = Long.MAX_VALUE;
+            for (Map.Entry<String, UserResults> entry : results.entrySet()) {
+                long usedAt = entry.getValue().eldestUsedAt;
+                if (usedAt < oldest) {
+                    oldest = usedAt;
+                    oldestUser = entry.getKey();
+                }
+            }
+            if (oldestUser == null) {
+                return;
+            }
+            results.computeIfPresent(oldestUser, (login, userResults) -> {
+                userResults.removeEldest();
+                return userResults.isEmpty() ? null : userResults;
+            });
+        }
+    }
+
+    // Insertion order is use order: apply takes a result out and puts the new one back
+    private class UserResults extends LinkedHashMap<String, CachedResult> {
+        // Read by evictOverBudget outside the compute calls that change the map
+        private volatile long eldestUsedAt = Long.MAX_VALUE;
+
+        @Override
+        public CachedResult put(String queryId, CachedResult result) {
+            CachedResult replaced = super.put(queryId, result);
+            updateEldest();
+            return replaced;
+        }
+
+        @Override
+        public CachedResult remove(Object queryId) {
+            CachedResult removed = super.remove(queryId);
+            updateEldest();
+            return removed;
+        }
+
+        private void removeEldest() {
+            Map.Entry<String, CachedResult> eldest = entrySet().iterator().next();
+            cachedRows.addAndGet(-eldest.getValue().order.length);
+            remove(eldest.getKey());
+        }
+
+        private void updateEldest() {
+            eldestUsedAt = isEmpty() ? Long.MAX_VALUE : values().iterator().next().usedAt;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CachedResult> eldest) {
+            if (size() <= maxResultsPerUser) {
+                return false;
+            }
+            cachedRows.addAndGet(-eldest.getValue().order.length);
+            return true;
+        }
+    }
+
+    // Deep comparisons throughout: BINARY and BLOB cells are byte[], which only compare by content that way
+    private static class RowKey {
+        private final Object[] values;
+        private final int hash;
+
+        private RowKey(Object[] values) {
+            this.values = values;
+            this.hash = Arrays.deepHashCode(values);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof RowKey key && hash == key.hash && Arrays.deepEquals(values, key.values);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    private static class CachedResult {
+        private final String[] columns;
+        private final int[] keyIndexes;
+        private final Map<RowKey, Object[]> rows;
+        private final RowKey[] order;
+        private final long storedAt = System.currentTimeMillis();
+        private long usedAt;
+
+        private CachedResult(String[] columns, int[] keyIndexes, Map<RowKey, Object[]> rows, RowKey[] order) {
+            this.columns = columns;
+            this.keyIndexes = keyIndexes;
+            this.rows = rows;
+            this.order = order;
+        }
+    }
+}
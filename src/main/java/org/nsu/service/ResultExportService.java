@@ -0,0 +1,129 @@
+package org.nsu.service;
+
+import org.nsu.dto.QueryRequest;
+import org.nsu.service.export.BinaryResultSetExporter;
+import org.nsu.service.export.DelimitedResultSetExporter;
+import org.nsu.service.export.ExportBuffer;
+import org.nsu.service.export.ExportFormat;
+import org.nsu.service.export.ResultSetExporter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+@Service
+public class ResultExportService {
+
+    private static final Logger log = LoggerFactory.getLogger(ResultExportService.class);
+
+    private final SandboxService sandboxService;
+    private final QueryExecutionService queryExecutionService;
+    private final QuotaService quotaService;
+
+    @Value("${export.buffer-size:65536}")
+    private int bufferSize;
+
+    @Value("${export.fetch-size:1000}")
+    private int fetchSize;
+
+    @Autowired
+    public ResultExportService(SandboxService sandboxService, QueryExecutionService queryExecutionService,
+                               QuotaService quotaService) {
+        this.sandboxService = sandboxService;
+        this.queryExecutionService = queryExecutionService;
+        this.quotaService = quotaService;
+    }
+
+    /**
+     * Runs the query and keeps its result set open for {@link Export#writeTo},
+     * so a query that fails is reported before any response is committed.
+     */
+    public Export open(String userLogin, QueryRequest request, ExportFormat format) throws SQLException {
+        long start = System.currentTimeMillis();
+        Connection connection = sandboxService.getConnection(userLogin);
+        PreparedStatement statement = null;
+        long cpuStart = quotaService.cpuTime();
+        try {
+            queryExecutionService.configureForRead(connection);
+            // Let H2 produce rows on demand instead of buffering the full result
+            try (Statement settings = connection.createStatement()) {
+                settings.execute("SET LAZY_QUERY_EXECUTION TRUE");
+            }
+            int limit = request.getLimit() != null ? request.getLimit() : 0;
+            statement = queryExecutionService.prepare(userLogin, connection, request, limit);
+            statement.setFetchSize(fetchSize);
+            ResultSet resultSet = statement.executeQuery();
+            return new Export(userLogin, format, start, connection, statement, resultSet);
+        } catch (SQLException | RuntimeException e) {
+            if (statement != null) {
+                statement.close();
+            }
+            connection.close();
+            throw e;
+        } finally {
+            quotaService.record(userLogin, cpuStart, 0);
+        }
+    }
+
+    private ResultSetExporter exporterFor(ExportFormat format) {
+        return switch (format) {
+            case CSV -> DelimitedResultSetExporter.csv();
+            case TSV -> DelimitedResultSetExporter.tsv();
+            case BINARY -> new BinaryResultSetExporter();
+        };
+    }
+
+    /**
+     * An executed export query. {@link #writeTo} streams the rows and releases
+     * the connection; {@link #close} releases it if the rows are never written.
+     */
+    public class Export implements AutoCloseable {
+        private final String userLogin;
+        private final ExportFormat format;
+        private final long start;
+        private final Connection connection;
+        private final PreparedStatement statement;
+        private final ResultSet resultSet;
+
+        private Export(String userLogin, ExportFormat format, long start, Connection connection,
+                       PreparedStatement statement, ResultSet resultSet) {
+            this.userLogin = userLogin;
+            this.format = format;
+            this.start = start;
+            this.connection = connection;
+            this.statement = statement;
+            this.resultSet = resultSet;
+        }
+
+        public long writeTo(OutputStream out) throws SQLException, IOException {
+            long cpuStart = quotaService.cpuTime();
+            ExportBuffer buffer = new ExportBuffer(out, bufferSize);
+            try {
+                long rows = exporterFor(format).export(resultSet, buffer);
+                buffer.flush();
+                log.debug("Exported {} rows as {} for user {} in {} ms",
+                        rows, format, userLogin, System.currentTimeMillis() - start);
+                return rows;
+            } finally {
+                quotaService.record(userLogin, cpuStart, buffer.getBytesWritten());
+                close();
+            }
+        }
+
+        @Override
+        public void close() throws SQLException {
+            try (connection; statement; resultSet) {
+                // Closed in reverse order: result set, statement, then the pooled connection
+            }
+        }
+    }
+}
@@ -0,0 +1,771 @@
+package org.nsu.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.nsu.dto.SandboxPoolStats;
+import org.nsu.service.sandbox.SandboxPoolManager;
+import org.nsu.service.sandbox.SandboxStateStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Blob;
+import java.sql.Clob;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+@Service
+public class SandboxService {
+
+    private static final Logger log = LoggerFactory.getLogger(SandboxService.class);
+
+    // Global so a version never repeats, even for a sandbox that was dropped and recreated
+    private static final AtomicLong SCHEMA_VERSIONS = new AtomicLong();
+
+    // Only ever handed to H2 by this process, so it needs no configuration
+    private static final String QUERY_PASSWORD = UUID.randomUUID().toString();
+
+    // Heap taken by an H2 row and by its entry in a secondary index, without the values
+    private static final long ROW_BYTES = 80;
+    private static final long INDEX_ENTRY_BYTES = 48;
+    private static final int SIZE_SAMPLE_ROWS = 100;
+
+    private final SandboxStateStore stateStore;
+    private final SandboxPoolManager poolManager;
+    private final Map<String, SandboxState> sandboxes = new ConcurrentHashMap<>();
+
+    @Value("${sandbox.url-prefix:jdbc:h2:mem:sandbox_}")
+    private String sandboxUrlPrefix;
+
+    @Value("${sandbox.url-options:;DB_CLOSE_DELAY=-1}")
+    private String sandboxUrlOptions;
+
+    @Value("${sandbox.username:sa}")
+    private String sandboxUsername;
+
+    @Value("${sandbox.password:}")
+    private String sandboxPassword;
+
+    @Value("${sandbox.query-username:playground}")
+    private String queryUsername;
+
+    @Value("${sandbox.state.idle-timeout-ms:1800000}")
+    private long idleTimeout;
+
+    @Value("${sandbox.storage.file-tier.enabled:false}")
+    private boolean fileTierEnabled;
+
+    @Value("${sandbox.storage.directory:./sandbox-data}")
+    private String storageDirectory;
+
+    @Value("${sandbox.storage.file-url-options:;DB_CLOSE_DELAY=-1}")
+    private String fileUrlOptions;
+
+    @Value("${sandbox.storage.spill-threshold-bytes:67108864}")
+    private long spillThreshold;
+
+    @Value("${sandbox.storage.disk-quota-bytes:10737418240}")
+    private long diskQuota;
+
+    @Value("${sandbox.storage.orphan-retention-hours:168}")
+    private long orphanRetentionHours;
+
+    @Value("${sandbox.drain-timeout-ms:30000}")
+    private long drainTimeoutMs;
+
+    @Autowired
+    public SandboxService(ObjectProvider<SandboxStateStore> stateStore, SandboxPoolManager poolManager) {
+        this.stateStore = stateStore.getIfAvailable();
+        this.poolManager = poolManager;
+    }
+
+    public Connection getConnection(String userLogin) throws SQLException {
+        String sandboxName = getSandboxName(userLogin);
+        while (true) {
+            SandboxState state = sandboxes.computeIfAbsent(sandboxName, SandboxState::new);
+            synchronized (state) {
+                if (state.evicted) {
+                    continue;
+                }
+                load(state);
+                state.lastAccess = System.currentTimeMillis();
+            }
+            // Waiting for a pooled connection must not hold the sandbox lock that eviction needs
+            Connection connection = poolManager.acquire(sandboxName, () -> openIfLive(state));
+            if (connection != null) {
+                return connection;
+            }
+        }
+    }
+
+    /**
+     * Opens an unpooled connection with admin rights on the sandbox, for
+     * maintenance such as dumps and restores. User SQL must never run on it:
+     * it can read and write files and define Java functions.
+     */
+    public Connection getAdminConnection(String userLogin) throws SQLException {
+        String sandboxName = getSandboxName(userLogin);
+        while (true) {
+            SandboxState state = sandboxes.computeIfAbsent(sandboxName, SandboxState::new);
+            synchronized (state) {
+                if (state.evicted) {
+                    continue;
+                }
+                load(state);
+                state.lastAccess = System.currentTimeMillis();
+                return openConnection(state);
+            }
+        }
+    }
+
+    /**
+     * Creates an empty in-memory database outside every sandbox, with the same
+     * non-admin user as sandboxes. Content that is to replace a sandbox is
+     * loaded here first, see {@link #replaceContents}.
+     */
+    public StagingDatabase createStagingDatabase() throws SQLException {
+        // Sandbox names never contain '-', so this cannot clash with one
+        StagingDatabase staging = new StagingDatabase(sandboxUrlPrefix + "staging-" + UUID.randomUUID());
+        try (Connection connection = staging.getAdminConnection()) {
+            provision(connection);
+        } catch (SQLException e) {
+            staging.close();
+            throw e;
+        }
+        return staging;
+    }
+
+    /**
+     * Replaces all objects and rows of the sandbox with those of a script
+     * written by {@code SCRIPT}. New queries are held off and running ones
+     * allowed to finish first. If the script fails to load, the previous
+     * contents are put back.
+     */
+    public void replaceContents(String userLogin, Path script) throws SQLException {
+        String sandboxName = getSandboxName(userLogin);
+        while (true) {
+            SandboxState state = sandboxes.computeIfAbsent(sandboxName, SandboxState::new);
+            synchronized (state) {
+                if (state.evicted) {
+                    continue;
+                }
+                load(state);
+                state.lastAccess = System.currentTimeMillis();
+                if (!poolManager.closeAndDrain(state.name, drainTimeoutMs)) {
+                    throw new SQLException("Sandbox " + state.name + " is busy, close open cursors and exports "
+                            + "and try again");
+                }
+                Path backup = null;
+                try (Connection connection = openConnection(state);
+                     Statement statement = connection.createStatement()) {
+                    backup = Files.createTempFile("sandbox-" + state.name, ".sql.gz");
+                    statement.execute("SCRIPT TO '" + escape(backup) + "' COMPRESSION GZIP");
+                    statement.execute("DROP ALL OBJECTS");
+                    try {
+                        statement.execute("RUNSCRIPT FROM '" + escape(script) + "' COMPRESSION GZIP");
+                    } catch (SQLException e) {
+                        statement.execute("DROP ALL OBJECTS");
+                        statement.execute("RUNSCRIPT FROM '" + escape(backup) + "' COMPRESSION GZIP");
+                        throw e;
+                    }
+                } catch (IOException e) {
+                    throw new SQLException("Failed to back up sandbox " + state.name + ": " + e.getMessage(), e);
+                } finally {
+                    deleteQuietly(backup);
+                    // DROP ALL OBJECTS also drops the query user
+                    provision(state);
+                    state.dirty = true;
+                    state.storageChecked = false;
+                    state.schemaVersion = SCHEMA_VERSIONS.incrementAndGet();
+                }
+                return;
+            }
+        }
+    }
+
+    public SandboxPoolStats getPoolStats(String userLogin) {
+        return poolManager.getStats(getSandboxName(userLogin));
+    }
+
+    public void touch(String userLogin) {
+        SandboxState state = sandboxes.get(getSandboxName(userLogin));
+        if (state != null) {
+            state.lastAccess = System.currentTimeMillis();
+        }
+    }
+
+    public void markModified(String userLogin) {
+        SandboxState state = sandboxes.get(getSandboxName(userLogin));
+        if (state != null) {
+            state.dirty = true;
+            state.storageChecked = false;
+        }
+    }
+
+    public void markSchemaChanged(String userLogin) {
+        SandboxState state = sandboxes.get(getSandboxName(userLogin));
+        if (state != null) {
+            state.schemaVersion = SCHEMA_VERSIONS.incrementAndGet();
+        }
+    }
+
+    /**
+     * Changes whenever the sandbox's schema may have changed, for caches keyed
+     * by schema such as query plans.
+     */
+    public long getSchemaVersion(String userLogin) {
+        SandboxState state = sandboxes.get(getSandboxName(userLogin));
+        return state != null ? state.schemaVersion : -1;
+    }
+
+    public void checkDiskQuota(String userLogin) throws SQLException {
+        SandboxState state = sandboxes.get(getSandboxName(userLogin));
+        if (state == null || !state.fileBacked) {
+            return;
+        }
+        try {
+            long size = Files.size(dataFile(state.name));
+            if (size > diskQuota) {
+                throw new SQLException("Sandbox disk quota exceeded: " + size + " of " + diskQuota
+                        + " bytes used, delete data to continue", "53100");
+            }
+        } catch (IOException e) {
+            log.debug("Failed to read sandbox {} size: {}", state.name, e.getMessage());
+        }
+    }
+
+    /**
+     * Bytes used by the sandbox's tables, or 0 if the sandbox is not loaded on
+     * this node.
+     */
+    public long getSandboxSize(String userLogin) throws SQLException {
+        SandboxState state = sandboxes.get(getSandboxName(userLogin));
+        if (state == null) {
+            return 0;
+        }
+        synchronized (state) {
+            if (state.evicted || !state.ready) {
+                return 0;
+            }
+            return measure(state);
+        }
+    }
+
+    public void drop(String userLogin) {
+        SandboxState state = sandboxes.get(getSandboxName(userLogin));
+        if (state == null) {
+            return;
+        }
+        synchronized (state) {
+            if (state.evicted) {
+                return;
+            }
+            if (state.ready) {
+                shutdown(state);
+            }
+            if (state.fileBacked) {
+                deleteQuietly(dataFile(state.name));
+            }
+            state.evicted = true;
+            sandboxes.remove(state.name, state);
+        }
+    }
+
+    public String getSandboxName(String userLogin) {
+        if (userLogin == null || userLogin.isBlank()) {
+            return "anonymous";
+        }
+        return userLogin.toLowerCase().replaceAll("[^a-z0-9_]", "_");
+    }
+
+    @Scheduled(fixedDelayString = "${sandbox.state.sweep-interval-ms:60000}")
+    public void evictIdleSandboxes() {
+        if (stateStore == null) {
+            return;
+        }
+        long deadline = System.currentTimeMillis() - idleTimeout;
+        for (SandboxState state : sandboxes.values()) {
+            if (state.lastAccess < deadline) {
+                evict(state);
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${sandbox.storage.check-interval-ms:30000}")
+    public void applyStoragePolicy() {
+        if (!fileTierEnabled) {
+            return;
+        }
+        for (SandboxState state : sandboxes.values()) {
+            if (!state.fileBacked && !state.storageChecked) {
+                spillIfLarge(state);
+            }
+        }
+    }
+
+    @PostConstruct
+    public void cleanUpOrphanedFiles() {
+        if (!fileTierEnabled) {
+            return;
+        }
+        Path directory = Path.of(storageDirectory);
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot create sandbox storage directory " + directory, e);
+        }
+        Instant expiry = Instant.now().minus(Duration.ofHours(orphanRetentionHours));
+        try (Stream<Path> files = Files.list(directory)) {
+            files.filter(file -> isOrphaned(file, expiry)).forEach(file -> {
+                log.info("Removing orphaned sandbox file {}", file);
+                deleteQuietly(file);
+            });
+        } catch (IOException e) {
+            log.warn("Failed to clean up sandbox storage directory {}: {}", directory, e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void saveModifiedSandboxes() {
+        if (stateStore == null) {
+            return;
+        }
+        for (SandboxState state : sandboxes.values()) {
+            synchronized (state) {
+                if (state.ready && state.dirty) {
+                    trySnapshot(state);
+                }
+            }
+        }
+    }
+
+    private void evict(SandboxState state) {
+        synchronized (state) {
+            if (state.evicted || state.lastAccess >= System.currentTimeMillis() - idleTimeout) {
+                return;
+            }
+            // Open cursors and running exports hold connections; shutting down would kill them
+            if (!poolManager.closeAndDrain(state.name, 0)) {
+                log.debug("Sandbox {} is idle but has connections in use, not evicting it", state.name);
+                return;
+            }
+            if (state.ready && state.dirty && !trySnapshot(state)) {
+                return;
+            }
+            shutdown(state);
+            if (state.fileBacked) {
+                deleteQuietly(dataFile(state.name));
+            }
+            state.evicted = true;
+            sandboxes.remove(state.name, state);
+            log.debug("Evicted idle sandbox {}", state.name);
+        }
+    }
+
+    private void load(SandboxState state) throws SQLException {
+        if (state.ready) {
+            return;
+        }
+        if (fileTierEnabled && Files.exists(dataFile(state.name))) {
+            state.fileBacked = true;
+            // The file may hold writes made after the last save to the state store; evicting must save them first
+            state.dirty = true;
+        } else {
+            restore(state);
+        }
+        provision(state);
+        state.ready = true;
+    }
+
+    private boolean trySnapshot(SandboxState state) {
+        long start = System.currentTimeMillis();
+        Path file = null;
+        try {
+            file = Files.createTempFile("sandbox-" + state.name, ".sql.gz");
+            try (Connection connection = openConnection(state);
+                 Statement statement = connection.createStatement()) {
+                statement.execute("SCRIPT TO '" + escape(file) + "' COMPRESSION GZIP");
+            }
+            long version = stateStore.save(state.name, file, state.storeVersion);
+            if (version < 0) {
+                // Another node saved this sandbox since it was loaded here: keep both instead of overwriting
+                stateStore.saveConflict(state.name, file);
+                log.warn("Sandbox {} was also changed on another node, saved this node's copy as a conflict",
+                        state.name);
+            } else {
+                state.storeVersion = version;
+            }
+            state.dirty = false;
+            log.debug("Saved sandbox {} snapshot in {} ms", state.name, System.currentTimeMillis() - start);
+            return true;
+        } catch (SQLException | IOException e) {
+            log.warn("Failed to save sandbox {} snapshot: {}", state.name, e.getMessage());
+            return false;
+        } finally {
+            deleteQuietly(file);
+        }
+    }
+
+    private void restore(SandboxState state) throws SQLException {
+        if (stateStore == null) {
+            return;
+        }
+        String sandboxName = state.name;
+        long start = System.currentTimeMillis();
+        Path file = null;
+        try {
+            file = Files.createTempFile("sandbox-" + sandboxName, ".sql.gz");
+            state.storeVersion = stateStore.load(sandboxName, file);
+            if (state.storeVersion == 0) {
+                return;
+            }
+            try (Connection connection = openMemoryConnection(sandboxName);
+                 Statement statement = connection.createStatement()) {
+                statement.execute("RUNSCRIPT FROM '" + escape(file) + "' COMPRESSION GZIP");
+            }
+            log.info("Restored sandbox {} in {} ms", sandboxName, System.currentTimeMillis() - start);
+        } catch (IOException e) {
+            throw new SQLException("Failed to restore sandbox " + sandboxName + ": " + e.getMessage(), e);
+        } finally {
+            deleteQuietly(file);
+        }
+    }
+
+    private void spillIfLarge(SandboxState state) {
+        synchronized (state) {
+            if (state.evicted || !state.ready || state.fileBacked) {
+                return;
+            }
+            state.storageChecked = true;
+            long size;
+            try {
+                size = measure(state);
+            } catch (SQLException e) {
+                log.warn("Failed to measure sandbox {}: {}", state.name, e.getMessage());
+                return;
+            }
+            if (size > spillThreshold) {
+                moveToFile(state, size);
+            }
+        }
+    }
+
+    /**
+     * Bytes used by the sandbox's tables as seen through {@code connection},
+     * including that connection's uncommitted changes.
+     */
+    public long getSandboxSize(Connection connection) throws SQLException {
+        return measure(connection);
+    }
+
+    private long measure(SandboxState state) throws SQLException {
+        try (Connection connection = openConnection(state)) {
+            // Counts the rows of statements still running too, which QuotaService watches for
+            connection.setTransactionIsolation(Connection.TRANSACTION_READ_UNCOMMITTED);
+            return measure(connection);
+        }
+    }
+
+    /**
+     * Estimates what the tables take in memory: H2 reports no size for pages
+     * of in-memory databases ({@code DISK_SPACE_USED} is 0 for them). Each
+     * table's row count is multiplied by the average size of a sample of its
+     * rows, plus an entry per row in each secondary index; the sizes are
+     * calibrated against heap growth and come within a few percent of it.
+     */
+    private static long measure(Connection connection) throws SQLException {
+        Map<String, long[]> tables = new LinkedHashMap<>();
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery(
+                     "SELECT QUOTE_IDENT(T.TABLE_SCHEMA) || '.' || QUOTE_IDENT(T.TABLE_NAME), T.ROW_COUNT_ESTIMATE, " +
+                     "(SELECT COUNT(*) FROM INFORMATION_SCHEMA.INDEXES I WHERE I.TABLE_SCHEMA = T.TABLE_SCHEMA " +
+                     "AND I.TABLE_NAME = T.TABLE_NAME AND I.INDEX_TYPE_NAME <> 'PRIMARY KEY') " +
+                     "FROM INFORMATION_SCHEMA.TABLES T " +
+                     "WHERE T.TABLE_TYPE = 'BASE TABLE' AND T.TABLE_SCHEMA <> 'INFORMATION_SCHEMA' " +
+                     "AND T.ROW_COUNT_ESTIMATE > 0")) {
+            while (resultSet.next()) {
+                tables.put(resultSet.getString(1), new long[]{resultSet.getLong(2), resultSet.getLong(3)});
+            }
+        }
+        long bytes = 0;
+        for (Map.Entry<String, long[]> table : tables.entrySet()) {
+            long rows = table.getValue()[0];
+            bytes += rows * (averageRowBytes(connection, table.getKey()) + INDEX_ENTRY_BYTES * table.getValue()[1]);
+        }
+        return bytes;
+    }
+
+    private static long averageRowBytes(Connection connection, String table) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT * FROM " + table + " LIMIT " + SIZE_SAMPLE_ROWS)) {
+            int columns = resultSet.getMetaData().getColumnCount();
+            long bytes = 0;
+            int rows = 0;
+            while (resultSet.next()) {
+                rows++;
+                bytes += ROW_BYTES;
+                for (int i = 1; i <= columns; i++) {
+                    bytes += valueBytes(resultSet.getObject(i));
+                }
+            }
+            return rows > 0 ? bytes / rows : ROW_BYTES;
+        }
+    }
+
+    private static long valueBytes(Object value) throws SQLException {
+        if (value == null) {
+            return 8;
+        }
+        if (value instanceof String text) {
+            return 56 + text.length();
+        }
+        if (value instanceof byte[] binary) {
+            return 40 + binary.length;
+        }
+        if (value instanceof Clob clob) {
+            return 56 + clob.length();
+        }
+        if (value instanceof Blob blob) {
+            return 40 + blob.length();
+        }
+        return 40;
+    }
+
+    private void moveToFile(SandboxState state, long size) {
+        // Rows written between SCRIPT TO and SHUTDOWN would be lost, so no query may run meanwhile.
+        // Callers hold the sandbox lock, so a busy sandbox is skipped rather than waited for.
+        if (!poolManager.closeAndDrain(state.name, 0)) {
+            log.info("Sandbox {} is busy, moving it to file storage later", state.name);
+            state.storageChecked = false;
+            return;
+        }
+        long start = System.currentTimeMillis();
+        Path file = null;
+        try {
+            file = Files.createTempFile("sandbox-" + state.name, ".sql.gz");
+            try (Connection connection = openMemoryConnection(state.name);
+                 Statement statement = connection.createStatement()) {
+                statement.execute("SCRIPT TO '" + escape(file) + "' COMPRESSION GZIP");
+            }
+            deleteQuietly(dataFile(state.name));
+            try (Connection connection = openFileConnection(state.name);
+                 Statement statement = connection.createStatement()) {
+                statement.execute("RUNSCRIPT FROM '" + escape(file) + "' COMPRESSION GZIP");
+            }
+            shutdown(state);
+            state.fileBacked = true;
+            provision(state);
+            log.info("Moved sandbox {} ({} bytes) to file storage in {} ms",
+                    state.name, size, System.currentTimeMillis() - start);
+        } catch (SQLException | IOException e) {
+            log.warn("Failed to move sandbox {} to file storage: {}", state.name, e.getMessage());
+            deleteQuietly(dataFile(state.name));
+        } finally {
+            deleteQuietly(file);
+        }
+    }
+
+    /**
+     * Creates the user that sandbox queries run as. It may create and change
+     * objects in any schema but is not an admin, so H2 refuses it file access,
+     * Java functions, linked tables and {@code SCRIPT}/{@code RUNSCRIPT}. The
+     * password is reset each time, since restored snapshots carry the user of
+     * the process that saved them.
+     */
+    private void provision(SandboxState state) throws SQLException {
+        try (Connection connection = openConnection(state)) {
+            provision(connection);
+        }
+    }
+
+    private void provision(Connection adminConnection) throws SQLException {
+        String user = queryUser();
+        try (Statement statement = adminConnection.createStatement()) {
+            statement.execute("CREATE USER IF NOT EXISTS " + user + " PASSWORD '" + QUERY_PASSWORD + "'");
+            statement.execute("ALTER USER " + user + " SET PASSWORD '" + QUERY_PASSWORD + "'");
+            statement.execute("GRANT ALTER ANY SCHEMA TO " + user);
+            statement.execute("GRANT SELECT, INSERT, UPDATE, DELETE ON SCHEMA PUBLIC TO " + user);
+        }
+    }
+
+    private String queryUser() {
+        if (!queryUsername.matches("[A-Za-z_][A-Za-z0-9_]*")) {
+            throw new IllegalStateException("Invalid sandbox.query-username: " + queryUsername);
+        }
+        // H2 upper-cases the user name given when connecting
+        return '"' + queryUsername.toUpperCase(Locale.ROOT) + '"';
+    }
+
+    private void shutdown(SandboxState state) {
+        poolManager.close(state.name);
+        try (Connection connection = openConnection(state);
+             Statement statement = connection.createStatement()) {
+            statement.execute("SHUTDOWN");
+        } catch (SQLException e) {
+            log.warn("Failed to shut down sandbox {}: {}", state.name, e.getMessage());
+        }
+    }
+
+    /**
+     * H2's temporary files are always leftovers. A data file is the only copy
+     * of a file-tier sandbox, so it is removed only if no loaded sandbox uses
+     * it and the state store holds a newer snapshot of that sandbox, which is
+     * what the sandbox is restored from once the file is gone.
+     */
+    private boolean isOrphaned(Path file, Instant expiry) {
+        String fileName = file.getFileName().toString();
+        if (fileName.endsWith(".trace.db") || fileName.endsWith(".tempFile") || fileName.endsWith(".lock.db")) {
+            return true;
+        }
+        if (!fileName.endsWith(".mv.db") || stateStore == null) {
+            return false;
+        }
+        String sandboxName = fileName.substring(0, fileName.length() - ".mv.db".length());
+        if (sandboxes.containsKey(sandboxName)) {
+            return false;
+        }
+        try {
+            Instant modified = Files.getLastModifiedTime(file).toInstant();
+            Instant saved = stateStore.savedAt(sandboxName);
+            return modified.isBefore(expiry) && saved != null && !saved.isBefore(modified);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    // Pooled connections run user SQL, so they never get admin rights
+    private Connection openIfLive(SandboxState state) throws SQLException {
+        synchronized (state) {
+            if (state.evicted) {
+                return null;
+            }
+            // URL options are database settings only an admin may change, and the admin connection
+            // that opened the database has applied them already
+            String url = state.fileBacked ? fileDatabase(state.name) : sandboxUrlPrefix + state.name;
+            return DriverManager.getConnection(url, queryUsername, QUERY_PASSWORD);
+        }
+    }
+
+    private Connection openConnection(SandboxState state) throws SQLException {
+        return state.fileBacked ? openFileConnection(state.name) : openMemoryConnection(state.name);
+    }
+
+    private Connection openMemoryConnection(String sandboxName) throws SQLException {
+        return DriverManager.getConnection(memoryUrl(sandboxName), sandboxUsername, sandboxPassword);
+    }
+
+    private Connection openFileConnection(String sandboxName) throws SQLException {
+        return DriverManager.getConnection(fileUrl(sandboxName), sandboxUsername, sandboxPassword);
+    }
+
+    private String memoryUrl(String sandboxName) {
+        return sandboxUrlPrefix + sandboxName + sandboxUrlOptions;
+    }
+
+    private String fileUrl(String sandboxName) {
+        return fileDatabase(sandboxName) + fileUrlOptions;
+    }
+
+    private String fileDatabase(String sandboxName) {
+        return "jdbc:h2:nioMapped:" + Path.of(storageDirectory, sandboxName).toAbsolutePath();
+    }
+
+    private Path dataFile(String sandboxName) {
+        return Path.of(storageDirectory, sandboxName + ".mv.db");
+    }
+
+    private String escape(Path file) {
+        return file.toAbsolutePath().toString().replace("'", "''");
+    }
+
+    private void deleteQuietly(Path file) {
+        if (file == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.debug("Failed to delete temporary snapshot {}: {}", file, e.getMessage());
+        }
+    }
+
+    /**
+     * A scratch database from {@link #createStagingDatabase()}. Closing it
+     * drops it with everything in it.
+     */
+    public class StagingDatabase implements AutoCloseable {
+        private final String database;
+
+        private StagingDatabase(String database) {
+            this.database = database;
+        }
+
+        /**
+         * Opens a connection with the rights of sandbox queries, for loading
+         * content that is not trusted.
+         */
+        public Connection getConnection() throws SQLException {
+            return DriverManager.getConnection(database, queryUsername, QUERY_PASSWORD);
+        }
+
+        /**
+         * Writes the database as a gzip-compressed script for {@link #replaceContents}.
+         */
+        public void scriptTo(Path file) throws SQLException {
+            try (Connection connection = getAdminConnection();
+                 Statement statement = connection.createStatement()) {
+                statement.execute("SCRIPT NOSETTINGS TO '" + escape(file) + "' COMPRESSION GZIP");
+            }
+        }
+
+        @Override
+        public void close() {
+            try (Connection connection = getAdminConnection();
+                 Statement statement = connection.createStatement()) {
+                statement.execute("SHUTDOWN");
+            } catch (SQLException e) {
+                log.warn("Failed to drop staging database {}: {}", database, e.getMessage());
+            }
+        }
+
+        private Connection getAdminConnection() throws SQLException {
+            return DriverManager.getConnection(database + sandboxUrlOptions, sandboxUsername, sandboxPassword);
+        }
+    }
+
+    private static class SandboxState {
+        private final String name;
+        private volatile long lastAccess = System.currentTimeMillis();
+        private volatile boolean dirty;
+        private volatile boolean storageChecked;
+        private volatile boolean fileBacked;
+        private volatile long schemaVersion = SCHEMA_VERSIONS.incrementAndGet();
+        // Version of the snapshot in the state store this copy started from, 0 for none
+        private volatile long storeVersion;
+        private boolean ready;
+        private boolean evicted;
+
+        private SandboxState(String name) {
+            this.name = name;
+        }
+    }
+}
@@ -0,0 +1,472 @@
+package org.nsu.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.nsu.security.PlaygroundUser;
+import org.nsu.service.github.GitHubUnavailableException;
+import org.nsu.service.snapshot.SandboxDump;
+import org.nsu.service.snapshot.SnapshotScript;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.RestClientException;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+/**
+ * Commits the whole sandbox to a GitHub repository as a snapshot and restores
+ * it from any commit. A snapshot lives under {@code snapshots/<name>/}: a
+ * {@code manifest.json}, the schema, the post-load constraints and each
+ * table's rows in chunks under {@code data/}. Chunks are stored as Git blobs,
+ * so a chunk whose SHA the repository already has is not uploaded again.
+ * Restore checks every file against what a dump may contain, loads tables in
+ * parallel into a staging database and replaces the sandbox only once all of
+ * it has loaded.
+ */
+@Service
+public class SandboxSnapshotService {
+
+    private static final Logger log = LoggerFactory.getLogger(SandboxSnapshotService.class);
+
+    private static final Pattern SNAPSHOT_NAME = Pattern.compile("[A-Za-z0-9_-][A-Za-z0-9_.-]{0,99}");
+    private static final int MANIFEST_FORMAT = 1;
+
+    private final GitHubService gitHubService;
+    private final GitBlobCache blobCache;
+    private final SandboxService sandboxService;
+    private final QuotaService quotaService;
+    private final StatementClassifier statementClassifier;
+    private final ObjectMapper objectMapper;
+    private final Executor restoreExecutor;
+
+    @Value("${snapshot.chunk-bytes:1048576}")
+    private int chunkBytes;
+
+    @Value("${snapshot.restore.parallelism:4}")
+    private int restoreParallelism;
+
+    @Autowired
+    public SandboxSnapshotService(GitHubService gitHubService, GitBlobCache blobCache, SandboxService sandboxService,
+                                  QuotaService quotaService, StatementClassifier statementClassifier,
+                                  ObjectMapper objectMapper,
+                                  @Qualifier("queryBatchExecutor") Executor restoreExecutor) {
+        this.gitHubService = gitHubService;
+        this.blobCache = blobCache;
+        this.sandboxService = sandboxService;
+        this.quotaService = quotaService;
+        this.statementClassifier = statementClassifier;
+        this.objectMapper = objectMapper;
+        this.restoreExecutor = restoreExecutor;
+    }
+
+    public static boolean isValidName(String name) {
+        return name != null && SNAPSHOT_NAME.matcher(name).matches();
+    }
+
+    public Map<String, Object> createSnapshot(PlaygroundUser user, String owner, String repo, String name,
+                                              String branch, String message) {
+        String directory = "snapshots/" + name + "/";
+
+        SandboxDump dump;
+        // SCRIPT needs admin rights; it only reads, so no user SQL runs on this connection
+        try (Connection conn = sandboxService.getAdminConnection(user.getLogin())) {
+            dump = SandboxDump.read(conn, chunkBytes);
+        } catch (SQLException e) {
+            return Map.of("error", "Failed to dump sandbox: " + e.getMessage());
+        }
+
+        // Path to content, in path order so the manifest and tree are the same for the same data
+        Map<String, byte[]> files = new TreeMap<>();
+        List<Map<String, Object>> tables = new ArrayList<>();
+        files.put(directory + "schema.sql", dump.getSchema());
+        files.put(directory + "constraints.sql", dump.getConstraints());
+        for (Map.Entry<String, List<byte[]>> table : dump.getTables().entrySet()) {
+            String tableDirectory = "data/" + SandboxDump.tableDirectory(table.getKey()) + "/";
+            List<String> chunks = new ArrayList<>();
+            for (int i = 0; i < table.getValue().size(); i++) {
+                String chunk = tableDirectory + String.format("%05d.sql", i);
+                chunks.add(chunk);
+                files.put(directory + chunk, table.getValue().get(i));
+            }
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("name", table.getKey());
+            entry.put("chunks", chunks);
+            tables.add(entry);
+        }
+        Map<String, Object> manifest = new LinkedHashMap<>();
+        manifest.put("format", MANIFEST_FORMAT);
+        manifest.put("schema", "schema.sql");
+        manifest.put("constraints", "constraints.sql");
+        manifest.put("tables", tables);
+        try {
+            files.put(directory + "manifest.json", objectMapper.writerWithDefaultPrettyPrinter()
+                    .writeValueAsString(manifest).concat("\n").getBytes(StandardCharsets.UTF_8));
+        } catch (JsonProcessingException e) {
+            return Map.of("error", "Failed to write snapshot manifest: " + e.getMessage());
+        }
+
+        try {
+            String parent = (String) nested(gitHubService.getRef(user, owner, repo, branch), "object", "sha");
+            String baseTree = (String) nested(gitHubService.getCommit(user, owner, repo, parent), "tree", "sha");
+            Map<String, Object> tree = gitHubService.getTree(user, owner, repo, baseTree);
+            if (tree == null || tree.containsKey("error")) {
+                return tree != null ? tree : Map.of("error", "Empty repository tree response");
+            }
+            Set<String> knownBlobs = new HashSet<>();
+            Set<String> stalePaths = new TreeSet<>();
+            for (Map<String, Object> entry : blobEntries(tree)) {
+                knownBlobs.add((String) entry.get("sha"));
+                String path = (String) entry.get("path");
+                if (path.startsWith(directory) && !files.containsKey(path)) {
+                    stalePaths.add(path);
+                }
+            }
+
+            List<Map<String, Object>> treeEntries = new ArrayList<>();
+            int uploaded = 0;
+            long uploadedBytes = 0;
+            for (Map.Entry<String, byte[]> file : files.entrySet()) {
+                String sha = SandboxDump.blobSha(file.getValue());
+                if (knownBlobs.add(sha)) {
+                    String created = (String) gitHubService.createBlob(user, owner, repo, file.getValue()).get("sha");
+                    if (!sha.equals(created)) {
+                        log.warn("GitHub returned blob {} for {}, expected {}", created, file.getKey(), sha);
+                        sha = created;
+                    }
+                    uploaded++;
+                    uploadedBytes += file.getValue().length;
+                }
+                treeEntries.add(treeEntry(file.getKey(), sha));
+            }
+            for (String path : stalePaths) {
+                treeEntries.add(treeEntry(path, null));
+            }
+
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("snapshot", name);
+            result.put("branch", branch);
+            result.put("tables", tables.size());
+            result.put("files", files.size());
+            result.put("uploadedBlobs", uploaded);
+            result.put("reusedBlobs", files.size() - uploaded);
+            result.put("uploadedBytes", uploadedBytes);
+
+            String newTree = (String) gitHubService.createTree(user, owner, repo, baseTree, treeEntries).get("sha");
+            if (baseTree.equals(newTree)) {
+                result.put("commit", parent);
+                result.put("unchanged", true);
+                return result;
+            }
+            String commit = (String) gitHubService.createCommit(user, owner, repo,
+                    message != null && !message.isBlank() ? message : "Snapshot " + name + " from playground",
+                    newTree, parent).get("sha");
+            gitHubService.updateRef(user, owner, repo, branch, commit);
+            log.debug("Committed snapshot {} of {} to {}/{}@{}: {} of {} blobs uploaded",
+                    name, user.getLogin(), owner, repo, branch, uploaded, files.size());
+
+            result.put("commit", commit);
+            result.put("unchanged", false);
+            return result;
+        } catch (GitHubUnavailableException e) {
+            throw e;
+        } catch (RestClientException | IllegalStateException | ClassCastException e) {
+            return Map.of("error", "Failed to commit snapshot: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Replaces the sandbox with a snapshot from {@code ref}, which may be a
+     * branch, tag or commit SHA.
+     */
+    public Map<String, Object> restoreSnapshot(PlaygroundUser user, String owner, String repo, String name, String ref) {
+        String userLogin = user.getLogin();
+        String directory = "snapshots/" + name + "/";
+        try {
+            quotaService.check(userLogin, true);
+        } catch (QuotaExceededException e) {
+            return Map.of("error", e.getMessage(), "errorCode", e.getQuotaErrorCode());
+        }
+        long start = System.currentTimeMillis();
+
+        Map<String, Object> tree = gitHubService.getTree(user, owner, repo, ref);
+        if (tree == null || tree.containsKey("error")) {
+            return tree != null ? tree : Map.of("error", "Empty repository tree response");
+        }
+        Map<String, String> blobs = new HashMap<>();
+        for (Map<String, Object> entry : blobEntries(tree)) {
+            String path = (String) entry.get("path");
+            if (path.startsWith(directory)) {
+                blobs.put(path.substring(directory.length()), (String) entry.get("sha"));
+            }
+        }
+        if (!blobs.containsKey("manifest.json")) {
+            return Map.of("error", "Snapshot " + name + " not found in " + owner + "/" + repo + "@" + ref
+                    + (Boolean.TRUE.equals(tree.get("truncated")) ? " (repository tree is truncated)" : ""));
+        }
+
+        List<TableLoad> loads = new ArrayList<>();
+        String schemaPath;
+        String constraintsPath;
+        try {
+            Map<?, ?> manifest = objectMapper.readValue(fetch(user, owner, repo, blobs.get("manifest.json")), Map.class);
+            if (!Integer.valueOf(MANIFEST_FORMAT).equals(manifest.get("format"))) {
+                return Map.of("error", "Unsupported snapshot format: " + manifest.get("format"));
+            }
+            schemaPath = (String) manifest.get("schema");
+            constraintsPath = (String) manifest.get("constraints");
+            for (Object item : (List<?>) manifest.get("tables")) {
+                Map<?, ?> table = (Map<?, ?>) item;
+                List<String> chunks = new ArrayList<>();
+                for (Object chunk : (List<?>) table.get("chunks")) {
+                    chunks.add((String) chunk);
+                }
+                String tableName = (String) table.get("name");
+                if (!SnapshotScript.isTableName(tableName)) {
+                    return Map.of("error", "Invalid snapshot manifest: bad table name " + tableName);
+                }
+                loads.add(new TableLoad(tableName, chunks));
+            }
+        } catch (IOException | ClassCastException | NullPointerException e) {
+            return Map.of("error", "Invalid snapshot manifest: " + e.getMessage());
+        } catch (RestClientException | IllegalStateException e) {
+            return Map.of("error", "Failed to fetch snapshot manifest: " + e.getMessage());
+        }
+
+        List<String> missing = new ArrayList<>();
+        for (String path : List.of(schemaPath, constraintsPath)) {
+            if (!blobs.containsKey(path)) {
+                missing.add(path);
+            }
+        }
+        for (TableLoad load : loads) {
+            for (String chunk : load.chunks) {
+                if (!blobs.containsKey(chunk)) {
+                    missing.add(chunk);
+                }
+            }
+        }
+        if (!missing.isEmpty()) {
+            return Map.of("error", "Snapshot " + name + " is incomplete, missing: " + missing);
+        }
+
+        // Everything is fetched, checked and loaded into a staging database first, so a
+        // snapshot that fails halfway never touches the sandbox
+        AtomicLong loadedBytes = new AtomicLong();
+        long cpuStart = quotaService.cpuTime();
+        Path script = null;
+        try (SandboxService.StagingDatabase staging = sandboxService.createStagingDatabase()) {
+            try (Connection conn = staging.getConnection();
+                 Statement statement = conn.createStatement()) {
+                executeChecked(statement, schemaPath, fetch(user, owner, repo, blobs.get(schemaPath)),
+                        SnapshotScript::isSchemaStatement);
+            }
+            loadTables(user, owner, repo, blobs, loads, staging, loadedBytes);
+            try (Connection conn = staging.getConnection();
+                 Statement statement = conn.createStatement()) {
+                executeChecked(statement, constraintsPath, fetch(user, owner, repo, blobs.get(constraintsPath)),
+                        SnapshotScript::isConstraintStatement);
+            }
+            try (Connection conn = staging.getConnection()) {
+                quotaService.checkSnapshotSize(sandboxService.getSandboxSize(conn));
+            }
+            script = Files.createTempFile("snapshot-" + sandboxService.getSandboxName(userLogin), ".sql.gz");
+            staging.scriptTo(script);
+            sandboxService.checkDiskQuota(userLogin);
+            sandboxService.replaceContents(userLogin, script);
+            quotaService.markSandboxModified(userLogin);
+        } catch (QuotaExceededException e) {
+            return Map.of("error", e.getMessage(), "errorCode", e.getQuotaErrorCode());
+        } catch (SQLException e) {
+            return Map.of("error", "Failed to restore snapshot: " + e.getMessage());
+        } catch (IOException e) {
+            return Map.of("error", "Failed to stage snapshot: " + e.getMessage());
+        } catch (RestClientException | IllegalStateException e) {
+            return Map.of("error", "Failed to fetch snapshot: " + e.getMessage());
+        } finally {
+            deleteQuietly(script);
+            // Only the schema, constraints and swap run on this thread; the table loads are not counted
+            quotaService.record(userLogin, cpuStart, 0);
+        }
+        log.debug("Restored snapshot {} from {}/{}@{} for {}: {} tables, {} bytes",
+                name, owner, repo, ref, userLogin, loads.size(), loadedBytes.get());
+
+        int chunks = loads.stream().mapToInt(load -> load.chunks.size()).sum();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("snapshot", name);
+        result.put("ref", ref);
+        result.put("tables", loads.size());
+        result.put("chunks", chunks);
+        result.put("bytes", loadedBytes.get());
+        result.put("elapsedMs", System.currentTimeMillis() - start);
+        return result;
+    }
+
+    /**
+     * Loads the tables into the staging database with up to
+     * {@code snapshot.restore.parallelism} workers, each with its own
+     * connection, taking the next table when one is done. Each chunk is
+     * committed on its own, so only one chunk per worker is held in memory and
+     * undo logs stay small. Loading stops once the snapshot bytes loaded so
+     * far, or the staging database after a table, are over the size quota.
+     */
+    private void loadTables(PlaygroundUser user, String owner, String repo, Map<String, String> blobs,
+                            List<TableLoad> loads, SandboxService.StagingDatabase staging,
+                            AtomicLong loadedBytes) throws SQLException {
+        if (loads.isEmpty()) {
+            return;
+        }
+        ConcurrentLinkedQueue<TableLoad> queue = new ConcurrentLinkedQueue<>(loads);
+        int workers = Math.max(1, Math.min(restoreParallelism, loads.size()));
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (int i = 0; i < workers; i++) {
+            futures.add(CompletableFuture.runAsync(() -> {
+                try (Connection conn = staging.getConnection();
+                     Statement statement = conn.createStatement()) {
+                    conn.setAutoCommit(false);
+                    TableLoad load;
+                    while ((load = queue.poll()) != null) {
+                        String table = load.table;
+                        for (String chunk : load.chunks) {
+                            // Checked before each chunk, so every worker stops once the snapshot is too large
+                            quotaService.checkSnapshotSize(loadedBytes.get());
+                            byte[] content = fetch(user, owner, repo, blobs.get(chunk));
+                            executeChecked(statement, chunk, content, sql -> SnapshotScript.isInsertInto(sql, table));
+                            conn.commit();
+                            loadedBytes.addAndGet(content.length);
+                        }
+                        quotaService.checkSnapshotSize(sandboxService.getSandboxSize(conn));
+                    }
+                } catch (SQLException e) {
+                    throw new CompletionException(e);
+                }
+            }, restoreExecutor));
+        }
+        try {
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+        } catch (CompletionException e) {
+            // Stop the other workers from starting more tables
+            queue.clear();
+            Throwable cause = e.getCause();
+            if (cause instanceof SQLException sqlException) {
+                throw sqlException;
+            }
+            if (cause instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw e;
+        }
+    }
+
+    private byte[] fetch(PlaygroundUser user, String owner, String repo, String sha) {
+        return blobCache.get(sha, () -> gitHubService.getBlob(user, owner, repo, sha));
+    }
+
+    /**
+     * Runs a snapshot file statement by statement, after checking that every
+     * statement is of the kind the file may hold and none is forbidden in
+     * sandboxes. Nothing runs if any statement fails the check.
+     */
+    private void executeChecked(Statement statement, String path, byte[] content, Predicate<String> allowed)
+            throws SQLException {
+        List<String> statements = SnapshotScript.split(content);
+        for (String sql : statements) {
+            if (!allowed.test(sql)) {
+                throw new SQLException(path + ": statement not allowed in this snapshot file: "
+                        + SnapshotScript.abbreviate(sql));
+            }
+            try {
+                statementClassifier.checkAllowed(sql);
+            } catch (SQLException e) {
+                throw new SQLException(path + ": " + e.getMessage(), e.getSQLState(), e);
+            }
+        }
+        try {
+            for (String sql : statements) {
+                statement.addBatch(sql);
+            }
+            statement.executeBatch();
+        } catch (SQLException e) {
+            throw new SQLException(path + ": " + e.getMessage(), e.getSQLState(), e.getErrorCode(), e);
+        } finally {
+            statement.clearBatch();
+        }
+    }
+
+    private void deleteQuietly(Path file) {
+        if (file == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.debug("Failed to delete staged snapshot {}: {}", file, e.getMessage());
+        }
+    }
+
+    private static List<Map<String, Object>> blobEntries(Map<String, Object> tree) {
+        List<Map<String, Object>> entries = new ArrayList<>();
+        if (tree.get("tree") instanceof List<?> list) {
+            for (Object item : list) {
+                if (item instanceof Map<?, ?> raw && "blob".equals(raw.get("type"))
+                        && raw.get("path") instanceof String && raw.get("sha") instanceof String) {
+                    @SuppressWarnings("unchecked")
+                    Map<String, Object> entry = (Map<String, Object>) raw;
+                    entries.add(entry);
+                }
+            }
+        }
+        return entries;
+    }
+
+    private static Map<String, Object> treeEntry(String path, String sha) {
+        // A null sha removes the path, so the map must allow null values
+        Map<String, Object> entry = new HashMap<>();
+        entry.put("path", path);
+        entry.put("mode", "100644");
+        entry.put("type", "blob");
+        entry.put("sha", sha);
+        return entry;
+    }
+
+    private static Object nested(Map<String, Object> body, String key, String nestedKey) {
+        if (body.get(key) instanceof Map<?, ?> value && value.get(nestedKey) != null) {
+            return value.get(nestedKey);
+        }
+        throw new IllegalStateException("GitHub response has no " + key + "." + nestedKey);
+    }
+
+    private static class TableLoad {
+        private final String table;
+        private final List<String> chunks;
+
+        TableLoad(String table, List<String> chunks) {
+            this.table = table;
+            this.chunks = chunks;
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package org.nsu.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.nsu.dto.QueryRequest;
+import org.nsu.dto.QueryResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+/**
+ * Runs a throwaway sandbox through the whole query path once the application is
+ * ready, so the first real {@code /execute} does not pay for H2, JDBC and
+ * Jackson class loading and the datasource pool is already filled.
+ */
+@Component
+public class SandboxWarmup {
+
+    private static final Logger log = LoggerFactory.getLogger(SandboxWarmup.class);
+
+    // Underscores cannot appear in GitHub logins, so this never matches a real sandbox
+    private static final String WARMUP_LOGIN = "__warmup__";
+
+    private final QueryExecutionService queryExecutionService;
+    private final SandboxService sandboxService;
+    private final ObjectProvider<DataSource> dataSource;
+    private final ObjectMapper objectMapper;
+    private final Executor executor;
+
+    @Value("${startup.warmup.enabled:true}")
+    private boolean enabled;
+
+    @Autowired
+    public SandboxWarmup(QueryExecutionService queryExecutionService,
+                         SandboxService sandboxService,
+                         ObjectProvider<DataSource> dataSource,
+                         ObjectMapper objectMapper,
+                         @Qualifier("queryBatchExecutor") Executor executor) {
+        this.queryExecutionService = queryExecutionService;
+        this.sandboxService = sandboxService;
+        this.dataSource = dataSource;
+        this.objectMapper = objectMapper;
+        this.executor = executor;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        if (enabled) {
+            executor.execute(this::run);
+        }
+    }
+
+    private void run() {
+        long start = System.currentTimeMillis();
+        try {
+            DataSource pool = dataSource.getIfAvailable();
+            if (pool != null) {
+                try (Connection connection = pool.getConnection()) {
+                    connection.isValid(1);
+                }
+            }
+
+            queryExecutionService.executeScript(WARMUP_LOGIN,
+                    "CREATE TABLE warmup (id INT PRIMARY KEY, name VARCHAR(50), created TIMESTAMP);" +
+                    "INSERT INTO warmup VALUES (1, 'a', CURRENT_TIMESTAMP), (2, 'b', CURRENT_TIMESTAMP)");
+            QueryResponse response = queryExecutionService.execute(WARMUP_LOGIN,
+                    new QueryRequest("SELECT id, name, created FROM warmup WHERE id > ?", Map.of("1", 0)));
+            objectMapper.writeValueAsBytes(response);
+
+            log.info("Warmed up query path in {} ms", System.currentTimeMillis() - start);
+        } catch (Exception e) {
+            log.warn("Warm-up failed: {}", e.getMessage());
+        } finally {
+            sandboxService.drop(WARMUP_LOGIN);
+        }
+    }
+}
@@ -0,0 +1,421 @@
+package org.nsu.service;
+
+import org.nsu.dto.SavedQuery;
+import org.nsu.security.PlaygroundUser;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.RestClientException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Per-user saved query library. Listing and search are served from memory.
+ * The library is loaded from the user's {@code saved-queries.repository} in
+ * the background on first access, so it survives restarts, and written back
+ * by {@link #sync}. Until the load finishes the library holds only what was
+ * saved on this node since.
+ */
+@Service
+public class SavedQueryService {
+
+    private static final Logger log = LoggerFactory.getLogger(SavedQueryService.class);
+    private static final Pattern TOKEN_SEPARATOR = Pattern.compile("[^\\p{L}\\p{N}_]+");
+    private static final Pattern VALID_NAME = Pattern.compile("[A-Za-z0-9._-]{1,100}");
+    // The header SqlFileFormatter writes
+    private static final Pattern FILE_HEADER = Pattern.compile(
+            "-- Query executed by .* at (\\S+)\n-- Parameters: (.*)\n-- Timeout: (\\S+) seconds\n" +
+            "-- Limit: (\\S+) rows\n\n");
+    private static final Pattern PARAMETER = Pattern.compile("([^=,{} ]+)=([^,}]*)");
+
+    private final GitHubService gitHubService;
+    private final Executor loadExecutor;
+    private final Map<String, Library> libraries = new ConcurrentHashMap<>();
+
+    @Value("${saved-queries.repository:sql-playground-queries}")
+    private String defaultRepository;
+
+    @Value("${saved-queries.directory:queries}")
+    private String defaultDirectory;
+
+    @Value("${saved-queries.load.retry-ms:60000}")
+    private long loadRetryMs;
+
+    @Autowired
+    public SavedQueryService(GitHubService gitHubService,
+                             @Qualifier("savedQueryLoadExecutor") Executor loadExecutor) {
+        this.gitHubService = gitHubService;
+        this.loadExecutor = loadExecutor;
+    }
+
+    public static boolean isValidName(String name) {
+        return name != null && VALID_NAME.matcher(name).matches();
+    }
+
+    public SavedQuery save(PlaygroundUser user, String name, SavedQuery query) {
+        query.setName(name);
+        query.setUpdatedAt(LocalDateTime.now());
+        Library library = library(user);
+        synchronized (library) {
+            SavedQuery previous = library.queries.get(name);
+            if (previous != null) {
+                query.setSyncedSha(previous.getSyncedSha());
+                library.unindex(previous);
+            }
+            library.queries.put(name, query);
+            library.index(query);
+            library.deleted.remove(name);
+        }
+        return query;
+    }
+
+    public SavedQuery get(PlaygroundUser user, String name) {
+        Library library = library(user);
+        synchronized (library) {
+            return library.queries.get(name);
+        }
+    }
+
+    public boolean delete(PlaygroundUser user, String name) {
+        Library library = library(user);
+        synchronized (library) {
+            SavedQuery removed = library.queries.remove(name);
+            if (removed == null) {
+                return false;
+            }
+            library.unindex(removed);
+            // Kept until sync deletes the file, so a load does not bring the query back
+            library.deleted.add(name);
+            return true;
+        }
+    }
+
+    public List<SavedQuery> list(PlaygroundUser user) {
+        Library library = library(user);
+        synchronized (library) {
+            return new ArrayList<>(library.queries.values());
+        }
+    }
+
+    public List<SavedQuery> search(PlaygroundUser user, String text) {
+        List<String> terms = tokenize(text);
+        if (terms.isEmpty()) {
+            return list(user);
+        }
+        Library library = library(user);
+        synchronized (library) {
+            Set<String> matches = null;
+            for (String term : terms) {
+                Set<String> termMatches = new HashSet<>();
+                library.index.subMap(term, true, term + Character.MAX_VALUE, true)
+                        .values()
+                        .forEach(termMatches::addAll);
+                if (matches == null) {
+                    matches = termMatches;
+                } else {
+                    matches.retainAll(termMatches);
+                }
+                if (matches.isEmpty()) {
+                    return List.of();
+                }
+            }
+            List<SavedQuery> result = new ArrayList<>(matches.size());
+            for (String name : matches) {
+                result.add(library.queries.get(name));
+            }
+            result.sort((a, b) -> a.getName().compareTo(b.getName()));
+            return result;
+        }
+    }
+
+    public Map<String, Object> sync(PlaygroundUser user, String repository, String directory) {
+        String owner = user.getLogin();
+        String prefix = directoryPrefix(directory);
+
+        Map<String, String> remoteShas = new HashMap<>();
+        try {
+            for (Map<String, Object> entry : gitHubService.listDirectory(user, owner, repository, prefix)) {
+                if ("file".equals(entry.get("type"))) {
+                    remoteShas.put((String) entry.get("path"), (String) entry.get("sha"));
+                }
+            }
+        } catch (RestClientException | IllegalStateException e) {
+            return Map.of("error", "Failed to list repository files: " + e.getMessage());
+        }
+
+        Library library = library(user);
+        List<String> uploaded = new ArrayList<>();
+        List<String> unchanged = new ArrayList<>();
+        Map<String, Object> failed = new LinkedHashMap<>();
+        for (SavedQuery query : list(user)) {
+            String path = prefix + query.getName() + ".sql";
+            String content = SqlFileFormatter.format(owner, query.getUpdatedAt(), query.getParameters(),
+                    query.getTimeout(), query.getLimit(), query.getQuery());
+            String localSha = SqlFileFormatter.gitBlobSha(content.getBytes(StandardCharsets.UTF_8));
+            String remoteSha = remoteShas.get(path);
+
+            if (localSha.equals(remoteSha)) {
+                markSynced(library, query.getName(), localSha);
+                unchanged.add(path);
+                continue;
+            }
+            Map<String, Object> result = gitHubService.commitFile(user, owner, repository, path, content,
+                    "Sync SQL query from playground: " + query.getName(), remoteSha);
+            if (result == null || result.containsKey("error")) {
+                failed.put(path, result != null ? result.get("error") : "empty response");
+            } else {
+                markSynced(library, query.getName(), localSha);
+                uploaded.add(path);
+            }
+        }
+        List<String> deleted = new ArrayList<>();
+        for (String name : deletedNames(library)) {
+            String path = prefix + name + ".sql";
+            String remoteSha = remoteShas.get(path);
+            if (remoteSha != null) {
+                Map<String, Object> result = gitHubService.deleteFile(user, owner, repository, path,
+                        "Delete SQL query from playground: " + name, remoteSha);
+                if (result.containsKey("error")) {
+                    failed.put(path, result.get("error"));
+                    continue;
+                }
+                deleted.add(path);
+            }
+            // Only the default directory is loaded back; the query stays deleted there until it is synced
+            if (repository.equals(defaultRepository) && prefix.equals(directoryPrefix(defaultDirectory))) {
+                markDeleted(library, name);
+            }
+        }
+        log.debug("Synced saved queries of {} to {}: {} uploaded, {} unchanged, {} deleted, {} failed",
+                owner, repository, uploaded.size(), unchanged.size(), deleted.size(), failed.size());
+
+        return Map.of(
+                "repository", owner + "/" + repository,
+                "uploaded", uploaded,
+                "unchanged", unchanged,
+                "deleted", deleted,
+                "failed", failed
+        );
+    }
+
+    // Under the same lock as the index, so a concurrent save carries the SHA over to its replacement
+    private void markSynced(Library library, String name, String sha) {
+        synchronized (library) {
+            SavedQuery current = library.queries.get(name);
+            if (current != null) {
+                current.setSyncedSha(sha);
+            }
+        }
+    }
+
+    private static String directoryPrefix(String directory) {
+        return directory == null || directory.isBlank() ? "" : directory.replaceAll("^/+|/+$", "") + "/";
+    }
+
+    private List<String> deletedNames(Library library) {
+        synchronized (library) {
+            return new ArrayList<>(library.deleted);
+        }
+    }
+
+    // Unless the query was saved again while its file was being deleted, or a load may still bring it back
+    private void markDeleted(Library library, String name) {
+        synchronized (library) {
+            if (library.loaded && !library.queries.containsKey(name)) {
+                library.deleted.remove(name);
+            }
+        }
+    }
+
+    private Library library(PlaygroundUser user) {
+        Library library = libraries.computeIfAbsent(user.getLogin(), login -> new Library());
+        if (!library.loaded) {
+            startLoad(user, library);
+        }
+        return library;
+    }
+
+    /**
+     * Reads the library back from the default repository on
+     * {@code savedQueryLoadExecutor}, fetching the files in parallel. Queries
+     * saved or deleted in memory meanwhile are newer and win. If the load
+     * fails for any reason, the library keeps serving what is in memory and
+     * the load is retried on an access after {@code saved-queries.load.retry-ms}.
+     */
+    private void startLoad(PlaygroundUser user, Library library) {
+        synchronized (library) {
+            if (library.loaded || library.loading || System.currentTimeMillis() < library.retryAt) {
+                return;
+            }
+            library.loading = true;
+        }
+        try {
+            CompletableFuture.supplyAsync(() -> listRemote(user), loadExecutor)
+                    .thenCompose(entries -> fetchAll(user, entries))
+                    .whenComplete((remote, failure) -> finishLoad(user, library, remote, failure));
+        } catch (RejectedExecutionException e) {
+            finishLoad(user, library, null, e);
+        }
+    }
+
+    // Name to blob SHA of each query file
+    private Map<String, String> listRemote(PlaygroundUser user) {
+        String prefix = directoryPrefix(defaultDirectory);
+        Map<String, String> files = new LinkedHashMap<>();
+        List<Map<String, Object>> entries;
+        try {
+            entries = gitHubService.listDirectory(user, user.getLogin(), defaultRepository, prefix);
+        } catch (IllegalStateException e) {
+            // No access token: there is nothing to load for this user
+            log.debug("Not loading saved queries of {}: {}", user.getLogin(), e.getMessage());
+            return files;
+        }
+        for (Map<String, Object> entry : entries) {
+            String path = (String) entry.get("path");
+            String fileName = path != null ? path.substring(path.lastIndexOf('/') + 1) : "";
+            String name = fileName.endsWith(".sql") ? fileName.substring(0, fileName.length() - 4) : null;
+            if ("file".equals(entry.get("type")) && isValidName(name)) {
+                files.put(name, (String) entry.get("sha"));
+            }
+        }
+        return files;
+    }
+
+    private CompletableFuture<List<SavedQuery>> fetchAll(PlaygroundUser user, Map<String, String> files) {
+        List<CompletableFuture<SavedQuery>> fetches = new ArrayList<>(files.size());
+        files.forEach((name, sha) -> fetches.add(CompletableFuture.supplyAsync(() -> {
+            byte[] content = gitHubService.getBlob(user, user.getLogin(), defaultRepository, sha);
+            SavedQuery query = fromFile(name, new String(content, StandardCharsets.UTF_8));
+            query.setSyncedSha(sha);
+            return query;
+        }, loadExecutor)));
+        return CompletableFuture.allOf(fetches.toArray(new CompletableFuture[0]))
+                .thenApply(done -> fetches.stream().map(CompletableFuture::join).toList());
+    }
+
+    private void finishLoad(PlaygroundUser user, Library library, List<SavedQuery> remote, Throwable failure) {
+        synchronized (library) {
+            library.loading = false;
+            if (failure != null) {
+                Throwable cause = failure instanceof CompletionException && failure.getCause() != null
+                        ? failure.getCause() : failure;
+                library.retryAt = System.currentTimeMillis() + loadRetryMs;
+                log.warn("Failed to load saved queries of {} from {}: {}",
+                        user.getLogin(), defaultRepository, cause.getMessage());
+                return;
+            }
+            for (SavedQuery query : remote) {
+                if (!library.deleted.contains(query.getName())
+                        && library.queries.putIfAbsent(query.getName(), query) == null) {
+                    library.index(query);
+                }
+            }
+            library.loaded = true;
+        }
+        log.debug("Loaded {} saved queries of {} from {}", remote.size(), user.getLogin(), defaultRepository);
+    }
+
+    // The inverse of SqlFileFormatter.format; the description is not part of the file
+    private static SavedQuery fromFile(String name, String content) {
+        Matcher header = FILE_HEADER.matcher(content);
+        if (!header.lookingAt()) {
+            return new SavedQuery(name, content.strip());
+        }
+        SavedQuery query = new SavedQuery(name, content.substring(header.end()));
+        try {
+            query.setUpdatedAt(LocalDateTime.parse(header.group(1)));
+        } catch (DateTimeParseException e) {
+            query.setUpdatedAt(null);
+        }
+        if (!"none".equals(header.group(2))) {
+            Map<String, Object> parameters = new LinkedHashMap<>();
+            Matcher parameter = PARAMETER.matcher(header.group(2));
+            while (parameter.find()) {
+                parameters.put(parameter.group(1), parameter.group(2));
+            }
+            query.setParameters(parameters);
+        }
+        query.setTimeout(parseCount(header.group(3)));
+        query.setLimit(parseCount(header.group(4)));
+        return query;
+    }
+
+    private static Integer parseCount(String value) {
+        try {
+            return Integer.valueOf(value);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null) {
+            return tokens;
+        }
+        for (String token : TOKEN_SEPARATOR.split(text.toLowerCase(Locale.ROOT))) {
+            if (!token.isEmpty()) {
+                tokens.add(token);
+            }
+        }
+        return tokens;
+    }
+
+    private static class Library {
+        private volatile boolean loaded;
+        private boolean loading;
+        private long retryAt;
+        private final Map<String, SavedQuery> queries = new TreeMap<>();
+        // Deleted here but maybe still in the repository
+        private final Set<String> deleted = new HashSet<>();
+        private final NavigableMap<String, Set<String>> index = new TreeMap<>();
+
+        private void index(SavedQuery query) {
+            for (String token : tokens(query)) {
+                index.computeIfAbsent(token, t -> new HashSet<>()).add(query.getName());
+            }
+        }
+
+        private void unindex(SavedQuery query) {
+            for (String token : tokens(query)) {
+                Set<String> names = index.get(token);
+                if (names != null) {
+                    names.remove(query.getName());
+                    if (names.isEmpty()) {
+                        index.remove(token);
+                    }
+                }
+            }
+        }
+
+        private Set<String> tokens(SavedQuery query) {
+            Set<String> tokens = new HashSet<>();
+            tokens.addAll(tokenize(query.getName()));
+            tokens.addAll(tokenize(query.getDescription()));
+            tokens.addAll(tokenize(query.getQuery()));
+            return tokens;
+        }
+    }
+}
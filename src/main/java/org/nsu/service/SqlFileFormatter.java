@@ -0,0 +1,40 @@
+package org.nsu.service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.Map;
+
+public final class SqlFileFormatter {
+
+    private SqlFileFormatter() {}
+
+    public static String format(String userLogin, LocalDateTime timestamp, Map<String, Object> parameters,
+                                Integer timeout, Integer limit, String query) {
+        return String.format(
+                "-- Query executed by %s at %s\n-- Parameters: %s\n-- Timeout: %s seconds\n-- Limit: %s rows\n\n%s",
+                userLogin,
+                timestamp,
+                parameters != null ? parameters.toString() : "none",
+                timeout != null ? timeout : "default",
+                limit != null ? limit : "unlimited",
+                query
+        );
+    }
+
+    /**
+     * SHA-1 of the content as Git stores it ({@code blob <size>\0<content>}),
+     * which matches the {@code sha} GitHub reports for the file.
+     */
+    public static String gitBlobSha(byte[] content) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            digest.update(("blob " + content.length + "\0").getBytes(StandardCharsets.US_ASCII));
+            return HexFormat.of().formatHex(digest.digest(content));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-1 is not available", e);
+        }
+    }
+}
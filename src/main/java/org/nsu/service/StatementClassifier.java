@@ -0,0 +1,194 @@
+package org.nsu.service;
+
+import org.springframework.stereotype.Component;
+
+import java.sql.SQLException;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Cheap keyword-based classification of a single SQL statement. Anything that
+ * cannot be proven read-only is treated as a write.
+ */
+@Component
+public class StatementClassifier {
+
+    public static final String SQL_STATE_FORBIDDEN = "42501";
+
+    private static final Set<String> READ_KEYWORDS = Set.of("SELECT", "WITH", "VALUES", "TABLE", "SHOW", "EXPLAIN");
+    private static final Pattern MODIFYING_CLAUSE = Pattern.compile(
+            "\\b(FOR\\s+UPDATE|INSERT|UPDATE|DELETE|MERGE|NEXT\\s+VALUE\\s+FOR|NEXTVAL)\\b", Pattern.CASE_INSENSITIVE);
+    private static final Set<String> EXPLAINABLE_KEYWORDS = Set.of("SELECT", "INSERT", "UPDATE", "DELETE", "MERGE");
+    private static final Set<String> DDL_KEYWORDS = Set.of(
+            "CREATE", "ALTER", "DROP", "TRUNCATE", "RENAME", "COMMENT", "GRANT", "REVOKE");
+    private static final Pattern DDL_CLAUSE = Pattern.compile(
+            "\\b(" + String.join("|", DDL_KEYWORDS) + ")\\b", Pattern.CASE_INSENSITIVE);
+
+    // Reach outside the sandbox: the file system, Java code, other databases or the whole database
+    private static final Pattern FORBIDDEN = Pattern.compile(
+            "\\bCREATE\\s+(?:OR\\s+REPLACE\\s+)?(?:FORCE\\s+)?(?:ALIAS|AGGREGATE|TRIGGER)\\b" +
+            "|\\bLINKED\\s+TABLE\\b" +
+            "|\\bEXECUTE\\s+IMMEDIATE\\b" +
+            "|\\b(?:LINK_SCHEMA|FILE_READ|FILE_WRITE|CSVREAD|CSVWRITE|SCRIPT|RUNSCRIPT|BACKUP|SHUTDOWN)\\b",
+            Pattern.CASE_INSENSITIVE);
+
+    public StatementType classify(String sql) {
+        if (sql == null) {
+            return StatementType.WRITE;
+        }
+        int start = skipIgnorable(sql, 0);
+        String keyword = readKeyword(sql, start);
+        if (DDL_KEYWORDS.contains(keyword)) {
+            return StatementType.DDL;
+        }
+        String code = codeOnly(sql);
+        if (READ_KEYWORDS.contains(keyword) && isSingleStatement(code, start) && !modifiesRows(code)) {
+            return StatementType.READ;
+        }
+        return StatementType.WRITE;
+    }
+
+    /**
+     * Rejects statements that could escape the sandbox. Sandbox connections
+     * lack the rights for them anyway; this catches them before they run and
+     * gives a clear error. String literals, quoted identifiers and comments
+     * are ignored, so {@code 'SCRIPT'} or {@code "FILE_READ"} pass.
+     */
+    public void checkAllowed(String sql) throws SQLException {
+        if (sql == null) {
+            return;
+        }
+        Matcher forbidden = FORBIDDEN.matcher(codeOnly(sql));
+        if (forbidden.find()) {
+            throw new SQLException(forbidden.group().replaceAll("\\s+", " ").toUpperCase(Locale.ROOT)
+                    + " is not allowed in the sandbox", SQL_STATE_FORBIDDEN);
+        }
+    }
+
+    /**
+     * Whether {@code sql} is a single SELECT, INSERT, UPDATE, DELETE or MERGE,
+     * the statements {@code EXPLAIN} plans without running them.
+     */
+    public boolean isExplainable(String sql) {
+        if (sql == null) {
+            return false;
+        }
+        int start = skipIgnorable(sql, 0);
+        return EXPLAINABLE_KEYWORDS.contains(readKeyword(sql, start)) && isSingleStatement(codeOnly(sql), start);
+    }
+
+    public String leadingKeyword(String sql) {
+        return sql == null ? "" : readKeyword(sql, skipIgnorable(sql, 0));
+    }
+
+    public boolean releasesSpace(String sql) {
+        String keyword = readKeyword(sql, skipIgnorable(sql, 0));
+        return keyword.equals("DELETE") || keyword.equals("DROP") || keyword.equals("TRUNCATE");
+    }
+
+    private int skipIgnorable(String sql, int index) {
+        int length = sql.length();
+        while (index < length) {
+            char c = sql.charAt(index);
+            if (Character.isWhitespace(c) || c == '(') {
+                index++;
+            } else if (sql.startsWith("--", index)) {
+                int end = sql.indexOf('\n', index);
+                index = end < 0 ? length : end + 1;
+            } else if (sql.startsWith("/*", index)) {
+                int end = sql.indexOf("*/", index + 2);
+                index = end < 0 ? length : end + 2;
+            } else {
+                break;
+            }
+        }
+        return index;
+    }
+
+    private String readKeyword(String sql, int start) {
+        int end = start;
+        while (end < sql.length() && Character.isLetter(sql.charAt(end))) {
+            end++;
+        }
+        return sql.substring(start, end).toUpperCase(Locale.ROOT);
+    }
+
+    // Takes the output of codeOnly, so semicolons in literals and comments are already gone
+    private boolean isSingleStatement(String code, int start) {
+        int semicolon = code.indexOf(';', start);
+        return semicolon < 0 || code.substring(semicolon + 1).isBlank();
+    }
+
+    // Blanks out literals, quoted identifiers and comments, keeping offsets
+    private String codeOnly(String sql) {
+        StringBuilder code = new StringBuilder(sql);
+        int length = sql.length();
+        int i = 0;
+        while (i < length) {
+            int end;
+            if (sql.charAt(i) == '\'' || sql.charAt(i) == '"') {
+                end = closingQuote(sql, i);
+            } else if (sql.startsWith("$$", i)) {
+                end = sql.indexOf("$$", i + 2);
+                end = end < 0 ? length : end + 2;
+            } else if (sql.startsWith("--", i) || sql.startsWith("//", i)) {
+                end = sql.indexOf('\n', i);
+                end = end < 0 ? length : end;
+            } else if (sql.startsWith("/*", i)) {
+                end = closingComment(sql, i);
+            } else {
+                i++;
+                continue;
+            }
+            for (int j = i; j < end; j++) {
+                code.setCharAt(j, ' ');
+            }
+            i = end;
+        }
+        return code.toString();
+    }
+
+    private int closingQuote(String sql, int start) {
+        char quote = sql.charAt(start);
+        int i = start + 1;
+        while (i < sql.length()) {
+            if (sql.charAt(i) == quote) {
+                if (i + 1 < sql.length() && sql.charAt(i + 1) == quote) {
+                    i += 2;
+                    continue;
+                }
+                return i + 1;
+            }
+            i++;
+        }
+        return sql.length();
+    }
+
+    // H2 block comments nest
+    private int closingComment(String sql, int start) {
+        int depth = 0;
+        int i = start;
+        while (i < sql.length()) {
+            if (sql.startsWith("/*", i)) {
+                depth++;
+                i += 2;
+            } else if (sql.startsWith("*/", i)) {
+                depth--;
+                i += 2;
+                if (depth == 0) {
+                    return i;
+                }
+            } else {
+                i++;
+            }
+        }
+        return sql.length();
+    }
+
+    // DDL anywhere in the code, e.g. after a semicolon, also makes H2 commit
+    private boolean modifiesRows(String code) {
+        return MODIFYING_CLAUSE.matcher(code).find() || DDL_CLAUSE.matcher(code).find();
+    }
+}
@@ -0,0 +1,7 @@
+package org.nsu.service;
+
+public enum StatementType {
+    READ,
+    WRITE,
+    DDL
+}
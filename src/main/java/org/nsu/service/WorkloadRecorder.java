@@ -0,0 +1,185 @@
+package org.nsu.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import org.nsu.dto.QueryRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Appends anonymized query requests to a JSON lines file for later replay by the
+ * load harness. Logins become stable pseudonyms and string literals and string
+ * parameters are masked character by character, so queries keep their shape
+ * and still parse. Disabled unless {@code loadtest.record-file} is set.
+ * <p>
+ * Pseudonyms and offsets only hold within one run, so an existing file is
+ * renamed to {@code <file>.<millis>} on startup instead of being appended to:
+ * otherwise {@code user-1} of two runs would replay as one sandbox.
+ */
+@Component
+public class WorkloadRecorder {
+
+    private static final Logger log = LoggerFactory.getLogger(WorkloadRecorder.class);
+
+    private static final Pattern STRING_LITERAL = Pattern.compile("'((?:[^']|'')*)'");
+
+    private final ObjectMapper objectMapper;
+    private final Map<String, String> pseudonyms = new ConcurrentHashMap<>();
+    private final AtomicInteger userCount = new AtomicInteger();
+    private BufferedWriter writer;
+    private long startedAt;
+
+    @Autowired
+    public WorkloadRecorder(ObjectMapper objectMapper,
+                            @Value("${loadtest.record-file:}") String recordFile) {
+        this.objectMapper = objectMapper;
+        if (recordFile != null && !recordFile.isBlank()) {
+            try {
+                Path file = Path.of(recordFile);
+                rotate(file);
+                this.writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                        StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+                this.startedAt = System.currentTimeMillis();
+                log.info("Recording anonymized workload to {}", recordFile);
+            } catch (IOException e) {
+                log.warn("Cannot open workload record file {}: {}", recordFile, e.getMessage());
+            }
+        }
+    }
+
+    private static void rotate(Path file) throws IOException {
+        if (Files.exists(file)) {
+            Path previous = file.resolveSibling(file.getFileName() + "." + System.currentTimeMillis());
+            Files.move(file, previous);
+            log.info("Moved previous workload record file to {}", previous);
+        }
+    }
+
+    public boolean isEnabled() {
+        return writer != null;
+    }
+
+    public void record(String userLogin, String endpoint, QueryRequest request) {
+        if (writer != null) {
+            write(userLogin, endpoint, anonymize(request));
+        }
+    }
+
+    public void recordBatch(String userLogin, String endpoint, List<QueryRequest> requests) {
+        if (writer == null) {
+            return;
+        }
+        List<Map<String, Object>> queries = new ArrayList<>(requests.size());
+        for (QueryRequest request : requests) {
+            queries.add(anonymize(request));
+        }
+        write(userLogin, endpoint, Map.of("queries", queries));
+    }
+
+    @PreDestroy
+    public synchronized void close() {
+        if (writer == null) {
+            return;
+        }
+        try {
+            writer.close();
+        } catch (IOException e) {
+            log.warn("Failed to close workload record file: {}", e.getMessage());
+        }
+        writer = null;
+    }
+
+    private void write(String userLogin, String endpoint, Map<String, Object> body) {
+        Map<String, Object> line = new LinkedHashMap<>();
+        line.put("offsetMs", System.currentTimeMillis() - startedAt);
+        line.put("user", pseudonyms.computeIfAbsent(userLogin, login -> "user-" + userCount.incrementAndGet()));
+        line.put("endpoint", endpoint);
+        line.put("body", body);
+        try {
+            String json = objectMapper.writeValueAsString(line);
+            synchronized (this) {
+                if (writer != null) {
+                    writer.write(json);
+                    writer.newLine();
+                    writer.flush();
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Failed to record workload entry: {}", e.getMessage());
+        }
+    }
+
+    private Map<String, Object> anonymize(QueryRequest request) {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("query", maskLiterals(request.getQuery()));
+        if (request.getParameters() != null) {
+            Map<String, Object> parameters = new LinkedHashMap<>();
+            request.getParameters().forEach((key, value) ->
+                    parameters.put(key, value instanceof String text ? mask(text) : value));
+            body.put("parameters", parameters);
+        }
+        putIfPresent(body, "limit", request.getLimit());
+        putIfPresent(body, "timeout", request.getTimeout());
+        putIfPresent(body, "cursor", request.getCursor());
+        putIfPresent(body, "pageSize", request.getPageSize());
+        if (request.getQueryId() != null) {
+            body.put("queryId", "q" + Integer.toHexString(request.getQueryId().hashCode()));
+        }
+        putIfPresent(body, "diff", request.getDiff());
+        putIfPresent(body, "keyColumns", request.getKeyColumns());
+        return body;
+    }
+
+    private static void putIfPresent(Map<String, Object> body, String key, Object value) {
+        if (value != null) {
+            body.put(key, value);
+        }
+    }
+
+    private static String maskLiterals(String sql) {
+        if (sql == null) {
+            return null;
+        }
+        Matcher matcher = STRING_LITERAL.matcher(sql);
+        StringBuilder result = new StringBuilder(sql.length());
+        while (matcher.find()) {
+            matcher.appendReplacement(result, Matcher.quoteReplacement("'" + mask(matcher.group(1)) + "'"));
+        }
+        matcher.appendTail(result);
+        return result.toString();
+    }
+
+    // Keeps length and character classes so LIKE patterns, dates and numbers stay valid
+    private static String mask(String value) {
+        StringBuilder masked = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (Character.isLetter(c)) {
+                masked.append(Character.isUpperCase(c) ? 'X' : 'x');
+            } else if (Character.isDigit(c)) {
+                masked.append(c == '0' ? '0' : '1');
+            } else {
+                masked.append(c);
+            }
+        }
+        return masked.toString();
+    }
+}
@@ -0,0 +1,257 @@
+package org.nsu.service.binding;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.sql.Connection;
+import java.sql.ParameterMetaData;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Prepares statements with positional ({@code ?}) or named ({@code :name})
+ * parameters and binds request values to them. Each statement shape keeps its
+ * rewritten SQL and the parameter types read from {@code ParameterMetaData},
+ * so repeated queries bind without asking the driver again. Keys and values
+ * are checked before the statement runs, with an error code per kind of
+ * mismatch.
+ */
+@Component
+public class ParameterBinder {
+
+    public static final String ERROR_MISSING_PARAMETER = "PAR001";
+    public static final String ERROR_UNKNOWN_PARAMETER = "PAR002";
+    public static final String ERROR_TYPE_MISMATCH = "PAR003";
+    public static final String ERROR_OUT_OF_RANGE = "PAR004";
+    public static final String ERROR_MIXED_PARAMETERS = "PAR005";
+
+    private final LinkedHashMap<String, StatementShape> shapes;
+
+    @Autowired
+    public ParameterBinder(@Value("${sandbox.query.binding-cache-size:1024}") int cacheSize) {
+        this.shapes = new LinkedHashMap<>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, StatementShape> eldest) {
+                return size() > cacheSize;
+            }
+        };
+    }
+
+    /**
+     * Prepares the statement and binds the parameters. {@code scope} identifies
+     * the schema the statement is prepared against, since parameter types
+     * depend on column types.
+     */
+    public PreparedStatement prepare(Connection connection, String scope, String sql, Map<String, Object> parameters)
+            throws SQLException {
+        String key = scope + '\u0000' + sql;
+        StatementShape shape;
+        synchronized (shapes) {
+            shape = shapes.get(key);
+        }
+        if (shape == null) {
+            shape = parse(sql);
+        }
+        Object[] values = shape.arrange(parameters);
+
+        PreparedStatement statement = connection.prepareStatement(shape.sql);
+        try {
+            if (shape.types == null) {
+                shape.resolveTypes(statement);
+                synchronized (shapes) {
+                    shapes.put(key, shape);
+                }
+            }
+            for (int i = 0; i < values.length; i++) {
+                shape.types[i].bindValue(statement, i + 1, shape.jdbcTypes[i], values[i], shape.label(i));
+            }
+            return statement;
+        } catch (SQLException | RuntimeException e) {
+            statement.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Replaces {@code :name} markers with {@code ?}, skipping string literals,
+     * quoted identifiers, comments and {@code ::} casts.
+     */
+    static StatementShape parse(String sql) throws ParameterBindingException {
+        StringBuilder rewritten = null;
+        List<String> names = new ArrayList<>();
+        int positional = 0;
+        int length = sql.length();
+        int copiedUpTo = 0;
+        int i = 0;
+        while (i < length) {
+            char c = sql.charAt(i);
+            if (c == '\'' || c == '"') {
+                i = skipQuoted(sql, i, c);
+            } else if (c == '-' && i + 1 < length && sql.charAt(i + 1) == '-') {
+                int end = sql.indexOf('\n', i);
+                i = end < 0 ? length : end + 1;
+            } else if (c == '/' && i + 1 < length && sql.charAt(i + 1) == '*') {
+                int end = sql.indexOf("*/", i + 2);
+                i = end < 0 ? length : end + 2;
+            } else if (c == '$' && i + 1 < length && sql.charAt(i + 1) == '$') {
+                int end = sql.indexOf("$$", i + 2);
+                i = end < 0 ? length : end + 2;
+            } else if (c == ':' && i + 1 < length && sql.charAt(i + 1) == ':') {
+                i += 2;
+            } else if (c == ':' && i + 1 < length && Character.isJavaIdentifierStart(sql.charAt(i + 1))) {
+                int end = i + 2;
+                while (end < length && Character.isJavaIdentifierPart(sql.charAt(end))) {
+                    end++;
+                }
+                if (rewritten == null) {
+                    rewritten = new StringBuilder(length);
+                }
+                rewritten.append(sql, copiedUpTo, i).append('?');
+                names.add(sql.substring(i + 1, end));
+                copiedUpTo = end;
+                i = end;
+            } else {
+                if (c == '?') {
+                    positional++;
+                }
+                i++;
+            }
+        }
+        if (positional > 0 && !names.isEmpty()) {
+            throw new ParameterBindingException("Statement mixes positional (?) and named (:name) parameters",
+                    ERROR_MIXED_PARAMETERS);
+        }
+        if (rewritten == null) {
+            return new StatementShape(sql, null, positional);
+        }
+        rewritten.append(sql, copiedUpTo, length);
+        return new StatementShape(rewritten.toString(), names.toArray(new String[0]), names.size());
+    }
+
+    private static int skipQuoted(String sql, int start, char quote) {
+        int i = start + 1;
+        while (i < sql.length()) {
+            if (sql.charAt(i) == quote) {
+                // A doubled quote is an escaped quote inside the literal
+                if (i + 1 < sql.length() && sql.charAt(i + 1) == quote) {
+                    i += 2;
+                    continue;
+                }
+                return i + 1;
+            }
+            i++;
+        }
+        return i;
+    }
+
+    static class StatementShape {
+        private final String sql;
+        private final String[] names;
+        private final int count;
+        private volatile ParameterType[] types;
+        private volatile int[] jdbcTypes;
+
+        StatementShape(String sql, String[] names, int count) {
+            this.sql = sql;
+            this.names = names;
+            this.count = count;
+        }
+
+        /**
+         * Orders the request values by parameter position. Positional keys are
+         * 1-based indexes; named keys may be written with or without the colon.
+         */
+        Object[] arrange(Map<String, Object> parameters) throws ParameterBindingException {
+            Object[] values = new Object[count];
+            boolean[] present = new boolean[count];
+            if (parameters != null) {
+                for (Map.Entry<String, Object> entry : parameters.entrySet()) {
+                    String key = entry.getKey();
+                    if (names != null) {
+                        String name = key.startsWith(":") ? key.substring(1) : key;
+                        boolean found = false;
+                        for (int i = 0; i < count; i++) {
+                            if (names[i].equalsIgnoreCase(name)) {
+                                values[i] = entry.getValue();
+                                present[i] = true;
+                                found = true;
+                            }
+                        }
+                        if (!found) {
+                            throw new ParameterBindingException(isIndex(key)
+                                    ? "Statement uses named parameters, got positional key " + key
+                                    : "Statement has no parameter :" + name, ERROR_UNKNOWN_PARAMETER);
+                        }
+                    } else {
+                        if (!isIndex(key)) {
+                            throw new ParameterBindingException(count > 0
+                                    ? "Statement uses positional parameters, key must be an index from 1 to "
+                                    + count + ": " + key
+                                    : "Statement has no parameters, got " + key, ERROR_UNKNOWN_PARAMETER);
+                        }
+                        int index = Integer.parseInt(key);
+                        if (index < 1 || index > count) {
+                            throw new ParameterBindingException("Parameter index " + key + " is out of range, statement has "
+                                    + count + " parameter" + (count == 1 ? "" : "s"), ERROR_UNKNOWN_PARAMETER);
+                        }
+                        values[index - 1] = entry.getValue();
+                        present[index - 1] = true;
+                    }
+                }
+            }
+            for (int i = 0; i < count; i++) {
+                if (!present[i]) {
+                    throw new ParameterBindingException("No value for parameter " + label(i), ERROR_MISSING_PARAMETER);
+                }
+            }
+            return values;
+        }
+
+        void resolveTypes(PreparedStatement statement) {
+            int[] resolvedJdbcTypes = new int[count];
+            ParameterType[] resolvedTypes = new ParameterType[count];
+            ParameterMetaData metaData;
+            try {
+                metaData = statement.getParameterMetaData();
+            } catch (SQLException e) {
+                metaData = null;
+            }
+            for (int i = 0; i < count; i++) {
+                int jdbcType = Types.OTHER;
+                if (metaData != null) {
+                    try {
+                        jdbcType = metaData.getParameterType(i + 1);
+                    } catch (SQLException e) {
+                        // Leave the parameter untyped; the value's own type decides
+                    }
+                }
+                resolvedJdbcTypes[i] = jdbcType;
+                resolvedTypes[i] = ParameterType.forJdbcType(jdbcType);
+            }
+            jdbcTypes = resolvedJdbcTypes;
+            types = resolvedTypes;
+        }
+
+        String label(int index) {
+            return names != null ? ":" + names[index] : String.valueOf(index + 1);
+        }
+
+        private static boolean isIndex(String key) {
+            if (key.isEmpty() || key.length() > 9) {
+                return false;
+            }
+            for (int i = 0; i < key.length(); i++) {
+                if (!Character.isDigit(key.charAt(i))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package org.nsu.service.binding;
+
+import java.sql.SQLException;
+
+/**
+ * Raised when request parameters do not match the statement, before it runs.
+ * Carries its own response error code.
+ */
+public class ParameterBindingException extends SQLException {
+
+    private final String errorCode;
+
+    public ParameterBindingException(String message, String errorCode) {
+        super(message, "22023");
+        this.errorCode = errorCode;
+    }
+
+    public String getBindingErrorCode() {
+        return errorCode;
+    }
+}
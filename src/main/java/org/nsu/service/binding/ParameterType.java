@@ -0,0 +1,342 @@
+package org.nsu.service.binding;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * How a JSON-decoded value is coerced and bound for a JDBC parameter type.
+ * Resolved once per statement shape from {@code ParameterMetaData}, so binding
+ * goes straight to the matching typed setter.
+ */
+enum ParameterType {
+
+    TINYINT("TINYINT") {
+        @Override
+        void bind(PreparedStatement statement, int index, Object value, String label) throws SQLException {
+            long number = toLong(value, label);
+            checkRange(number, Byte.MIN_VALUE, Byte.MAX_VALUE, value, label);
+            statement.setByte(index, (byte) number);
+        }
+    },
+    SMALLINT("SMALLINT") {
+        @Override
+        void bind(PreparedStatement statement, int index, Object value, String label) throws SQLException {
+            long number = toLong(value, label);
+            checkRange(number, Short.MIN_VALUE, Short.MAX_VALUE, value, label);
+            statement.setShort(index, (short) number);
+        }
+    },
+    INTEGER("INTEGER") {
+        @Override
+        void bind(PreparedStatement statement, int index, Object value, String label) throws SQLException {
+            long number = toLong(value, label);
+            checkRange(number, Integer.MIN_VALUE, Integer.MAX_VALUE, value, label);
+            statement.setInt(index, (int) number);
+        }
+    },
+    BIGINT("BIGINT") {
+        @Override
+        void bind(PreparedStatement statement, int index, Object value, String label) throws SQLException {
+            statement.setLong(index, toLong(value, label));
+        }
+    },
+    REAL("REAL") {
+        @Override
+        void bind(PreparedStatement statement, int index, Object value, String label) throws SQLException {
+            double number = toDouble(value, label);
+            if (Double.isFinite(number) && Math.abs(number) > Float.MAX_VALUE) {
+                throw outOfRange(value, label);
+            }
+            statement.setFloat(index, (float) number);
+        }
+    },
+    DOUBLE("DOUBLE PRECISION") {
+        @Override
+        void bind(PreparedStatement statement, int index, Object value, String label) throws SQLException {
+            statement.setDouble(index, toDouble(value, label));
+        }
+    },
+    DECIMAL("NUMERIC") {
+        @Override
+        void bind(PreparedStatement statement, int index, Object value, String label) throws SQLException {
+            statement.setBigDecimal(index, toDecimal(value, label));
+        }
+    },
+    BOOLEAN("BOOLEAN") {
+        @Override
+        void bind(PreparedStatement statement, int index, Object value, String label) throws SQLException {
+            statement.setBoolean(index, toBoolean(value, label));
+        }
+    },
+    STRING("CHARACTER VARYING") {
+        @Override
+        void bind(PreparedStatement statement, int index, Object value, String label) throws SQLException {
+            if (value instanceof String text) {
+                statement.setString(index, text);
+            } else if (value instanceof Number || value instanceof Boolean) {
+                statement.setString(index, value.toString());
+            } else {
+                throw mismatch(value, label);
+            }
+        }
+    },
+    DATE("DATE") {
+        @Override
+        void bind(PreparedStatement statement, int index, Object value, String label) throws SQLException {
+            statement.setDate(index, Date.valueOf(LocalDate.parse(toText(value, label))));
+        }
+    },
+    TIME("TIME") {
+        @Override
+        void bind(PreparedStatement statement, int index, Object value, String label) throws SQLException {
+            statement.setTime(index, Time.valueOf(LocalTime.parse(toText(value, label))));
+        }
+    },
+    TIMESTAMP("TIMESTAMP") {
+        @Override
+        void bind(PreparedStatement statement, int index, Object value, String label) throws SQLException {
+            String text = toText(value, label).replace(' ', 'T');
+            statement.setTimestamp(index, Timestamp.valueOf(LocalDateTime.parse(text)));
+        }
+    },
+    TIMESTAMP_WITH_TIME_ZONE("TIMESTAMP WITH TIME ZONE") {
+        @Override
+        void bind(PreparedStatement statement, int index, Object value, String label) throws SQLException {
+            String text = toText(value, label).replace(' ', 'T');
+            statement.setObject(index, OffsetDateTime.parse(text));
+        }
+    },
+    BINARY("BINARY VARYING") {
+        @Override
+        void bind(PreparedStatement statement, int index, Object value, String label) throws SQLException {
+            try {
+                statement.setBytes(index, Base64.getDecoder().decode(toText(value, label)));
+            } catch (IllegalArgumentException e) {
+                throw new ParameterBindingException("Parameter " + label + " expects base64-encoded " + typeName
+                        + " but got " + describe(value), ParameterBinder.ERROR_TYPE_MISMATCH);
+            }
+        }
+    },
+    ARRAY("ARRAY") {
+        @Override
+        void bind(PreparedStatement statement, int index, Object value, String label) throws SQLException {
+            if (!(value instanceof List<?> list)) {
+                throw mismatch(value, label);
+            }
+            statement.setObject(index, list.toArray());
+        }
+    },
+    /**
+     * The database could not infer a type, e.g. for {@code SELECT ?}; the JSON
+     * type decides.
+     */
+    UNTYPED("a scalar") {
+        @Override
+        void bind(PreparedStatement statement, int index, Object value, String label) throws SQLException {
+            if (value instanceof Integer number) {
+                statement.setInt(index, number);
+            } else if (value instanceof Long number) {
+                statement.setLong(index, number);
+            } else if (value instanceof Double number) {
+                statement.setDouble(index, number);
+            } else if (value instanceof BigDecimal number) {
+                statement.setBigDecimal(index, number);
+            } else if (value instanceof BigInteger number) {
+                statement.setBigDecimal(index, new BigDecimal(number));
+            } else if (value instanceof Boolean flag) {
+                statement.setBoolean(index, flag);
+            } else if (value instanceof String text) {
+                statement.setString(index, text);
+            } else if (value instanceof List<?> list) {
+                statement.setObject(index, list.toArray());
+            } else {
+                throw mismatch(value, label);
+            }
+        }
+    };
+
+    final String typeName;
+
+    ParameterType(String typeName) {
+        this.typeName = typeName;
+    }
+
+    /**
+     * Binds a non-null value, throwing {@link ParameterBindingException} if it
+     * cannot be represented as this type.
+     */
+    abstract void bind(PreparedStatement statement, int index, Object value, String label) throws SQLException;
+
+    /**
+     * Binds the value, wrapping parse failures of temporal text so every
+     * coercion failure carries a binding error code.
+     */
+    void bindValue(PreparedStatement statement, int index, int jdbcType, Object value, String label)
+            throws SQLException {
+        if (value == null) {
+            statement.setNull(index, jdbcType);
+            return;
+        }
+        try {
+            bind(statement, index, value, label);
+        } catch (DateTimeParseException e) {
+            throw mismatch(value, label);
+        }
+    }
+
+    static ParameterType forJdbcType(int jdbcType) {
+        return switch (jdbcType) {
+            case Types.TINYINT -> TINYINT;
+            case Types.SMALLINT -> SMALLINT;
+            case Types.INTEGER -> INTEGER;
+            case Types.BIGINT -> BIGINT;
+            case Types.REAL -> REAL;
+            case Types.FLOAT, Types.DOUBLE -> DOUBLE;
+            case Types.DECIMAL, Types.NUMERIC -> DECIMAL;
+            case Types.BOOLEAN, Types.BIT -> BOOLEAN;
+            case Types.CHAR, Types.VARCHAR, Types.LONGVARCHAR, Types.CLOB,
+                 Types.NCHAR, Types.NVARCHAR, Types.LONGNVARCHAR, Types.NCLOB -> STRING;
+            case Types.DATE -> DATE;
+            case Types.TIME -> TIME;
+            case Types.TIMESTAMP -> TIMESTAMP;
+            case Types.TIMESTAMP_WITH_TIMEZONE -> TIMESTAMP_WITH_TIME_ZONE;
+            case Types.BINARY, Types.VARBINARY, Types.LONGVARBINARY, Types.BLOB -> BINARY;
+            case Types.ARRAY -> ARRAY;
+            default -> UNTYPED;
+        };
+    }
+
+    long toLong(Object value, String label) throws ParameterBindingException {
+        if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte) {
+            return ((Number) value).longValue();
+        }
+        BigDecimal decimal;
+        if (value instanceof Number || value instanceof String) {
+            decimal = toDecimal(value, label);
+        } else {
+            throw mismatch(value, label);
+        }
+        try {
+            return decimal.longValueExact();
+        } catch (ArithmeticException e) {
+            // Either a fraction or beyond 64 bits
+            if (decimal.stripTrailingZeros().scale() > 0) {
+                throw mismatch(value, label);
+            }
+            throw outOfRange(value, label);
+        }
+    }
+
+    double toDouble(Object value, String label) throws ParameterBindingException {
+        if (value instanceof Number number) {
+            return number.doubleValue();
+        }
+        if (value instanceof String text) {
+            try {
+                return Double.parseDouble(text.trim());
+            } catch (NumberFormatException e) {
+                throw mismatch(value, label);
+            }
+        }
+        throw mismatch(value, label);
+    }
+
+    BigDecimal toDecimal(Object value, String label) throws ParameterBindingException {
+        if (value instanceof BigDecimal decimal) {
+            return decimal;
+        }
+        if (value instanceof Double || value instanceof Float) {
+            double number = ((Number) value).doubleValue();
+            if (!Double.isFinite(number)) {
+                throw mismatch(value, label);
+            }
+            return BigDecimal.valueOf(number);
+        }
+        if (value instanceof BigInteger number) {
+            return new BigDecimal(number);
+        }
+        if (value instanceof Number number) {
+            return BigDecimal.valueOf(number.longValue());
+        }
+        if (value instanceof String text) {
+            try {
+                return new BigDecimal(text.trim());
+            } catch (NumberFormatException e) {
+                throw mismatch(value, label);
+            }
+        }
+        throw mismatch(value, label);
+    }
+
+    boolean toBoolean(Object value, String label) throws ParameterBindingException {
+        if (value instanceof Boolean flag) {
+            return flag;
+        }
+        if (value instanceof String text) {
+            String normalized = text.trim().toLowerCase(Locale.ROOT);
+            if (normalized.equals("true") || normalized.equals("1")) {
+                return true;
+            }
+            if (normalized.equals("false") || normalized.equals("0")) {
+                return false;
+            }
+        } else if (value instanceof Integer || value instanceof Long) {
+            long number = ((Number) value).longValue();
+            if (number == 0 || number == 1) {
+                return number == 1;
+            }
+        }
+        throw mismatch(value, label);
+    }
+
+    String toText(Object value, String label) throws ParameterBindingException {
+        if (value instanceof String text) {
+            return text.trim();
+        }
+        throw mismatch(value, label);
+    }
+
+    void checkRange(long number, long min, long max, Object value, String label) throws ParameterBindingException {
+        if (number < min || number > max) {
+            throw outOfRange(value, label);
+        }
+    }
+
+    ParameterBindingException mismatch(Object value, String label) {
+        return new ParameterBindingException("Parameter " + label + " expects " + typeName + " but got "
+                + describe(value), ParameterBinder.ERROR_TYPE_MISMATCH);
+    }
+
+    ParameterBindingException outOfRange(Object value, String label) {
+        return new ParameterBindingException("Parameter " + label + " value " + describe(value)
+                + " is out of range for " + typeName, ParameterBinder.ERROR_OUT_OF_RANGE);
+    }
+
+    static String describe(Object value) {
+        if (value instanceof Map) {
+            return "an object";
+        }
+        if (value instanceof List) {
+            return "an array";
+        }
+        if (value instanceof String text) {
+            return "\"" + (text.length() > 40 ? text.substring(0, 40) + "..." : text) + "\"";
+        }
+        return String.valueOf(value);
+    }
+}
@@ -0,0 +1,158 @@
+package org.nsu.service.explain;
+
+import org.nsu.dto.PlanNode;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Reads the text printed by H2 {@code EXPLAIN}. H2 prints every table it reads
+ * as a FROM or JOIN clause followed by a comment naming the index used and the
+ * index condition, or {@code tableScan} when no index is used.
+ */
+public final class ExplainPlanParser {
+
+    public static final String ACCESS_SCAN = "SCAN";
+    public static final String ACCESS_INDEX_SCAN = "INDEX_SCAN";
+    public static final String ACCESS_SEEK = "SEEK";
+    public static final String ACCESS_DIRECT = "DIRECT";
+    public static final String ACCESS_OTHER = "OTHER";
+
+    private static final String NAME = "(?:\"(?:[^\"]|\"\")+\"|\\w+)";
+
+    private static final Pattern TABLE_ACCESS = Pattern.compile(
+            "(?m)^\\s*(FROM|(?:(?:INNER|CROSS|NATURAL|(?:LEFT|RIGHT|FULL)(?:\\s+OUTER)?)\\s+)?JOIN)\\s+" +
+            "(" + NAME + "(?:\\." + NAME + ")?)" +
+            "(?:[ \\t]+(" + NAME + "))?" +
+            "\\s*/\\*\\s*(.*?)\\s*\\*/",
+            Pattern.DOTALL);
+
+    private static final Pattern COLUMN_REF = Pattern.compile(
+            "(" + NAME + ")\\.(" + NAME + ")(?:\\.(" + NAME + "))?");
+
+    private static final Pattern OPERATOR_AFTER = Pattern.compile(
+            "\\s*(=|<>|!=|<=|>=|<|>|IN\\b|IS\\b|LIKE\\b|BETWEEN\\b)", Pattern.CASE_INSENSITIVE);
+
+    private static final Pattern COMMENT = Pattern.compile("/\\*.*?\\*/", Pattern.DOTALL);
+
+    private ExplainPlanParser() {
+    }
+
+    /**
+     * Builds the plan tree and returns it; {@code accesses} receives the table
+     * steps in join order.
+     */
+    public static PlanNode parse(String plan, String operation, List<PlanNode> accesses) {
+        PlanNode root = new PlanNode(operation);
+        PlanNode parent = root;
+        Matcher matcher = TABLE_ACCESS.matcher(plan);
+        while (matcher.find()) {
+            PlanNode node = new PlanNode(matcher.group(1).replaceAll("\\s+", " ").toUpperCase(Locale.ROOT));
+            node.setTable(unquote(matcher.group(2)));
+            if (matcher.group(3) != null) {
+                node.setAlias(unquote(matcher.group(3)));
+            }
+            describeAccess(node, matcher.group(4));
+            parent.getChildren().add(node);
+            accesses.add(node);
+            parent = node;
+        }
+        return root;
+    }
+
+    /**
+     * Columns compared in the plan's conditions, by table alias or table name.
+     * The value is true when the column is compared for equality, which makes
+     * it a better leading index column than a range comparison.
+     */
+    public static Map<String, Map<String, Boolean>> predicateColumns(String plan) {
+        String text = COMMENT.matcher(plan).replaceAll(" ");
+        Matcher from = Pattern.compile("(?m)^\\s*FROM\\b").matcher(text);
+        if (from.find()) {
+            text = text.substring(from.start());
+        }
+
+        Map<String, Map<String, Boolean>> columns = new LinkedHashMap<>();
+        Matcher matcher = COLUMN_REF.matcher(text);
+        while (matcher.find()) {
+            String qualifier;
+            String column;
+            if (matcher.group(3) != null) {
+                qualifier = unquote(matcher.group(2));
+                column = unquote(matcher.group(3));
+            } else {
+                qualifier = unquote(matcher.group(1));
+                column = unquote(matcher.group(2));
+            }
+
+            Boolean equality = null;
+            Matcher after = OPERATOR_AFTER.matcher(text).region(matcher.end(), text.length());
+            if (after.lookingAt()) {
+                String operator = after.group(1).toUpperCase(Locale.ROOT);
+                equality = operator.equals("=") || operator.equals("IN") || operator.equals("IS");
+            } else {
+                String before = text.substring(Math.max(0, matcher.start() - 4), matcher.start()).trim();
+                if (before.endsWith("<=") || before.endsWith(">=") || before.endsWith("<") || before.endsWith(">")) {
+                    equality = false;
+                } else if (before.endsWith("=")) {
+                    equality = true;
+                }
+            }
+            if (equality != null) {
+                columns.computeIfAbsent(qualifier.toUpperCase(Locale.ROOT), q -> new LinkedHashMap<>())
+                        .merge(column, equality, Boolean::logicalOr);
+            }
+        }
+        return columns;
+    }
+
+    public static String quote(String qualifiedName) {
+        List<String> parts = new ArrayList<>();
+        for (String part : qualifiedName.split("\\.", 2)) {
+            parts.add("\"" + part.replace("\"", "\"\"") + "\"");
+        }
+        return String.join(".", parts);
+    }
+
+    private static void describeAccess(PlanNode node, String comment) {
+        if (comment.endsWith(".tableScan")) {
+            node.setAccess(ACCESS_SCAN);
+        } else if (comment.equalsIgnoreCase("direct lookup")) {
+            node.setAccess(ACCESS_DIRECT);
+        } else if (comment.matches("(?s)[\\w.\"]+: .+")) {
+            int colon = comment.indexOf(": ");
+            node.setAccess(ACCESS_SEEK);
+            node.setIndex(comment.substring(0, colon));
+            node.setIndexCondition(comment.substring(colon + 2));
+        } else if (comment.matches("[\\w.\"]+")) {
+            node.setAccess(ACCESS_INDEX_SCAN);
+            node.setIndex(comment);
+        } else {
+            node.setAccess(ACCESS_OTHER);
+        }
+    }
+
+    private static String unquote(String name) {
+        StringBuilder result = new StringBuilder(name.length());
+        boolean quoted = false;
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (c == '"') {
+                if (quoted && i + 1 < name.length() && name.charAt(i + 1) == '"') {
+                    result.append('"');
+                    i++;
+                } else {
+                    quoted = !quoted;
+                }
+            } else {
+                result.append(c);
+            }
+        }
+        return result.toString();
+    }
+}
@@ -0,0 +1,112 @@
+package org.nsu.service.export;
+
+import java.io.IOException;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+
+/**
+ * Compact length-prefixed row format.
+ * <p>
+ * Layout: magic {@code SQLP}, version byte, column count, then per column its
+ * label and value kind. Each row starts with a {@code 1} marker followed by a
+ * null flag and payload per value; the stream ends with a {@code 0} marker.
+ * Integers and floats are 8-byte big-endian, strings and binaries are
+ * length-prefixed.
+ */
+public class BinaryResultSetExporter implements ResultSetExporter {
+
+    private static final byte[] MAGIC = {'S', 'Q', 'L', 'P'};
+    private static final int VERSION = 1;
+
+    private static final byte KIND_LONG = 1;
+    private static final byte KIND_DOUBLE = 2;
+    private static final byte KIND_BOOLEAN = 3;
+    private static final byte KIND_BYTES = 4;
+    private static final byte KIND_STRING = 5;
+
+    @Override
+    public long export(ResultSet resultSet, ExportBuffer buffer) throws SQLException, IOException {
+        ResultSetMetaData metaData = resultSet.getMetaData();
+        int columnCount = metaData.getColumnCount();
+        byte[] kinds = new byte[columnCount];
+
+        buffer.writeBytes(MAGIC);
+        buffer.writeByte(VERSION);
+        buffer.writeInt(columnCount);
+        for (int i = 0; i < columnCount; i++) {
+            kinds[i] = kindOf(metaData.getColumnType(i + 1));
+            writeString(metaData.getColumnLabel(i + 1), buffer);
+            buffer.writeByte(kinds[i]);
+        }
+
+        long rows = 0;
+        while (resultSet.next()) {
+            buffer.writeByte(1);
+            for (int i = 0; i < columnCount; i++) {
+                writeValue(resultSet, i + 1, kinds[i], buffer);
+            }
+            rows++;
+        }
+        buffer.writeByte(0);
+        return rows;
+    }
+
+    private void writeValue(ResultSet resultSet, int column, byte kind, ExportBuffer buffer)
+            throws SQLException, IOException {
+        switch (kind) {
+            case KIND_LONG -> {
+                long value = resultSet.getLong(column);
+                if (writeNullFlag(resultSet.wasNull(), buffer)) {
+                    buffer.writeLong(value);
+                }
+            }
+            case KIND_DOUBLE -> {
+                double value = resultSet.getDouble(column);
+                if (writeNullFlag(resultSet.wasNull(), buffer)) {
+                    buffer.writeDouble(value);
+                }
+            }
+            case KIND_BOOLEAN -> {
+                boolean value = resultSet.getBoolean(column);
+                if (writeNullFlag(resultSet.wasNull(), buffer)) {
+                    buffer.writeByte(value ? 1 : 0);
+                }
+            }
+            case KIND_BYTES -> {
+                byte[] value = resultSet.getBytes(column);
+                if (writeNullFlag(value == null, buffer)) {
+                    buffer.writeInt(value.length);
+                    buffer.writeBytes(value);
+                }
+            }
+            default -> {
+                String value = resultSet.getString(column);
+                if (writeNullFlag(value == null, buffer)) {
+                    writeString(value, buffer);
+                }
+            }
+        }
+    }
+
+    private boolean writeNullFlag(boolean isNull, ExportBuffer buffer) throws IOException {
+        buffer.writeByte(isNull ? 0 : 1);
+        return !isNull;
+    }
+
+    private void writeString(String value, ExportBuffer buffer) throws IOException {
+        buffer.writeInt(ExportBuffer.utf8Length(value));
+        buffer.writeUtf8(value);
+    }
+
+    private byte kindOf(int sqlType) {
+        return switch (sqlType) {
+            case Types.TINYINT, Types.SMALLINT, Types.INTEGER, Types.BIGINT -> KIND_LONG;
+            case Types.REAL, Types.FLOAT, Types.DOUBLE -> KIND_DOUBLE;
+            case Types.BOOLEAN, Types.BIT -> KIND_BOOLEAN;
+            case Types.BINARY, Types.VARBINARY, Types.LONGVARBINARY, Types.BLOB -> KIND_BYTES;
+            default -> KIND_STRING;
+        };
+    }
+}
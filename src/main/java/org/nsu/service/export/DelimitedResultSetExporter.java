@@ -0,0 +1,113 @@
+package org.nsu.service.export;
+
+import java.io.IOException;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+
+/**
+ * CSV (RFC 4180 quoting) and TSV (backslash escaping) writer.
+ */
+public class DelimitedResultSetExporter implements ResultSetExporter {
+
+    private final char delimiter;
+    private final boolean quoted;
+
+    private DelimitedResultSetExporter(char delimiter, boolean quoted) {
+        this.delimiter = delimiter;
+        this.quoted = quoted;
+    }
+
+    public static DelimitedResultSetExporter csv() {
+        return new DelimitedResultSetExporter(',', true);
+    }
+
+    public static DelimitedResultSetExporter tsv() {
+        return new DelimitedResultSetExporter('\t', false);
+    }
+
+    @Override
+    public long export(ResultSet resultSet, ExportBuffer buffer) throws SQLException, IOException {
+        ResultSetMetaData metaData = resultSet.getMetaData();
+        int columnCount = metaData.getColumnCount();
+
+        for (int i = 1; i <= columnCount; i++) {
+            if (i > 1) {
+                buffer.writeByte(delimiter);
+            }
+            writeValue(metaData.getColumnLabel(i), buffer);
+        }
+        buffer.writeByte('\n');
+
+        long rows = 0;
+        while (resultSet.next()) {
+            for (int i = 1; i <= columnCount; i++) {
+                if (i > 1) {
+                    buffer.writeByte(delimiter);
+                }
+                String value = resultSet.getString(i);
+                if (value != null) {
+                    writeValue(value, buffer);
+                }
+            }
+            buffer.writeByte('\n');
+            rows++;
+        }
+        return rows;
+    }
+
+    private void writeValue(String value, ExportBuffer buffer) throws IOException {
+        if (quoted) {
+            writeQuoted(value, buffer);
+        } else {
+            writeEscaped(value, buffer);
+        }
+    }
+
+    private void writeQuoted(String value, ExportBuffer buffer) throws IOException {
+        if (!needsQuoting(value)) {
+            buffer.writeUtf8(value);
+            return;
+        }
+        buffer.writeByte('"');
+        int start = 0;
+        int quote;
+        while ((quote = value.indexOf('"', start)) >= 0) {
+            buffer.writeUtf8(value, start, quote + 1);
+            buffer.writeByte('"');
+            start = quote + 1;
+        }
+        buffer.writeUtf8(value, start, value.length());
+        buffer.writeByte('"');
+    }
+
+    private void writeEscaped(String value, ExportBuffer buffer) throws IOException {
+        int start = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char escape = switch (value.charAt(i)) {
+                case '\t' -> 't';
+                case '\n' -> 'n';
+                case '\r' -> 'r';
+                case '\\' -> '\\';
+                default -> 0;
+            };
+            if (escape != 0) {
+                buffer.writeUtf8(value, start, i);
+                buffer.writeByte('\\');
+                buffer.writeByte(escape);
+                start = i + 1;
+            }
+        }
+        buffer.writeUtf8(value, start, value.length());
+    }
+
+    private boolean needsQuoting(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == delimiter || c == '"' || c == '\n' || c == '\r') {
+                return true;
+            }
+        }
+        return false;
+    }
+}
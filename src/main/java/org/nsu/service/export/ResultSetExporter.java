@@ -0,0 +1,10 @@
+package org.nsu.service.export;
+
+import java.io.IOException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+public interface ResultSetExporter {
+
+    long export(ResultSet resultSet, ExportBuffer buffer) throws SQLException, IOException;
+}
@@ -0,0 +1,154 @@
+package org.nsu.service.github;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestClientException;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Circuit breaker and bulkhead for GitHub API calls. Calls run on the dedicated
+ * {@code githubExecutor}, so a slow GitHub can hold at most that pool's threads.
+ * The calling request thread still waits for the answer, but never longer than
+ * {@code github.circuit-breaker.call-timeout-ms}, kept as short as the read
+ * timeout so an abandoned call frees its pool thread soon after. After enough
+ * consecutive failures the circuit opens and calls fail immediately until a
+ * single probe call succeeds.
+ */
+@Component
+public class GitHubCircuitBreaker {
+
+    private static final Logger log = LoggerFactory.getLogger(GitHubCircuitBreaker.class);
+
+    private enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final Executor executor;
+    private final int failureThreshold;
+    private final long openDurationMs;
+    private final long callTimeoutMs;
+
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openedAt;
+
+    @Autowired
+    public GitHubCircuitBreaker(@Qualifier("githubExecutor") Executor executor,
+                                @Value("${github.circuit-breaker.failure-threshold:5}") int failureThreshold,
+                                @Value("${github.circuit-breaker.open-duration-ms:30000}") long openDurationMs,
+                                @Value("${github.circuit-breaker.call-timeout-ms:3000}") long callTimeoutMs) {
+        this.executor = executor;
+        this.failureThreshold = failureThreshold;
+        this.openDurationMs = openDurationMs;
+        this.callTimeoutMs = callTimeoutMs;
+    }
+
+    public <T> T call(String operation, Supplier<T> call) {
+        acquirePermission(operation);
+
+        FutureTask<T> task = new FutureTask<>(call::get);
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            release();
+            throw new GitHubUnavailableException("Too many concurrent GitHub requests", 1);
+        }
+
+        try {
+            T result = task.get(callTimeoutMs, TimeUnit.MILLISECONDS);
+            onSuccess();
+            return result;
+        } catch (TimeoutException e) {
+            task.cancel(true);
+            onFailure(operation);
+            throw new GitHubUnavailableException("GitHub did not respond within " + callTimeoutMs + " ms",
+                    retryAfterSeconds(), e);
+        } catch (InterruptedException e) {
+            task.cancel(true);
+            release();
+            Thread.currentThread().interrupt();
+            throw new GitHubUnavailableException("Interrupted while waiting for GitHub", 1, e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (isGitHubFailure(cause)) {
+                onFailure(operation);
+            } else {
+                onSuccess();
+            }
+            if (cause instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    public synchronized String getState() {
+        return state.name();
+    }
+
+    private synchronized void acquirePermission(String operation) {
+        if (state == State.CLOSED) {
+            return;
+        }
+        if (state == State.OPEN && System.currentTimeMillis() - openedAt >= openDurationMs) {
+            // Let exactly one probe through; everyone else keeps failing fast until it returns
+            state = State.HALF_OPEN;
+            log.info("GitHub circuit half-open, probing with {}", operation);
+            return;
+        }
+        throw new GitHubUnavailableException("GitHub is temporarily unavailable", retryAfterSeconds());
+    }
+
+    private synchronized void onSuccess() {
+        if (state != State.CLOSED) {
+            log.info("GitHub circuit closed");
+        }
+        state = State.CLOSED;
+        consecutiveFailures = 0;
+    }
+
+    private synchronized void onFailure(String operation) {
+        consecutiveFailures++;
+        if (state == State.HALF_OPEN || (state == State.CLOSED && consecutiveFailures >= failureThreshold)) {
+            state = State.OPEN;
+            openedAt = System.currentTimeMillis();
+            log.warn("GitHub circuit opened after {} consecutive failures (last: {})", consecutiveFailures, operation);
+        }
+    }
+
+    private synchronized void release() {
+        // A probe that never reached GitHub says nothing about its health
+        if (state == State.HALF_OPEN) {
+            state = State.OPEN;
+        }
+    }
+
+    private synchronized long retryAfterSeconds() {
+        if (state != State.OPEN) {
+            return 1;
+        }
+        long remaining = openDurationMs - (System.currentTimeMillis() - openedAt);
+        return Math.max(1, TimeUnit.MILLISECONDS.toSeconds(remaining + 999));
+    }
+
+    /**
+     * Client errors mean GitHub answered, so they do not count against the
+     * circuit. Rate limiting, server errors and I/O failures do.
+     */
+    private static boolean isGitHubFailure(Throwable cause) {
+        if (cause instanceof HttpClientErrorException clientError) {
+            return clientError.getStatusCode().value() == 429;
+        }
+        return cause instanceof RestClientException;
+    }
+}
@@ -0,0 +1,24 @@
+package org.nsu.service.github;
+
+/**
+ * Thrown when a GitHub call is refused or abandoned by {@link GitHubCircuitBreaker}
+ * rather than answered by GitHub itself.
+ */
+public class GitHubUnavailableException extends RuntimeException {
+
+    private final long retryAfterSeconds;
+
+    public GitHubUnavailableException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public GitHubUnavailableException(String message, long retryAfterSeconds, Throwable cause) {
+        super(message, cause);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
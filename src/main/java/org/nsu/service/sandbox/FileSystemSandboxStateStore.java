@@ -0,0 +1,163 @@
+package org.nsu.service.sandbox;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+
+/**
+ * Stores snapshots as files in a directory shared by all nodes (e.g. an NFS mount).
+ * Each sandbox has its snapshot, a file with its version and, while a node
+ * saves or loads it, a lock file created atomically.
+ */
+@Component
+@ConditionalOnProperty(name = "sandbox.state.backend", havingValue = "filesystem")
+public class FileSystemSandboxStateStore implements SandboxStateStore {
+
+    private static final String EXTENSION = ".sql.gz";
+    private static final long LOCK_TIMEOUT_MS = 30_000;
+    // A node that died while holding a lock leaves it behind
+    private static final long STALE_LOCK_MS = 600_000;
+
+    private final Path directory;
+
+    public FileSystemSandboxStateStore(@Value("${sandbox.state.directory:./sandbox-state}") String directory)
+            throws IOException {
+        this.directory = Path.of(directory).toAbsolutePath();
+        Files.createDirectories(this.directory);
+    }
+
+    @Override
+    public long save(String sandboxName, Path snapshot, long expectedVersion) throws IOException {
+        // Copied before locking, so the lock is only held for the version check and a rename
+        Path temp = Files.createTempFile(directory, sandboxName, ".tmp");
+        try {
+            Files.copy(snapshot, temp, StandardCopyOption.REPLACE_EXISTING);
+            lock(sandboxName);
+            try {
+                long version = currentVersion(sandboxName);
+                if (version != expectedVersion) {
+                    return -1;
+                }
+                Files.move(temp, resolve(sandboxName), StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+                writeVersion(sandboxName, version + 1);
+                return version + 1;
+            } finally {
+                unlock(sandboxName);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    @Override
+    public void saveConflict(String sandboxName, Path snapshot) throws IOException {
+        Path conflict = directory.resolve(sandboxName + ".conflict-" + System.currentTimeMillis() + EXTENSION);
+        Files.copy(snapshot, conflict, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    @Override
+    public long load(String sandboxName, Path target) throws IOException {
+        lock(sandboxName);
+        try {
+            Path source = resolve(sandboxName);
+            if (!Files.exists(source)) {
+                return 0;
+            }
+            Files.copy(source, target, StandardCopyOption.REPLACE_EXISTING);
+            return currentVersion(sandboxName);
+        } finally {
+            unlock(sandboxName);
+        }
+    }
+
+    @Override
+    public void delete(String sandboxName) throws IOException {
+        lock(sandboxName);
+        try {
+            Files.deleteIfExists(resolve(sandboxName));
+            Files.deleteIfExists(versionFile(sandboxName));
+        } finally {
+            unlock(sandboxName);
+        }
+    }
+
+    @Override
+    public Instant savedAt(String sandboxName) throws IOException {
+        Path source = resolve(sandboxName);
+        return Files.exists(source) ? Files.getLastModifiedTime(source).toInstant() : null;
+    }
+
+    private long currentVersion(String sandboxName) throws IOException {
+        Path versionFile = versionFile(sandboxName);
+        if (Files.exists(versionFile)) {
+            try {
+                return Long.parseLong(Files.readString(versionFile, StandardCharsets.UTF_8).strip());
+            } catch (NumberFormatException e) {
+                throw new IOException("Corrupt version file " + versionFile, e);
+            }
+        }
+        // Snapshots saved before versions were kept count as the first version
+        return Files.exists(resolve(sandboxName)) ? 1 : 0;
+    }
+
+    private void writeVersion(String sandboxName, long version) throws IOException {
+        Path temp = Files.createTempFile(directory, sandboxName, ".tmp");
+        try {
+            Files.writeString(temp, Long.toString(version), StandardCharsets.UTF_8);
+            Files.move(temp, versionFile(sandboxName), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private void lock(String sandboxName) throws IOException {
+        Path lock = directory.resolve(sandboxName + ".lock");
+        long deadline = System.currentTimeMillis() + LOCK_TIMEOUT_MS;
+        while (true) {
+            try {
+                Files.createFile(lock);
+                return;
+            } catch (FileAlreadyExistsException e) {
+                try {
+                    if (Files.getLastModifiedTime(lock).toMillis() < System.currentTimeMillis() - STALE_LOCK_MS) {
+                        Files.deleteIfExists(lock);
+                        continue;
+                    }
+                } catch (IOException gone) {
+                    continue;
+                }
+                if (System.currentTimeMillis() > deadline) {
+                    throw new IOException("Timed out waiting for the lock on sandbox " + sandboxName);
+                }
+                try {
+                    Thread.sleep(20);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted waiting for the lock on sandbox " + sandboxName);
+                }
+            }
+        }
+    }
+
+    private void unlock(String sandboxName) throws IOException {
+        Files.deleteIfExists(directory.resolve(sandboxName + ".lock"));
+    }
+
+    private Path versionFile(String sandboxName) {
+        return directory.resolve(sandboxName + ".version");
+    }
+
+    private Path resolve(String sandboxName) {
+        return directory.resolve(sandboxName + EXTENSION);
+    }
+}
@@ -0,0 +1,542 @@
+package org.nsu.service.sandbox;
+
+import org.nsu.dto.SandboxPoolStats;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Connections of one sandbox. The number of connections the pool may open,
+ * its target, is set by {@link SandboxPoolManager} from the demand observed
+ * here; every open connection also holds one of the manager's global permits.
+ * Idle connections are reused most recently used first, so the ones left at
+ * the tail of the deque are those worth closing.
+ */
+class SandboxConnectionPool {
+
+    private static final int WAIT_SAMPLES = 1024;
+
+    // Permits freed by other sandboxes do not signal this pool, so waiters re-check periodically
+    private static final long WAIT_SLICE_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+
+    private static final double DEMAND_SMOOTHING = 0.3;
+
+    // Most specific first: what a leased connection returns of these types is wrapped in a Guard
+    private static final List<Class<?>> GUARDED_TYPES = List.of(
+            CallableStatement.class, PreparedStatement.class, Statement.class,
+            ResultSet.class, DatabaseMetaData.class);
+
+    private final String name;
+    private final SandboxPoolManager manager;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition available = lock.newCondition();
+    private final Deque<PooledConnection> idle = new ArrayDeque<>();
+    private final long[] waitNanos = new long[WAIT_SAMPLES];
+
+    private volatile SandboxPoolManager.ConnectionOpener opener;
+    private int open;
+    private int inUse;
+    // Leased slots whose connection is still being opened
+    private int opening;
+    private int waiting;
+    private int target;
+    private boolean closed;
+    private long acquisitions;
+    private long timeouts;
+    private int waitSamples;
+    private int nextWaitSample;
+
+    // Demand since the last resize
+    private int peakDemand;
+    private int contendedAcquisitions;
+    private double averageDemand;
+
+    SandboxConnectionPool(String name, SandboxPoolManager manager, int target) {
+        this.name = name;
+        this.manager = manager;
+        this.target = target;
+    }
+
+    /**
+     * Returns a connection whose {@code close()} hands it back to the pool, or
+     * null if the pool was closed or the opener refused, in which case the
+     * caller should look the sandbox up again.
+     */
+    Connection acquire(SandboxPoolManager.ConnectionOpener opener, long timeoutNanos) throws SQLException {
+        this.opener = opener;
+        long begin = System.nanoTime();
+        boolean contended = false;
+        lock.lock();
+        try {
+            while (true) {
+                if (closed) {
+                    return null;
+                }
+                PooledConnection candidate = idle.pollFirst();
+                if (candidate != null) {
+                    inUse++;
+                    recordAcquisition(begin, contended);
+                    return candidate.lease();
+                }
+                if (open < target && manager.reservePermit(this)) {
+                    open++;
+                    inUse++;
+                    opening++;
+                    peakDemand = Math.max(peakDemand, inUse + waiting);
+                    break;
+                }
+                long remaining = timeoutNanos - (System.nanoTime() - begin);
+                if (remaining <= 0) {
+                    timeouts++;
+                    contendedAcquisitions++;
+                    throw new SQLTimeoutException("Timed out after " + TimeUnit.NANOSECONDS.toMillis(timeoutNanos)
+                            + " ms waiting for a connection to sandbox " + name);
+                }
+                contended = true;
+                waiting++;
+                peakDemand = Math.max(peakDemand, inUse + waiting);
+                try {
+                    available.awaitNanos(Math.min(remaining, WAIT_SLICE_NANOS));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new SQLException("Interrupted while waiting for a connection to sandbox " + name, e);
+                } finally {
+                    waiting--;
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        // Opening runs outside the lock so releases and other acquisitions are not held up
+        Connection connection;
+        try {
+            connection = opener.open();
+        } catch (SQLException | RuntimeException e) {
+            discardSlot(true);
+            throw e;
+        }
+        if (connection == null) {
+            discardSlot(true);
+            return null;
+        }
+        PooledConnection pooled = new PooledConnection(connection);
+        lock.lock();
+        try {
+            opening--;
+            recordAcquisition(begin, contended);
+        } finally {
+            lock.unlock();
+        }
+        return pooled.lease();
+    }
+
+    /**
+     * Applies the demand seen since the last call: adjusts the target, closes
+     * connections above it or idle since before {@code idleDeadline}, and
+     * returns how many connections to pre-open for rising demand.
+     */
+    int resize(boolean adaptive, int maxSize, long idleDeadline, List<Connection> toClose) {
+        lock.lock();
+        try {
+            if (closed) {
+                return 0;
+            }
+            int demand = Math.max(peakDemand, inUse + waiting);
+            double previousAverage = averageDemand;
+            averageDemand = DEMAND_SMOOTHING * demand + (1 - DEMAND_SMOOTHING) * previousAverage;
+            if (adaptive) {
+                if (contendedAcquisitions > 0) {
+                    // Queries waited: grow at once to the demand that made them wait
+                    target = Math.min(maxSize, Math.max(target + 1, demand));
+                } else {
+                    // Shrink only as fast as the smoothed demand falls
+                    target = Math.max(1, Math.min(maxSize, (int) Math.ceil(Math.max(averageDemand, demand))));
+                }
+            }
+            peakDemand = inUse + waiting;
+            contendedAcquisitions = 0;
+
+            Iterator<PooledConnection> oldest = idle.descendingIterator();
+            while (oldest.hasNext()) {
+                PooledConnection pooled = oldest.next();
+                if (open <= target && (!adaptive || pooled.idleSince >= idleDeadline)) {
+                    break;
+                }
+                oldest.remove();
+                open--;
+                manager.releasePermit();
+                toClose.add(pooled.connection);
+            }
+
+            if (adaptive && demand > previousAverage) {
+                return Math.max(0, Math.min(target, demand) - open);
+            }
+            return 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Opens up to {@code count} connections ahead of demand, only while global
+     * permits are free; pre-opening never takes connections from other sandboxes.
+     */
+    void preOpen(int count) {
+        SandboxPoolManager.ConnectionOpener currentOpener = opener;
+        for (int i = 0; i < count && currentOpener != null; i++) {
+            lock.lock();
+            try {
+                if (closed || open >= target || !manager.tryReservePermit()) {
+                    return;
+                }
+                open++;
+            } finally {
+                lock.unlock();
+            }
+
+            Connection connection;
+            try {
+                connection = currentOpener.open();
+            } catch (SQLException | RuntimeException e) {
+                connection = null;
+            }
+            if (connection == null) {
+                discardSlot(false);
+                return;
+            }
+            lock.lock();
+            try {
+                if (!closed) {
+                    idle.addFirst(new PooledConnection(connection));
+                    available.signal();
+                    continue;
+                }
+                open--;
+                manager.releasePermit();
+            } finally {
+                lock.unlock();
+            }
+            SandboxPoolManager.closeQuietly(connection);
+            return;
+        }
+    }
+
+    /**
+     * Closes the least recently used idle connection to free a global permit
+     * for another sandbox. Gives up rather than wait if the pool is busy.
+     */
+    Connection evictIdle() {
+        if (!lock.tryLock()) {
+            return null;
+        }
+        try {
+            PooledConnection pooled = idle.pollLast();
+            if (pooled == null) {
+                return null;
+            }
+            open--;
+            manager.releasePermit();
+            return pooled.connection;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    long oldestIdleSince() {
+        if (!lock.tryLock()) {
+            return Long.MAX_VALUE;
+        }
+        try {
+            PooledConnection pooled = idle.peekLast();
+            return pooled != null ? pooled.idleSince : Long.MAX_VALUE;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Stops handing out connections and returns the idle ones for closing.
+     * Connections in use are closed when they are released.
+     */
+    List<Connection> close() {
+        lock.lock();
+        try {
+            closed = true;
+            List<Connection> connections = idle.stream().map(pooled -> pooled.connection).toList();
+            open -= idle.size();
+            for (int i = 0; i < idle.size(); i++) {
+                manager.releasePermit();
+            }
+            idle.clear();
+            available.signalAll();
+            return connections;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Waits, after {@link #close()}, until every connection handed out has been
+     * released. Slots still opening do not count: their opener has to wait for
+     * whatever the caller drains the pool for. Returns false on timeout.
+     */
+    boolean awaitReleased(long timeoutNanos) {
+        long begin = System.nanoTime();
+        lock.lock();
+        try {
+            while (inUse - opening > 0) {
+                long remaining = timeoutNanos - (System.nanoTime() - begin);
+                if (remaining <= 0) {
+                    return false;
+                }
+                try {
+                    available.awaitNanos(Math.min(remaining, WAIT_SLICE_NANOS));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    SandboxPoolStats stats() {
+        SandboxPoolStats stats = new SandboxPoolStats(name);
+        long[] samples;
+        lock.lock();
+        try {
+            stats.setOpen(open);
+            stats.setIdle(idle.size());
+            stats.setInUse(inUse);
+            stats.setWaiting(waiting);
+            stats.setTarget(target);
+            stats.setAcquisitions(acquisitions);
+            stats.setTimeouts(timeouts);
+            samples = Arrays.copyOf(waitNanos, waitSamples);
+        } finally {
+            lock.unlock();
+        }
+        if (samples.length > 0) {
+            Arrays.sort(samples);
+            stats.setWaitP50Ms(percentile(samples, 0.50));
+            stats.setWaitP99Ms(percentile(samples, 0.99));
+            stats.setWaitMaxMs(samples[samples.length - 1] / 1e6);
+        }
+        return stats;
+    }
+
+    private void release(PooledConnection pooled) {
+        boolean reusable = pooled.reset();
+        lock.lock();
+        try {
+            inUse--;
+            if (reusable && !closed && open <= target) {
+                pooled.idleSince = System.currentTimeMillis();
+                idle.addFirst(pooled);
+                available.signal();
+                return;
+            }
+            open--;
+            manager.releasePermit();
+            available.signal();
+        } finally {
+            lock.unlock();
+        }
+        SandboxPoolManager.closeQuietly(pooled.connection);
+    }
+
+    private void discardSlot(boolean leased) {
+        lock.lock();
+        try {
+            open--;
+            if (leased) {
+                inUse--;
+                opening--;
+            }
+            manager.releasePermit();
+            available.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void recordAcquisition(long begin, boolean contended) {
+        acquisitions++;
+        if (contended) {
+            contendedAcquisitions++;
+        }
+        peakDemand = Math.max(peakDemand, inUse + waiting);
+        waitNanos[nextWaitSample] = System.nanoTime() - begin;
+        nextWaitSample = (nextWaitSample + 1) % WAIT_SAMPLES;
+        waitSamples = Math.min(waitSamples + 1, WAIT_SAMPLES);
+    }
+
+    private static double percentile(long[] sorted, double p) {
+        int index = (int) Math.ceil(p * sorted.length) - 1;
+        return sorted[Math.max(index, 0)] / 1e6;
+    }
+
+    private class PooledConnection {
+        private final Connection connection;
+        private final int isolation;
+        private long idleSince = System.currentTimeMillis();
+
+        private PooledConnection(Connection connection) {
+            this.connection = connection;
+            int initialIsolation;
+            try {
+                initialIsolation = connection.getTransactionIsolation();
+            } catch (SQLException e) {
+                initialIsolation = Connection.TRANSACTION_READ_COMMITTED;
+            }
+            this.isolation = initialIsolation;
+        }
+
+        private Connection lease() {
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                    new Class<?>[]{Connection.class}, new Lease(this));
+        }
+
+        // Undoes what queries change on a connection, so the next one starts as if freshly opened
+        private boolean reset() {
+            try {
+                if (connection.isClosed()) {
+                    return false;
+                }
+                if (!connection.getAutoCommit()) {
+                    connection.rollback();
+                    connection.setAutoCommit(true);
+                }
+                connection.setReadOnly(false);
+                if (connection.getTransactionIsolation() != isolation) {
+                    connection.setTransactionIsolation(isolation);
+                }
+                connection.setSchema("PUBLIC");
+                // Cursors and exports switch this on for their own connection
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("SET LAZY_QUERY_EXECUTION FALSE");
+                }
+                connection.clearWarnings();
+                return true;
+            } catch (SQLException e) {
+                return false;
+            }
+        }
+    }
+
+    private class Lease implements InvocationHandler {
+        private final PooledConnection pooled;
+        private boolean released;
+
+        private Lease(PooledConnection pooled) {
+            this.pooled = pooled;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!released) {
+                        released = true;
+                        release(pooled);
+                    }
+                    return null;
+                case "isClosed":
+                    return released || pooled.connection.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Pooled[" + name + "]" + pooled.connection;
+                default:
+                    break;
+            }
+            if (released) {
+                throw new SQLException("Connection is closed");
+            }
+            return forward(proxy, pooled.connection, method, args, (Connection) proxy);
+        }
+    }
+
+    /**
+     * Wraps what a leased connection hands out, so that neither its statements,
+     * result sets and metadata nor {@code unwrap} lead back to the raw
+     * connection, which a caller could keep using after returning it.
+     */
+    private static class Guard implements InvocationHandler {
+        private final Object target;
+        private final Connection lease;
+
+        private Guard(Object target, Connection lease) {
+            this.target = target;
+            this.lease = lease;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "getConnection":
+                    return lease;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                default:
+                    return forward(proxy, target, method, args, lease);
+            }
+        }
+    }
+
+    private static Object forward(Object proxy, Object target, Method method, Object[] args, Connection lease)
+            throws Throwable {
+        switch (method.getName()) {
+            case "unwrap":
+                if (((Class<?>) args[0]).isInstance(proxy)) {
+                    return proxy;
+                }
+                throw new SQLException("Pooled sandbox connections cannot be unwrapped");
+            case "isWrapperFor":
+                return ((Class<?>) args[0]).isInstance(proxy);
+            default:
+                break;
+        }
+        Object result;
+        try {
+            result = method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+        if (result == null) {
+            return null;
+        }
+        for (Class<?> type : GUARDED_TYPES) {
+            if (method.getReturnType().isAssignableFrom(type) && type.isInstance(result)) {
+                return Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type},
+                        new Guard(result, lease));
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,176 @@
+package org.nsu.service.sandbox;
+
+import jakarta.annotation.PreDestroy;
+import org.nsu.dto.SandboxPoolStats;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Connection pools of all sandboxes under one global connection limit. With
+ * {@code sandbox.pool.adaptive} each pool is resized periodically from the
+ * concurrency and waits it saw: it grows as soon as queries wait, shrinks with
+ * smoothed demand, closes connections idle for {@code sandbox.pool.idle-timeout-ms}
+ * and pre-opens connections when demand rises. Otherwise every pool has the
+ * same fixed size, which is what the adaptive sizing is measured against.
+ */
+@Component
+public class SandboxPoolManager {
+
+    private static final Logger log = LoggerFactory.getLogger(SandboxPoolManager.class);
+
+    @FunctionalInterface
+    public interface ConnectionOpener {
+
+        /**
+         * Opens a raw connection to the sandbox, or returns null if the sandbox
+         * has gone away since the caller looked it up.
+         */
+        Connection open() throws SQLException;
+    }
+
+    private final Map<String, SandboxConnectionPool> pools = new ConcurrentHashMap<>();
+    private final Semaphore permits;
+
+    @Value("${sandbox.pool.adaptive:true}")
+    private boolean adaptive;
+
+    @Value("${sandbox.pool.initial-size:2}")
+    private int initialSize;
+
+    @Value("${sandbox.pool.static-size:4}")
+    private int staticSize;
+
+    @Value("${sandbox.pool.max-per-sandbox:16}")
+    private int maxPerSandbox;
+
+    @Value("${sandbox.pool.acquire-timeout-ms:10000}")
+    private long acquireTimeoutMs;
+
+    @Value("${sandbox.pool.idle-timeout-ms:60000}")
+    private long idleTimeoutMs;
+
+    @Autowired
+    public SandboxPoolManager(@Value("${sandbox.pool.max-total:256}") int maxTotal) {
+        this.permits = new Semaphore(maxTotal);
+    }
+
+    public Connection acquire(String sandboxName, ConnectionOpener opener) throws SQLException {
+        SandboxConnectionPool pool = pools.computeIfAbsent(sandboxName,
+                name -> new SandboxConnectionPool(name, this, adaptive ? initialSize : staticSize));
+        return pool.acquire(opener, TimeUnit.MILLISECONDS.toNanos(acquireTimeoutMs));
+    }
+
+    /**
+     * Closes the sandbox's pool before the sandbox is shut down or moved.
+     * Connections still in use are closed as they are released, and waiting
+     * callers are sent back to look the sandbox up again.
+     */
+    public void close(String sandboxName) {
+        SandboxConnectionPool pool = pools.remove(sandboxName);
+        if (pool != null) {
+            pool.close().forEach(SandboxPoolManager::closeQuietly);
+        }
+    }
+
+    /**
+     * Closes the sandbox's pool and waits up to {@code timeoutMs} for the
+     * connections in use to be released, so the caller has the database to
+     * itself. Returns false if some were still in use at the deadline; they
+     * are closed when released either way.
+     */
+    public boolean closeAndDrain(String sandboxName, long timeoutMs) {
+        SandboxConnectionPool pool = pools.remove(sandboxName);
+        if (pool == null) {
+            return true;
+        }
+        pool.close().forEach(SandboxPoolManager::closeQuietly);
+        return pool.awaitReleased(TimeUnit.MILLISECONDS.toNanos(timeoutMs));
+    }
+
+    public SandboxPoolStats getStats(String sandboxName) {
+        SandboxConnectionPool pool = pools.get(sandboxName);
+        return pool != null ? pool.stats() : new SandboxPoolStats(sandboxName);
+    }
+
+    public List<SandboxPoolStats> getAllStats() {
+        return pools.values().stream().map(SandboxConnectionPool::stats).toList();
+    }
+
+    @Scheduled(fixedDelayString = "${sandbox.pool.resize-interval-ms:1000}")
+    public void resizePools() {
+        long idleDeadline = System.currentTimeMillis() - idleTimeoutMs;
+        int size = adaptive ? maxPerSandbox : staticSize;
+        for (SandboxConnectionPool pool : pools.values()) {
+            List<Connection> toClose = new ArrayList<>();
+            int toOpen = pool.resize(adaptive, size, idleDeadline, toClose);
+            toClose.forEach(SandboxPoolManager::closeQuietly);
+            if (toOpen > 0) {
+                pool.preOpen(toOpen);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void closeAll() {
+        pools.keySet().forEach(this::close);
+    }
+
+    /**
+     * Takes a global permit for a new connection. When none is left, closes
+     * the connection idle longest in another sandbox rather than make this
+     * one wait for a sandbox that is not using its connections.
+     */
+    boolean reservePermit(SandboxConnectionPool requester) {
+        if (permits.tryAcquire()) {
+            return true;
+        }
+        SandboxConnectionPool victim = null;
+        long oldest = Long.MAX_VALUE;
+        for (SandboxConnectionPool pool : pools.values()) {
+            if (pool == requester) {
+                continue;
+            }
+            long idleSince = pool.oldestIdleSince();
+            if (idleSince < oldest) {
+                oldest = idleSince;
+                victim = pool;
+            }
+        }
+        if (victim != null) {
+            Connection connection = victim.evictIdle();
+            if (connection != null) {
+                closeQuietly(connection);
+            }
+        }
+        return permits.tryAcquire();
+    }
+
+    boolean tryReservePermit() {
+        return permits.tryAcquire();
+    }
+
+    void releasePermit() {
+        permits.release();
+    }
+
+    static void closeQuietly(Connection connection) {
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            log.debug("Failed to close sandbox connection: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package org.nsu.service.sandbox;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Instant;
+
+/**
+ * Shared storage for sandbox snapshots, so a sandbox evicted on one node can
+ * be restored on another. Every save gets a new version, and a save only
+ * succeeds if the snapshot was not saved by another node since the caller
+ * loaded it, so two nodes that changed the same sandbox never silently
+ * overwrite each other.
+ */
+public interface SandboxStateStore {
+
+    /**
+     * Saves the snapshot if the stored version is still {@code expectedVersion}
+     * (0 if the caller found none) and returns the new version. Returns -1 and
+     * saves nothing if another node saved in between.
+     */
+    long save(String sandboxName, Path snapshot, long expectedVersion) throws IOException;
+
+    /**
+     * Keeps a snapshot that lost a save race beside the current one, so
+     * neither node's changes are lost.
+     */
+    void saveConflict(String sandboxName, Path snapshot) throws IOException;
+
+    /**
+     * Copies the snapshot to {@code target} and returns its version, or 0 if
+     * there is none.
+     */
+    long load(String sandboxName, Path target) throws IOException;
+
+    void delete(String sandboxName) throws IOException;
+
+    /**
+     * When the sandbox's snapshot was last saved, or null if there is none.
+     */
+    Instant savedAt(String sandboxName) throws IOException;
+}
@@ -0,0 +1,157 @@
+package org.nsu.service.snapshot;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A sandbox dump split for a Git snapshot: the schema, the row inserts of each
+ * table cut into chunks at statement boundaries, and the foreign keys and
+ * indexes that are applied after the rows are loaded. The same database
+ * contents always give the same bytes, so an unchanged table gives chunks with
+ * the same blob SHAs as before.
+ */
+public class SandboxDump {
+
+    private static final Pattern INSERT_TABLE =
+            Pattern.compile("^INSERT INTO (\"(?:[^\"]|\"\")+\"\\.\"(?:[^\"]|\"\")+\")");
+    private static final Pattern SCHEMA_OWNER =
+            Pattern.compile("^(CREATE SCHEMA IF NOT EXISTS \"(?:[^\"]|\"\")+\") AUTHORIZATION \"(?:[^\"]|\"\")+\"$");
+
+    private final StringBuilder schema = new StringBuilder();
+    private final StringBuilder constraints = new StringBuilder();
+    private final Map<String, List<byte[]>> tables = new TreeMap<>();
+
+    private SandboxDump() {
+    }
+
+    /**
+     * Dumps the sandbox with H2's {@code SCRIPT}, which returns one statement
+     * per row.
+     */
+    public static SandboxDump read(Connection connection, int chunkBytes) throws SQLException {
+        SandboxDump dump = new SandboxDump();
+        Map<String, ChunkWriter> writers = new TreeMap<>();
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("SCRIPT NOPASSWORDS NOSETTINGS")) {
+            while (rs.next()) {
+                String sql = rs.getString(1).strip();
+                if (sql.endsWith(";")) {
+                    sql = sql.substring(0, sql.length() - 1).stripTrailing();
+                }
+                // Users and rights belong to the sandbox, not to its contents
+                if (sql.isEmpty() || sql.startsWith("--") || sql.startsWith("CREATE USER")
+                        || sql.startsWith("CREATE ROLE") || sql.startsWith("GRANT ")) {
+                    continue;
+                }
+                // Restored schemas belong to whoever restores them
+                sql = SCHEMA_OWNER.matcher(sql).replaceFirst("$1");
+                Matcher insert = INSERT_TABLE.matcher(sql);
+                if (insert.find()) {
+                    writers.computeIfAbsent(insert.group(1), table -> new ChunkWriter(chunkBytes)).add(sql);
+                } else if (isPostLoad(sql)) {
+                    dump.constraints.append(sql).append(";\n");
+                } else {
+                    dump.schema.append(sql).append(";\n");
+                }
+            }
+        }
+        writers.forEach((table, writer) -> dump.tables.put(table, writer.finish()));
+        return dump;
+    }
+
+    /**
+     * Statements that would slow the load down or fail when tables are loaded
+     * in parallel: indexes and foreign keys. Sandboxes cannot have triggers.
+     */
+    private static boolean isPostLoad(String sql) {
+        return SnapshotScript.isConstraintStatement(sql);
+    }
+
+    public byte[] getSchema() {
+        return schema.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    public byte[] getConstraints() {
+        return constraints.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Chunks of row inserts by quoted table name, e.g. {@code "PUBLIC"."USERS"},
+     * in name order.
+     */
+    public Map<String, List<byte[]>> getTables() {
+        return tables;
+    }
+
+    /**
+     * Directory of a table's chunks inside the snapshot. Names that are not
+     * safe as a path get a hash suffix so two tables never share a directory.
+     */
+    public static String tableDirectory(String table) {
+        String plain = table.replace("\"\"", "\"").replace("\".\"", ".");
+        plain = plain.substring(1, plain.length() - 1);
+        String safe = plain.replaceAll("[^A-Za-z0-9_.-]", "_");
+        if (safe.equals(plain) && !safe.startsWith(".")) {
+            return safe;
+        }
+        return safe + "-" + blobSha(table.getBytes(StandardCharsets.UTF_8)).substring(0, 8);
+    }
+
+    /**
+     * Git's object id of a blob, so uploads can be skipped for content the
+     * repository already has.
+     */
+    public static String blobSha(byte[] content) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            digest.update(("blob " + content.length + "\0").getBytes(StandardCharsets.US_ASCII));
+            digest.update(content);
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-1 is not available", e);
+        }
+    }
+
+    /**
+     * Cuts a table's inserts into chunks of at most {@code chunkBytes}, unless a
+     * single statement is larger.
+     */
+    private static class ChunkWriter {
+        private final int chunkBytes;
+        private final List<byte[]> chunks = new ArrayList<>();
+        private final ByteArrayOutputStream current = new ByteArrayOutputStream();
+
+        ChunkWriter(int chunkBytes) {
+            this.chunkBytes = chunkBytes;
+        }
+
+        void add(String sql) {
+            byte[] bytes = (sql + ";\n").getBytes(StandardCharsets.UTF_8);
+            if (current.size() > 0 && current.size() + bytes.length > chunkBytes) {
+                chunks.add(current.toByteArray());
+                current.reset();
+            }
+            current.writeBytes(bytes);
+        }
+
+        List<byte[]> finish() {
+            if (current.size() > 0) {
+                chunks.add(current.toByteArray());
+            }
+            return chunks;
+        }
+    }
+}
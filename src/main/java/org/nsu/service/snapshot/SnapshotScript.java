@@ -0,0 +1,164 @@
+package org.nsu.service.snapshot;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Checks the files of a snapshot before they are loaded. Snapshot content
+ * comes from a repository anyone with push access can change, so each file
+ * may only hold what {@link SandboxDump} writes to it: the schema only
+ * creates schemas, tables, sequences, views and domains, the constraints file
+ * only indexes and foreign keys, and a chunk only inserts into its own table.
+ */
+public final class SnapshotScript {
+
+    private static final String NAME = "\"(?:[^\"]|\"\")+\"";
+    private static final String QUALIFIED_NAME = NAME + "(?:\\." + NAME + ")?";
+
+    private static final Pattern TABLE_NAME = Pattern.compile(NAME + "\\." + NAME);
+    private static final Pattern SCHEMA_STATEMENT = Pattern.compile(
+            "CREATE SCHEMA IF NOT EXISTS " + NAME +
+            "|CREATE (?:MEMORY |CACHED )?TABLE .*" +
+            "|CREATE SEQUENCE .*" +
+            "|CREATE (?:FORCE )?VIEW .*" +
+            "|CREATE DOMAIN .*" +
+            "|COMMENT ON .*" +
+            "|ALTER TABLE " + QUALIFIED_NAME + " ADD CONSTRAINT " + QUALIFIED_NAME
+                    + " (?:PRIMARY KEY|UNIQUE|CHECK)\\b.*",
+            Pattern.DOTALL);
+    private static final Pattern CONSTRAINT_STATEMENT = Pattern.compile(
+            "CREATE (?:UNIQUE (?:NULLS (?:NOT |ALL )?DISTINCT )?)?(?:HASH |SPATIAL )?INDEX .*" +
+            "|ALTER TABLE " + QUALIFIED_NAME + " ADD CONSTRAINT " + QUALIFIED_NAME + " FOREIGN KEY\\b.*",
+            Pattern.DOTALL);
+
+    private SnapshotScript() {
+    }
+
+    public static boolean isTableName(String table) {
+        return table != null && TABLE_NAME.matcher(table).matches();
+    }
+
+    public static boolean isSchemaStatement(String sql) {
+        return SCHEMA_STATEMENT.matcher(sql).matches();
+    }
+
+    public static boolean isConstraintStatement(String sql) {
+        return CONSTRAINT_STATEMENT.matcher(sql).matches();
+    }
+
+    /**
+     * Whether {@code sql} inserts rows into exactly {@code table}, a quoted name
+     * such as {@code "PUBLIC"."USERS"}.
+     */
+    public static boolean isInsertInto(String sql, String table) {
+        String prefix = "INSERT INTO " + table;
+        if (!sql.startsWith(prefix) || sql.length() == prefix.length()) {
+            return false;
+        }
+        char next = sql.charAt(prefix.length());
+        return next == ' ' || next == '(';
+    }
+
+    /**
+     * Splits a file into statements at semicolons outside string literals,
+     * quoted identifiers and comments, the way H2 does, so each statement can
+     * be checked and run on its own. Comments between statements are dropped.
+     */
+    public static List<String> split(byte[] content) {
+        String sql = new String(content, StandardCharsets.UTF_8);
+        List<String> statements = new ArrayList<>();
+        int length = sql.length();
+        int start = 0;
+        int i = 0;
+        while (i < length) {
+            char c = sql.charAt(i);
+            if (c == '\'' || c == '"') {
+                i = closingQuote(sql, i);
+            } else if (sql.startsWith("$$", i)) {
+                int end = sql.indexOf("$$", i + 2);
+                i = end < 0 ? length : end + 2;
+            } else if (sql.startsWith("--", i) || sql.startsWith("//", i)) {
+                int end = sql.indexOf('\n', i);
+                i = end < 0 ? length : end + 1;
+            } else if (sql.startsWith("/*", i)) {
+                i = closingComment(sql, i);
+            } else if (c == ';') {
+                add(statements, sql.substring(start, i));
+                start = ++i;
+            } else {
+                i++;
+            }
+        }
+        add(statements, sql.substring(start));
+        return statements;
+    }
+
+    private static void add(List<String> statements, String statement) {
+        String sql = stripComments(statement);
+        if (!sql.isEmpty()) {
+            statements.add(sql);
+        }
+    }
+
+    // Only leading comments: SandboxDump writes none inside statements
+    private static String stripComments(String statement) {
+        String sql = statement.strip();
+        while (true) {
+            if (sql.startsWith("--") || sql.startsWith("//")) {
+                int end = sql.indexOf('\n');
+                sql = end < 0 ? "" : sql.substring(end + 1).strip();
+            } else if (sql.startsWith("/*")) {
+                sql = sql.substring(Math.min(closingComment(sql, 0), sql.length())).strip();
+            } else {
+                return sql;
+            }
+        }
+    }
+
+    private static int closingQuote(String sql, int start) {
+        char quote = sql.charAt(start);
+        int i = start + 1;
+        while (i < sql.length()) {
+            if (sql.charAt(i) == quote) {
+                if (i + 1 < sql.length() && sql.charAt(i + 1) == quote) {
+                    i += 2;
+                    continue;
+                }
+                return i + 1;
+            }
+            i++;
+        }
+        return sql.length();
+    }
+
+    // H2 block comments nest
+    private static int closingComment(String sql, int start) {
+        int depth = 0;
+        int i = start;
+        while (i < sql.length()) {
+            if (sql.startsWith("/*", i)) {
+                depth++;
+                i += 2;
+            } else if (sql.startsWith("*/", i)) {
+                depth--;
+                i += 2;
+                if (depth == 0) {
+                    return i;
+                }
+            } else {
+                i++;
+            }
+        }
+        return sql.length();
+    }
+
+    /**
+     * The start of a statement for error messages.
+     */
+    public static String abbreviate(String sql) {
+        String line = sql.replaceAll("\\s+", " ");
+        return line.length() > 80 ? line.substring(0, 80) + "..." : line;
+    }
+}
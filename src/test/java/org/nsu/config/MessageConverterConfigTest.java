@@ -0,0 +1,42 @@
+package org.nsu.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.nsu.benchmark.EncodingBenchmark;
+import org.nsu.dto.QueryResponse;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Wire size of a 10k-row {@link QueryResponse} in each encoding, compared with
+ * JSON both as written and after the gzip Tomcat applies above
+ * {@code server.compression.min-response-size}. Timings are printed by the
+ * {@code encodingBenchmark} task.
+ */
+class MessageConverterConfigTest {
+
+    private static final int ROWS = 10_000;
+
+    private final MessageConverterConfig config = new MessageConverterConfig();
+
+    @Test
+    void binaryEncodingsAreSmallerThanJsonFor10kRows() throws IOException {
+        QueryResponse response = EncodingBenchmark.response(ROWS);
+        ObjectMapper smile = config.smileHttpMessageConverter(Jackson2ObjectMapperBuilder.json()).getObjectMapper();
+        ObjectMapper cbor = config.cborHttpMessageConverter(Jackson2ObjectMapperBuilder.json()).getObjectMapper();
+
+        byte[] json = EncodingBenchmark.jsonMapper().writeValueAsBytes(response);
+        assertSmaller("Smile", smile.writeValueAsBytes(response), json);
+        assertSmaller("CBOR", cbor.writeValueAsBytes(response), json);
+    }
+
+    private static void assertSmaller(String name, byte[] encoded, byte[] json) throws IOException {
+        assertTrue(encoded.length < json.length, name + " " + encoded.length + " bytes, JSON " + json.length);
+        int gzipped = EncodingBenchmark.gzip(encoded).length;
+        int jsonGzipped = EncodingBenchmark.gzip(json).length;
+        assertTrue(gzipped < jsonGzipped, name + "+gzip " + gzipped + " bytes, JSON+gzip " + jsonGzipped);
+    }
+}
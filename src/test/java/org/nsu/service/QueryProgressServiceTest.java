@@ -0,0 +1,64 @@
+package org.nsu.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.nsu.dto.QueryResponse;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class QueryProgressServiceTest {
+
+    private final ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+    private final ThreadPoolTaskExecutor sendExecutor = new ThreadPoolTaskExecutor();
+    private final QueryProgressService service;
+
+    QueryProgressServiceTest() {
+        scheduler.initialize();
+        sendExecutor.initialize();
+        service = new QueryProgressService(scheduler, sendExecutor);
+        ReflectionTestUtils.setField(service, "streamTimeout", 60000L);
+        ReflectionTestUtils.setField(service, "retentionMs", 60000L);
+    }
+
+    @AfterEach
+    void shutdown() {
+        scheduler.shutdown();
+        sendExecutor.shutdown();
+    }
+
+    @Test
+    void resultNobodySubscribedToIsNotKept() {
+        QueryProgressService.Tracker tracker = service.start("alice", "q1");
+        service.complete(tracker, QueryResponse.builder().success(true).build());
+
+        assertTrue(trackers().isEmpty());
+    }
+
+    @Test
+    void subscribingAfterCompletionWaitsForTheNextRun() {
+        service.subscribe("alice", "q1");
+        QueryProgressService.Tracker first = service.start("alice", "q1");
+        service.complete(first, QueryResponse.builder().success(true).build());
+
+        service.subscribe("alice", "q1");
+
+        assertEquals(1, trackers().size());
+        Object next = trackers().values().iterator().next();
+        assertNotSame(first, next);
+        assertNull(ReflectionTestUtils.getField(next, "result"));
+        assertEquals(next, service.start("alice", "q1"));
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, QueryProgressService.Tracker> trackers() {
+        return (Map<String, QueryProgressService.Tracker>) ReflectionTestUtils.getField(service, "trackers");
+    }
+}
@@ -0,0 +1,102 @@
+package org.nsu.service;
+
+import org.junit.jupiter.api.Test;
+import org.nsu.dto.QueryRequest;
+import org.nsu.dto.QueryResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The sandbox memory quota against in-memory sandboxes filled past
+ * {@code quota.sandbox-memory-bytes} by each kind of statement.
+ */
+@SpringBootTest(properties = {
+        "startup.warmup.enabled=false",
+        "quota.sandbox-memory-bytes=2097152",
+        "quota.watch-interval-ms=20"
+})
+class QuotaServiceTest {
+
+    private static final long LIMIT = 2_097_152;
+    // Distinct values, as H2 shares equal strings between rows
+    private static final String ROWS = "SELECT X, CONCAT(X, REPEAT('x', 100)) FROM SYSTEM_RANGE(1, ";
+
+    @Autowired
+    private QueryExecutionService queryExecutionService;
+
+    @Autowired
+    private SandboxService sandboxService;
+
+    @Test
+    void measuresInMemorySandbox() throws Exception {
+        String user = "quota_size";
+        assertSuccess(execute(user, "CREATE TABLE items(id BIGINT PRIMARY KEY, name VARCHAR(200))"));
+        assertSuccess(execute(user, "INSERT INTO items " + ROWS + "2000)"));
+
+        long size = sandboxService.getSandboxSize(user);
+        // About 280 bytes a row on the heap
+        assertTrue(size > 2000 * 200 && size < 2000 * 400, size + " bytes for 2000 rows");
+
+        assertSuccess(execute(user, "CREATE INDEX items_name ON items(name)"));
+        assertTrue(sandboxService.getSandboxSize(user) > size, "the index is counted");
+    }
+
+    @Test
+    void oversizedWriteIsRolledBack() {
+        String user = "quota_write";
+        assertSuccess(execute(user, "CREATE TABLE items(id BIGINT PRIMARY KEY, name VARCHAR(200))"));
+        assertSuccess(execute(user, "INSERT INTO items " + ROWS + "1000)"));
+
+        assertQuotaExceeded(execute(user, "INSERT INTO items " + ROWS.replace("X,", "X + 1000,") + "20000)"));
+        assertEquals(1000L, count(user, "items"));
+    }
+
+    @Test
+    void createTableAsSelectIsStoppedAtTheLimit() throws Exception {
+        String user = "quota_ddl";
+        assertQuotaExceeded(execute(user, "CREATE TABLE items AS " + ROWS + "300000)"));
+
+        assertEquals(0L, tables(user, "ITEMS"));
+        assertTrue(sandboxService.getSandboxSize(user) <= LIMIT);
+    }
+
+    @Test
+    void scriptIsStoppedAtTheLimit() {
+        String user = "quota_script";
+        QueryResponse response = queryExecutionService.executeScript(user,
+                "CREATE TABLE items(id BIGINT PRIMARY KEY, name VARCHAR(200));\n" +
+                "INSERT INTO items " + ROWS + "300000);\n" +
+                "CREATE TABLE after_items(id INT);");
+
+        assertQuotaExceeded(response);
+        assertEquals(0L, count(user, "items"));
+        assertEquals(0L, tables(user, "AFTER_ITEMS"), "the rest of the script did not run");
+    }
+
+    private QueryResponse execute(String user, String sql) {
+        return queryExecutionService.execute(user, new QueryRequest(sql));
+    }
+
+    private long count(String user, String table) {
+        QueryResponse response = execute(user, "SELECT COUNT(*) AS c FROM " + table);
+        assertSuccess(response);
+        return ((Number) response.getData().get(0).get("C")).longValue();
+    }
+
+    private long tables(String user, String name) {
+        return count(user, "INFORMATION_SCHEMA.TABLES WHERE TABLE_NAME = '" + name + "'");
+    }
+
+    private static void assertSuccess(QueryResponse response) {
+        assertTrue(response.isSuccess(), response.getMessage());
+    }
+
+    private static void assertQuotaExceeded(QueryResponse response) {
+        assertFalse(response.isSuccess());
+        assertEquals(QuotaService.ERROR_MEMORY_QUOTA, response.getErrorCode(), response.getMessage());
+    }
+}
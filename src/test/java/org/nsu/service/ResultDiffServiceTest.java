@@ -0,0 +1,79 @@
+package org.nsu.service;
+
+import org.junit.jupiter.api.Test;
+import org.nsu.dto.ColumnInfo;
+import org.nsu.dto.QueryRequest;
+import org.nsu.dto.QueryResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class ResultDiffServiceTest {
+
+    private final ResultDiffService service = new ResultDiffService();
+
+    ResultDiffServiceTest() {
+        ReflectionTestUtils.setField(service, "maxResultsPerUser", 20);
+        ReflectionTestUtils.setField(service, "maxRows", 1000);
+        ReflectionTestUtils.setField(service, "maxTotalRows", 250L);
+        ReflectionTestUtils.setField(service, "ttlMs", 600000L);
+    }
+
+    @Test
+    void diffsAgainstThePreviousResult() {
+        apply("alice", "q", 100, false);
+        QueryResponse response = apply("alice", "q", 101, true);
+
+        assertNull(response.getData());
+        assertEquals(1, response.getDiff().getAdded().size());
+        assertEquals(100, response.getDiff().getUnchanged());
+        assertEquals(101, service.getCachedRows());
+    }
+
+    @Test
+    void dropsTheLeastRecentlyUsedResultsOfAnyUserOverTheRowBudget() {
+        apply("alice", "q", 100, false);
+        apply("bob", "q", 100, false);
+        apply("alice", "q", 100, false);
+        apply("carol", "q", 100, false);
+
+        // bob's result was the oldest
+        assertEquals(200, service.getCachedRows());
+        assertNull(apply("bob", "q", 100, true).getDiff());
+        assertNotNull(apply("carol", "q", 100, true).getDiff());
+    }
+
+    @Test
+    void expiredResultsAreNotDiffedAndAreSwept() {
+        apply("alice", "q", 100, false);
+        ReflectionTestUtils.setField(service, "ttlMs", -1L);
+
+        service.evictExpired();
+
+        assertEquals(0, service.getCachedRows());
+        assertNull(apply("alice", "q", 100, true).getDiff());
+    }
+
+    private QueryResponse apply(String user, String queryId, int rows, boolean diff) {
+        QueryRequest request = new QueryRequest("SELECT id FROM t");
+        request.setQueryId(queryId);
+        request.setDiff(diff);
+        List<Map<String, Object>> data = new ArrayList<>();
+        for (int i = 0; i < rows; i++) {
+            data.add(Map.of("ID", i));
+        }
+        QueryResponse response = QueryResponse.builder()
+                .success(true)
+                .columns(List.of(new ColumnInfo("ID", "INTEGER")))
+                .data(data)
+                .build();
+        service.apply(user, request, response);
+        return response;
+    }
+}
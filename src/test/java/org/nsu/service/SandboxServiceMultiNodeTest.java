@@ -0,0 +1,180 @@
+package org.nsu.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.nsu.service.sandbox.FileSystemSandboxStateStore;
+import org.nsu.service.sandbox.SandboxPoolManager;
+import org.nsu.service.sandbox.SandboxStateStore;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Two nodes sharing one {@link FileSystemSandboxStateStore}. Each node has
+ * its own H2 URL prefix, since in-memory databases are shared by the JVM.
+ */
+class SandboxServiceMultiNodeTest {
+
+    private static final String USER = "shared-user";
+    private static final int RESTORE_ROWS = 50_000;
+
+    @TempDir
+    Path stateDirectory;
+
+    private final List<SandboxService> nodes = new ArrayList<>();
+    private final List<SandboxPoolManager> poolManagers = new ArrayList<>();
+
+    @AfterEach
+    void shutDownNodes() {
+        nodes.forEach(node -> node.drop(USER));
+        poolManagers.forEach(SandboxPoolManager::closeAll);
+    }
+
+    @Test
+    void sandboxEvictedOnOneNodeIsRestoredOnAnother() throws Exception {
+        SandboxService nodeA = node("a");
+        SandboxService nodeB = node("b");
+
+        write(nodeA, "CREATE TABLE items (id INT PRIMARY KEY, name VARCHAR(20))",
+                "INSERT INTO items VALUES (1, 'first'), (2, 'second')");
+        nodeA.evictIdleSandboxes();
+
+        assertEquals(List.of("first", "second"), names(nodeB));
+    }
+
+    @Test
+    void largeSandboxIsRestoredOnAnotherNodeWithoutLoss() throws Exception {
+        SandboxService nodeA = node("a");
+        SandboxService nodeB = node("b");
+        write(nodeA, "CREATE TABLE items (id INT PRIMARY KEY, name VARCHAR(20))",
+                "INSERT INTO items SELECT X, CONCAT('item ', X) FROM SYSTEM_RANGE(1, " + RESTORE_ROWS + ")");
+        nodeA.evictIdleSandboxes();
+
+        // The first connection on node b restores the snapshot node a saved
+        long begin = System.nanoTime();
+        nodeB.getConnection(USER).close();
+        long restoreMs = (System.nanoTime() - begin) / 1_000_000;
+        System.out.printf("Restored %,d rows on another node in %d ms%n", RESTORE_ROWS, restoreMs);
+
+        try (Connection connection = nodeB.getConnection(USER);
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT COUNT(*), SUM(id), SUM(LENGTH(name)) FROM items")) {
+            assertTrue(resultSet.next());
+            assertEquals(RESTORE_ROWS, resultSet.getLong(1));
+            assertEquals((long) RESTORE_ROWS * (RESTORE_ROWS + 1) / 2, resultSet.getLong(2));
+            assertEquals(sumOfNameLengths(), resultSet.getLong(3));
+        }
+        // Generous, only to catch a restore that got orders of magnitude slower
+        assertTrue(restoreMs < 10_000, "restore took " + restoreMs + " ms");
+    }
+
+    @Test
+    void concurrentChangesOnTwoNodesKeepBothCopies() throws Exception {
+        SandboxService nodeA = node("a");
+        write(nodeA, "CREATE TABLE items (id INT PRIMARY KEY, name VARCHAR(20))",
+                "INSERT INTO items VALUES (1, 'base')");
+        nodeA.evictIdleSandboxes();
+
+        // Both nodes load the same version and change it
+        SandboxService nodeB = node("b");
+        SandboxService nodeC = node("c");
+        write(nodeB, "INSERT INTO items VALUES (2, 'from b')");
+        write(nodeC, "INSERT INTO items VALUES (3, 'from c')");
+        nodeB.evictIdleSandboxes();
+        nodeC.evictIdleSandboxes();
+
+        // The first save wins; the second is kept as a conflict instead of overwriting it
+        assertEquals(List.of("base", "from b"), names(node("d")));
+        try (Stream<Path> files = Files.list(stateDirectory)) {
+            assertEquals(1, files.filter(file -> file.getFileName().toString().contains(".conflict-")).count());
+        }
+    }
+
+    @Test
+    void evictionSkipsSandboxWithConnectionInUse() throws Exception {
+        SandboxService nodeA = node("a");
+        write(nodeA, "CREATE TABLE items (id INT PRIMARY KEY, name VARCHAR(20))",
+                "INSERT INTO items VALUES (1, 'open')");
+
+        try (Connection cursor = nodeA.getConnection(USER);
+             Statement statement = cursor.createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT name FROM items")) {
+            nodeA.evictIdleSandboxes();
+            assertTrue(resultSet.next());
+            assertEquals("open", resultSet.getString(1));
+        }
+        assertFalse(Files.exists(stateDirectory.resolve("shared_user.sql.gz")));
+    }
+
+    private SandboxService node(String name) throws IOException {
+        SandboxStateStore store = new FileSystemSandboxStateStore(stateDirectory.toString());
+        StaticListableBeanFactory beans = new StaticListableBeanFactory();
+        beans.addBean("sandboxStateStore", store);
+
+        SandboxPoolManager poolManager = new SandboxPoolManager(16);
+        ReflectionTestUtils.setField(poolManager, "staticSize", 4);
+        ReflectionTestUtils.setField(poolManager, "initialSize", 2);
+        ReflectionTestUtils.setField(poolManager, "maxPerSandbox", 4);
+        ReflectionTestUtils.setField(poolManager, "acquireTimeoutMs", 5000L);
+        ReflectionTestUtils.setField(poolManager, "idleTimeoutMs", 60000L);
+
+        SandboxService node = new SandboxService(beans.getBeanProvider(SandboxStateStore.class), poolManager);
+        ReflectionTestUtils.setField(node, "sandboxUrlPrefix", "jdbc:h2:mem:node_" + name + "_");
+        ReflectionTestUtils.setField(node, "sandboxUrlOptions", ";DB_CLOSE_DELAY=-1");
+        ReflectionTestUtils.setField(node, "sandboxUsername", "sa");
+        ReflectionTestUtils.setField(node, "sandboxPassword", "");
+        ReflectionTestUtils.setField(node, "queryUsername", "playground");
+        // Every sandbox counts as idle, so each sweep evicts
+        ReflectionTestUtils.setField(node, "idleTimeout", -60000L);
+        ReflectionTestUtils.setField(node, "storageDirectory", stateDirectory.resolve("files").toString());
+        ReflectionTestUtils.setField(node, "drainTimeoutMs", 1000L);
+        nodes.add(node);
+        poolManagers.add(poolManager);
+        return node;
+    }
+
+    private void write(SandboxService node, String... statements) throws SQLException {
+        try (Connection connection = node.getConnection(USER);
+             Statement statement = connection.createStatement()) {
+            for (String sql : statements) {
+                statement.execute(sql);
+            }
+        }
+        node.markModified(USER);
+    }
+
+    private static long sumOfNameLengths() {
+        long sum = 0;
+        for (int id = 1; id <= RESTORE_ROWS; id++) {
+            sum += ("item " + id).length();
+        }
+        return sum;
+    }
+
+    private List<String> names(SandboxService node) throws SQLException {
+        List<String> names = new ArrayList<>();
+        try (Connection connection = node.getConnection(USER);
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT name FROM items ORDER BY id")) {
+            while (resultSet.next()) {
+                names.add(resultSet.getString(1));
+            }
+        }
+        return names;
+    }
+}
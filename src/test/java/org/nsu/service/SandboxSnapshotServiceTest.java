@@ -0,0 +1,175 @@
+package org.nsu.service;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.nsu.benchmark.FakeGitHubServer;
+import org.nsu.dto.QueryRequest;
+import org.nsu.dto.QueryResponse;
+import org.nsu.security.PlaygroundUser;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Snapshots committed to and restored from {@link FakeGitHubServer}, with the
+ * real sandbox, dump and Git client.
+ */
+@SpringBootTest(properties = {
+        "startup.warmup.enabled=false",
+        "snapshot.chunk-bytes=4096"
+})
+class SandboxSnapshotServiceTest {
+
+    private static final String OWNER = "tester";
+    private static final String REPO = "snapshots";
+    private static final String CHECKSUM = "SELECT (SELECT COUNT(*) FROM customers) AS customers, " +
+            "(SELECT SUM(id) + SUM(LENGTH(name)) FROM customers) AS customer_sum, " +
+            "(SELECT COUNT(*) FROM orders) AS orders, " +
+            "(SELECT SUM(total) FROM orders) AS order_sum";
+
+    private static final FakeGitHubServer GITHUB = startGitHub();
+
+    @Autowired
+    private SandboxSnapshotService snapshotService;
+
+    @Autowired
+    private QueryExecutionService queryExecutionService;
+
+    @Autowired
+    private GitHubService gitHubService;
+
+    @DynamicPropertySource
+    static void gitHub(DynamicPropertyRegistry registry) {
+        registry.add("github.api.base-url", () -> "http://localhost:" + GITHUB.getPort());
+    }
+
+    @AfterAll
+    static void stopGitHub() {
+        GITHUB.stop();
+    }
+
+    @Test
+    void uploadsOnlyChangedChunksAndRestoresEachCommit() {
+        PlaygroundUser user = user("roundtrip");
+        createTables(user, 500);
+        String firstChecksum = checksum(user);
+
+        Map<String, Object> first = snapshotService.createSnapshot(user, OWNER, REPO, "roundtrip", "main", "First");
+        assertFalse(first.containsKey("error"), String.valueOf(first));
+
+        execute(user, "UPDATE customers SET name = 'renamed' WHERE id = 500");
+        String secondChecksum = checksum(user);
+        long uploadsBefore = GITHUB.getBlobUploads();
+        Map<String, Object> second = snapshotService.createSnapshot(user, OWNER, REPO, "roundtrip", "main", "Second");
+        assertFalse(second.containsKey("error"), String.valueOf(second));
+        // Only the customers chunk holding the last row changed
+        assertEquals(1, GITHUB.getBlobUploads() - uploadsBefore);
+
+        Map<String, Object> unchanged = snapshotService.createSnapshot(user, OWNER, REPO, "roundtrip", "main", null);
+        assertEquals(true, unchanged.get("unchanged"));
+
+        execute(user, "DROP TABLE orders");
+        execute(user, "DROP TABLE customers");
+        Map<String, Object> restored = snapshotService.restoreSnapshot(user, OWNER, REPO, "roundtrip",
+                (String) first.get("commit"));
+        assertFalse(restored.containsKey("error"), String.valueOf(restored));
+        assertEquals(firstChecksum, checksum(user));
+
+        restored = snapshotService.restoreSnapshot(user, OWNER, REPO, "roundtrip", "main");
+        assertFalse(restored.containsKey("error"), String.valueOf(restored));
+        assertEquals(secondChecksum, checksum(user));
+    }
+
+    @Test
+    void rejectsForbiddenSchemaStatementWithoutTouchingTheSandbox() {
+        PlaygroundUser user = user("tampered-schema");
+        createTables(user, 50);
+        Map<String, Object> snapshot = snapshotService.createSnapshot(user, OWNER, REPO, "schema", "main", null);
+        String commit = replaceFile(user, (String) snapshot.get("commit"), "snapshots/schema/schema.sql",
+                "CREATE ALIAS EXEC FOR 'java.lang.Runtime.exec';\n");
+        execute(user, "INSERT INTO customers VALUES (1000, 'kept')");
+        String before = checksum(user);
+
+        Map<String, Object> restored = snapshotService.restoreSnapshot(user, OWNER, REPO, "schema", commit);
+
+        assertTrue(restored.containsKey("error"), String.valueOf(restored));
+        assertEquals(before, checksum(user));
+    }
+
+    @Test
+    void rejectsChunkWritingAnotherTableWithoutTouchingTheSandbox() {
+        PlaygroundUser user = user("tampered-chunk");
+        createTables(user, 50);
+        Map<String, Object> snapshot = snapshotService.createSnapshot(user, OWNER, REPO, "chunk", "main", null);
+        String commit = replaceFile(user, (String) snapshot.get("commit"),
+                "snapshots/chunk/data/PUBLIC.CUSTOMERS/00000.sql",
+                "INSERT INTO \"PUBLIC\".\"ORDERS\" VALUES (999999, 1, 1.00);\n");
+        String before = checksum(user);
+
+        Map<String, Object> restored = snapshotService.restoreSnapshot(user, OWNER, REPO, "chunk", commit);
+
+        assertTrue(restored.containsKey("error"), String.valueOf(restored));
+        assertEquals(before, checksum(user));
+    }
+
+    private void createTables(PlaygroundUser user, int rows) {
+        execute(user, "CREATE TABLE customers (id INT PRIMARY KEY, name VARCHAR(50))");
+        execute(user, "INSERT INTO customers SELECT X, 'customer ' || X FROM SYSTEM_RANGE(1, " + rows + ")");
+        execute(user, "CREATE TABLE orders (id INT PRIMARY KEY, customer_id INT REFERENCES customers(id), " +
+                "total DECIMAL(12, 2))");
+        execute(user, "INSERT INTO orders SELECT X, MOD(X, " + rows + ") + 1, X * 1.25 FROM SYSTEM_RANGE(1, "
+                + rows * 4 + ")");
+        execute(user, "CREATE INDEX orders_customer ON orders (customer_id)");
+    }
+
+    // Commits one changed file on top of a snapshot commit, as someone with push access could
+    private String replaceFile(PlaygroundUser user, String commit, String path, String content) {
+        String tree = (String) ((Map<?, ?>) gitHubService.getCommit(user, OWNER, REPO, commit).get("tree")).get("sha");
+        String blob = (String) gitHubService.createBlob(user, OWNER, REPO,
+                content.getBytes(StandardCharsets.UTF_8)).get("sha");
+        Map<String, Object> entry = new HashMap<>();
+        entry.put("path", path);
+        entry.put("mode", "100644");
+        entry.put("type", "blob");
+        entry.put("sha", blob);
+        String newTree = (String) gitHubService.createTree(user, OWNER, REPO, tree, List.of(entry)).get("sha");
+        return (String) gitHubService.createCommit(user, OWNER, REPO, "Tamper", newTree, commit).get("sha");
+    }
+
+    private String checksum(PlaygroundUser user) {
+        QueryResponse response = queryExecutionService.execute(user.getLogin(), new QueryRequest(CHECKSUM));
+        assertTrue(response.isSuccess(), response.getMessage());
+        return response.getData().get(0).toString();
+    }
+
+    private void execute(PlaygroundUser user, String sql) {
+        QueryResponse response = queryExecutionService.execute(user.getLogin(), new QueryRequest(sql));
+        assertTrue(response.isSuccess(), sql + ": " + response.getMessage());
+    }
+
+    private static PlaygroundUser user(String login) {
+        return new PlaygroundUser(login, login + "@example.com", null, "token-" + login);
+    }
+
+    private static FakeGitHubServer startGitHub() {
+        try {
+            FakeGitHubServer server = new FakeGitHubServer(0, 0);
+            server.start();
+            return server;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
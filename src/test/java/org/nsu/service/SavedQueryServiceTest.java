@@ -0,0 +1,118 @@
+package org.nsu.service;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.nsu.benchmark.FakeGitHubServer;
+import org.nsu.dto.SavedQuery;
+import org.nsu.security.PlaygroundUser;
+import org.nsu.service.github.GitHubCircuitBreaker;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.ServerSocket;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The saved query library loaded back from {@link FakeGitHubServer}, as after
+ * a restart: each new {@link SavedQueryService} starts with an empty memory.
+ */
+@SpringBootTest(properties = "startup.warmup.enabled=false")
+class SavedQueryServiceTest {
+
+    private static final String REPOSITORY = "sql-playground-queries";
+    private static final FakeGitHubServer GITHUB = startGitHub();
+
+    @Autowired
+    private GitHubService gitHubService;
+
+    @Autowired
+    @Qualifier("savedQueryLoadExecutor")
+    private Executor loadExecutor;
+
+    @DynamicPropertySource
+    static void gitHub(DynamicPropertyRegistry registry) {
+        registry.add("github.api.base-url", () -> "http://localhost:" + GITHUB.getPort());
+    }
+
+    @AfterAll
+    static void stopGitHub() {
+        GITHUB.stop();
+    }
+
+    @Test
+    void loadsInTheBackgroundAndKeepsDeletedQueriesDeleted() {
+        PlaygroundUser user = new PlaygroundUser("library", "library@example.com", null, "token-library");
+        SavedQueryService first = service(gitHubService);
+        first.save(user, "orders", new SavedQuery("orders", "SELECT * FROM orders"));
+        first.save(user, "customers", new SavedQuery("customers", "SELECT * FROM customers"));
+        Map<String, Object> synced = first.sync(user, REPOSITORY, "queries");
+        assertEquals(2, ((List<?>) synced.get("uploaded")).size(), String.valueOf(synced));
+
+        SavedQueryService second = service(gitHubService);
+        await(() -> second.list(user).size() == 2);
+        assertEquals("SELECT * FROM orders", second.get(user, "orders").getQuery());
+        assertTrue(second.delete(user, "orders"));
+        synced = second.sync(user, REPOSITORY, "queries");
+        assertEquals(List.of("queries/orders.sql"), synced.get("deleted"), String.valueOf(synced));
+
+        SavedQueryService third = service(gitHubService);
+        await(() -> !third.list(user).isEmpty());
+        assertEquals(List.of("customers"), third.list(user).stream().map(SavedQuery::getName).toList());
+    }
+
+    @Test
+    void servesFromMemoryWhenGitHubIsDown() throws IOException {
+        int closedPort;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            closedPort = socket.getLocalPort();
+        }
+        GitHubService unreachable = new GitHubService(
+                new GitHubCircuitBreaker(Runnable::run, 5, 30000, 3000), 200, 200);
+        ReflectionTestUtils.setField(unreachable, "githubApiBaseUrl", "http://localhost:" + closedPort);
+        PlaygroundUser user = new PlaygroundUser("offline", "offline@example.com", null, "token-offline");
+        SavedQueryService service = service(unreachable);
+
+        assertTrue(service.list(user).isEmpty());
+        service.save(user, "report", new SavedQuery("report", "SELECT 1"));
+        assertEquals("SELECT 1", service.get(user, "report").getQuery());
+        assertEquals(1, service.search(user, "rep").size());
+    }
+
+    private SavedQueryService service(GitHubService github) {
+        SavedQueryService service = new SavedQueryService(github, loadExecutor);
+        ReflectionTestUtils.setField(service, "defaultRepository", REPOSITORY);
+        ReflectionTestUtils.setField(service, "defaultDirectory", "queries");
+        ReflectionTestUtils.setField(service, "loadRetryMs", 60000L);
+        return service;
+    }
+
+    private static void await(BooleanSupplier condition) {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "timed out waiting for the library to load");
+            Thread.onSpinWait();
+        }
+    }
+
+    private static FakeGitHubServer startGitHub() {
+        try {
+            FakeGitHubServer server = new FakeGitHubServer(0, 0);
+            server.start();
+            return server;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
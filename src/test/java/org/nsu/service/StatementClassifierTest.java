@@ -0,0 +1,40 @@
+package org.nsu.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StatementClassifierTest {
+
+    private final StatementClassifier classifier = new StatementClassifier();
+
+    @Test
+    void plainSelectIsRead() {
+        assertEquals(StatementType.READ, classifier.classify("SELECT 'a;b', \"c;d\" FROM t -- ; done"));
+        assertEquals(StatementType.READ, classifier.classify("SELECT 1;  /* trailing */ "));
+    }
+
+    @Test
+    void quoteInCommentDoesNotHideSecondStatement() {
+        assertEquals(StatementType.WRITE,
+                classifier.classify("SELECT 1 -- it's\n; CREATE TABLE x AS SELECT * FROM t"));
+        assertEquals(StatementType.WRITE,
+                classifier.classify("SELECT 1 /* \" */; CREATE TABLE x AS SELECT * FROM t"));
+        assertEquals(StatementType.WRITE,
+                classifier.classify("SELECT $$'$$; CREATE TABLE x AS SELECT * FROM t"));
+    }
+
+    @Test
+    void ddlKeywordInCodeIsNeverRead() {
+        assertEquals(StatementType.WRITE, classifier.classify("WITH t AS (SELECT 1) SELECT * FROM t; DROP TABLE y"));
+        assertEquals(StatementType.READ, classifier.classify("SELECT 'DROP TABLE y' FROM t"));
+    }
+
+    @Test
+    void explainableIsOneStatement() {
+        assertTrue(classifier.isExplainable("SELECT ';' FROM t"));
+        assertFalse(classifier.isExplainable("SELECT 1 -- '\n; DELETE FROM t"));
+    }
+}
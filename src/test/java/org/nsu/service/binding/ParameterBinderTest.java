@@ -0,0 +1,176 @@
+package org.nsu.service.binding;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigInteger;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ParameterBinderTest {
+
+    private final ParameterBinder binder = new ParameterBinder(16);
+    private final Connection connection;
+
+    ParameterBinderTest() throws SQLException {
+        connection = DriverManager.getConnection("jdbc:h2:mem:parameter_binder;DB_CLOSE_DELAY=-1", "sa", "");
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE IF NOT EXISTS typed (" +
+                    "c_tinyint TINYINT, c_smallint SMALLINT, c_integer INTEGER, c_bigint BIGINT, " +
+                    "c_real REAL, c_double DOUBLE PRECISION, c_numeric NUMERIC(10, 2), c_boolean BOOLEAN, " +
+                    "c_varchar VARCHAR(20), c_date DATE, c_time TIME, c_timestamp TIMESTAMP, " +
+                    "c_timestamptz TIMESTAMP WITH TIME ZONE, c_binary VARBINARY(20), c_array INTEGER ARRAY)");
+        }
+    }
+
+    @AfterEach
+    void closeConnection() throws SQLException {
+        connection.close();
+    }
+
+    @Test
+    void namesInsideLiteralsAndCommentsAreNotParameters() throws SQLException {
+        String sql = "SELECT ':skip' AS s, \":quoted\" AS q, :value AS v -- :line\n" +
+                "FROM (SELECT 1 AS \":quoted\") /* :block */ WHERE 'it''s :still' <> $$:dollar$$";
+        ParameterBinder.StatementShape shape = ParameterBinder.parse(sql);
+
+        assertEquals(sql.replace(":value", "?"), ReflectionTestUtils.getField(shape, "sql"));
+        assertArrayEquals(new String[]{"value"}, (String[]) ReflectionTestUtils.getField(shape, "names"));
+        try (PreparedStatement statement = binder.prepare(connection, "test", sql, Map.of("value", 7));
+             ResultSet rows = statement.executeQuery()) {
+            assertTrue(rows.next());
+            assertEquals(":skip", rows.getString("S"));
+            assertEquals(1, rows.getInt("Q"));
+            assertEquals(7, rows.getInt("V"));
+        }
+    }
+
+    @Test
+    void doubleColonCastIsNotAParameter() throws SQLException {
+        ParameterBinder.StatementShape shape = ParameterBinder.parse("SELECT :value::VARCHAR, '1'::INTEGER");
+
+        assertEquals("SELECT ?::VARCHAR, '1'::INTEGER", ReflectionTestUtils.getField(shape, "sql"));
+        assertArrayEquals(new String[]{"value"}, (String[]) ReflectionTestUtils.getField(shape, "names"));
+    }
+
+    @Test
+    void repeatedNameBindsEveryOccurrence() throws SQLException {
+        try (PreparedStatement statement = binder.prepare(connection, "test",
+                "SELECT :n + :N AS total", Map.of(":n", 2));
+             ResultSet rows = statement.executeQuery()) {
+            assertTrue(rows.next());
+            assertEquals(4, rows.getInt("TOTAL"));
+        }
+    }
+
+    @Test
+    void missingAndExtraParametersAreRejected() {
+        assertCode(ParameterBinder.ERROR_MISSING_PARAMETER, "SELECT :a, :b", Map.of("a", 1));
+        assertCode(ParameterBinder.ERROR_MISSING_PARAMETER, "SELECT ?, ?", Map.of("2", 1));
+        assertCode(ParameterBinder.ERROR_MISSING_PARAMETER, "SELECT ?", null);
+        assertCode(ParameterBinder.ERROR_UNKNOWN_PARAMETER, "SELECT :a", Map.of("a", 1, "b", 2));
+        assertCode(ParameterBinder.ERROR_UNKNOWN_PARAMETER, "SELECT :a", Map.of("1", 1));
+        assertCode(ParameterBinder.ERROR_UNKNOWN_PARAMETER, "SELECT ?", Map.of("1", 1, "2", 2));
+        assertCode(ParameterBinder.ERROR_UNKNOWN_PARAMETER, "SELECT ?", Map.of("a", 1));
+        assertCode(ParameterBinder.ERROR_UNKNOWN_PARAMETER, "SELECT 1", Map.of("1", 1));
+        assertCode(ParameterBinder.ERROR_MIXED_PARAMETERS, "SELECT ?, :a", Map.of("a", 1));
+    }
+
+    @Test
+    void nullBindsAsSqlNull() throws SQLException {
+        Map<String, Object> parameters = new HashMap<>();
+        parameters.put("1", null);
+        try (PreparedStatement statement = binder.prepare(connection, "test",
+                "SELECT CAST(? AS INTEGER) AS v", parameters);
+             ResultSet rows = statement.executeQuery()) {
+            assertTrue(rows.next());
+            assertNull(rows.getObject("V"));
+        }
+    }
+
+    @Test
+    void eachTypeRejectsValuesItCannotHold() {
+        assertRejected("c_tinyint", "x", ParameterBinder.ERROR_TYPE_MISMATCH);
+        assertRejected("c_tinyint", 300, ParameterBinder.ERROR_OUT_OF_RANGE);
+        assertRejected("c_smallint", 1.5, ParameterBinder.ERROR_TYPE_MISMATCH);
+        assertRejected("c_smallint", 40_000, ParameterBinder.ERROR_OUT_OF_RANGE);
+        assertRejected("c_integer", true, ParameterBinder.ERROR_TYPE_MISMATCH);
+        assertRejected("c_integer", 3_000_000_000L, ParameterBinder.ERROR_OUT_OF_RANGE);
+        assertRejected("c_bigint", "12.5", ParameterBinder.ERROR_TYPE_MISMATCH);
+        assertRejected("c_bigint", BigInteger.ONE.shiftLeft(64), ParameterBinder.ERROR_OUT_OF_RANGE);
+        assertRejected("c_real", "x", ParameterBinder.ERROR_TYPE_MISMATCH);
+        assertRejected("c_real", 1e39, ParameterBinder.ERROR_OUT_OF_RANGE);
+        assertRejected("c_double", List.of(1), ParameterBinder.ERROR_TYPE_MISMATCH);
+        assertRejected("c_numeric", Double.NaN, ParameterBinder.ERROR_TYPE_MISMATCH);
+        assertRejected("c_boolean", "yes", ParameterBinder.ERROR_TYPE_MISMATCH);
+        assertRejected("c_boolean", 2, ParameterBinder.ERROR_TYPE_MISMATCH);
+        assertRejected("c_varchar", Map.of("a", 1), ParameterBinder.ERROR_TYPE_MISMATCH);
+        assertRejected("c_date", "2024-13-01", ParameterBinder.ERROR_TYPE_MISMATCH);
+        assertRejected("c_date", 20240101, ParameterBinder.ERROR_TYPE_MISMATCH);
+        assertRejected("c_time", "25:00", ParameterBinder.ERROR_TYPE_MISMATCH);
+        assertRejected("c_timestamp", "yesterday", ParameterBinder.ERROR_TYPE_MISMATCH);
+        assertRejected("c_timestamptz", "2024-01-01 10:00", ParameterBinder.ERROR_TYPE_MISMATCH);
+        assertRejected("c_binary", "not base64!", ParameterBinder.ERROR_TYPE_MISMATCH);
+        assertRejected("c_array", "1,2", ParameterBinder.ERROR_TYPE_MISMATCH);
+    }
+
+    @Test
+    void untypedParameterRejectsObjects() {
+        assertCode(ParameterBinder.ERROR_TYPE_MISMATCH, "SELECT ?", Map.of("1", Map.of("a", 1)));
+    }
+
+    @Test
+    void eachTypeAcceptsItsJsonForms() throws SQLException {
+        assertAccepted("c_tinyint", "12");
+        assertAccepted("c_smallint", 2.0);
+        assertAccepted("c_integer", "2000000000");
+        assertAccepted("c_bigint", BigInteger.valueOf(Long.MAX_VALUE));
+        assertAccepted("c_real", "1.5");
+        assertAccepted("c_double", 1);
+        assertAccepted("c_numeric", "12.34");
+        assertAccepted("c_boolean", "0");
+        assertAccepted("c_varchar", 42);
+        assertAccepted("c_date", "2024-02-29");
+        assertAccepted("c_time", "23:59:59");
+        assertAccepted("c_timestamp", "2024-01-01 10:00:00");
+        assertAccepted("c_timestamptz", "2024-01-01T10:00:00+07:00");
+        assertAccepted("c_binary", "AQID");
+        assertAccepted("c_array", List.of(1, 2, 3));
+    }
+
+    private void assertRejected(String column, Object value, String code) {
+        ParameterBindingException e = assertCode(code, insert(column), Map.of("value", value));
+        assertTrue(e.getMessage().contains(":value"), e.getMessage());
+    }
+
+    private void assertAccepted(String column, Object value) throws SQLException {
+        try (PreparedStatement statement = binder.prepare(connection, "test", insert(column), Map.of("value", value))) {
+            assertEquals(1, statement.executeUpdate());
+        }
+    }
+
+    private ParameterBindingException assertCode(String code, String sql, Map<String, Object> parameters) {
+        ParameterBindingException e = assertThrows(ParameterBindingException.class,
+                () -> binder.prepare(connection, "test", sql, parameters).close(), sql);
+        assertEquals(code, e.getBindingErrorCode(), e.getMessage());
+        return e;
+    }
+
+    private static String insert(String column) {
+        return "INSERT INTO typed (" + column + ") VALUES (:value)";
+    }
+}
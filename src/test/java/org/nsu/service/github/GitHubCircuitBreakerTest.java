@@ -0,0 +1,96 @@
+package org.nsu.service.github;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.nsu.benchmark.FakeGitHubServer;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.web.util.DefaultUriBuilderFactory;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs the breaker against {@link FakeGitHubServer} with a fixed latency, to
+ * check that the calling thread waits no longer than the call timeout.
+ */
+class GitHubCircuitBreakerTest {
+
+    private static final long CALL_TIMEOUT_MS = 200;
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(4);
+    private FakeGitHubServer github;
+
+    @AfterEach
+    void stop() {
+        if (github != null) {
+            github.stop();
+        }
+        executor.shutdownNow();
+    }
+
+    @Test
+    void slowGitHubFailsWithinCallTimeout() throws IOException {
+        GitHubCircuitBreaker breaker = new GitHubCircuitBreaker(executor, 5, 30_000, CALL_TIMEOUT_MS);
+        RestTemplate restTemplate = startGitHub(2_000);
+
+        long start = System.nanoTime();
+        assertThrows(GitHubUnavailableException.class,
+                () -> breaker.call("getUserRepositories", () -> listRepositories(restTemplate)));
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+
+        assertTrue(elapsedMs < CALL_TIMEOUT_MS + 500, "waited " + elapsedMs + " ms");
+        assertEquals("CLOSED", breaker.getState());
+    }
+
+    @Test
+    void circuitOpensAfterSlowCallsAndThenFailsFast() throws IOException {
+        GitHubCircuitBreaker breaker = new GitHubCircuitBreaker(executor, 2, 30_000, CALL_TIMEOUT_MS);
+        RestTemplate restTemplate = startGitHub(2_000);
+
+        for (int i = 0; i < 2; i++) {
+            assertThrows(GitHubUnavailableException.class,
+                    () -> breaker.call("getUserRepositories", () -> listRepositories(restTemplate)));
+        }
+        assertEquals("OPEN", breaker.getState());
+
+        long start = System.nanoTime();
+        GitHubUnavailableException e = assertThrows(GitHubUnavailableException.class,
+                () -> breaker.call("getUserRepositories", () -> listRepositories(restTemplate)));
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+
+        assertTrue(elapsedMs < 50, "open circuit waited " + elapsedMs + " ms");
+        assertTrue(e.getRetryAfterSeconds() > 0);
+    }
+
+    @Test
+    void callWithinTimeoutSucceeds() throws IOException {
+        GitHubCircuitBreaker breaker = new GitHubCircuitBreaker(executor, 2, 30_000, CALL_TIMEOUT_MS);
+        RestTemplate restTemplate = startGitHub(20);
+
+        String repositories = breaker.call("getUserRepositories", () -> listRepositories(restTemplate));
+
+        assertTrue(repositories.contains("sql-playground"));
+        assertEquals("CLOSED", breaker.getState());
+    }
+
+    private RestTemplate startGitHub(long latencyMs) throws IOException {
+        github = new FakeGitHubServer(0, latencyMs);
+        github.start();
+        SimpleClientHttpRequestFactory requestFactory = new SimpleClientHttpRequestFactory();
+        requestFactory.setConnectTimeout(1_000);
+        requestFactory.setReadTimeout(5_000);
+        RestTemplate restTemplate = new RestTemplate(requestFactory);
+        restTemplate.setUriTemplateHandler(new DefaultUriBuilderFactory("http://localhost:" + github.getPort()));
+        return restTemplate;
+    }
+
+    private static String listRepositories(RestTemplate restTemplate) {
+        return restTemplate.getForObject("/user/repos", String.class);
+    }
+}
@@ -0,0 +1,67 @@
+package org.nsu.service.sandbox;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SandboxConnectionPoolTest {
+
+    private final List<SandboxPoolManager> managers = new ArrayList<>();
+
+    @AfterEach
+    void closePools() {
+        managers.forEach(SandboxPoolManager::closeAll);
+    }
+
+    @Test
+    void leasedConnectionIsNotReachableThroughItsStatements() throws Exception {
+        SandboxPoolManager manager = manager(false);
+        Connection connection = manager.acquire("guarded", opener("guarded"));
+
+        try (Statement statement = connection.createStatement();
+             PreparedStatement prepared = connection.prepareStatement("SELECT 1");
+             ResultSet rows = prepared.executeQuery()) {
+            assertSame(connection, statement.getConnection());
+            assertSame(connection, prepared.getConnection());
+            assertSame(connection, rows.getStatement().getConnection());
+            assertSame(connection, connection.getMetaData().getConnection());
+            assertThrows(SQLException.class, () -> connection.unwrap(org.h2.jdbc.JdbcConnection.class));
+            assertThrows(SQLException.class, () -> statement.unwrap(org.h2.jdbc.JdbcStatement.class));
+            assertFalse(connection.isWrapperFor(org.h2.jdbc.JdbcConnection.class));
+            assertSame(connection, connection.unwrap(Connection.class));
+        }
+
+        connection.close();
+        assertTrue(connection.isClosed());
+    }
+
+    private SandboxPoolManager manager(boolean adaptive) {
+        SandboxPoolManager manager = new SandboxPoolManager(64);
+        ReflectionTestUtils.setField(manager, "adaptive", adaptive);
+        ReflectionTestUtils.setField(manager, "staticSize", 4);
+        ReflectionTestUtils.setField(manager, "initialSize", 2);
+        ReflectionTestUtils.setField(manager, "maxPerSandbox", 16);
+        ReflectionTestUtils.setField(manager, "acquireTimeoutMs", 10000L);
+        ReflectionTestUtils.setField(manager, "idleTimeoutMs", 60000L);
+        managers.add(manager);
+        return manager;
+    }
+
+    private static SandboxPoolManager.ConnectionOpener opener(String sandbox) {
+        return () -> DriverManager.getConnection("jdbc:h2:mem:" + sandbox + ";DB_CLOSE_DELAY=-1", "sa", "");
+    }
+}